@@ -0,0 +1,196 @@
+package com.edtech.bench;
+
+import com.baomidou.mybatisplus.core.conditions.AbstractWrapper;
+import com.edtech.kt.engine.BktEngine;
+import com.edtech.kt.engine.EngineStateStore;
+import com.edtech.kt.engine.KnowledgeTracingEngines;
+import com.edtech.kt.engine.PfaEngine;
+import com.edtech.kt.service.AtomicKnowledgeStateStore;
+import com.edtech.kt.service.BktParameterRegistry;
+import com.edtech.kt.service.KnowledgePointSlots;
+import com.edtech.kt.service.KnowledgeStateWriteBehind;
+import com.edtech.kt.service.KnowledgeTracingService;
+import com.edtech.kt.service.MasteryPropagationService;
+import com.edtech.kt.service.MasteryStateStore;
+import com.edtech.kt.service.PrerequisiteGraph;
+import com.edtech.kt.service.StudentMasteryCache;
+import com.edtech.kt.service.StudentMasteryIndex;
+import com.edtech.kt.service.StudentStateLoader;
+import com.edtech.model.entity.KnowledgePoint;
+import com.edtech.model.entity.KnowledgeState;
+import com.edtech.model.entity.Question;
+import com.edtech.model.mapper.KnowledgePointMapper;
+import com.edtech.model.mapper.KnowledgePrerequisiteMapper;
+import com.edtech.model.mapper.KnowledgeStateMapper;
+import com.edtech.model.mapper.QuestionMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+
+/**
+ * Redis 清空后的冷启动压测：对比逐知识点回源与按学生合并加载 (single-flight) 的 MySQL 查询量
+ * <p>
+ * Redis / Mapper 为内存替身，每次查询固定休眠模拟 MySQL 往返；knowledge_state 中每个学生每个知识点都有记录。
+ * 每种模式先清空 Redis (模拟重启 / 大面积过期)，多线程持续提交随机 (学生, 题目)，
+ * 按 250ms 窗口输出 MySQL QPS 与提交吞吐。
+ * <pre>
+ * java -cp edtech-bench/target/benchmarks.jar com.edtech.bench.ColdStateLoadCheck [students] [threads] [seconds] [queryMicros]
+ * </pre>
+ */
+public class ColdStateLoadCheck {
+
+    private static final int KNOWLEDGE_POINTS = 50;
+    private static final int QUESTIONS_PER_KP = 10;
+    private static final long WINDOW_MILLIS = 250;
+
+    public static void main(String[] args) throws Exception {
+        int students = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : 32;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 4;
+        long queryMicros = args.length > 3 ? Long.parseLong(args[3]) : 500;
+
+        Result pointQueries = run(false, students, threads, seconds, queryMicros);
+        Result singleFlight = run(true, students, threads, seconds, queryMicros);
+        System.out.printf("%nper-KP fallback : %,d queries, peak %,d qps, %,d submissions/s%n",
+                pointQueries.queries, pointQueries.peakQps, pointQueries.submissionsPerSecond);
+        System.out.printf("single-flight   : %,d queries, peak %,d qps, %,d submissions/s%n",
+                singleFlight.queries, singleFlight.peakQps, singleFlight.submissionsPerSecond);
+    }
+
+    private static Result run(boolean singleFlight, int students, int threads, int seconds, long queryMicros)
+            throws InterruptedException {
+        Fakes.initTableInfo(Question.class, KnowledgePoint.class, KnowledgeState.class);
+        List<KnowledgePoint> kps = Fakes.knowledgePoints(KNOWLEDGE_POINTS);
+        List<Question> questions = Fakes.questions(KNOWLEDGE_POINTS, QUESTIONS_PER_KP);
+        KnowledgePointMapper kpMapper = Fakes.mapper(KnowledgePointMapper.class, Map.of(
+                "selectList", a -> kps,
+                "selectById", a -> kps.get((int) ((Long) a[0] - 1))));
+        QuestionMapper questionMapper = Fakes.mapper(QuestionMapper.class, Map.of(
+                "selectList", a -> questions,
+                "selectById", a -> questions.get((int) ((Long) a[0] - 1))));
+
+        LongAdder queries = new LongAdder();
+        KnowledgeStateMapper stateMapper = Fakes.mapper(KnowledgeStateMapper.class, Map.of(
+                "batchUpsert", a -> ((List<?>) a[0]).size(),
+                "selectOne", a -> {
+                    query(queries, queryMicros);
+                    List<Object> params = params(a[0]);
+                    return row((Long) params.get(0), (Long) params.get(1));
+                },
+                "selectList", a -> {
+                    query(queries, queryMicros);
+                    long studentId = (Long) params(a[0]).get(0);
+                    List<KnowledgeState> rows = new ArrayList<>(KNOWLEDGE_POINTS);
+                    for (long kpId = 1; kpId <= KNOWLEDGE_POINTS; kpId++) {
+                        rows.add(row(studentId, kpId));
+                    }
+                    return rows;
+                }));
+
+        BktParameterRegistry registry = new BktParameterRegistry(kpMapper, questionMapper);
+        registry.reloadAll();
+        KnowledgeStateWriteBehind writeBehind = new KnowledgeStateWriteBehind(stateMapper);
+        Fakes.setField(writeBehind, "enabled", true);
+        Fakes.setField(writeBehind, "batchSize", 500);
+        Fakes.setField(writeBehind, "flushThreshold", 2000);
+        Fakes.setField(writeBehind, "retentionMs", 10_000L);
+        Fakes.InMemoryRedisTemplate redis = new Fakes.InMemoryRedisTemplate();
+        KnowledgePointSlots slots = new KnowledgePointSlots(redis, registry);
+        MasteryStateStore stateStore = new MasteryStateStore(redis, slots);
+        Fakes.setField(stateStore, "format", "hash");
+        AtomicKnowledgeStateStore atomicStore = new AtomicKnowledgeStateStore(redis, stateStore, slots);
+        StudentMasteryIndex masteryIndex = new StudentMasteryIndex(redis, stateStore);
+        StudentStateLoader stateLoader = new StudentStateLoader(stateMapper, writeBehind, stateStore);
+        Fakes.setField(stateLoader, "singleFlight", singleFlight);
+        // 只观察答题知识点本身的回源，关闭前驱传播
+        PrerequisiteGraph graph = new PrerequisiteGraph(Fakes.mapper(KnowledgePrerequisiteMapper.class,
+                Map.<String, Function<Object[], Object>>of("selectList", a -> List.of())), registry);
+        KnowledgeTracingEngines engines = new KnowledgeTracingEngines(
+                List.of(new BktEngine(), new PfaEngine()), kpMapper, BktEngine.NAME, "", "");
+        MasteryPropagationService propagation = new MasteryPropagationService(
+                graph, registry, engines, writeBehind, stateLoader, atomicStore, masteryIndex, stateStore);
+        StudentMasteryCache masteryCache = new StudentMasteryCache(
+                stateStore, stateMapper, redis, new SimpleMeterRegistry(), 1000, 60);
+        EngineStateStore engineStateStore = new EngineStateStore(redis, stateStore, slots);
+        KnowledgeTracingService service = new KnowledgeTracingService(registry, writeBehind, propagation,
+                atomicStore, masteryIndex, stateStore, masteryCache, engines, engineStateStore, stateLoader);
+
+        redis.clear();
+        AtomicBoolean stop = new AtomicBoolean();
+        LongAdder submissions = new LongAdder();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        for (int t = 0; t < threads; t++) {
+            pool.execute(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                while (!stop.get()) {
+                    long studentId = 1 + random.nextInt(students);
+                    long questionId = 1 + random.nextInt(questions.size());
+                    service.updateKnowledgeState(studentId, questionId, random.nextBoolean());
+                    submissions.increment();
+                }
+            });
+        }
+
+        String mode = singleFlight ? "single-flight" : "per-KP fallback";
+        System.out.printf("%n== %s: %d students x %d KPs, %d threads, %d us/query ==%n",
+                mode, students, KNOWLEDGE_POINTS, threads, queryMicros);
+        long peak = 0;
+        long lastQueries = 0;
+        long windows = seconds * 1000L / WINDOW_MILLIS;
+        for (int w = 1; w <= windows; w++) {
+            Thread.sleep(WINDOW_MILLIS);
+            long total = queries.sum();
+            long qps = (total - lastQueries) * 1000 / WINDOW_MILLIS;
+            lastQueries = total;
+            peak = Math.max(peak, qps);
+            System.out.printf("t=%5d ms  mysql %,8d qps  (total %,d)%n", w * WINDOW_MILLIS, qps, total);
+        }
+        stop.set(true);
+        pool.shutdown();
+        pool.awaitTermination(10, TimeUnit.SECONDS);
+        writeBehind.shutdown();
+        System.out.println("loader " + stateLoader.getStats());
+        return new Result(queries.sum(), peak, submissions.sum() / Math.max(1, seconds));
+    }
+
+    private static void query(LongAdder queries, long micros) {
+        queries.increment();
+        LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(micros));
+    }
+
+    /**
+     * eq 条件的参数值，按条件追加顺序
+     */
+    private static List<Object> params(Object wrapper) {
+        AbstractWrapper<?, ?, ?> w = (AbstractWrapper<?, ?, ?>) wrapper;
+        // 参数在生成 SQL 片段时才写入
+        w.getSqlSegment();
+        Map<String, Object> pairs = w.getParamNameValuePairs();
+        List<Object> values = new ArrayList<>(pairs.size());
+        for (int i = 1; i <= pairs.size(); i++) {
+            values.add(pairs.get("MPGENVAL" + i));
+        }
+        return values;
+    }
+
+    private static KnowledgeState row(long studentId, long kpId) {
+        KnowledgeState state = new KnowledgeState();
+        state.setStudentId(studentId);
+        state.setKnowledgePointId(kpId);
+        state.setMasteryProbability(BigDecimal.valueOf(0.1 + (studentId * 31 + kpId) % 80 / 100.0));
+        return state;
+    }
+
+    private record Result(long queries, long peakQps, long submissionsPerSecond) {}
+}
@@ -0,0 +1,534 @@
+package com.edtech.bench;
+
+import com.baomidou.mybatisplus.core.MybatisConfiguration;
+import com.baomidou.mybatisplus.core.metadata.TableInfoHelper;
+import com.edtech.model.entity.KnowledgePoint;
+import com.edtech.model.entity.Question;
+import org.apache.ibatis.builder.MapperBuilderAssistant;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.connection.BitFieldSubCommands;
+import org.springframework.data.redis.core.HashOperations;
+import org.springframework.data.redis.core.ListOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.scripting.support.ResourceScriptSource;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * 基准测试用的内存替身 (Mapper / Redis / RabbitMQ)，只实现热路径用到的方法
+ */
+final class Fakes {
+
+    private Fakes() {
+    }
+
+    /**
+     * 知识点 ID 为 1..count
+     */
+    static List<KnowledgePoint> knowledgePoints(int count) {
+        List<KnowledgePoint> kps = new ArrayList<>(count);
+        for (long id = 1; id <= count; id++) {
+            KnowledgePoint kp = new KnowledgePoint();
+            kp.setId(id);
+            kp.setName("KP-" + id);
+            kp.setPInit(0.2);
+            kp.setPTransit(0.15);
+            kp.setPGuess(0.2);
+            kp.setPSlip(0.1);
+            kps.add(kp);
+        }
+        return kps;
+    }
+
+    /**
+     * 每个知识点 perKp 道题，题目 ID 为 1..kpCount * perKp，难度在三档间轮换
+     */
+    static List<Question> questions(int kpCount, int perKp) {
+        List<Question> questions = new ArrayList<>(kpCount * perKp);
+        long id = 1;
+        for (long kpId = 1; kpId <= kpCount; kpId++) {
+            for (int i = 0; i < perKp; i++, id++) {
+                Question q = new Question();
+                q.setId(id);
+                q.setKnowledgePointId(kpId);
+                q.setDifficulty(BigDecimal.valueOf(0.2 + 0.3 * (i % 3)));
+                q.setContent("Question " + id);
+                q.setType(1);
+                questions.add(q);
+            }
+        }
+        return questions;
+    }
+
+    /**
+     * 动态代理实现 Mapper 接口：按方法名分派，未登记的方法返回 null / 0
+     */
+    @SuppressWarnings("unchecked")
+    static <T> T mapper(Class<T> type, Map<String, Function<Object[], Object>> handlers) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+            Function<Object[], Object> handler = handlers.get(method.getName());
+            if (handler != null) {
+                return handler.apply(args);
+            }
+            if (method.getDeclaringClass() == Object.class) {
+                return switch (method.getName()) {
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "equals" -> proxy == args[0];
+                    default -> type.getSimpleName() + "Fake";
+                };
+            }
+            Class<?> returnType = method.getReturnType();
+            if (returnType == int.class) {
+                return 0;
+            }
+            if (returnType == long.class) {
+                return 0L;
+            }
+            if (returnType == boolean.class) {
+                return false;
+            }
+            return null;
+        });
+    }
+
+    /**
+     * LambdaQueryWrapper 解析列名依赖 MyBatis-Plus 的实体元数据，脱离 Spring 时需手动注册
+     */
+    static void initTableInfo(Class<?>... entities) {
+        MybatisConfiguration configuration = new MybatisConfiguration();
+        for (Class<?> entity : entities) {
+            MapperBuilderAssistant assistant = new MapperBuilderAssistant(configuration, "");
+            assistant.setCurrentNamespace(entity.getName());
+            TableInfoHelper.initTableInfo(assistant, entity);
+        }
+    }
+
+    /**
+     * 为未经 Spring 注入的 @Value 字段赋值
+     */
+    static void setField(Object target, String name, Object value) {
+        try {
+            Field field = target.getClass().getDeclaredField(name);
+            field.setAccessible(true);
+            field.set(target, value);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Cannot set field " + name, e);
+        }
+    }
+
+    /**
+     * 投递到内存队列的 RabbitTemplate (只支持 send)，由调用方线程按批取出交给消费者
+     */
+    static final class QueueRabbitTemplate extends RabbitTemplate {
+
+        private final BlockingQueue<Delivery> queue = new LinkedBlockingQueue<>();
+
+        @Override
+        public void send(String routingKey, Message message) {
+            queue.add(new Delivery(message, System.nanoTime()));
+        }
+
+        /**
+         * 最多等待 timeoutMillis 取到第一条，再非阻塞取满 max 条
+         */
+        List<Delivery> poll(int max, long timeoutMillis) throws InterruptedException {
+            Delivery first = queue.poll(timeoutMillis, TimeUnit.MILLISECONDS);
+            if (first == null) {
+                return List.of();
+            }
+            List<Delivery> batch = new ArrayList<>(max);
+            batch.add(first);
+            queue.drainTo(batch, max - 1);
+            return batch;
+        }
+
+        int depth() {
+            return queue.size();
+        }
+
+        record Delivery(Message message, long enqueuedNanos) {}
+    }
+
+    /**
+     * 数据落在内存 Map 上的 RedisTemplate：支持 value (含无符号 BITFIELD) / hash / zset / list 的常用操作，
+     * 管道按命令顺序返回结果，Lua 脚本由 {@link #registerScript} 登记的 Java 实现代替。不处理过期。
+     */
+    static final class InMemoryRedisTemplate extends RedisTemplate<String, Object> {
+
+        private final Map<String, Object> values = new ConcurrentHashMap<>();
+        private final Map<String, Map<Object, Object>> hashes = new ConcurrentHashMap<>();
+        private final Map<String, Map<Object, Double>> zsets = new ConcurrentHashMap<>();
+        private final Map<String, List<Object>> lists = new ConcurrentHashMap<>();
+        private final Map<String, BiFunction<List<String>, Object[], Object>> scripts = new ConcurrentHashMap<>();
+        private final ThreadLocal<List<Object>> pipeline = new ThreadLocal<>();
+        private final ValueOperations<String, Object> valueOps = proxy(ValueOperations.class, this::valueOp);
+        private final HashOperations<String, Object, Object> hashOps = proxy(HashOperations.class, this::hashOp);
+        private final ZSetOperations<String, Object> zSetOps = proxy(ZSetOperations.class, this::zSetOp);
+        private final ListOperations<String, Object> listOps = proxy(ListOperations.class, this::listOp);
+
+        @Override
+        public ValueOperations<String, Object> opsForValue() {
+            return valueOps;
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <HK, HV> HashOperations<String, HK, HV> opsForHash() {
+            return (HashOperations<String, HK, HV>) hashOps;
+        }
+
+        @Override
+        public ZSetOperations<String, Object> opsForZSet() {
+            return zSetOps;
+        }
+
+        @Override
+        public ListOperations<String, Object> opsForList() {
+            return listOps;
+        }
+
+        @Override
+        public Boolean expire(String key, long timeout, TimeUnit unit) {
+            return record(Boolean.TRUE);
+        }
+
+        @Override
+        public Boolean expireAt(String key, Date date) {
+            return record(Boolean.TRUE);
+        }
+
+        @Override
+        public Boolean hasKey(String key) {
+            return values.containsKey(key) || hashes.containsKey(key) || zsets.containsKey(key) || lists.containsKey(key);
+        }
+
+        @Override
+        public Boolean delete(String key) {
+            boolean removed = values.remove(key) != null | hashes.remove(key) != null
+                    | zsets.remove(key) != null | lists.remove(key) != null;
+            return record(removed);
+        }
+
+        @Override
+        public Long delete(Collection<String> keys) {
+            long removed = 0;
+            for (String key : keys) {
+                removed += values.remove(key) != null | hashes.remove(key) != null
+                        | zsets.remove(key) != null | lists.remove(key) != null ? 1 : 0;
+            }
+            return record(removed);
+        }
+
+        /** 模拟 Redis 重启 / FLUSHALL */
+        void clear() {
+            values.clear();
+            hashes.clear();
+            zsets.clear();
+            lists.clear();
+        }
+
+        /**
+         * 以 Java 实现代替 classpath 上的 Lua 脚本 (按 SHA1 匹配)，实现需自行保证原子性
+         */
+        void registerScript(String resource, BiFunction<List<String>, Object[], Object> implementation) {
+            DefaultRedisScript<Object> script = new DefaultRedisScript<>();
+            script.setScriptSource(new ResourceScriptSource(new ClassPathResource(resource)));
+            scripts.put(script.getSha1(), implementation);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> T execute(RedisScript<T> script, List<String> keys, Object... args) {
+            BiFunction<List<String>, Object[], Object> implementation = scripts.get(script.getSha1());
+            if (implementation == null) {
+                throw new UnsupportedOperationException("Script not registered: " + script.getSha1());
+            }
+            return (T) record(implementation.apply(keys, args));
+        }
+
+        /** 参数 / 返回值序列化器被忽略：登记的实现直接收发字符串等 Java 对象 */
+        @Override
+        public <T> T execute(RedisScript<T> script, RedisSerializer<?> argsSerializer, RedisSerializer<T> resultSerializer,
+                             List<String> keys, Object... args) {
+            return execute(script, keys, args);
+        }
+
+        /** 管道直接在内存上执行，按命令顺序收集返回值 */
+        @Override
+        public List<Object> executePipelined(SessionCallback<?> session) {
+            List<Object> results = new ArrayList<>();
+            pipeline.set(results);
+            try {
+                session.execute(this);
+            } finally {
+                pipeline.remove();
+            }
+            return results;
+        }
+
+        private <T> T record(T result) {
+            List<Object> results = pipeline.get();
+            if (results != null) {
+                results.add(result);
+            }
+            return result;
+        }
+
+        /**
+         * type 传原始接口 (如 ValueOperations.class)，泛型参数由接收字段推断，未检查转换只发生在这里
+         */
+        @SuppressWarnings("unchecked")
+        private <T> T proxy(Class<? super T> type, BiFunction<String, Object[], Object> dispatch) {
+            return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type},
+                    (proxy, method, args) -> record(dispatch.apply(method.getName(), args)));
+        }
+
+        private Object valueOp(String method, Object[] args) {
+            return switch (method) {
+                case "get" -> values.get((String) args[0]);
+                case "set" -> {
+                    values.put((String) args[0], args[1]);
+                    yield null;
+                }
+                case "bitField" -> bitField((String) args[0], (BitFieldSubCommands) args[1]);
+                default -> throw new UnsupportedOperationException(method);
+            };
+        }
+
+        @SuppressWarnings("unchecked")
+        private Object hashOp(String method, Object[] args) {
+            return switch (method) {
+                case "get" -> hashes.getOrDefault((String) args[0], Map.of()).get(args[1]);
+                case "put" -> {
+                    hash((String) args[0]).put(args[1], args[2]);
+                    yield null;
+                }
+                case "putIfAbsent" -> hash((String) args[0]).putIfAbsent(args[1], args[2]) == null;
+                case "putAll" -> {
+                    hash((String) args[0]).putAll((Map<?, ?>) args[1]);
+                    yield null;
+                }
+                case "multiGet" -> {
+                    Map<Object, Object> hash = hashes.getOrDefault((String) args[0], Map.of());
+                    List<Object> result = new ArrayList<>();
+                    for (Object field : (Collection<?>) args[1]) {
+                        result.add(hash.get(field));
+                    }
+                    yield result;
+                }
+                case "increment" -> hash((String) args[0]).merge(args[1], ((Number) args[2]).longValue(),
+                        (a, b) -> ((Number) a).longValue() + ((Number) b).longValue());
+                case "entries" -> hashes.getOrDefault((String) args[0], Map.of());
+                case "delete" -> {
+                    Map<Object, Object> hash = hashes.getOrDefault((String) args[0], Map.of());
+                    long removed = 0;
+                    for (Object field : (Object[]) args[1]) {
+                        removed += hash.remove(field) != null ? 1 : 0;
+                    }
+                    yield removed;
+                }
+                default -> throw new UnsupportedOperationException(method);
+            };
+        }
+
+        @SuppressWarnings("unchecked")
+        private Object zSetOp(String method, Object[] args) {
+            String key = (String) args[0];
+            return switch (method) {
+                case "add" -> {
+                    Map<Object, Double> zset = zsets.computeIfAbsent(key, k -> new ConcurrentHashMap<>());
+                    if (args.length == 3) {
+                        yield zset.put(args[1], ((Number) args[2]).doubleValue()) == null;
+                    }
+                    for (ZSetOperations.TypedTuple<Object> tuple : (Set<ZSetOperations.TypedTuple<Object>>) args[1]) {
+                        zset.put(tuple.getValue(), tuple.getScore());
+                    }
+                    yield (long) ((Set<?>) args[1]).size();
+                }
+                case "incrementScore" -> zsets.computeIfAbsent(key, k -> new ConcurrentHashMap<>())
+                        .merge(args[1], ((Number) args[2]).doubleValue(), Double::sum);
+                case "remove" -> {
+                    Map<Object, Double> zset = zsets.getOrDefault(key, Map.of());
+                    long removed = 0;
+                    for (Object member : (Object[]) args[1]) {
+                        removed += zset.remove(member) != null ? 1 : 0;
+                    }
+                    yield removed;
+                }
+                case "score" -> zsets.getOrDefault(key, Map.of()).get(args[1]);
+                case "zCard", "size" -> (long) zsets.getOrDefault(key, Map.of()).size();
+                case "range", "reverseRange" -> {
+                    List<Object> sorted = sortedMembers(key, method.equals("reverseRange"));
+                    yield new LinkedHashSet<>(slice(sorted, ((Number) args[1]).longValue(), ((Number) args[2]).longValue()));
+                }
+                case "rangeByScore" -> {
+                    double min = ((Number) args[1]).doubleValue();
+                    double max = ((Number) args[2]).doubleValue();
+                    long offset = args.length > 3 ? ((Number) args[3]).longValue() : 0;
+                    long count = args.length > 4 ? ((Number) args[4]).longValue() : -1;
+                    Map<Object, Double> zset = zsets.getOrDefault(key, Map.of());
+                    Set<Object> result = new LinkedHashSet<>();
+                    long skipped = 0;
+                    for (Object member : sortedMembers(key, false)) {
+                        Double score = zset.get(member);
+                        if (score == null || score < min || score > max) {
+                            continue;
+                        }
+                        if (skipped++ < offset) {
+                            continue;
+                        }
+                        if (count >= 0 && result.size() >= count) {
+                            break;
+                        }
+                        result.add(member);
+                    }
+                    yield result;
+                }
+                default -> throw new UnsupportedOperationException(method);
+            };
+        }
+
+        private Object listOp(String method, Object[] args) {
+            String key = (String) args[0];
+            return switch (method) {
+                case "leftPush" -> {
+                    List<Object> list = lists.computeIfAbsent(key, k -> new ArrayList<>());
+                    synchronized (list) {
+                        list.add(0, args[1]);
+                        yield (long) list.size();
+                    }
+                }
+                case "trim" -> {
+                    List<Object> list = lists.getOrDefault(key, new ArrayList<>());
+                    synchronized (list) {
+                        List<Object> kept = slice(list, (Long) args[1], (Long) args[2]);
+                        list.clear();
+                        list.addAll(kept);
+                    }
+                    yield null;
+                }
+                case "range" -> {
+                    List<Object> list = lists.getOrDefault(key, List.of());
+                    synchronized (list) {
+                        yield slice(list, (Long) args[1], (Long) args[2]);
+                    }
+                }
+                default -> throw new UnsupportedOperationException(method);
+            };
+        }
+
+        /**
+         * BITFIELD 的 GET / SET / INCRBY，仅支持无符号类型，INCRBY 按 WRAP 回绕；值以 byte[] 存放，高位在前
+         */
+        private List<Long> bitField(String key, BitFieldSubCommands commands) {
+            List<Long> result = new ArrayList<>();
+            values.compute(key, (k, current) -> {
+                byte[] bytes = current instanceof byte[] b ? b : new byte[0];
+                for (BitFieldSubCommands.BitFieldSubCommand command : commands) {
+                    if (command.getType().isSigned()) {
+                        throw new UnsupportedOperationException(command.getType().asString());
+                    }
+                    int bits = command.getType().getBits();
+                    long mask = bits == 64 ? -1L : (1L << bits) - 1;
+                    BitFieldSubCommands.Offset offset = command.getOffset();
+                    long bitOffset = offset.isZeroBased() ? offset.getValue() : offset.getValue() * bits;
+                    long old = readBits(bytes, bitOffset, bits);
+                    if (command instanceof BitFieldSubCommands.BitFieldSet set) {
+                        bytes = writeBits(bytes, bitOffset, bits, set.getValue() & mask);
+                        result.add(old);
+                    } else if (command instanceof BitFieldSubCommands.BitFieldIncrBy incr) {
+                        long next = (old + incr.getValue()) & mask;
+                        bytes = writeBits(bytes, bitOffset, bits, next);
+                        result.add(next);
+                    } else {
+                        result.add(old);
+                    }
+                }
+                return bytes;
+            });
+            return result;
+        }
+
+        private static long readBits(byte[] bytes, long bitOffset, int bits) {
+            long value = 0;
+            for (int i = 0; i < bits; i++) {
+                long bit = bitOffset + i;
+                int index = (int) (bit >>> 3);
+                int b = index < bytes.length ? (bytes[index] >> (7 - (int) (bit & 7))) & 1 : 0;
+                value = (value << 1) | b;
+            }
+            return value;
+        }
+
+        private static byte[] writeBits(byte[] bytes, long bitOffset, int bits, long value) {
+            int needed = (int) ((bitOffset + bits + 7) >>> 3);
+            byte[] target = needed > bytes.length ? Arrays.copyOf(bytes, needed) : bytes;
+            for (int i = 0; i < bits; i++) {
+                long bit = bitOffset + i;
+                int index = (int) (bit >>> 3);
+                int mask = 1 << (7 - (int) (bit & 7));
+                if (((value >>> (bits - 1 - i)) & 1) != 0) {
+                    target[index] |= (byte) mask;
+                } else {
+                    target[index] &= (byte) ~mask;
+                }
+            }
+            return target;
+        }
+
+        private Map<Object, Object> hash(String key) {
+            return hashes.computeIfAbsent(key, k -> new ConcurrentHashMap<>());
+        }
+
+        private List<Object> sortedMembers(String key, boolean reverse) {
+            Map<Object, Double> zset = zsets.getOrDefault(key, Map.of());
+            List<Map.Entry<Object, Double>> entries = new ArrayList<>(zset.entrySet());
+            Comparator<Map.Entry<Object, Double>> byScore = Map.Entry.comparingByValue();
+            entries.sort(reverse ? byScore.reversed() : byScore);
+            List<Object> members = new ArrayList<>(entries.size());
+            for (Map.Entry<Object, Double> e : entries) {
+                members.add(e.getKey());
+            }
+            return members;
+        }
+
+        /**
+         * Redis 风格的闭区间下标 (负数从末尾数起)
+         */
+        private static <T> List<T> slice(List<T> list, long start, long end) {
+            int size = list.size();
+            long from = start < 0 ? Math.max(0, size + start) : start;
+            long to = end < 0 ? size + end : Math.min(end, size - 1L);
+            List<T> result = new ArrayList<>();
+            for (long i = from; i <= to; i++) {
+                result.add(list.get((int) i));
+            }
+            return result;
+        }
+    }
+}
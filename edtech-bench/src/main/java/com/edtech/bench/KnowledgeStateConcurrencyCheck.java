@@ -0,0 +1,236 @@
+package com.edtech.bench;
+
+import com.edtech.kt.config.RedisConfig;
+import com.edtech.kt.service.AtomicKnowledgeStateStore;
+import com.edtech.kt.service.BktParameterRegistry.BktParams;
+import com.edtech.kt.service.KnowledgePointSlots;
+import com.edtech.kt.service.KnowledgeTracingService;
+import com.edtech.kt.service.MasteryStateStore;
+import com.edtech.kt.service.StudentMasteryIndex;
+import org.springframework.data.redis.connection.BitFieldSubCommands;
+import org.springframework.data.redis.connection.BitFieldSubCommands.BitFieldType;
+import org.springframework.data.redis.connection.BitFieldSubCommands.Offset;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+/**
+ * 单个学生同一知识点的并发提交校验
+ * <p>
+ * 取 pTransit = 0、pGuess = pSlip = 0.49，一次答对 / 答错分别把几率乘以 / 除以同一常数，
+ * 每个线程对错数量相等，因此无论交错顺序如何，最终掌握度都应回到初始值，版本号应等于提交总数。
+ * 依次运行 Lua 原子模式 (哈希格式、packed 格式) 与 HGET + HSET 模式，后者用于对照丢失更新。
+ * packed 格式每步量化 (误差 < 1e-5)，最终值不再严格回到初始值，只校验版本号。
+ * <p>
+ * 默认 (memory) 跑在 {@link Fakes.InMemoryRedisTemplate} 上，脚本由 {@link #registerScripts} 的 Java 实现
+ * 整体加锁代替 (模拟 Redis 单线程执行脚本)，无需 Redis 即可在 CI 中运行；传入主机名则连真实 Redis 校验 Lua 本身。
+ * <pre>
+ * java -cp edtech-bench/target/benchmarks.jar com.edtech.bench.KnowledgeStateConcurrencyCheck [memory|host] [port] [threads] [roundsPerThread]
+ * </pre>
+ */
+public class KnowledgeStateConcurrencyCheck {
+
+    private static final long STUDENT_ID = -1L;
+    private static final long KP_ID = 1L;
+    private static final double INITIAL = 0.5;
+    private static final String VERSION_KEY = "kt:state:version:";
+    private static final String VECTOR_VERSION_KEY = "kt:state:version:vec:";
+    private static final BktParams PARAMS = new BktParams(INITIAL, 0.0, 0.49, 0.49);
+
+    public static void main(String[] args) throws Exception {
+        String host = args.length > 0 ? args[0] : "memory";
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : 6379;
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : 16;
+        int rounds = args.length > 3 ? Integer.parseInt(args[3]) : 2000;
+
+        LettuceConnectionFactory connectionFactory = null;
+        RedisTemplate<String, Object> redis;
+        if ("memory".equals(host)) {
+            Fakes.InMemoryRedisTemplate fake = new Fakes.InMemoryRedisTemplate();
+            registerScripts(fake);
+            redis = fake;
+        } else {
+            connectionFactory = new LettuceConnectionFactory(new RedisStandaloneConfiguration(host, port));
+            connectionFactory.afterPropertiesSet();
+            redis = new RedisConfig().redisTemplate(connectionFactory);
+            redis.afterPropertiesSet();
+        }
+
+        KnowledgePointSlots slots = new KnowledgePointSlots(redis, null);
+        MasteryStateStore hashStore = new MasteryStateStore(redis, slots);
+        MasteryStateStore packedStore = new MasteryStateStore(redis, slots);
+        Fakes.setField(hashStore, "format", "hash");
+        Fakes.setField(packedStore, "format", "packed");
+        AtomicKnowledgeStateStore hashAtomic = new AtomicKnowledgeStateStore(redis, hashStore, slots);
+        AtomicKnowledgeStateStore packedAtomic = new AtomicKnowledgeStateStore(redis, packedStore, slots);
+        int slot = slots.slotOf(KP_ID);
+        // 内存模式下 HGET 与 HSET 之间没有网络往返，让出 CPU 代替，否则单核机器上几乎不会交错
+        Runnable roundTrip = connectionFactory == null ? Thread::yield : () -> { };
+        Supplier<Object> hashVersion = () -> redis.opsForHash().get(VERSION_KEY + STUDENT_ID, Long.toString(KP_ID));
+        boolean atomicOk;
+        try {
+            atomicOk = run("lua", redis, threads, rounds, true,
+                    () -> hashAtomic.update(STUDENT_ID, KP_ID, nextOutcome(), PARAMS, INITIAL),
+                    () -> hashStore.get(STUDENT_ID, KP_ID), hashVersion);
+            atomicOk &= run("lua-packed", redis, threads, rounds, false,
+                    () -> packedAtomic.update(STUDENT_ID, KP_ID, nextOutcome(), PARAMS, INITIAL),
+                    () -> {
+                        Long q = bitFieldGet(redis, MasteryStateStore.vectorKey(STUDENT_ID), BitFieldType.unsigned(16), slot);
+                        return q != null && q != 0 ? q / 65535.0 : null;
+                    },
+                    () -> bitFieldGet(redis, VECTOR_VERSION_KEY + STUDENT_ID, BitFieldType.unsigned(32), slot));
+            run("hget-hset", redis, threads, rounds, true, () -> {
+                String key = MasteryStateStore.hashKey(STUDENT_ID);
+                Object current = redis.opsForHash().get(key, Long.toString(KP_ID));
+                double old = current instanceof Number n ? n.doubleValue() : INITIAL;
+                roundTrip.run();
+                redis.opsForHash().put(key, Long.toString(KP_ID), KnowledgeTracingService.calculateNewProbabilityBKT(
+                        old, nextOutcome(), PARAMS.pTransit(), PARAMS.pGuess(), PARAMS.pSlip()));
+                redis.opsForHash().increment(VERSION_KEY + STUDENT_ID, Long.toString(KP_ID), 1);
+            }, () -> hashStore.get(STUDENT_ID, KP_ID), hashVersion);
+        } finally {
+            clear(redis);
+            if (connectionFactory != null) {
+                connectionFactory.destroy();
+            }
+        }
+        System.exit(atomicOk ? 0 : 1);
+    }
+
+    /**
+     * bkt_update.lua / bkt_update_packed.lua / kp_slot_allocate.lua 的 Java 实现：读写与返回值同脚本，
+     * 共用一把锁代替 Redis 的单线程执行；掌握度以 Double 存放 (真实 Redis 中为 %.17g 文本，经 JSON 读回同值)
+     */
+    private static void registerScripts(Fakes.InMemoryRedisTemplate redis) {
+        Object lock = new Object();
+        redis.registerScript("lua/bkt_update.lua", (keys, argv) -> {
+            synchronized (lock) {
+                Object current = redis.opsForHash().get(keys.get(0), argv[0]);
+                Double old = current instanceof Number n ? Double.valueOf(n.doubleValue()) : initial(argv[6]);
+                if (old == null) {
+                    return List.of("miss");
+                }
+                double next = bkt(old, argv);
+                redis.opsForHash().put(keys.get(0), argv[0], next);
+                Long version = redis.opsForHash().increment(keys.get(1), argv[0], 1);
+                return writeIndex(redis, keys, argv[0], old, next, version);
+            }
+        });
+        redis.registerScript("lua/bkt_update_packed.lua", (keys, argv) -> {
+            synchronized (lock) {
+                int slot = Integer.parseInt(argv[7].toString());
+                long q = bitFieldGet(redis, keys.get(0), BitFieldType.unsigned(16), slot);
+                Double old = q != 0 ? Double.valueOf(q / 65535.0) : initial(argv[6]);
+                if (old == null) {
+                    return List.of("miss");
+                }
+                long nq = Math.max(1, (long) Math.floor(bkt(old, argv) * 65535 + 0.5));
+                redis.opsForValue().bitField(keys.get(0), BitFieldSubCommands.create()
+                        .set(BitFieldType.unsigned(16)).valueAt(Offset.offset(slot).multipliedByTypeLength()).to(nq));
+                Long version = redis.opsForValue().bitField(keys.get(1), BitFieldSubCommands.create()
+                        .incr(BitFieldType.unsigned(32)).valueAt(Offset.offset(slot).multipliedByTypeLength()).by(1)).get(0);
+                double next = nq / 65535.0;
+                // packed 格式只维护 weak_kps (KEYS[3])
+                redis.opsForZSet().add(keys.get(2), argv[0], 1 - next);
+                return List.of(Double.toString(old), Double.toString(next), version.toString());
+            }
+        });
+        redis.registerScript("lua/kp_slot_allocate.lua", (keys, argv) -> {
+            synchronized (lock) {
+                List<Long> result = new ArrayList<>(argv.length);
+                for (Object kpId : argv) {
+                    Object slot = redis.opsForHash().get(keys.get(0), kpId);
+                    if (slot == null) {
+                        slot = redis.opsForHash().increment(keys.get(1), "seq", 1) - 1;
+                        redis.opsForHash().put(keys.get(0), kpId, slot);
+                    }
+                    result.add(((Number) slot).longValue());
+                }
+                return result;
+            }
+        });
+    }
+
+    private static Double initial(Object arg) {
+        return arg.toString().isEmpty() ? null : Double.valueOf(arg.toString());
+    }
+
+    private static double bkt(double old, Object[] argv) {
+        return KnowledgeTracingService.calculateNewProbabilityBKT(old, "1".equals(argv[1]),
+                Double.parseDouble(argv[2].toString()), Double.parseDouble(argv[3].toString()),
+                Double.parseDouble(argv[4].toString()));
+    }
+
+    private static List<String> writeIndex(Fakes.InMemoryRedisTemplate redis, List<String> keys, Object kpId,
+                                           double old, double next, Long version) {
+        redis.opsForHash().put(keys.get(2), kpId, next);
+        redis.opsForZSet().add(keys.get(3), kpId, 1 - next);
+        return List.of(Double.toString(old), Double.toString(next), version.toString());
+    }
+
+    private static Long bitFieldGet(RedisTemplate<String, Object> redis, String key, BitFieldType type, int slot) {
+        List<Long> values = redis.opsForValue().bitField(key, BitFieldSubCommands.create().get(type)
+                .valueAt(Offset.offset(slot).multipliedByTypeLength()));
+        return values != null && !values.isEmpty() ? values.get(0) : null;
+    }
+
+    /** 每个线程交替答对 / 答错 */
+    private static final ThreadLocal<int[]> OUTCOME = ThreadLocal.withInitial(() -> new int[1]);
+
+    private static boolean nextOutcome() {
+        return (OUTCOME.get()[0]++ & 1) == 0;
+    }
+
+    /**
+     * @param exact 是否要求最终掌握度严格回到初始值
+     */
+    private static boolean run(String mode, RedisTemplate<String, Object> redis, int threads, int rounds, boolean exact,
+                               Runnable submit, Supplier<Double> masteryReader, Supplier<Object> versionReader)
+            throws Exception {
+        clear(redis);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>(threads);
+        for (int t = 0; t < threads; t++) {
+            futures.add(pool.submit(() -> {
+                OUTCOME.get()[0] = 0;
+                start.await();
+                for (int i = 0; i < rounds * 2; i++) {
+                    submit.run();
+                }
+                return null;
+            }));
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        long elapsedMs = (System.nanoTime() - begin) / 1_000_000;
+        pool.shutdown();
+
+        Double value = masteryReader.get();
+        Object version = versionReader.get();
+        double mastery = value != null ? value : Double.NaN;
+        long submissions = (long) threads * rounds * 2;
+        boolean ok = version instanceof Number v && v.longValue() == submissions
+                && (!exact || Math.abs(mastery - INITIAL) < 1e-9);
+        System.out.printf("%-10s submissions=%d versions=%s mastery=%.12f expected=%.12f %s (%d ms)%n",
+                mode, submissions, version, mastery, INITIAL, ok ? "OK" : "LOST UPDATES", elapsedMs);
+        return ok;
+    }
+
+    private static void clear(RedisTemplate<String, Object> redis) {
+        redis.delete(List.of(MasteryStateStore.hashKey(STUDENT_ID), VERSION_KEY + STUDENT_ID,
+                MasteryStateStore.vectorKey(STUDENT_ID), VECTOR_VERSION_KEY + STUDENT_ID,
+                StudentMasteryIndex.masteryKey(STUDENT_ID), StudentMasteryIndex.weakKpsKey(STUDENT_ID)));
+    }
+}
@@ -0,0 +1,165 @@
+package com.edtech.bench;
+
+import com.edtech.kt.engine.BktEngine;
+import com.edtech.kt.engine.EngineStateStore;
+import com.edtech.kt.engine.KnowledgeTracingEngines;
+import com.edtech.kt.engine.PfaEngine;
+import com.edtech.kt.service.AtomicKnowledgeStateStore;
+import com.edtech.kt.service.BktParameterRegistry;
+import com.edtech.kt.service.KnowledgePointSlots;
+import com.edtech.kt.service.KnowledgeStateWriteBehind;
+import com.edtech.kt.service.KnowledgeTracingService;
+import com.edtech.kt.service.MasteryPropagationService;
+import com.edtech.kt.service.MasteryStateStore;
+import com.edtech.kt.service.PrerequisiteGraph;
+import com.edtech.kt.service.StudentMasteryCache;
+import com.edtech.kt.service.StudentMasteryIndex;
+import com.edtech.kt.service.StudentStateLoader;
+import com.edtech.model.entity.KnowledgePoint;
+import com.edtech.model.entity.KnowledgePrerequisite;
+import com.edtech.model.entity.KnowledgeState;
+import com.edtech.model.entity.Question;
+import com.edtech.model.mapper.KnowledgePointMapper;
+import com.edtech.model.mapper.KnowledgePrerequisiteMapper;
+import com.edtech.model.mapper.KnowledgeStateMapper;
+import com.edtech.model.mapper.QuestionMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * 答题热路径上的知识追踪：BKT 单步更新、前驱图遍历，
+ * 以及完整的 updateKnowledgeState (含前驱传播，Mapper / Redis 为内存替身)
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class KnowledgeTracingBenchmark {
+
+    private static final int KNOWLEDGE_POINTS = 200;
+    private static final int QUESTIONS_PER_KP = 20;
+    private static final int STUDENTS = 1000;
+
+    private KnowledgeTracingService service;
+    private KnowledgeStateWriteBehind writeBehind;
+    private PrerequisiteGraph graph;
+    private final int[] reached = new int[32];
+    private final int[] depths = new int[32];
+    private int questionCount;
+    private int cursor;
+    private double mastery = 0.3;
+
+    @Setup
+    public void setup() {
+        Fakes.initTableInfo(Question.class, KnowledgePoint.class, KnowledgeState.class);
+        List<KnowledgePoint> kps = Fakes.knowledgePoints(KNOWLEDGE_POINTS);
+        List<Question> questions = Fakes.questions(KNOWLEDGE_POINTS, QUESTIONS_PER_KP);
+        questionCount = questions.size();
+
+        KnowledgePointMapper kpMapper = Fakes.mapper(KnowledgePointMapper.class, Map.of(
+                "selectList", args -> kps,
+                "selectById", args -> kps.get((int) ((Long) args[0] - 1))));
+        QuestionMapper questionMapper = Fakes.mapper(QuestionMapper.class, Map.of(
+                "selectList", args -> questions,
+                "selectById", args -> questions.get((int) ((Long) args[0] - 1))));
+        KnowledgeStateMapper stateMapper = Fakes.mapper(KnowledgeStateMapper.class, Map.of(
+                "batchUpsert", args -> ((List<?>) args[0]).size(),
+                "selectList", args -> List.of()));
+
+        BktParameterRegistry registry = new BktParameterRegistry(kpMapper, questionMapper);
+        registry.reloadAll();
+        writeBehind = new KnowledgeStateWriteBehind(stateMapper);
+        // 与 application.yml 默认值一致
+        Fakes.setField(writeBehind, "enabled", true);
+        Fakes.setField(writeBehind, "batchSize", 500);
+        Fakes.setField(writeBehind, "flushThreshold", 2000);
+        Fakes.setField(writeBehind, "retentionMs", 10_000L);
+        Fakes.InMemoryRedisTemplate redis = new Fakes.InMemoryRedisTemplate();
+
+        // 每个知识点以前 3 个知识点为前驱
+        List<KnowledgePrerequisite> edges = new ArrayList<>();
+        for (long kpId = 2; kpId <= KNOWLEDGE_POINTS; kpId++) {
+            for (long prereq = Math.max(1, kpId - 3); prereq < kpId; prereq++) {
+                KnowledgePrerequisite rel = new KnowledgePrerequisite();
+                rel.setKnowledgePointId(kpId);
+                rel.setPrereqPointId(prereq);
+                edges.add(rel);
+            }
+        }
+        KnowledgePrerequisiteMapper prerequisiteMapper = Fakes.mapper(KnowledgePrerequisiteMapper.class,
+                Map.<String, Function<Object[], Object>>of("selectList", args -> edges));
+        graph = new PrerequisiteGraph(prerequisiteMapper, registry);
+        graph.rebuild();
+        // 内存替身不支持 Lua，走 HGET + Java 计算 + HSET 路径 (原子模式见 KnowledgeStateConcurrencyCheck)
+        KnowledgePointSlots slots = new KnowledgePointSlots(redis, registry);
+        MasteryStateStore stateStore = new MasteryStateStore(redis, slots);
+        Fakes.setField(stateStore, "format", "hash");
+        AtomicKnowledgeStateStore atomicStore = new AtomicKnowledgeStateStore(redis, stateStore, slots);
+        StudentMasteryIndex masteryIndex = new StudentMasteryIndex(redis, stateStore);
+        StudentStateLoader stateLoader = new StudentStateLoader(stateMapper, writeBehind, stateStore);
+        Fakes.setField(stateLoader, "singleFlight", true);
+        // 全部知识点走默认 BKT (引擎单步开销对比见 KnowledgeTracingEngineBenchmark)
+        KnowledgeTracingEngines engines = new KnowledgeTracingEngines(
+                List.of(new BktEngine(), new PfaEngine()), kpMapper, BktEngine.NAME, "", "");
+        MasteryPropagationService propagation = new MasteryPropagationService(
+                graph, registry, engines, writeBehind, stateLoader, atomicStore, masteryIndex, stateStore);
+        Fakes.setField(propagation, "enabled", true);
+        Fakes.setField(propagation, "strength", 0.3);
+        Fakes.setField(propagation, "decay", 0.5);
+        Fakes.setField(propagation, "maxDepth", 2);
+        Fakes.setField(propagation, "maxFanOut", 8);
+        Fakes.setField(propagation, "maxNodes", 32);
+
+        StudentMasteryCache masteryCache = new StudentMasteryCache(
+                stateStore, stateMapper, redis, new SimpleMeterRegistry(), 20000, 60);
+
+
+        EngineStateStore engineStateStore = new EngineStateStore(redis, stateStore, slots);
+        service = new KnowledgeTracingService(registry, writeBehind, propagation, atomicStore,
+                masteryIndex, stateStore, masteryCache, engines, engineStateStore, stateLoader);
+    }
+
+    @TearDown
+    public void tearDown() {
+        writeBehind.shutdown();
+    }
+
+    @Benchmark
+    public double bktStep() {
+        // 对错交替，结果回灌作为下一次先验，避免常量折叠
+        mastery = KnowledgeTracingService.calculateNewProbabilityBKT(mastery, (cursor++ & 1) == 0, 0.15, 0.2, 0.1);
+        return mastery;
+    }
+
+    @Benchmark
+    public int traversePrerequisites() {
+        int origin = cursor++ % KNOWLEDGE_POINTS;
+        return graph.traverse(origin, true, 2, 8, reached, depths);
+    }
+
+    @Benchmark
+    public void updateKnowledgeState() {
+        int i = cursor++;
+        long studentId = 1 + i % STUDENTS;
+        long questionId = 1 + (i * 31L) % questionCount;
+        service.updateKnowledgeState(studentId, questionId, (i & 3) != 0);
+    }
+}
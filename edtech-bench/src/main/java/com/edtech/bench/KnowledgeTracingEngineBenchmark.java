@@ -0,0 +1,108 @@
+package com.edtech.bench;
+
+import com.edtech.kt.engine.BktEngine;
+import com.edtech.kt.engine.KnowledgeTracingEngine;
+import com.edtech.kt.engine.PfaEngine;
+import com.edtech.kt.service.BktParameterRegistry.BktParams;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 知识追踪引擎并排对比：单次作答的 update (及 predict)，以及一个学生 200 次作答的批量重放
+ * (状态为以知识点序号为下标的原始数组，与 KnowledgeStateReplayJob 相同的布局)
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class KnowledgeTracingEngineBenchmark {
+
+    private static final int KNOWLEDGE_POINTS = 200;
+    private static final int ANSWERS = 4096;
+    private static final int ANSWERS_PER_STUDENT = 200;
+
+    @Param({BktEngine.NAME, PfaEngine.NAME})
+    public String engineName;
+
+    private KnowledgeTracingEngine engine;
+    private int stride;
+    private final BktParams[] params = new BktParams[KNOWLEDGE_POINTS];
+    private final int[] ordinals = new int[ANSWERS];
+    private final boolean[] answers = new boolean[ANSWERS];
+    private double[] state;
+    private int cursor;
+
+    @Setup
+    public void setup() {
+        if (BktEngine.NAME.equals(engineName)) {
+            engine = new BktEngine();
+        } else {
+            PfaEngine pfa = new PfaEngine();
+            // 与 application.yml 默认值一致
+            Fakes.setField(pfa, "gamma", 0.25);
+            Fakes.setField(pfa, "rho", -0.1);
+            engine = pfa;
+        }
+        stride = engine.stateSize();
+        Random random = new Random(42);
+        for (int o = 0; o < KNOWLEDGE_POINTS; o++) {
+            params[o] = new BktParams(0.05 + random.nextDouble() * 0.3, 0.05 + random.nextDouble() * 0.2,
+                    0.1 + random.nextDouble() * 0.2, 0.05 + random.nextDouble() * 0.1);
+        }
+        for (int i = 0; i < ANSWERS; i++) {
+            ordinals[i] = random.nextInt(KNOWLEDGE_POINTS);
+            answers[i] = random.nextDouble() < 0.7;
+        }
+        state = new double[KNOWLEDGE_POINTS * stride];
+        for (int o = 0; o < KNOWLEDGE_POINTS; o++) {
+            engine.init(params[o], state, o * stride);
+        }
+    }
+
+    @Benchmark
+    public double update() {
+        int i = cursor++ & (ANSWERS - 1);
+        int o = ordinals[i];
+        engine.update(params[o], state, o * stride, answers[i]);
+        return state[o * stride];
+    }
+
+    @Benchmark
+    public double updateAndPredict() {
+        int i = cursor++ & (ANSWERS - 1);
+        int o = ordinals[i];
+        engine.update(params[o], state, o * stride, answers[i]);
+        return engine.predict(params[o], state, o * stride);
+    }
+
+    @Benchmark
+    public double replayStudent() {
+        int from = (cursor++ * ANSWERS_PER_STUDENT) & (ANSWERS - 1);
+        double sum = 0;
+        for (int o = 0; o < KNOWLEDGE_POINTS; o++) {
+            engine.init(params[o], state, o * stride);
+        }
+        for (int k = 0; k < ANSWERS_PER_STUDENT; k++) {
+            int i = (from + k) & (ANSWERS - 1);
+            engine.update(params[ordinals[i]], state, ordinals[i] * stride, answers[i]);
+        }
+        for (int o = 0; o < KNOWLEDGE_POINTS; o++) {
+            sum += engine.predict(params[o], state, o * stride);
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,81 @@
+package com.edtech.bench;
+
+import com.edtech.kt.service.MasteryVectorCodec;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 单个学生全部知识点掌握度的编解码：JSON 哈希值 (RedisConfig 的值序列化器) 与 packed 16 位向量
+ * <p>
+ * Redis 内存对比见 MasteryVectorMigrationJob 的 MEMORY USAGE 采样报告
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MasteryStateCodecBenchmark {
+
+    private static final int KNOWLEDGE_POINTS = 200;
+
+    private final GenericJackson2JsonRedisSerializer json = new GenericJackson2JsonRedisSerializer();
+    private final int[] slots = new int[KNOWLEDGE_POINTS];
+    private final double[] probs = new double[KNOWLEDGE_POINTS];
+    private final byte[][] jsonValues = new byte[KNOWLEDGE_POINTS][];
+    private byte[] vector;
+
+    @Setup
+    public void setup() {
+        for (int i = 0; i < KNOWLEDGE_POINTS; i++) {
+            slots[i] = i;
+            probs[i] = ThreadLocalRandom.current().nextDouble(0.0001, 0.9999);
+            jsonValues[i] = json.serialize(probs[i]);
+        }
+        vector = MasteryVectorCodec.encode(slots, probs, KNOWLEDGE_POINTS);
+    }
+
+    @Benchmark
+    public double decodeJsonHash() {
+        double sum = 0;
+        for (byte[] value : jsonValues) {
+            sum += ((Number) json.deserialize(value)).doubleValue();
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public double decodePackedVector() {
+        double sum = 0;
+        for (int slot : slots) {
+            sum += MasteryVectorCodec.decode(vector, slot);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public int encodeJsonHash() {
+        int bytes = 0;
+        for (double prob : probs) {
+            bytes += json.serialize(prob).length;
+        }
+        return bytes;
+    }
+
+    @Benchmark
+    public byte[] encodePackedVector() {
+        return MasteryVectorCodec.encode(slots, probs, KNOWLEDGE_POINTS);
+    }
+}
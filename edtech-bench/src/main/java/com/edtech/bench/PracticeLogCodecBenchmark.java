@@ -0,0 +1,104 @@
+package com.edtech.bench;
+
+import com.edtech.core.mq.PracticeLogCodec;
+import com.edtech.core.mq.PracticeLogMessage;
+import com.edtech.core.mq.PracticeProducer;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 答题日志消息编解码：定长二进制 vs 旧版 Jackson Map，以及 PracticeProducer 组装消息 (RabbitTemplate 不发网络)
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PracticeLogCodecBenchmark {
+
+    private static final TypeReference<Map<String, Object>> MAP_TYPE = new TypeReference<>() {};
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private PracticeLogMessage message;
+    private byte[] binary;
+    private byte[] json;
+    private PracticeProducer producer;
+    private Message sent;
+
+    @Setup
+    public void setup() throws Exception {
+        message = new PracticeLogMessage(12345L, 67890L, true, 42, System.currentTimeMillis(), null);
+        binary = PracticeLogCodec.encode(message);
+        json = objectMapper.writeValueAsBytes(legacyMap());
+        producer = new PracticeProducer(new RabbitTemplate() {
+            @Override
+            public void send(String routingKey, Message msg) {
+                sent = msg;
+            }
+        });
+    }
+
+    @Benchmark
+    public byte[] binaryEncode() {
+        return PracticeLogCodec.encode(message);
+    }
+
+    @Benchmark
+    public PracticeLogMessage binaryDecode() {
+        return PracticeLogCodec.decode(binary);
+    }
+
+    @Benchmark
+    public byte[] jsonMapEncode() throws Exception {
+        return objectMapper.writeValueAsBytes(legacyMap());
+    }
+
+    @Benchmark
+    public PracticeLogMessage jsonMapDecode() throws Exception {
+        Map<String, Object> map = objectMapper.readValue(json, MAP_TYPE);
+        return new PracticeLogMessage(
+                Long.parseLong(map.get("studentId").toString()),
+                Long.parseLong(map.get("questionId").toString()),
+                Boolean.parseBoolean(map.get("isCorrect").toString()),
+                Integer.parseInt(map.get("duration").toString()),
+                LocalDateTime.parse(map.get("submitTime").toString())
+                        .atZone(ZoneId.systemDefault()).toInstant().toEpochMilli(),
+                null);
+    }
+
+    @Benchmark
+    public Message producerSend() {
+        producer.sendPracticeLog(message.studentId(), message.questionId(), message.correct(), message.duration());
+        return sent;
+    }
+
+    private Map<String, Object> legacyMap() {
+        Map<String, Object> map = new HashMap<>();
+        map.put("studentId", message.studentId());
+        map.put("questionId", message.questionId());
+        map.put("isCorrect", message.correct());
+        map.put("duration", message.duration());
+        map.put("submitTime", LocalDateTime.now().toString());
+        return map;
+    }
+}
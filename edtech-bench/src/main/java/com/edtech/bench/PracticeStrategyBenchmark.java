@@ -0,0 +1,163 @@
+package com.edtech.bench;
+
+import com.edtech.core.util.RedisUtils;
+import com.edtech.model.entity.KnowledgePoint;
+import com.edtech.model.entity.Question;
+import com.edtech.model.entity.UserSettings;
+import com.edtech.model.mapper.QuestionMapper;
+import com.edtech.model.mapper.UserSettingsMapper;
+import com.edtech.web.service.strategy.PracticeStrategyService;
+import com.edtech.web.service.strategy.QuestionPoolIndex;
+import com.edtech.web.service.strategy.ReviewScheduler;
+import com.edtech.web.service.strategy.SpacedRepetitionService;
+import com.edtech.web.service.strategy.StrategySampler;
+import com.edtech.web.service.strategy.StrategySamplerCache;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.redis.core.RedisOperations;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * 选题与复习调度：selectNextQuestion / 组题 (Redis 管道结果与题库为内存替身) 与 SM-2 状态更新 (压缩 long)
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PracticeStrategyBenchmark {
+
+    private static final int KNOWLEDGE_POINTS = 200;
+    private static final int QUESTIONS_PER_KP = 20;
+    private static final int SET_SIZE = 10;
+
+    private PracticeStrategyService strategyService;
+    private SpacedRepetitionService spacedRepetitionService;
+    private StrategySamplerCache samplerCache;
+    private long sm2State = SpacedRepetitionService.initialState();
+    private int cursor;
+
+    @Setup
+    public void setup() {
+        Fakes.initTableInfo(Question.class, KnowledgePoint.class);
+        List<Question> questions = Fakes.questions(KNOWLEDGE_POINTS, QUESTIONS_PER_KP);
+        QuestionMapper questionMapper = Fakes.mapper(QuestionMapper.class, Map.of(
+                "selectList", args -> questions,
+                "selectById", args -> questions.get((int) ((Long) args[0] - 1)),
+                "selectBatchIds", args -> {
+                    List<Question> batch = new ArrayList<>();
+                    for (Object id : (Collection<?>) args[0]) {
+                        batch.add(questions.get((int) ((Long) id - 1)));
+                    }
+                    return batch;
+                }));
+
+        QuestionPoolIndex poolIndex = new QuestionPoolIndex(questionMapper);
+        poolIndex.reload();
+
+        spacedRepetitionService = new SpacedRepetitionService();
+        Fakes.setField(spacedRepetitionService, "maxIntervalDays", 365);
+        Fakes.setField(spacedRepetitionService, "fastSeconds", 30);
+        Fakes.setField(spacedRepetitionService, "slowSeconds", 120);
+
+        // 管道结果顺序与 loadSnapshot 一致：drill_mode / wrong_freq / weak_kps / recent_questions /
+        // review_due 各桶 (7 个逾期桶 + 当前桶)
+        List<Object> snapshot = new ArrayList<>(Arrays.asList(
+                null,
+                ids(3, 17, 42, 58, 77, 91, 105, 120, 150, 188),
+                ids(5, 12, 64, 133, 199),
+                List.of(17L, 42L, 89L, 1201L, 2333L, 64L, 3999L, 5L, 77L, 2024L,
+                        11L, 202L, 303L, 404L, 505L, 606L, 707L, 808L, 909L, 1000L)));
+        for (int bucket = 0; bucket < 7; bucket++) {
+            snapshot.add(bucket % 3 == 0 ? ids(8 + bucket, 21 + bucket, 34 + bucket) : ids());
+        }
+        snapshot.add(ids(55, 89, 144));
+        RedisUtils redisUtils = new RedisUtils(null) {
+            @Override
+            public List<Object> executePipelined(Consumer<RedisOperations<String, Object>> commands) {
+                return snapshot;
+            }
+        };
+
+        ReviewScheduler reviewScheduler = new ReviewScheduler(redisUtils, spacedRepetitionService);
+        Fakes.setField(reviewScheduler, "bucketHours", 24);
+        Fakes.setField(reviewScheduler, "overdueBuckets", 7);
+        UserSettings settings = new UserSettings();
+        settings.setStrategyWeights("{\"mistake\":30,\"weakness\":30,\"review\":20,\"advance\":20}");
+        UserSettingsMapper settingsMapper = Fakes.mapper(UserSettingsMapper.class, Map.of("selectById", args -> settings));
+        // 基准中不调用 invalidate，不需要广播用的 RedisTemplate
+        samplerCache = new StrategySamplerCache(settingsMapper, null, 10000, 600);
+        strategyService = new PracticeStrategyService(redisUtils, questionMapper, poolIndex, reviewScheduler,
+                samplerCache);
+        Fakes.setField(strategyService, "recentSize", 20);
+        Fakes.setField(strategyService, "recentTtlMinutes", 720);
+    }
+
+    @Benchmark
+    public PracticeStrategyService.QuestionSelection selectNextQuestion() {
+        return strategyService.selectNextQuestion(1L + (cursor++ & 1023));
+    }
+
+    /**
+     * 逐题调用 10 次，对比 {@link #selectPracticeSet}
+     */
+    @Benchmark
+    public int selectTenOneByOne() {
+        long studentId = 1L + (cursor++ & 1023);
+        int found = 0;
+        for (int i = 0; i < SET_SIZE; i++) {
+            found += strategyService.selectNextQuestion(studentId).question() != null ? 1 : 0;
+        }
+        return found;
+    }
+
+    @Benchmark
+    public List<PracticeStrategyService.QuestionSelection> selectPracticeSet() {
+        return strategyService.selectQuestions(1L + (cursor++ & 1023), SET_SIZE, Set.of());
+    }
+
+    /**
+     * 缓存命中后的策略抽样 (本地查表 + 别名表 O(1))
+     */
+    @Benchmark
+    public int sampleStrategy() {
+        int available = StrategySampler.ALL & ~(cursor & 7);
+        return samplerCache.get(1L + (cursor++ & 1023)).sample(available, ThreadLocalRandom.current());
+    }
+
+    @Benchmark
+    public long sm2Next() {
+        int i = cursor++;
+        int quality = spacedRepetitionService.quality((i & 3) != 0, 10 + (i & 127));
+        sm2State = spacedRepetitionService.next((i & 15) == 0 ? SpacedRepetitionService.initialState() : sm2State,
+                quality, 1_700_000_000L + i);
+        return sm2State;
+    }
+
+    private static Set<Object> ids(long... ids) {
+        Set<Object> set = new LinkedHashSet<>();
+        for (long id : ids) {
+            set.add(Long.toString(id));
+        }
+        return set;
+    }
+}
@@ -0,0 +1,59 @@
+package com.edtech.bench;
+
+import com.edtech.ai.model.GeneratedQuestionVO;
+import com.edtech.ai.service.ContentGenerationService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * AI 出题响应的清理与 JSON 解析 (不含 HTTP 调用)
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QuestionParsingBenchmark {
+
+    private static final String QUESTION_JSON = """
+            {
+              "content": "已知函数 $f(x) = x^2 - 2x + 3$，则 $f(x)$ 在区间 $[0, 3]$ 上的最小值为",
+              "options": ["A. 1", "B. 2", "C. 3", "D. 6"],
+              "correctAnswer": "B",
+              "analysis": "配方得 $f(x) = (x - 1)^2 + 2$，对称轴 $x = 1$ 在区间内，故最小值为 $f(1) = 2$。",
+              "difficulty": "稳步提升",
+              "type": 1
+            }""";
+
+    private ContentGenerationService service;
+    private String fenced;
+    private String plain;
+
+    @Setup
+    public void setup() {
+        service = new ContentGenerationService();
+        fenced = "好的，以下是题目：\n```json\n" + QUESTION_JSON + "\n```\n";
+        plain = QUESTION_JSON;
+    }
+
+    @Benchmark
+    public GeneratedQuestionVO parseFenced() {
+        return service.parseGeneratedQuestion(fenced, "稳步提升");
+    }
+
+    @Benchmark
+    public GeneratedQuestionVO parsePlain() {
+        return service.parseGeneratedQuestion(plain, "稳步提升");
+    }
+}
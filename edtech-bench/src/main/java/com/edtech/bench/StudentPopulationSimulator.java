@@ -0,0 +1,495 @@
+package com.edtech.bench;
+
+import com.edtech.core.mq.PracticeConsumer;
+import com.edtech.core.mq.PracticeLogPersistHook;
+import com.edtech.core.mq.PracticeLogSubscriber;
+import com.edtech.core.mq.PracticeProducer;
+import com.edtech.core.util.RedisUtils;
+import com.edtech.kt.engine.BktEngine;
+import com.edtech.kt.engine.EngineStateStore;
+import com.edtech.kt.engine.KnowledgeTracingEngines;
+import com.edtech.kt.engine.PfaEngine;
+import com.edtech.kt.service.AtomicKnowledgeStateStore;
+import com.edtech.kt.service.BktParameterRegistry;
+import com.edtech.kt.service.KnowledgePointSlots;
+import com.edtech.kt.service.KnowledgeStateWriteBehind;
+import com.edtech.kt.service.KnowledgeTracingService;
+import com.edtech.kt.service.MasteryPropagationService;
+import com.edtech.kt.service.MasteryStateStore;
+import com.edtech.kt.service.PrerequisiteGraph;
+import com.edtech.kt.service.StudentMasteryCache;
+import com.edtech.kt.service.StudentMasteryIndex;
+import com.edtech.kt.service.StudentStateLoader;
+import com.edtech.model.entity.KnowledgePoint;
+import com.edtech.model.entity.KnowledgePrerequisite;
+import com.edtech.model.entity.KnowledgeState;
+import com.edtech.model.entity.Question;
+import com.edtech.model.mapper.KnowledgePointMapper;
+import com.edtech.model.mapper.KnowledgePrerequisiteMapper;
+import com.edtech.model.mapper.KnowledgeStateMapper;
+import com.edtech.model.mapper.MistakeBookMapper;
+import com.edtech.model.mapper.QuestionMapper;
+import com.edtech.model.mapper.StudentExerciseLogMapper;
+import com.edtech.model.mapper.UserSettingsMapper;
+import com.edtech.web.controller.PracticeController;
+import com.edtech.web.service.PracticeAnswerProcessor;
+import com.edtech.web.service.strategy.PracticePrefetchService;
+import com.edtech.web.service.strategy.PracticeStrategyService;
+import com.edtech.web.service.strategy.QuestionPoolIndex;
+import com.edtech.web.service.strategy.ReviewScheduler;
+import com.edtech.web.service.strategy.SpacedRepetitionService;
+import com.edtech.web.service.strategy.StrategySamplerCache;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+
+/**
+ * 虚拟学生群体的端到端压测与算法评估 (Mapper / Redis / RabbitMQ 为内存替身)
+ * <p>
+ * 按泊松过程以固定到达率开环产生"取题 + 作答"：{@link PracticeStrategyService#selectNextQuestion} 选题，
+ * {@link SyntheticPopulation} 按潜在能力生成作答结果，经 {@link PracticeController#submitAnswer} 投递到内存队列，
+ * 消费线程按批 (最多 100 条) 调用 {@link PracticeConsumer#processPracticeLogs}，触发 BKT、错题与 SM-2 调度。
+ * <p>
+ * 输出：
+ * <ul>
+ *   <li>吞吐与延迟分位 (从计划到达时间算起，避免协调遗漏；另列实际服务时间)，前 20% 时间为预热不计入</li>
+ *   <li>每次请求 / 每条消息的分配字节数 (线程分配计数器差值)</li>
+ *   <li>消息从投递到订阅者处理完成的延迟分位</li>
+ *   <li>排空队列后 BKT 估计掌握度与潜在真实掌握度 sigmoid(θ) 的相关系数、MAE、RMSE，按作答次数分段</li>
+ * </ul>
+ * 模拟时间即墙钟时间，SM-2 的复习间隔以天计，短时运行内复习策略基本不会命中。
+ * <pre>
+ * java -cp edtech-bench/target/benchmarks.jar com.edtech.bench.StudentPopulationSimulator [students] [ratePerSecond] [seconds] [workerThreads] [consumerThreads]
+ * </pre>
+ */
+public class StudentPopulationSimulator {
+
+    private static final int KNOWLEDGE_POINTS = 20;
+    private static final int QUESTIONS_PER_KP = 20;
+    private static final int CONSUMER_BATCH = 100;
+    private static final double LEARN_RATE = 0.05;
+    private static final long SEED = 42;
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    public static void main(String[] args) throws Exception {
+        int students = args.length > 0 ? Integer.parseInt(args[0]) : 500;
+        int rate = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 20;
+        int workers = args.length > 3 ? Integer.parseInt(args[3]) : 8;
+        int consumers = args.length > 4 ? Integer.parseInt(args[4]) : 2;
+
+        Fakes.initTableInfo(Question.class, KnowledgePoint.class, KnowledgeState.class);
+        List<KnowledgePoint> kps = Fakes.knowledgePoints(KNOWLEDGE_POINTS);
+        List<Question> questions = Fakes.questions(KNOWLEDGE_POINTS, QUESTIONS_PER_KP);
+        KnowledgePoint params = kps.get(0);
+        SyntheticPopulation population = new SyntheticPopulation(students, KNOWLEDGE_POINTS,
+                params.getPGuess(), params.getPSlip(), LEARN_RATE, SEED);
+
+        KnowledgePointMapper kpMapper = Fakes.mapper(KnowledgePointMapper.class, Map.of(
+                "selectList", a -> kps,
+                "selectById", a -> kps.get((int) ((Long) a[0] - 1))));
+        QuestionMapper questionMapper = Fakes.mapper(QuestionMapper.class, Map.of(
+                "selectList", a -> questions,
+                "selectById", a -> questions.get((int) ((Long) a[0] - 1)),
+                "selectBatchIds", a -> {
+                    List<Question> batch = new ArrayList<>();
+                    for (Object id : (Collection<?>) a[0]) {
+                        batch.add(questions.get((int) ((Long) id - 1)));
+                    }
+                    return batch;
+                }));
+        LongAdder stateRows = new LongAdder();
+        KnowledgeStateMapper stateMapper = Fakes.mapper(KnowledgeStateMapper.class, Map.of(
+                "batchUpsert", a -> {
+                    stateRows.add(((List<?>) a[0]).size());
+                    return ((List<?>) a[0]).size();
+                },
+                "selectList", a -> List.of()));
+        LongAdder logRows = new LongAdder();
+        StudentExerciseLogMapper logMapper = Fakes.mapper(StudentExerciseLogMapper.class, Map.of(
+                "batchInsert", a -> {
+                    logRows.add(((List<?>) a[0]).size());
+                    return ((List<?>) a[0]).size();
+                },
+                "selectByMessageIds", a -> List.of()));
+        LongAdder mistakeRows = new LongAdder();
+        MistakeBookMapper mistakeMapper = Fakes.mapper(MistakeBookMapper.class, Map.of(
+                "batchUpsertErrors", a -> {
+                    mistakeRows.add(((List<?>) a[0]).size());
+                    return ((List<?>) a[0]).size();
+                }));
+
+        // 知识追踪：与 KnowledgeTracingBenchmark 相同的装配 (hash 格式、写后落库、前 3 个知识点为前驱)
+        BktParameterRegistry registry = new BktParameterRegistry(kpMapper, questionMapper);
+        registry.reloadAll();
+        KnowledgeStateWriteBehind writeBehind = new KnowledgeStateWriteBehind(stateMapper);
+        Fakes.setField(writeBehind, "enabled", true);
+        Fakes.setField(writeBehind, "batchSize", 500);
+        Fakes.setField(writeBehind, "flushThreshold", 2000);
+        Fakes.setField(writeBehind, "retentionMs", 10_000L);
+        Fakes.InMemoryRedisTemplate redis = new Fakes.InMemoryRedisTemplate();
+        registerReviewScript(redis);
+        List<KnowledgePrerequisite> edges = new ArrayList<>();
+        for (long kpId = 2; kpId <= KNOWLEDGE_POINTS; kpId++) {
+            for (long prereq = Math.max(1, kpId - 3); prereq < kpId; prereq++) {
+                KnowledgePrerequisite rel = new KnowledgePrerequisite();
+                rel.setKnowledgePointId(kpId);
+                rel.setPrereqPointId(prereq);
+                edges.add(rel);
+            }
+        }
+        PrerequisiteGraph graph = new PrerequisiteGraph(Fakes.mapper(KnowledgePrerequisiteMapper.class,
+                Map.<String, Function<Object[], Object>>of("selectList", a -> edges)), registry);
+        graph.rebuild();
+        KnowledgePointSlots slots = new KnowledgePointSlots(redis, registry);
+        MasteryStateStore stateStore = new MasteryStateStore(redis, slots);
+        Fakes.setField(stateStore, "format", "hash");
+        AtomicKnowledgeStateStore atomicStore = new AtomicKnowledgeStateStore(redis, stateStore, slots);
+        StudentMasteryIndex masteryIndex = new StudentMasteryIndex(redis, stateStore);
+        StudentStateLoader stateLoader = new StudentStateLoader(stateMapper, writeBehind, stateStore);
+        Fakes.setField(stateLoader, "singleFlight", true);
+        KnowledgeTracingEngines engines = new KnowledgeTracingEngines(
+                List.of(new BktEngine(), new PfaEngine()), kpMapper, BktEngine.NAME, "", "");
+        MasteryPropagationService propagation = new MasteryPropagationService(
+                graph, registry, engines, writeBehind, stateLoader, atomicStore, masteryIndex, stateStore);
+        Fakes.setField(propagation, "enabled", true);
+        Fakes.setField(propagation, "strength", 0.3);
+        Fakes.setField(propagation, "decay", 0.5);
+        Fakes.setField(propagation, "maxDepth", 2);
+        Fakes.setField(propagation, "maxFanOut", 8);
+        Fakes.setField(propagation, "maxNodes", 32);
+        StudentMasteryCache masteryCache = new StudentMasteryCache(
+                stateStore, stateMapper, redis, new SimpleMeterRegistry(), 20000, 60);
+        EngineStateStore engineStateStore = new EngineStateStore(redis, stateStore, slots);
+        KnowledgeTracingService ktService = new KnowledgeTracingService(registry, writeBehind, propagation,
+                atomicStore, masteryIndex, stateStore, masteryCache, engines, engineStateStore, stateLoader);
+
+        // 选题与复习调度 (参数与 application.yml 默认值一致)
+        RedisUtils redisUtils = new RedisUtils(redis);
+        SpacedRepetitionService sm2Service = new SpacedRepetitionService();
+        Fakes.setField(sm2Service, "maxIntervalDays", 365);
+        Fakes.setField(sm2Service, "fastSeconds", 30);
+        Fakes.setField(sm2Service, "slowSeconds", 120);
+        ReviewScheduler reviewScheduler = new ReviewScheduler(redisUtils, sm2Service);
+        Fakes.setField(reviewScheduler, "bucketHours", 24);
+        Fakes.setField(reviewScheduler, "overdueBuckets", 7);
+        Fakes.setField(reviewScheduler, "stateTtlDays", 400);
+        QuestionPoolIndex poolIndex = new QuestionPoolIndex(questionMapper);
+        poolIndex.reload();
+        StrategySamplerCache samplerCache = new StrategySamplerCache(
+                Fakes.mapper(UserSettingsMapper.class, Map.of()), redis, 10000, 600);
+        PracticeStrategyService strategyService = new PracticeStrategyService(redisUtils, questionMapper,
+                poolIndex, reviewScheduler, samplerCache);
+        Fakes.setField(strategyService, "recentSize", 20);
+        Fakes.setField(strategyService, "recentTtlMinutes", 720);
+        // 不开预取缓冲，每次取题都走 selectNextQuestion
+        PracticePrefetchService prefetchService = new PracticePrefetchService(strategyService, 0, 20, 120, 10000, 1);
+
+        Fakes.QueueRabbitTemplate rabbit = new Fakes.QueueRabbitTemplate();
+        PracticeController controller = new PracticeController(new PracticeProducer(rabbit), prefetchService,
+                redisUtils, null, questionMapper, kpMapper, registry, poolIndex, null, masteryCache);
+        StaticListableBeanFactory beans = new StaticListableBeanFactory();
+        beans.addBean("practiceAnswerProcessor", new PracticeAnswerProcessor(ktService, registry, reviewScheduler, redisUtils));
+        PracticeConsumer consumer = new PracticeConsumer(logMapper, mistakeMapper,
+                new TransactionTemplate(new NoOpTransactionManager()), new Jackson2JsonMessageConverter(),
+                beans.getBeanProvider(PracticeLogSubscriber.class), beans.getBeanProvider(PracticeLogPersistHook.class),
+                new Fakes.QueueRabbitTemplate());
+        Fakes.setField(consumer, "subscriberAttempts", 3);
+
+        System.out.printf("== %d students x %d KPs, %,d arrivals/s for %d s, %d workers, %d consumers ==%n",
+                students, KNOWLEDGE_POINTS, rate, seconds, workers, consumers);
+
+        int capacity = (int) Math.min(Integer.MAX_VALUE - 8, (long) rate * seconds * 2 + 1024);
+        Samples latency = new Samples(capacity);
+        Samples service = new Samples(capacity);
+        Samples messageLag = new Samples(capacity);
+        LongAdder requestBytes = new LongAdder();
+        LongAdder requests = new LongAdder();
+        LongAdder noQuestion = new LongAdder();
+        LongAdder failures = new LongAdder();
+        LongAdder consumerBytes = new LongAdder();
+        LongAdder consumed = new LongAdder();
+
+        long start = System.nanoTime();
+        long end = start + TimeUnit.SECONDS.toNanos(seconds);
+        long measureFrom = start + TimeUnit.SECONDS.toNanos(seconds) / 5;
+        AtomicBoolean producing = new AtomicBoolean(true);
+        ExecutorService consumerPool = Executors.newFixedThreadPool(consumers);
+        for (int c = 0; c < consumers; c++) {
+            consumerPool.execute(() -> {
+                while (producing.get() || rabbit.depth() > 0) {
+                    List<Fakes.QueueRabbitTemplate.Delivery> deliveries;
+                    try {
+                        deliveries = rabbit.poll(CONSUMER_BATCH, 10);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    if (deliveries.isEmpty()) {
+                        continue;
+                    }
+                    List<Message> messages = new ArrayList<>(deliveries.size());
+                    for (Fakes.QueueRabbitTemplate.Delivery delivery : deliveries) {
+                        messages.add(delivery.message());
+                    }
+                    long allocated = THREADS.getCurrentThreadAllocatedBytes();
+                    consumer.processPracticeLogs(messages);
+                    consumerBytes.add(THREADS.getCurrentThreadAllocatedBytes() - allocated);
+                    long done = System.nanoTime();
+                    for (Fakes.QueueRabbitTemplate.Delivery delivery : deliveries) {
+                        if (delivery.enqueuedNanos() >= measureFrom) {
+                            messageLag.add(done - delivery.enqueuedNanos());
+                        }
+                    }
+                    consumed.add(deliveries.size());
+                }
+            });
+        }
+
+        // 开环到达：调度线程按计划时间投递，工作线程处理不过来时请求在线程池队列中排队，排队时间计入延迟
+        ExecutorService workerPool = Executors.newFixedThreadPool(workers);
+        double meanGapNanos = 1e9 / rate;
+        ThreadLocalRandom dispatchRandom = ThreadLocalRandom.current();
+        long intended = start;
+        long arrivals = 0;
+        while (true) {
+            intended += (long) (-Math.log(1 - dispatchRandom.nextDouble()) * meanGapNanos);
+            if (intended >= end) {
+                break;
+            }
+            long wait = intended - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            long scheduledAt = intended;
+            long studentId = 1 + dispatchRandom.nextInt(students);
+            arrivals++;
+            workerPool.execute(() -> {
+                long begin = System.nanoTime();
+                long allocated = THREADS.getCurrentThreadAllocatedBytes();
+                try {
+                    practice(studentId, strategyService, controller, population, noQuestion);
+                } catch (Exception e) {
+                    failures.increment();
+                }
+                long finished = System.nanoTime();
+                if (scheduledAt >= measureFrom) {
+                    requestBytes.add(THREADS.getCurrentThreadAllocatedBytes() - allocated);
+                    requests.increment();
+                    latency.add(finished - scheduledAt);
+                    service.add(finished - begin);
+                }
+            });
+        }
+        workerPool.shutdown();
+        workerPool.awaitTermination(1, TimeUnit.MINUTES);
+        double producedSeconds = (System.nanoTime() - start) / 1e9;
+        int backlog = rabbit.depth();
+        producing.set(false);
+        consumerPool.shutdown();
+        consumerPool.awaitTermination(5, TimeUnit.MINUTES);
+        double drainedSeconds = (System.nanoTime() - start) / 1e9;
+        writeBehind.flush();
+        writeBehind.shutdown();
+        prefetchService.shutdown();
+
+        System.out.printf("%nthroughput : %,d arrivals in %.1f s (%,.0f/s), measured %,d, no question %,d, failed %,d%n",
+                arrivals, producedSeconds, arrivals / producedSeconds, requests.sum(), noQuestion.sum(), failures.sum());
+        System.out.printf("latency    : %s%n", latency.summary());
+        System.out.printf("service    : %s%n", service.summary());
+        System.out.printf("allocation : %,d B/request, %,d B/message (consumer)%n",
+                requestBytes.sum() / Math.max(1, requests.sum()), consumerBytes.sum() / Math.max(1, consumed.sum()));
+        System.out.printf("consumer   : %,d messages, backlog %,d at end of load, drained after %.1f s, lag %s%n",
+                consumed.sum(), backlog, drainedSeconds, messageLag.summary());
+        System.out.printf("storage    : %,d exercise logs, %,d mistake upserts, %,d knowledge_state rows%n",
+                logRows.sum(), mistakeRows.sum(), stateRows.sum());
+        reportTracking(population, stateStore, params.getPInit());
+    }
+
+    /**
+     * 一次取题 + 作答 + 提交
+     */
+    private static void practice(long studentId, PracticeStrategyService strategyService, PracticeController controller,
+                                 SyntheticPopulation population, LongAdder noQuestion) {
+        PracticeStrategyService.QuestionSelection selection = strategyService.selectNextQuestion(studentId);
+        if (selection == null || selection.question() == null) {
+            noQuestion.increment();
+            return;
+        }
+        SyntheticPopulation.Answer answer = population.answer(studentId, selection.question(), ThreadLocalRandom.current());
+        PracticeController.SubmitRequest request = new PracticeController.SubmitRequest();
+        request.setStudentId(studentId);
+        request.setQuestionId(selection.question().getId());
+        request.setIsCorrect(answer.correct());
+        request.setDuration(answer.durationSeconds());
+        controller.submitAnswer(request);
+    }
+
+    /**
+     * 估计掌握度与潜在掌握度的偏差，只统计作答过的 (学生, 知识点)；基线为一律取 pInit 的误差
+     */
+    private static void reportTracking(SyntheticPopulation population, MasteryStateStore stateStore, double pInit) {
+        int[] bounds = {1, 3, 10, Integer.MAX_VALUE};
+        Tracking all = new Tracking();
+        Tracking[] byAttempts = new Tracking[bounds.length - 1];
+        for (int i = 0; i < byAttempts.length; i++) {
+            byAttempts[i] = new Tracking();
+        }
+        double baselineAbs = 0;
+        for (long studentId = 1; studentId <= population.students(); studentId++) {
+            Map<Long, Double> estimates = stateStore.getAll(studentId);
+            for (long kpId = 1; kpId <= population.knowledgePoints(); kpId++) {
+                int attempts = population.attempts(studentId, kpId);
+                Double estimate = estimates.get(kpId);
+                if (attempts == 0 || estimate == null) {
+                    continue;
+                }
+                double latent = population.latentMastery(studentId, kpId);
+                all.add(estimate, latent);
+                baselineAbs += Math.abs(pInit - latent);
+                for (int i = 0; i < byAttempts.length; i++) {
+                    if (attempts >= bounds[i] && attempts < bounds[i + 1]) {
+                        byAttempts[i].add(estimate, latent);
+                    }
+                }
+            }
+        }
+        System.out.printf("tracking   : %s, baseline MAE %.3f (constant pInit %.2f)%n",
+                all, baselineAbs / Math.max(1, all.n), pInit);
+        for (int i = 0; i < byAttempts.length; i++) {
+            String range = bounds[i + 1] == Integer.MAX_VALUE ? bounds[i] + "+" : bounds[i] + "-" + (bounds[i + 1] - 1);
+            System.out.printf("  %-6s attempts: %s%n", range, byAttempts[i]);
+        }
+    }
+
+    /**
+     * 用 Java 代替 review_schedule_cas.lua，整体加锁保证比较与写入的原子性
+     */
+    private static void registerReviewScript(Fakes.InMemoryRedisTemplate redis) {
+        Object lock = new Object();
+        redis.registerScript("lua/review_schedule_cas.lua", (keys, argv) -> {
+            String field = argv[0].toString();
+            synchronized (lock) {
+                Object current = redis.opsForHash().get(keys.get(0), field);
+                long state = current instanceof Number number ? number.longValue() : 0;
+                if (state != ((Number) argv[1]).longValue()) {
+                    return 0L;
+                }
+                if (!keys.get(2).equals(keys.get(1))) {
+                    redis.opsForZSet().remove(keys.get(2), argv[3]);
+                }
+                redis.opsForZSet().add(keys.get(1), argv[3], ((Number) argv[4]).doubleValue());
+                redis.opsForHash().put(keys.get(0), field, argv[2]);
+                return 1L;
+            }
+        });
+    }
+
+    /**
+     * 纳秒样本，写满后丢弃
+     */
+    private static final class Samples {
+        private final long[] values;
+        private final AtomicInteger size = new AtomicInteger();
+
+        Samples(int capacity) {
+            values = new long[capacity];
+        }
+
+        void add(long nanos) {
+            int i = size.getAndIncrement();
+            if (i < values.length) {
+                values[i] = nanos;
+            }
+        }
+
+        String summary() {
+            int n = Math.min(size.get(), values.length);
+            if (n == 0) {
+                return "no samples";
+            }
+            long[] sorted = Arrays.copyOf(values, n);
+            Arrays.sort(sorted);
+            return String.format("p50 %s  p90 %s  p99 %s  p99.9 %s  max %s",
+                    micros(sorted, 0.5), micros(sorted, 0.9), micros(sorted, 0.99), micros(sorted, 0.999),
+                    micros(sorted, 1));
+        }
+
+        private static String micros(long[] sorted, double quantile) {
+            int i = (int) Math.min(sorted.length - 1, Math.ceil(quantile * sorted.length) - 1);
+            return String.format("%,dus", sorted[Math.max(0, i)] / 1000);
+        }
+    }
+
+    private static final class Tracking {
+        private long n;
+        private double sumX;
+        private double sumY;
+        private double sumXX;
+        private double sumYY;
+        private double sumXY;
+        private double sumAbs;
+        private double sumSq;
+
+        void add(double estimate, double latent) {
+            n++;
+            sumX += estimate;
+            sumY += latent;
+            sumXX += estimate * estimate;
+            sumYY += latent * latent;
+            sumXY += estimate * latent;
+            sumAbs += Math.abs(estimate - latent);
+            sumSq += (estimate - latent) * (estimate - latent);
+        }
+
+        @Override
+        public String toString() {
+            if (n == 0) {
+                return "no pairs";
+            }
+            double cov = n * sumXY - sumX * sumY;
+            double var = Math.sqrt(n * sumXX - sumX * sumX) * Math.sqrt(n * sumYY - sumY * sumY);
+            return String.format("%,d pairs, r %.3f, MAE %.3f, RMSE %.3f",
+                    n, var > 0 ? cov / var : 0, sumAbs / n, Math.sqrt(sumSq / n));
+        }
+    }
+
+    private static final class NoOpTransactionManager implements PlatformTransactionManager {
+
+        @Override
+        public TransactionStatus getTransaction(TransactionDefinition definition) {
+            return new SimpleTransactionStatus();
+        }
+
+        @Override
+        public void commit(TransactionStatus status) {
+        }
+
+        @Override
+        public void rollback(TransactionStatus status) {
+        }
+    }
+}
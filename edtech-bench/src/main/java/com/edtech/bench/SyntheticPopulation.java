@@ -0,0 +1,89 @@
+package com.edtech.bench;
+
+import com.edtech.model.entity.Question;
+
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 虚拟学生群体：每个 (学生, 知识点) 有一个潜在能力 θ，作答结果按 IRT + 猜测/失误生成
+ * <p>
+ * P(答对) = guess + (1 - guess - slip) · sigmoid(θ - b)，题目难度 b = 4 · (difficulty - 0.5)；
+ * 每作答一次该知识点 θ 增加 learnRate (练习即学习)。真实掌握度定义为 sigmoid(θ)，与 BKT 估计值对比。
+ * θ 由学生整体水平 N(-0.5, 1) 加知识点偏差 N(0, 0.8) 生成，种子固定便于重复实验。
+ */
+final class SyntheticPopulation {
+
+    private final int students;
+    private final int knowledgePoints;
+    private final double guess;
+    private final double slip;
+    private final double learnRate;
+    /** theta[student][kp]，按学生行加锁 */
+    private final double[][] theta;
+    private final int[][] attempts;
+
+    SyntheticPopulation(int students, int knowledgePoints, double guess, double slip, double learnRate, long seed) {
+        this.students = students;
+        this.knowledgePoints = knowledgePoints;
+        this.guess = guess;
+        this.slip = slip;
+        this.learnRate = learnRate;
+        this.theta = new double[students][knowledgePoints];
+        this.attempts = new int[students][knowledgePoints];
+        Random random = new Random(seed);
+        for (int s = 0; s < students; s++) {
+            double ability = -0.5 + random.nextGaussian();
+            for (int k = 0; k < knowledgePoints; k++) {
+                theta[s][k] = ability + 0.8 * random.nextGaussian();
+            }
+        }
+    }
+
+    int students() {
+        return students;
+    }
+
+    int knowledgePoints() {
+        return knowledgePoints;
+    }
+
+    /**
+     * 学生 ID 为 1..students，知识点 ID 为 1..knowledgePoints
+     */
+    Answer answer(long studentId, Question question, ThreadLocalRandom random) {
+        double[] row = theta[(int) studentId - 1];
+        int k = (int) (question.getKnowledgePointId() - 1);
+        double b = 4 * (question.getDifficulty().doubleValue() - 0.5);
+        double p;
+        synchronized (row) {
+            p = guess + (1 - guess - slip) * sigmoid(row[k] - b);
+            row[k] += learnRate;
+            attempts[(int) studentId - 1][k]++;
+        }
+        boolean correct = random.nextDouble() < p;
+        // 耗时：基准 20s 的对数正态，越没把握越慢，答错再慢一些
+        double seconds = 20 * Math.exp(0.5 * random.nextGaussian()) * (2 - p) * (correct ? 1 : 1.3);
+        return new Answer(correct, (int) Math.max(1, Math.round(seconds)));
+    }
+
+    double latentMastery(long studentId, long kpId) {
+        double[] row = theta[(int) studentId - 1];
+        synchronized (row) {
+            return sigmoid(row[(int) kpId - 1]);
+        }
+    }
+
+    int attempts(long studentId, long kpId) {
+        double[] row = theta[(int) studentId - 1];
+        synchronized (row) {
+            return attempts[(int) studentId - 1][(int) kpId - 1];
+        }
+    }
+
+    private static double sigmoid(double x) {
+        return 1 / (1 + Math.exp(-x));
+    }
+
+    record Answer(boolean correct, int durationSeconds) {}
+}
@@ -0,0 +1,119 @@
+package com.edtech.common.collection;
+
+import java.util.Arrays;
+
+/**
+ * long -> int 开放寻址哈希表 (线性探测)
+ * <p>
+ * 用于热路径上的 ID 映射 (题目ID、知识点ID -> 稠密序号)，避免 Long/Integer 装箱。
+ * 非线程安全：调用方应在构建完成后以不可变快照的方式发布。
+ */
+public class LongIntHashMap {
+
+    private static final float LOAD_FACTOR = 0.5f;
+
+    private final int missingValue;
+
+    private long[] keys;
+    private int[] values;
+    private boolean[] used;
+    private int mask;
+    private int size;
+
+    public LongIntHashMap(int expectedSize, int missingValue) {
+        this.missingValue = missingValue;
+        int capacity = tableSizeFor(Math.max(4, (int) (expectedSize / LOAD_FACTOR) + 1));
+        allocate(capacity);
+    }
+
+    public int get(long key) {
+        int idx = mix(key) & mask;
+        while (used[idx]) {
+            if (keys[idx] == key) {
+                return values[idx];
+            }
+            idx = (idx + 1) & mask;
+        }
+        return missingValue;
+    }
+
+    public boolean containsKey(long key) {
+        int idx = mix(key) & mask;
+        while (used[idx]) {
+            if (keys[idx] == key) {
+                return true;
+            }
+            idx = (idx + 1) & mask;
+        }
+        return false;
+    }
+
+    public void put(long key, int value) {
+        if ((size + 1) > (int) (keys.length * LOAD_FACTOR)) {
+            rehash(keys.length << 1);
+        }
+        int idx = mix(key) & mask;
+        while (used[idx]) {
+            if (keys[idx] == key) {
+                values[idx] = value;
+                return;
+            }
+            idx = (idx + 1) & mask;
+        }
+        used[idx] = true;
+        keys[idx] = key;
+        values[idx] = value;
+        size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getMissingValue() {
+        return missingValue;
+    }
+
+    /**
+     * 拷贝一份独立的表 (用于写时复制)
+     */
+    public LongIntHashMap copy() {
+        LongIntHashMap copy = new LongIntHashMap(0, missingValue);
+        copy.keys = Arrays.copyOf(keys, keys.length);
+        copy.values = Arrays.copyOf(values, values.length);
+        copy.used = Arrays.copyOf(used, used.length);
+        copy.mask = mask;
+        copy.size = size;
+        return copy;
+    }
+
+    private void rehash(int newCapacity) {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        boolean[] oldUsed = used;
+        allocate(newCapacity);
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldUsed[i]) {
+                put(oldKeys[i], oldValues[i]);
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new int[capacity];
+        used = new boolean[capacity];
+        mask = capacity - 1;
+    }
+
+    private static int mix(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private static int tableSizeFor(int n) {
+        int highest = Integer.highestOneBit(n);
+        return highest == n ? n : highest << 1;
+    }
+}
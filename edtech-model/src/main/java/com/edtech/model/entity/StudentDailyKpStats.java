@@ -0,0 +1,38 @@
+package com.edtech.model.entity;
+
+import com.baomidou.mybatisplus.annotation.*;
+import lombok.Data;
+import java.io.Serializable;
+import java.time.LocalDate;
+
+/**
+ * 学生每日分知识点答题汇总 (由答题日志增量维护)
+ */
+@Data
+@TableName("student_daily_kp_stats")
+public class StudentDailyKpStats implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    @TableId(value = "id", type = IdType.AUTO)
+    private Long id;
+
+    private Long studentId;
+
+    /**
+     * 统计日期
+     */
+    private LocalDate statDate;
+
+    private Long knowledgePointId;
+
+    /**
+     * 答题数
+     */
+    private Integer attempts;
+
+    /**
+     * 答对数
+     */
+    private Integer correctCount;
+}
@@ -45,4 +45,14 @@ public class StudentExerciseLog implements Serializable {
      */
     @TableField(fill = FieldFill.INSERT)
     private LocalDateTime submitTime;
+
+    /**
+     * MQ 消息 ID (重投去重，升级前的记录为空)
+     */
+    private String messageId;
+
+    /**
+     * 订阅者回调是否完成 (0:待回调, 1:已完成)，与答题记录同一事务写入 0
+     */
+    private Integer dispatched;
 }
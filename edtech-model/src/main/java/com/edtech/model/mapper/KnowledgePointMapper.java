@@ -3,7 +3,24 @@ package com.edtech.model.mapper;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.edtech.model.entity.KnowledgePoint;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Update;
+
+import java.util.List;
 
 @Mapper
 public interface KnowledgePointMapper extends BaseMapper<KnowledgePoint> {
+
+    /**
+     * 批量写回 BKT 参数 (单条 UPDATE ... CASE)，只使用 id 与 p_* 字段
+     */
+    @Update("<script>" +
+            "UPDATE knowledge_point SET " +
+            "p_init = CASE id <foreach collection='list' item='k'>WHEN #{k.id} THEN #{k.pInit} </foreach>END, " +
+            "p_transit = CASE id <foreach collection='list' item='k'>WHEN #{k.id} THEN #{k.pTransit} </foreach>END, " +
+            "p_guess = CASE id <foreach collection='list' item='k'>WHEN #{k.id} THEN #{k.pGuess} </foreach>END, " +
+            "p_slip = CASE id <foreach collection='list' item='k'>WHEN #{k.id} THEN #{k.pSlip} </foreach>END " +
+            "WHERE id IN <foreach collection='list' item='k' open='(' separator=',' close=')'>#{k.id}</foreach>" +
+            "</script>")
+    int batchUpdateBktParams(@Param("list") List<KnowledgePoint> params);
 }
@@ -2,8 +2,24 @@ package com.edtech.model.mapper;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.edtech.model.entity.KnowledgeState;
+import org.apache.ibatis.annotations.Insert;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+
+import java.util.List;
 
 @Mapper
 public interface KnowledgeStateMapper extends BaseMapper<KnowledgeState> {
+
+    /**
+     * 批量写入知识状态，依赖 uk_student_kp 唯一键做 upsert
+     */
+    @Insert("<script>" +
+            "INSERT INTO knowledge_state (student_id, knowledge_point_id, mastery_probability) VALUES " +
+            "<foreach collection='list' item='s' separator=','>" +
+            "(#{s.studentId}, #{s.knowledgePointId}, #{s.masteryProbability})" +
+            "</foreach> " +
+            "ON DUPLICATE KEY UPDATE mastery_probability = VALUES(mastery_probability)" +
+            "</script>")
+    int batchUpsert(@Param("list") List<KnowledgeState> states);
 }
@@ -2,10 +2,13 @@ package com.edtech.model.mapper;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.edtech.model.entity.LeaderboardWeekly;
+import org.apache.ibatis.annotations.Insert;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
 import org.apache.ibatis.annotations.Select;
 
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
 
 @Mapper
@@ -19,4 +22,40 @@ public interface LeaderboardWeeklyMapper extends BaseMapper<LeaderboardWeekly> {
 
     @Select("SELECT * FROM leaderboard_weekly WHERE week_start = #{weekStart} ORDER BY weekly_practice_count DESC LIMIT #{limit}")
     List<LeaderboardWeekly> selectTopByPractice(LocalDate weekStart, int limit);
+
+    /**
+     * 批量累加本周积分/练习数，依赖 uk_user_week 唯一键做 upsert
+     * weekly_streak 为本周内达到的连续天数，取较大值
+     */
+    @Insert("<script>" +
+            "INSERT INTO leaderboard_weekly (user_id, week_start, weekly_points, weekly_practice_count, weekly_streak) VALUES " +
+            "<foreach collection='list' item='w' separator=','>" +
+            "(#{w.userId}, #{w.weekStart}, #{w.weeklyPoints}, #{w.weeklyPracticeCount}, #{w.weeklyStreak})" +
+            "</foreach> " +
+            "ON DUPLICATE KEY UPDATE weekly_points = weekly_points + VALUES(weekly_points), " +
+            "weekly_practice_count = weekly_practice_count + VALUES(weekly_practice_count), " +
+            "weekly_streak = GREATEST(COALESCE(weekly_streak, 0), VALUES(weekly_streak))" +
+            "</script>")
+    int batchAccumulate(@Param("list") List<LeaderboardWeekly> deltas);
+
+    /**
+     * 批量读取累加后的周积分/练习数/连胜 (写入周榜 ZSET 的绝对值)
+     */
+    @Select("<script>" +
+            "SELECT user_id, week_start, weekly_points, weekly_streak, weekly_practice_count FROM leaderboard_weekly " +
+            "WHERE week_start IN " +
+            "<foreach collection='weeks' item='w' open='(' separator=',' close=')'>#{w}</foreach> " +
+            "AND user_id IN " +
+            "<foreach collection='userIds' item='id' open='(' separator=',' close=')'>#{id}</foreach>" +
+            "</script>")
+    List<LeaderboardWeekly> selectByWeeksAndUsers(@Param("weeks") Collection<LocalDate> weeks,
+                                                  @Param("userIds") Collection<Long> userIds);
+
+    /**
+     * 按主键游标分页读取某周数据 (排行榜重建)
+     */
+    @Select("SELECT id, user_id, weekly_points, weekly_streak, weekly_practice_count FROM leaderboard_weekly " +
+            "WHERE week_start = #{weekStart} AND id > #{afterId} ORDER BY id LIMIT #{limit}")
+    List<LeaderboardWeekly> selectWeekPage(@Param("weekStart") LocalDate weekStart,
+                                           @Param("afterId") long afterId, @Param("limit") int limit);
 }
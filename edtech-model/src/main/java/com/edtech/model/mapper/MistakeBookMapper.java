@@ -2,8 +2,27 @@ package com.edtech.model.mapper;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.edtech.model.entity.MistakeBook;
+import org.apache.ibatis.annotations.Insert;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+
+import java.util.List;
 
 @Mapper
 public interface MistakeBookMapper extends BaseMapper<MistakeBook> {
+
+    /**
+     * 批量累加错题次数，依赖 uk_student_q 唯一键做 upsert
+     * error_count 为本批次内该题的错误次数，已存在的记录会被重新打开 (is_resolved = 0)
+     */
+    @Insert("<script>" +
+            "INSERT INTO mistake_book (student_id, question_id, error_count, last_error_time, is_resolved) VALUES " +
+            "<foreach collection='list' item='m' separator=','>" +
+            "(#{m.studentId}, #{m.questionId}, #{m.errorCount}, #{m.lastErrorTime}, 0)" +
+            "</foreach> " +
+            "ON DUPLICATE KEY UPDATE error_count = error_count + VALUES(error_count), " +
+            "last_error_time = GREATEST(COALESCE(last_error_time, VALUES(last_error_time)), VALUES(last_error_time)), " +
+            "is_resolved = 0" +
+            "</script>")
+    int batchUpsertErrors(@Param("list") List<MistakeBook> mistakes);
 }
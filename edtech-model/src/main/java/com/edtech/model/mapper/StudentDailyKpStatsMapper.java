@@ -0,0 +1,50 @@
+package com.edtech.model.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.edtech.model.entity.StudentDailyKpStats;
+import org.apache.ibatis.annotations.Delete;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Mapper
+public interface StudentDailyKpStatsMapper extends BaseMapper<StudentDailyKpStats> {
+
+    /**
+     * 批量累加当日分知识点汇总，依赖 uk_student_date_kp 唯一键做 upsert
+     */
+    @Insert("<script>" +
+            "INSERT INTO student_daily_kp_stats (student_id, stat_date, knowledge_point_id, attempts, correct_count) VALUES " +
+            "<foreach collection='list' item='s' separator=','>" +
+            "(#{s.studentId}, #{s.statDate}, #{s.knowledgePointId}, #{s.attempts}, #{s.correctCount})" +
+            "</foreach> " +
+            "ON DUPLICATE KEY UPDATE attempts = attempts + VALUES(attempts), " +
+            "correct_count = correct_count + VALUES(correct_count)" +
+            "</script>")
+    int batchAccumulate(@Param("list") List<StudentDailyKpStats> deltas);
+
+    /**
+     * 时间窗口内按知识点合计 (读取行数 <= 天数 x 知识点数)
+     */
+    @Select("SELECT knowledge_point_id, SUM(attempts) AS attempts, SUM(correct_count) AS correct_count " +
+            "FROM student_daily_kp_stats WHERE student_id = #{studentId} AND stat_date >= #{from} " +
+            "GROUP BY knowledge_point_id")
+    List<StudentDailyKpStats> sumByKnowledgePointSince(@Param("studentId") Long studentId, @Param("from") LocalDate from);
+
+    @Delete("DELETE FROM student_daily_kp_stats WHERE student_id = #{studentId}")
+    int deleteByStudent(@Param("studentId") Long studentId);
+
+    /**
+     * 从原始答题日志重建某学生的分知识点汇总
+     */
+    @Insert("INSERT INTO student_daily_kp_stats (student_id, stat_date, knowledge_point_id, attempts, correct_count) " +
+            "SELECT l.student_id, DATE(l.submit_time), q.knowledge_point_id, COUNT(*), SUM(l.result = 1) " +
+            "FROM student_exercise_log l JOIN question q ON q.id = l.question_id " +
+            "WHERE l.student_id = #{studentId} AND q.knowledge_point_id IS NOT NULL " +
+            "GROUP BY l.student_id, DATE(l.submit_time), q.knowledge_point_id")
+    int rebuildFromLogs(@Param("studentId") Long studentId);
+}
@@ -0,0 +1,65 @@
+package com.edtech.model.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.edtech.model.entity.StudentDailyStats;
+import org.apache.ibatis.annotations.Delete;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+
+@Mapper
+public interface StudentDailyStatsMapper extends BaseMapper<StudentDailyStats> {
+
+    /**
+     * 批量累加当日汇总，依赖 uk_student_date 唯一键做 upsert
+     * 各计数为本批次内的增量
+     */
+    @Insert("<script>" +
+            "INSERT INTO student_daily_stats (student_id, stat_date, attempts, correct_count, total_duration) VALUES " +
+            "<foreach collection='list' item='s' separator=','>" +
+            "(#{s.studentId}, #{s.statDate}, #{s.attempts}, #{s.correctCount}, #{s.totalDuration})" +
+            "</foreach> " +
+            "ON DUPLICATE KEY UPDATE attempts = attempts + VALUES(attempts), " +
+            "correct_count = correct_count + VALUES(correct_count), " +
+            "total_duration = total_duration + VALUES(total_duration)" +
+            "</script>")
+    int batchAccumulate(@Param("list") List<StudentDailyStats> deltas);
+
+    @Select("SELECT id, student_id, stat_date, attempts, correct_count, total_duration FROM student_daily_stats " +
+            "WHERE student_id = #{studentId} AND stat_date >= #{from} ORDER BY stat_date")
+    List<StudentDailyStats> selectSince(@Param("studentId") Long studentId, @Param("from") LocalDate from);
+
+    /**
+     * 入库答题记录时对学生加共享锁，与重建互斥、批次之间不互斥
+     * 按 ID 升序加锁避免死锁
+     */
+    @Select("<script>" +
+            "SELECT id FROM user WHERE id IN " +
+            "<foreach collection='ids' item='id' open='(' separator=',' close=')'>#{id}</foreach> " +
+            "ORDER BY id LOCK IN SHARE MODE" +
+            "</script>")
+    List<Long> lockStudentsShared(@Param("ids") Collection<Long> studentIds);
+
+    /**
+     * 重建汇总时对学生加排他锁，期间该学生的答题批次等待重建提交
+     */
+    @Select("SELECT id FROM user WHERE id = #{studentId} FOR UPDATE")
+    Long lockStudent(@Param("studentId") Long studentId);
+
+    @Delete("DELETE FROM student_daily_stats WHERE student_id = #{studentId}")
+    int deleteByStudent(@Param("studentId") Long studentId);
+
+    /**
+     * 从原始答题日志重建某学生的汇总
+     */
+    @Insert("INSERT INTO student_daily_stats (student_id, stat_date, attempts, correct_count, total_duration) " +
+            "SELECT student_id, DATE(submit_time), COUNT(*), SUM(result = 1), COALESCE(SUM(duration), 0) " +
+            "FROM student_exercise_log WHERE student_id = #{studentId} " +
+            "GROUP BY student_id, DATE(submit_time)")
+    int rebuildFromLogs(@Param("studentId") Long studentId);
+}
@@ -2,8 +2,64 @@ package com.edtech.model.mapper;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.edtech.model.entity.StudentExerciseLog;
+import org.apache.ibatis.annotations.Insert;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
 
 @Mapper
 public interface StudentExerciseLogMapper extends BaseMapper<StudentExerciseLog> {
+
+    /**
+     * 批量写入答题记录 (单条多行 INSERT)
+     * message_id 已存在的行依赖 uk_message_id 跳过，重投的消息不会重复入库
+     */
+    @Insert("<script>" +
+            "INSERT INTO student_exercise_log (student_id, question_id, result, duration, submit_time, message_id, dispatched) VALUES " +
+            "<foreach collection='list' item='l' separator=','>" +
+            "(#{l.studentId}, #{l.questionId}, #{l.result}, #{l.duration}, #{l.submitTime}, #{l.messageId}, #{l.dispatched})" +
+            "</foreach> " +
+            "ON DUPLICATE KEY UPDATE id = id" +
+            "</script>")
+    int batchInsert(@Param("list") List<StudentExerciseLog> logs);
+
+    /**
+     * 批次中已入库的消息 (只含 message_id、dispatched)
+     */
+    @Select("<script>" +
+            "SELECT message_id, dispatched FROM student_exercise_log WHERE message_id IN " +
+            "<foreach collection='ids' item='id' open='(' separator=',' close=')'>#{id}</foreach>" +
+            "</script>")
+    List<StudentExerciseLog> selectByMessageIds(@Param("ids") Collection<String> messageIds);
+
+    /**
+     * 标记订阅者回调已完成
+     */
+    @Update("<script>" +
+            "UPDATE student_exercise_log SET dispatched = 1 WHERE dispatched = 0 AND message_id IN " +
+            "<foreach collection='ids' item='id' open='(' separator=',' close=')'>#{id}</foreach>" +
+            "</script>")
+    int markDispatched(@Param("ids") Collection<String> messageIds);
+
+    /**
+     * 按 (submit_time, id) 倒序的游标分页，依赖 idx_student_time 索引
+     * beforeTime 为空时从最新一条开始
+     */
+    @Select("<script>" +
+            "SELECT id, student_id, question_id, result, duration, submit_time, message_id, dispatched FROM student_exercise_log " +
+            "WHERE student_id = #{studentId} " +
+            "<if test='beforeTime != null'>" +
+            "AND (submit_time &lt; #{beforeTime} OR (submit_time = #{beforeTime} AND id &lt; #{beforeId})) " +
+            "</if>" +
+            "ORDER BY submit_time DESC, id DESC LIMIT #{limit}" +
+            "</script>")
+    List<StudentExerciseLog> selectPageBefore(@Param("studentId") Long studentId,
+                                              @Param("beforeTime") LocalDateTime beforeTime,
+                                              @Param("beforeId") long beforeId,
+                                              @Param("limit") int limit);
 }
@@ -2,8 +2,30 @@ package com.edtech.model.mapper;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.edtech.model.entity.User;
+import com.edtech.model.vo.UserSummaryVO;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+
+import java.util.Collection;
+import java.util.List;
 
 @Mapper
 public interface UserMapper extends BaseMapper<User> {
+
+    /**
+     * 批量查询用户摘要，一条 SQL 完成 user / user_points / 最近答题时间的关联
+     * 最近答题时间依赖 idx_student_time (student_id, submit_time) 索引
+     */
+    @Select("<script>" +
+            "SELECT u.id AS user_id, u.nickname, u.avatar, u.grade, " +
+            "COALESCE(p.total_points, 0) AS total_points, " +
+            "COALESCE(p.total_practice_count, 0) AS total_practice_count, " +
+            "COALESCE(p.total_correct_count, 0) AS total_correct_count, " +
+            "(SELECT MAX(l.submit_time) FROM student_exercise_log l WHERE l.student_id = u.id) AS last_active_time " +
+            "FROM user u LEFT JOIN user_points p ON p.user_id = u.id " +
+            "WHERE u.id IN " +
+            "<foreach collection='ids' item='id' open='(' separator=',' close=')'>#{id}</foreach>" +
+            "</script>")
+    List<UserSummaryVO> selectSummaries(@Param("ids") Collection<Long> ids);
 }
@@ -2,8 +2,56 @@ package com.edtech.model.mapper;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.edtech.model.entity.UserPoints;
+import org.apache.ibatis.annotations.Insert;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+
+import java.util.Collection;
+import java.util.List;
 
 @Mapper
 public interface UserPointsMapper extends BaseMapper<UserPoints> {
+
+    /**
+     * 批量累加积分与练习统计，依赖 uk_user 唯一键做 upsert
+     * 各字段为 (用户, 日期) 的增量，last_active_date 为该日期；同一用户多行须按日期升序，逐行推进连胜天数：
+     * 同日不变，次日 +1，更早的日期 (迟到消息) 不变，间隔超过一天重置为 1。
+     * MySQL 按书写顺序赋值，current_streak / longest_streak 必须在 last_active_date 之前更新
+     */
+    @Insert("<script>" +
+            "INSERT INTO user_points (user_id, total_points, total_practice_count, total_correct_count, last_active_date, " +
+            "current_streak, longest_streak) VALUES " +
+            "<foreach collection='list' item='p' separator=','>" +
+            "(#{p.userId}, #{p.totalPoints}, #{p.totalPracticeCount}, #{p.totalCorrectCount}, #{p.lastActiveDate}, 1, 1)" +
+            "</foreach> " +
+            "ON DUPLICATE KEY UPDATE total_points = total_points + VALUES(total_points), " +
+            "total_practice_count = total_practice_count + VALUES(total_practice_count), " +
+            "total_correct_count = total_correct_count + VALUES(total_correct_count), " +
+            "current_streak = CASE " +
+            "WHEN last_active_date IS NULL THEN 1 " +
+            "WHEN VALUES(last_active_date) &lt;= last_active_date THEN GREATEST(COALESCE(current_streak, 0), 1) " +
+            "WHEN VALUES(last_active_date) = DATE_ADD(last_active_date, INTERVAL 1 DAY) THEN COALESCE(current_streak, 0) + 1 " +
+            "ELSE 1 END, " +
+            "longest_streak = GREATEST(COALESCE(longest_streak, 0), current_streak), " +
+            "last_active_date = GREATEST(COALESCE(last_active_date, VALUES(last_active_date)), VALUES(last_active_date))" +
+            "</script>")
+    int batchAccumulate(@Param("list") List<UserPoints> deltas);
+
+    /**
+     * 批量读取累加后的排行榜字段 (写入排行榜 ZSET 的绝对值与周连胜的计算)
+     */
+    @Select("<script>" +
+            "SELECT user_id, total_points, current_streak, last_active_date, total_practice_count FROM user_points " +
+            "WHERE user_id IN " +
+            "<foreach collection='userIds' item='id' open='(' separator=',' close=')'>#{id}</foreach>" +
+            "</script>")
+    List<UserPoints> selectRankingByUserIds(@Param("userIds") Collection<Long> userIds);
+
+    /**
+     * 按主键游标分页读取排行榜字段 (排行榜重建)
+     */
+    @Select("SELECT id, user_id, total_points, current_streak, total_practice_count FROM user_points " +
+            "WHERE id > #{afterId} ORDER BY id LIMIT #{limit}")
+    List<UserPoints> selectRankingPage(@Param("afterId") long afterId, @Param("limit") int limit);
 }
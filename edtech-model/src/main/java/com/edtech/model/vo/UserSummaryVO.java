@@ -0,0 +1,45 @@
+package com.edtech.model.vo;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+/**
+ * 用户摘要 - 排行榜/后台列表展示用 (user + user_points + 最近答题时间)
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class UserSummaryVO implements Serializable {
+
+    private Long userId;
+
+    private String nickname;
+
+    private String avatar;
+
+    private String grade;
+
+    /**
+     * 总积分
+     */
+    private int totalPoints;
+
+    /**
+     * 总练习题目数
+     */
+    private int totalPracticeCount;
+
+    /**
+     * 总正确题目数
+     */
+    private int totalCorrectCount;
+
+    /**
+     * 最近一次答题时间
+     */
+    private LocalDateTime lastActiveTime;
+}
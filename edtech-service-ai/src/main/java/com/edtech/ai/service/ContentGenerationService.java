@@ -91,53 +91,7 @@ public class ContentGenerationService {
         String response = callQwen(userPrompt);
 
         try {
-            log.info("🔍 原始AI响应: {}", response);
-            
-            String cleanResponse = response.trim();
-            if (cleanResponse.startsWith("```json")) {
-                cleanResponse = cleanResponse.substring(7);
-            } else if (cleanResponse.startsWith("```")) {
-                cleanResponse = cleanResponse.substring(3);
-            }
-            if (cleanResponse.endsWith("```")) {
-                cleanResponse = cleanResponse.substring(0, cleanResponse.length() - 3);
-            }
-            
-            int jsonStart = cleanResponse.indexOf("{");
-            int jsonEnd = cleanResponse.lastIndexOf("}");
-            if (jsonStart >= 0 && jsonEnd > jsonStart) {
-                cleanResponse = cleanResponse.substring(jsonStart, jsonEnd + 1);
-            }
-            
-            log.info("🧹 清理后的JSON: {}", cleanResponse);
-            
-            JSONObject json = JSONUtil.parseObj(cleanResponse);
-            GeneratedQuestionVO vo = new GeneratedQuestionVO();
-            
-            String content = json.getStr("content");
-            if (content == null || content.isEmpty()) {
-                throw new RuntimeException("AI响应中缺少题干内容");
-            }
-            vo.setStem(content);
-            
-            JSONArray opts = json.getJSONArray("options");
-            if (opts != null && opts.size() >= 4) {
-                vo.setOptions(opts.toList(String.class));
-            } else {
-                log.warn("⚠️ 选项解析失败，使用默认选项");
-                vo.setOptions(List.of("A. 选项A", "B. 选项B", "C. 选项C", "D. 选项D"));
-            }
-            
-            String correctAnswer = json.getStr("correctAnswer");
-            vo.setCorrectAnswer(correctAnswer != null ? correctAnswer : "A");
-            
-            String analysis = json.getStr("analysis");
-            vo.setAnalysis(analysis != null ? analysis : "解析生成中...");
-            vo.setDifficulty(difficultyLevel);
-            
-            log.info("✅ AI题目解析成功: 题干长度={}, 选项数={}", vo.getStem().length(), vo.getOptions().size());
-            return vo;
-
+            return parseGeneratedQuestion(response, difficultyLevel);
         } catch (Exception e) {
             log.error("❌ AI响应解析失败: {}", response, e);
             
@@ -151,6 +105,60 @@ public class ContentGenerationService {
         }
     }
 
+    /**
+     * 清理模型返回内容 (去除 markdown 代码块包裹) 并解析为题目
+     *
+     * @throws RuntimeException 缺少题干或 JSON 无法解析
+     */
+    public GeneratedQuestionVO parseGeneratedQuestion(String response, String difficultyLevel) {
+        log.info("🔍 原始AI响应: {}", response);
+        
+        String cleanResponse = response.trim();
+        if (cleanResponse.startsWith("```json")) {
+            cleanResponse = cleanResponse.substring(7);
+        } else if (cleanResponse.startsWith("```")) {
+            cleanResponse = cleanResponse.substring(3);
+        }
+        if (cleanResponse.endsWith("```")) {
+            cleanResponse = cleanResponse.substring(0, cleanResponse.length() - 3);
+        }
+        
+        int jsonStart = cleanResponse.indexOf("{");
+        int jsonEnd = cleanResponse.lastIndexOf("}");
+        if (jsonStart >= 0 && jsonEnd > jsonStart) {
+            cleanResponse = cleanResponse.substring(jsonStart, jsonEnd + 1);
+        }
+        
+        log.info("🧹 清理后的JSON: {}", cleanResponse);
+        
+        JSONObject json = JSONUtil.parseObj(cleanResponse);
+        GeneratedQuestionVO vo = new GeneratedQuestionVO();
+        
+        String content = json.getStr("content");
+        if (content == null || content.isEmpty()) {
+            throw new RuntimeException("AI响应中缺少题干内容");
+        }
+        vo.setStem(content);
+        
+        JSONArray opts = json.getJSONArray("options");
+        if (opts != null && opts.size() >= 4) {
+            vo.setOptions(opts.toList(String.class));
+        } else {
+            log.warn("⚠️ 选项解析失败，使用默认选项");
+            vo.setOptions(List.of("A. 选项A", "B. 选项B", "C. 选项C", "D. 选项D"));
+        }
+        
+        String correctAnswer = json.getStr("correctAnswer");
+        vo.setCorrectAnswer(correctAnswer != null ? correctAnswer : "A");
+        
+        String analysis = json.getStr("analysis");
+        vo.setAnalysis(analysis != null ? analysis : "解析生成中...");
+        vo.setDifficulty(difficultyLevel);
+        
+        log.info("✅ AI题目解析成功: 题干长度={}, 选项数={}", vo.getStem().length(), vo.getOptions().size());
+        return vo;
+    }
+
     public String generateExplanation(String questionContent, String wrongAnswer, String correctAnswer) {
         log.info("Generating explanation...");
 
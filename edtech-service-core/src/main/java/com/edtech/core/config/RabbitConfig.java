@@ -1,16 +1,39 @@
 package com.edtech.core.config;
 
+import org.springframework.amqp.AmqpRejectAndDontRequeueException;
+import org.springframework.amqp.core.AcknowledgeMode;
+import org.springframework.amqp.core.Binding;
+import org.springframework.amqp.core.BindingBuilder;
+import org.springframework.amqp.core.DirectExchange;
+import org.springframework.amqp.core.Message;
 import org.springframework.amqp.core.Queue;
+import org.springframework.amqp.core.QueueBuilder;
+import org.springframework.amqp.rabbit.config.RetryInterceptorBuilder;
+import org.springframework.amqp.rabbit.config.SimpleRabbitListenerContainerFactory;
+import org.springframework.amqp.rabbit.connection.ConnectionFactory;
+import org.springframework.amqp.rabbit.retry.MessageBatchRecoverer;
+import org.springframework.amqp.rabbit.retry.RejectAndDontRequeueRecoverer;
+import org.springframework.amqp.rabbit.support.ListenerExecutionFailedException;
 import org.springframework.amqp.support.converter.Jackson2JsonMessageConverter;
 import org.springframework.amqp.support.converter.MessageConverter;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.List;
+
 @Configuration
 public class RabbitConfig {
 
     public static final String REPORT_QUEUE = "learning.report.queue";
     public static final String PRACTICE_LOG_QUEUE = "practice.log.queue";
+    /** 重试仍失败、或单条入库失败的答题日志 */
+    public static final String PRACTICE_LOG_DLX = "practice.log.dlx";
+    public static final String PRACTICE_LOG_DLQ = "practice.log.dlq";
+    /** 订阅者重试后仍失败的批次，按订阅者分别存放，供管理端重放 */
+    public static final String PRACTICE_SUBSCRIBER_DLQ = "practice.log.subscriber.dlq";
+
+    public static final String PRACTICE_BATCH_CONTAINER_FACTORY = "practiceBatchContainerFactory";
 
     @Bean
     public Queue reportQueue() {
@@ -18,13 +41,97 @@ public class RabbitConfig {
         return new Queue(REPORT_QUEUE, true);
     }
 
+    /**
+     * 被拒绝 (不重新入队) 的消息经 practice.log.dlx 路由到 practice.log.dlq
+     * 已存在的 practice.log.queue 没有死信参数时声明会失败，升级时需先排空并删除旧队列
+     */
     @Bean
     public Queue practiceLogQueue() {
-        return new Queue(PRACTICE_LOG_QUEUE, true);
+        return QueueBuilder.durable(PRACTICE_LOG_QUEUE)
+                .deadLetterExchange(PRACTICE_LOG_DLX)
+                .deadLetterRoutingKey(PRACTICE_LOG_DLQ)
+                .build();
+    }
+
+    @Bean
+    public DirectExchange practiceLogDlx() {
+        return new DirectExchange(PRACTICE_LOG_DLX, true, false);
+    }
+
+    @Bean
+    public Queue practiceLogDlq() {
+        return new Queue(PRACTICE_LOG_DLQ, true);
+    }
+
+    @Bean
+    public Binding practiceLogDlqBinding() {
+        return BindingBuilder.bind(practiceLogDlq()).to(practiceLogDlx()).with(PRACTICE_LOG_DLQ);
+    }
+
+    @Bean
+    public Queue practiceSubscriberDlq() {
+        return new Queue(PRACTICE_SUBSCRIBER_DLQ, true);
     }
 
     @Bean
     public MessageConverter jsonMessageConverter() {
         return new Jackson2JsonMessageConverter();
     }
+
+    /**
+     * 答题日志批量消费容器
+     * 每批最多 batch-size 条，或等待 receive-timeout-ms 后提交不足一批的消息；
+     * 监听方法 (事务) 正常返回后整批 ACK；异常时在本地按指数退避重试 retry.max-attempts 次，
+     * 仍失败则整批拒绝且不重新入队，进入死信队列 practice.log.dlq，避免必然失败的批次无限重投。
+     * concurrency <= 0 时按 CPU 核数启动消费者。
+     */
+    @Bean(PRACTICE_BATCH_CONTAINER_FACTORY)
+    public SimpleRabbitListenerContainerFactory practiceBatchContainerFactory(
+            ConnectionFactory connectionFactory,
+            MessageConverter jsonMessageConverter,
+            @Value("${practice.consumer.batch-size:100}") int batchSize,
+            @Value("${practice.consumer.receive-timeout-ms:200}") long receiveTimeout,
+            @Value("${practice.consumer.prefetch:250}") int prefetch,
+            @Value("${practice.consumer.concurrency:0}") int concurrency,
+            @Value("${practice.consumer.max-concurrency:0}") int maxConcurrency,
+            @Value("${practice.consumer.retry.max-attempts:3}") int retryAttempts,
+            @Value("${practice.consumer.retry.initial-interval-ms:500}") long retryInitialInterval,
+            @Value("${practice.consumer.retry.max-interval-ms:5000}") long retryMaxInterval) {
+        int consumers = concurrency > 0 ? concurrency : Runtime.getRuntime().availableProcessors();
+        SimpleRabbitListenerContainerFactory factory = new SimpleRabbitListenerContainerFactory();
+        factory.setConnectionFactory(connectionFactory);
+        factory.setMessageConverter(jsonMessageConverter);
+        factory.setBatchListener(true);
+        factory.setConsumerBatchEnabled(true);
+        factory.setBatchSize(batchSize);
+        factory.setReceiveTimeout(receiveTimeout);
+        // prefetch 至少容纳一个完整批次，否则批次永远凑不满
+        factory.setPrefetchCount(Math.max(prefetch, batchSize));
+        factory.setConcurrentConsumers(consumers);
+        factory.setMaxConcurrentConsumers(Math.max(consumers, maxConcurrency));
+        factory.setAcknowledgeMode(AcknowledgeMode.AUTO);
+        factory.setDefaultRequeueRejected(false);
+        factory.setAdviceChain(RetryInterceptorBuilder.stateless()
+                .maxAttempts(Math.max(1, retryAttempts))
+                .backOffOptions(retryInitialInterval, 2.0, retryMaxInterval)
+                .recoverer(new RejectBatchAndDontRequeueRecoverer())
+                .build());
+        return factory;
+    }
+
+    /**
+     * 批量监听下重试耗尽后整批拒绝
+     * 无状态重试拦截器对批量监听只会调用 MessageBatchRecoverer，
+     * 直接使用 RejectAndDontRequeueRecoverer 时批次会被静默 ACK 丢弃
+     */
+    static class RejectBatchAndDontRequeueRecoverer extends RejectAndDontRequeueRecoverer
+            implements MessageBatchRecoverer {
+
+        @Override
+        public void recover(List<Message> messages, Throwable cause) {
+            logger.warn("Retries exhausted for practice log batch of " + messages.size() + " messages", cause);
+            throw new ListenerExecutionFailedException("Retry policy exhausted",
+                    new AmqpRejectAndDontRequeueException(cause), messages.toArray(new Message[0]));
+        }
+    }
 }
@@ -5,70 +5,359 @@ import com.edtech.model.entity.MistakeBook;
 import com.edtech.model.entity.StudentExerciseLog;
 import com.edtech.model.mapper.MistakeBookMapper;
 import com.edtech.model.mapper.StudentExerciseLogMapper;
-import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageDeliveryMode;
+import org.springframework.amqp.core.MessageProperties;
 import org.springframework.amqp.rabbit.annotation.RabbitListener;
+import org.springframework.amqp.rabbit.core.RabbitTemplate;
+import org.springframework.amqp.support.converter.MessageConverter;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 @Component
 @Slf4j
 @RequiredArgsConstructor
 public class PracticeConsumer {
 
+    /** 死信批次对应的订阅者类名 */
+    public static final String SUBSCRIBER_HEADER = "x-practice-subscriber";
+    /** 死信批次中各条消息的 MQ 消息 ID (逗号分隔，与批次顺序一致，缺失为空串) */
+    public static final String MESSAGE_IDS_HEADER = "x-practice-message-ids";
+
     private final StudentExerciseLogMapper logMapper;
     private final MistakeBookMapper mistakeBookMapper;
+    private final TransactionTemplate transactionTemplate;
+    private final MessageConverter jsonMessageConverter;
+    private final ObjectProvider<PracticeLogSubscriber> subscribers;
+    private final ObjectProvider<PracticeLogPersistHook> persistHooks;
+    private final RabbitTemplate rabbitTemplate;
+
+    @Value("${practice.consumer.subscriber-attempts:3}")
+    private int subscriberAttempts;
+
+    /**
+     * 批量处理答题日志
+     * 1. 按消息 ID 跳过已入库的消息 (重投去重)；已入库但 dispatched = 0 的消息不再写入，只重新回调
+     * 2. 答题记录一次多行 INSERT，dispatched = 0 作为待回调标记随记录同一事务提交
+     * 3. 错题按 (学生, 题目) 合并后一次 upsert，error_count 为批内累计次数，
+     *    同一事务内回调 PracticeLogPersistHook (每日汇总、排行榜积分)
+     * 4. 整批入库失败时逐条入库，单条仍失败的消息转入 practice.log.dlq，其余照常处理；
+     *    全部失败 (数据库不可用等) 时抛出，由容器重试后整批进入死信队列
+     * 5. 事务提交后把待回调的消息回调给订阅者 (BKT、策略状态、排行榜)，
+     *    订阅者重试 subscriber-attempts 次仍失败时，该批次按订阅者投递到死信队列等待重放
+     * 6. 全部订阅者完成 (或已转入死信) 后置 dispatched = 1
+     * 方法返回后容器整批 ACK。提交后、回调完成前进程崩溃时消息未 ACK，重投后按第 1 步重新回调，
+     * 因此订阅者可能收到同一消息多次，需按消息 ID 幂等
+     */
+    @RabbitListener(queues = RabbitConfig.PRACTICE_LOG_QUEUE,
+            containerFactory = RabbitConfig.PRACTICE_BATCH_CONTAINER_FACTORY)
+    public void processPracticeLogs(List<Message> messages) {
+        List<Delivery> deliveries = new ArrayList<>(messages.size());
+        for (Message message : messages) {
+            try {
+                deliveries.add(new Delivery(message,
+                        decode(message).withMessageId(message.getMessageProperties().getMessageId())));
+            } catch (Exception e) {
+                // 格式错误的消息直接丢弃，避免整批反复重投
+                log.error("Skipping malformed practice log: {}", message, e);
+            }
+        }
+        if (deliveries.isEmpty()) {
+            return;
+        }
+
+        List<PracticeLogMessage> batch = persistBatch(deliveries);
+        if (batch == null || batch.isEmpty()) {
+            log.info("Skipped redelivered practice log batch: {} logs", deliveries.size());
+            return;
+        }
+
+        subscribers.orderedStream().forEach(subscriber -> dispatch(subscriber, batch));
+        markDispatched(batch);
+        log.info("Async processed practice log batch: {} logs ({} already dispatched)", batch.size(),
+                deliveries.size() - batch.size());
+    }
 
-    @RabbitListener(queues = RabbitConfig.PRACTICE_LOG_QUEUE)
-    @Transactional(rollbackFor = Exception.class)
-    public void processPracticeLog(Map<String, Object> message) {
+    /**
+     * 重放订阅者死信队列中的批次，只回调当初失败的订阅者
+     * 重放仍失败时批次放回死信队列并停止本轮重放
+     *
+     * @return 成功重放的批次数
+     */
+    public int replayFailedSubscriptions(int maxBatches) {
+        Map<String, PracticeLogSubscriber> byName = new HashMap<>();
+        subscribers.orderedStream().forEach(subscriber -> byName.put(subscriberName(subscriber), subscriber));
+
+        int replayed = 0;
+        while (replayed < maxBatches) {
+            Message message = rabbitTemplate.receive(RabbitConfig.PRACTICE_SUBSCRIBER_DLQ);
+            if (message == null) {
+                break;
+            }
+            String name = message.getMessageProperties().getHeader(SUBSCRIBER_HEADER);
+            PracticeLogSubscriber subscriber = byName.get(name);
+            if (subscriber == null) {
+                log.error("Dropping dead-lettered practice log batch for unknown subscriber {}", name);
+                continue;
+            }
+            List<PracticeLogMessage> batch = withMessageIds(PracticeLogCodec.decodeBatch(message.getBody()),
+                    message.getMessageProperties().getHeader(MESSAGE_IDS_HEADER));
+            try {
+                subscriber.onPracticeLogs(batch);
+            } catch (Exception e) {
+                log.error("Replay of practice log batch for {} failed, keeping it dead-lettered", name, e);
+                rabbitTemplate.send(RabbitConfig.PRACTICE_SUBSCRIBER_DLQ, message);
+                break;
+            }
+            replayed++;
+        }
+        return replayed;
+    }
+
+    /**
+     * 把 practice.log.dlq 中的消息移回 practice.log.queue 重新消费 (修复数据或故障恢复后)
+     * 已入库的消息按消息 ID 去重，不会重复写入
+     *
+     * @return 移回的消息数
+     */
+    public int requeueDeadLetters(int maxMessages) {
+        int moved = 0;
+        while (moved < maxMessages) {
+            Message message = rabbitTemplate.receive(RabbitConfig.PRACTICE_LOG_DLQ);
+            if (message == null) {
+                break;
+            }
+            rabbitTemplate.send(RabbitConfig.PRACTICE_LOG_QUEUE, message);
+            moved++;
+        }
+        return moved;
+    }
+
+    private List<PracticeLogMessage> persistBatch(List<Delivery> deliveries) {
         try {
-            Long studentId = Long.valueOf(message.get("studentId").toString());
-            Long questionId = Long.valueOf(message.get("questionId").toString());
-            boolean isCorrect = Boolean.parseBoolean(message.get("isCorrect").toString());
-            int duration = Integer.parseInt(message.get("duration").toString());
-            String submitTimeStr = message.get("submitTime").toString();
+            return transactionTemplate.execute(status -> persist(deliveries));
+        } catch (RuntimeException e) {
+            if (deliveries.size() == 1) {
+                throw e;
+            }
+            log.warn("Practice log batch insert failed, retrying {} logs one by one", deliveries.size(), e);
+            return persistIndividually(deliveries, e);
+        }
+    }
 
-            log.info("Async processing practice log: Student {}, Question {}", studentId, questionId);
+    private List<PracticeLogMessage> persistIndividually(List<Delivery> deliveries, RuntimeException batchFailure) {
+        List<PracticeLogMessage> batch = new ArrayList<>(deliveries.size());
+        List<Delivery> failed = new ArrayList<>();
+        for (Delivery delivery : deliveries) {
+            try {
+                batch.addAll(transactionTemplate.execute(status -> persist(List.of(delivery))));
+            } catch (RuntimeException e) {
+                log.error("Practice log insert failed for message {}", delivery.messageId(), e);
+                failed.add(delivery);
+            }
+        }
+        if (failed.size() == deliveries.size()) {
+            throw batchFailure;
+        }
+        for (Delivery delivery : failed) {
+            rabbitTemplate.send(RabbitConfig.PRACTICE_LOG_DLQ, delivery.raw());
+        }
+        return batch;
+    }
 
-            // 1. Save Log to MySQL
-            StudentExerciseLog exerciseLog = new StudentExerciseLog();
-            exerciseLog.setStudentId(studentId);
-            exerciseLog.setQuestionId(questionId);
-            exerciseLog.setResult(isCorrect ? 1 : 0);
-            exerciseLog.setDuration(duration);
-            exerciseLog.setSubmitTime(LocalDateTime.parse(submitTimeStr));
-            logMapper.insert(exerciseLog);
-
-            // 2. Update Mistake Book (if wrong)
-            if (!isCorrect) {
-                MistakeBook mistake = mistakeBookMapper.selectOne(new LambdaQueryWrapper<MistakeBook>()
-                        .eq(MistakeBook::getStudentId, studentId)
-                        .eq(MistakeBook::getQuestionId, questionId));
-
-                if (mistake == null) {
-                    mistake = new MistakeBook();
-                    mistake.setStudentId(studentId);
-                    mistake.setQuestionId(questionId);
-                    mistake.setErrorCount(1);
-                    mistake.setIsResolved(0);
-                    mistake.setLastErrorTime(LocalDateTime.now());
-                    mistakeBookMapper.insert(mistake);
+    /**
+     * 死信投递失败时抛出：批次不会被标记为已回调，由容器重试 / 重投后重新回调
+     */
+    private void dispatch(PracticeLogSubscriber subscriber, List<PracticeLogMessage> batch) {
+        String name = subscriberName(subscriber);
+        int attempts = Math.max(1, subscriberAttempts);
+        for (int attempt = 1; attempt <= attempts; attempt++) {
+            try {
+                subscriber.onPracticeLogs(batch);
+                return;
+            } catch (Exception e) {
+                if (attempt < attempts) {
+                    log.warn("Practice log subscriber {} failed (attempt {}/{}), retrying", name, attempt, attempts, e);
                 } else {
-                    mistake.setErrorCount(mistake.getErrorCount() + 1);
-                    mistake.setLastErrorTime(LocalDateTime.now());
-                    mistake.setIsResolved(0);
-                    mistakeBookMapper.updateById(mistake);
+                    log.error("Practice log subscriber {} failed after {} attempts, dead-lettering {} logs",
+                            name, attempts, batch.size(), e);
+                }
+            }
+        }
+        MessageProperties properties = new MessageProperties();
+        properties.setContentType(PracticeLogCodec.BATCH_CONTENT_TYPE);
+        properties.setDeliveryMode(MessageDeliveryMode.PERSISTENT);
+        properties.setHeader(SUBSCRIBER_HEADER, name);
+        List<String> messageIds = new ArrayList<>(batch.size());
+        for (PracticeLogMessage message : batch) {
+            messageIds.add(message.messageId() != null ? message.messageId() : "");
+        }
+        properties.setHeader(MESSAGE_IDS_HEADER, String.join(",", messageIds));
+        rabbitTemplate.send(RabbitConfig.PRACTICE_SUBSCRIBER_DLQ,
+                new Message(PracticeLogCodec.encodeBatch(batch), properties));
+    }
+
+    /**
+     * 标记失败只会让重投的消息再回调一次 (订阅者幂等)，不影响本批 ACK
+     */
+    private void markDispatched(List<PracticeLogMessage> batch) {
+        List<String> messageIds = new ArrayList<>(batch.size());
+        for (PracticeLogMessage message : batch) {
+            if (message.messageId() != null) {
+                messageIds.add(message.messageId());
+            }
+        }
+        if (messageIds.isEmpty()) {
+            return;
+        }
+        try {
+            logMapper.markDispatched(messageIds);
+        } catch (RuntimeException e) {
+            log.warn("Failed to mark {} practice logs as dispatched", messageIds.size(), e);
+        }
+    }
+
+    private static List<PracticeLogMessage> withMessageIds(List<PracticeLogMessage> batch, Object header) {
+        if (header == null) {
+            return batch;
+        }
+        String[] messageIds = header.toString().split(",", -1);
+        if (messageIds.length != batch.size()) {
+            return batch;
+        }
+        List<PracticeLogMessage> result = new ArrayList<>(batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            result.add(batch.get(i).withMessageId(messageIds[i].isEmpty() ? null : messageIds[i]));
+        }
+        return result;
+    }
+
+    private static String subscriberName(PracticeLogSubscriber subscriber) {
+        return AopUtils.getTargetClass(subscriber).getName();
+    }
+
+    /**
+     * @return 需要回调订阅者的消息：本次新入库的，以及已入库但回调未完成的重投消息
+     */
+    private List<PracticeLogMessage> persist(List<Delivery> deliveries) {
+        Set<String> seen = new HashSet<>();
+        for (Delivery delivery : deliveries) {
+            if (delivery.messageId() != null) {
+                seen.add(delivery.messageId());
+            }
+        }
+        Map<String, Integer> persisted = new HashMap<>();
+        if (!seen.isEmpty()) {
+            for (StudentExerciseLog row : logMapper.selectByMessageIds(seen)) {
+                persisted.put(row.getMessageId(), row.getDispatched());
+            }
+            seen.clear();
+        }
+
+        List<PracticeLogMessage> batch = new ArrayList<>(deliveries.size());
+        List<PracticeLogMessage> dispatch = new ArrayList<>(deliveries.size());
+        List<StudentExerciseLog> logs = new ArrayList<>(deliveries.size());
+        Map<MistakeKey, MistakeBook> mistakes = new LinkedHashMap<>();
+
+        for (Delivery delivery : deliveries) {
+            PracticeLogMessage message = delivery.message();
+            if (delivery.messageId() != null) {
+                // 同一批内重复的消息 ID 只保留第一条
+                if (!seen.add(delivery.messageId())) {
+                    continue;
+                }
+                if (persisted.containsKey(delivery.messageId())) {
+                    if (Integer.valueOf(0).equals(persisted.get(delivery.messageId()))) {
+                        dispatch.add(message);
+                    }
+                    continue;
                 }
             }
+            batch.add(message);
+            dispatch.add(message);
+            LocalDateTime submitTime = toLocalDateTime(message.submitTimeMillis());
+
+            StudentExerciseLog exerciseLog = new StudentExerciseLog();
+            exerciseLog.setStudentId(message.studentId());
+            exerciseLog.setQuestionId(message.questionId());
+            exerciseLog.setResult(message.correct() ? 1 : 0);
+            exerciseLog.setDuration(message.duration());
+            exerciseLog.setSubmitTime(submitTime);
+            exerciseLog.setMessageId(delivery.messageId());
+            exerciseLog.setDispatched(delivery.messageId() != null ? 0 : 1);
+            logs.add(exerciseLog);
+
+            if (!message.correct()) {
+                MistakeBook mistake = mistakes.computeIfAbsent(
+                        new MistakeKey(message.studentId(), message.questionId()), k -> {
+                            MistakeBook m = new MistakeBook();
+                            m.setStudentId(k.studentId());
+                            m.setQuestionId(k.questionId());
+                            m.setErrorCount(0);
+                            m.setLastErrorTime(submitTime);
+                            return m;
+                        });
+                mistake.setErrorCount(mistake.getErrorCount() + 1);
+                if (submitTime.isAfter(mistake.getLastErrorTime())) {
+                    mistake.setLastErrorTime(submitTime);
+                }
+            }
+        }
+
+        if (logs.isEmpty()) {
+            return dispatch;
+        }
+        persistHooks.orderedStream().forEach(hook -> hook.onPersist(batch));
+        logMapper.batchInsert(logs);
+        if (!mistakes.isEmpty()) {
+            mistakeBookMapper.batchUpsertErrors(new ArrayList<>(mistakes.values()));
+        }
+        return dispatch;
+    }
+
+    private PracticeLogMessage decode(Message message) {
+        if (PracticeLogCodec.CONTENT_TYPE.equals(message.getMessageProperties().getContentType())) {
+            return PracticeLogCodec.decode(message.getBody());
+        }
+        // 兼容升级前队列中残留的 JSON Map 消息
+        @SuppressWarnings("unchecked")
+        Map<String, Object> map = (Map<String, Object>) jsonMessageConverter.fromMessage(message);
+        LocalDateTime submitTime = LocalDateTime.parse(map.get("submitTime").toString());
+        return new PracticeLogMessage(
+                Long.parseLong(map.get("studentId").toString()),
+                Long.parseLong(map.get("questionId").toString()),
+                Boolean.parseBoolean(map.get("isCorrect").toString()),
+                Integer.parseInt(map.get("duration").toString()),
+                submitTime.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli(),
+                null);
+    }
+
+    private static LocalDateTime toLocalDateTime(long epochMillis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZoneId.systemDefault());
+    }
+
+    private record MistakeKey(long studentId, long questionId) {}
+
+    private record Delivery(Message raw, PracticeLogMessage message) {
 
-        } catch (Exception e) {
-            log.error("Failed to process practice log", e);
-            // In production: DLQ or retry
+        String messageId() {
+            return message.messageId();
         }
     }
 }
@@ -0,0 +1,83 @@
+package com.edtech.core.mq;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 答题日志定长二进制编解码
+ * <pre>
+ * offset  size  field
+ * 0       1     version
+ * 1       8     studentId
+ * 9       8     questionId
+ * 17      1     flags (bit0 = correct)
+ * 18      4     duration
+ * 22      8     submitTimeMillis
+ * </pre>
+ * 共 30 字节，大端序。多条消息首尾相接编码为一个批次 (订阅者死信)。
+ */
+public final class PracticeLogCodec {
+
+    public static final String CONTENT_TYPE = "application/x-edtech-practice-log";
+    public static final String BATCH_CONTENT_TYPE = "application/x-edtech-practice-log-batch";
+
+    public static final byte VERSION = 1;
+    public static final int LENGTH = 30;
+
+    private static final byte FLAG_CORRECT = 1;
+
+    private PracticeLogCodec() {
+    }
+
+    public static byte[] encode(PracticeLogMessage message) {
+        byte[] bytes = new byte[LENGTH];
+        ByteBuffer.wrap(bytes)
+                .put(VERSION)
+                .putLong(message.studentId())
+                .putLong(message.questionId())
+                .put(message.correct() ? FLAG_CORRECT : 0)
+                .putInt(message.duration())
+                .putLong(message.submitTimeMillis());
+        return bytes;
+    }
+
+    public static byte[] encodeBatch(List<PracticeLogMessage> messages) {
+        byte[] bytes = new byte[LENGTH * messages.size()];
+        for (int i = 0; i < messages.size(); i++) {
+            System.arraycopy(encode(messages.get(i)), 0, bytes, i * LENGTH, LENGTH);
+        }
+        return bytes;
+    }
+
+    public static List<PracticeLogMessage> decodeBatch(byte[] bytes) {
+        if (bytes == null || bytes.length % LENGTH != 0) {
+            throw new IllegalArgumentException("Invalid practice log batch length: " + (bytes == null ? 0 : bytes.length));
+        }
+        List<PracticeLogMessage> messages = new ArrayList<>(bytes.length / LENGTH);
+        for (int offset = 0; offset < bytes.length; offset += LENGTH) {
+            messages.add(decode(ByteBuffer.wrap(bytes, offset, LENGTH)));
+        }
+        return messages;
+    }
+
+    public static PracticeLogMessage decode(byte[] bytes) {
+        if (bytes == null || bytes.length < LENGTH) {
+            throw new IllegalArgumentException("Invalid practice log payload length: " + (bytes == null ? 0 : bytes.length));
+        }
+        return decode(ByteBuffer.wrap(bytes));
+    }
+
+    private static PracticeLogMessage decode(ByteBuffer buf) {
+        byte version = buf.get();
+        if (version != VERSION) {
+            throw new IllegalArgumentException("Unsupported practice log version: " + version);
+        }
+        long studentId = buf.getLong();
+        long questionId = buf.getLong();
+        boolean correct = (buf.get() & FLAG_CORRECT) != 0;
+        int duration = buf.getInt();
+        long submitTimeMillis = buf.getLong();
+        return new PracticeLogMessage(studentId, questionId, correct, duration, submitTimeMillis, null);
+    }
+}
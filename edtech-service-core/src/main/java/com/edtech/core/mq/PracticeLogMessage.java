@@ -0,0 +1,19 @@
+package com.edtech.core.mq;
+
+/**
+ * 答题日志消息 (practice.log.queue)
+ *
+ * @param studentId      学生ID
+ * @param questionId     题目ID
+ * @param correct        是否正确
+ * @param duration       耗时 (秒)
+ * @param submitTimeMillis 提交时间 (epoch millis)
+ * @param messageId      MQ 消息 ID，随消息属性传递而不在二进制体中 (升级前的消息为 null)
+ */
+public record PracticeLogMessage(long studentId, long questionId, boolean correct, int duration, long submitTimeMillis,
+                                 String messageId) {
+
+    public PracticeLogMessage withMessageId(String messageId) {
+        return new PracticeLogMessage(studentId, questionId, correct, duration, submitTimeMillis, messageId);
+    }
+}
@@ -0,0 +1,14 @@
+package com.edtech.core.mq;
+
+import java.util.List;
+
+/**
+ * 与答题记录同一事务写入的派生数据 (每日汇总等)
+ * <p>
+ * PracticeConsumer 在答题记录入库的事务内回调，只传入本次新入库的消息；
+ * 抛出异常时答题记录与派生数据一起回滚，两者不会出现偏差。
+ */
+public interface PracticeLogPersistHook {
+
+    void onPersist(List<PracticeLogMessage> batch);
+}
@@ -0,0 +1,16 @@
+package com.edtech.core.mq;
+
+import java.util.List;
+
+/**
+ * 答题日志批次订阅者
+ * <p>
+ * PracticeConsumer 在答题记录/错题本事务提交后，按批次回调所有订阅者
+ * (知识追踪、练习策略状态等)。重投的消息已去重，正常情况下订阅者只收到新入库的记录。
+ * 失败时应直接抛出，不要吞掉：重试仍失败后批次进入该订阅者的死信队列，由管理端重放。
+ * 重试、重放以及提交后回调前崩溃的重投都会再次送来同一消息，实现需按 {@link PracticeLogMessage#messageId()} 幂等。
+ */
+public interface PracticeLogSubscriber {
+
+    void onPracticeLogs(List<PracticeLogMessage> batch);
+}
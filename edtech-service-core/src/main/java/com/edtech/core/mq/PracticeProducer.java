@@ -3,12 +3,13 @@ package com.edtech.core.mq;
 import com.edtech.core.config.RabbitConfig;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageDeliveryMode;
+import org.springframework.amqp.core.MessageProperties;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
 import org.springframework.stereotype.Service;
 
-import java.time.LocalDateTime;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.UUID;
 
 @Service
 @Slf4j
@@ -18,14 +19,16 @@ public class PracticeProducer {
     private final RabbitTemplate rabbitTemplate;
 
     public void sendPracticeLog(Long studentId, Long questionId, boolean isCorrect, int duration) {
-        Map<String, Object> message = new HashMap<>();
-        message.put("studentId", studentId);
-        message.put("questionId", questionId);
-        message.put("isCorrect", isCorrect);
-        message.put("duration", duration);
-        message.put("submitTime", LocalDateTime.now().toString());
+        PracticeLogMessage message = new PracticeLogMessage(studentId, questionId, isCorrect, duration,
+                System.currentTimeMillis(), UUID.randomUUID().toString());
 
-        log.info("Sending practice log for student: {}, question: {}", studentId, questionId);
-        rabbitTemplate.convertAndSend(RabbitConfig.PRACTICE_LOG_QUEUE, message);
+        MessageProperties properties = new MessageProperties();
+        properties.setContentType(PracticeLogCodec.CONTENT_TYPE);
+        properties.setDeliveryMode(MessageDeliveryMode.PERSISTENT);
+        // 消费端按消息 ID 去重，重投时不会重复写入答题记录、重复回调订阅者
+        properties.setMessageId(message.messageId());
+
+        log.debug("Sending practice log for student: {}, question: {}", studentId, questionId);
+        rabbitTemplate.send(RabbitConfig.PRACTICE_LOG_QUEUE, new Message(PracticeLogCodec.encode(message), properties));
     }
 }
@@ -1,12 +1,19 @@
 package com.edtech.core.util;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.RedisOperations;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.core.script.RedisScript;
 import org.springframework.stereotype.Component;
 
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 @Component
 @RequiredArgsConstructor
@@ -27,6 +34,18 @@ public class RedisUtils {
         redisTemplate.delete(key);
     }
 
+    public boolean hasKey(String key) {
+        return Boolean.TRUE.equals(redisTemplate.hasKey(key));
+    }
+
+    public void expire(String key, long timeout, TimeUnit unit) {
+        redisTemplate.expire(key, timeout, unit);
+    }
+
+    public void rename(String oldKey, String newKey) {
+        redisTemplate.rename(oldKey, newKey);
+    }
+
     // --- Hash Operations ---
     public void hSet(String key, String hashKey, Object value) {
         redisTemplate.opsForHash().put(key, hashKey, value);
@@ -62,6 +81,10 @@ public class RedisUtils {
         return redisTemplate.opsForZSet().score(key, value);
     }
 
+    public Set<ZSetOperations.TypedTuple<Object>> zReverseRangeWithScores(String key, long start, long end) {
+        return redisTemplate.opsForZSet().reverseRangeWithScores(key, start, end);
+    }
+
     // --- List Operations ---
     public void lPush(String key, Object value) {
         redisTemplate.opsForList().leftPush(key, value);
@@ -71,7 +94,31 @@ public class RedisUtils {
         redisTemplate.opsForList().trim(key, start, end);
     }
     
-    public java.util.List<Object> lRange(String key, long start, long end) {
+    public List<Object> lRange(String key, long start, long end) {
         return redisTemplate.opsForList().range(key, start, end);
     }
+
+    // --- Pipelined Batch Operations ---
+
+    /**
+     * 在一次往返中执行多条命令 (Pipeline)
+     * 回调内通过 operations 发出的命令均返回 null，结果按发出顺序 (已反序列化) 返回
+     */
+    public List<Object> executePipelined(Consumer<RedisOperations<String, Object>> commands) {
+        return redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> Object execute(RedisOperations<K, V> operations) throws DataAccessException {
+                commands.accept((RedisOperations<String, Object>) operations);
+                return null;
+            }
+        });
+    }
+
+    /**
+     * 执行 Lua 脚本 (EVALSHA，脚本未加载时自动回退 EVAL)，参数按值序列化器 (JSON) 编码
+     */
+    public <T> T execute(RedisScript<T> script, List<String> keys, Object... args) {
+        return redisTemplate.execute(script, keys, args);
+    }
 }
@@ -1,9 +1,12 @@
 package com.edtech.kt.config;
 
+import com.edtech.kt.service.StudentMasteryCache;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
 
@@ -25,4 +28,16 @@ public class RedisConfig {
         
         return template;
     }
+
+    /**
+     * 掌握度近端缓存的跨节点失效广播
+     */
+    @Bean
+    public RedisMessageListenerContainer redisMessageListenerContainer(RedisConnectionFactory connectionFactory,
+                                                                       StudentMasteryCache studentMasteryCache) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        container.addMessageListener(studentMasteryCache, new ChannelTopic(StudentMasteryCache.CHANNEL));
+        return container;
+    }
 }
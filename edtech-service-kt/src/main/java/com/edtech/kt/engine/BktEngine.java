@@ -0,0 +1,48 @@
+package com.edtech.kt.engine;
+
+import com.edtech.kt.service.BktParameterRegistry.BktParams;
+import com.edtech.kt.service.KnowledgeTracingService;
+import org.springframework.stereotype.Component;
+
+/**
+ * 贝叶斯知识追踪 (默认引擎)，状态为 [P(L)]
+ * <p>
+ * 在线更新仍走 {@link com.edtech.kt.service.AtomicKnowledgeStateStore} 的 Lua 脚本 (与本实现计算一致)，
+ * 状态即 student:state 中的掌握度，不另存引擎状态。
+ */
+@Component
+public class BktEngine implements KnowledgeTracingEngine {
+
+    public static final String NAME = "bkt";
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public int stateSize() {
+        return 1;
+    }
+
+    @Override
+    public void init(BktParams params, double[] state, int offset) {
+        state[offset] = params.pInit();
+    }
+
+    @Override
+    public void seed(BktParams params, double[] state, int offset, double mastery) {
+        state[offset] = mastery;
+    }
+
+    @Override
+    public void update(BktParams params, double[] state, int offset, boolean correct) {
+        state[offset] = KnowledgeTracingService.calculateNewProbabilityBKT(state[offset], correct,
+                params.pTransit(), params.pGuess(), params.pSlip());
+    }
+
+    @Override
+    public double predict(BktParams params, double[] state, int offset) {
+        return state[offset];
+    }
+}
@@ -0,0 +1,167 @@
+package com.edtech.kt.engine;
+
+import com.edtech.kt.service.BktParameterRegistry.BktParams;
+import com.edtech.kt.service.KnowledgePointSlots;
+import com.edtech.kt.service.MasteryStateStore;
+import com.edtech.kt.service.StudentMasteryIndex;
+import lombok.RequiredArgsConstructor;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
+import org.springframework.scripting.support.ResourceScriptSource;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.DoubleSupplier;
+
+/**
+ * 非 BKT 引擎的学生状态 (kt:engine:state:{studentId})
+ * <p>
+ * 字段 {知识点ID} 存 "引擎名|v0,v1,..."，字段 {知识点ID}:v 存版本号。
+ * 在线更新为 HMGET 读状态与版本 -> 引擎在 Java 中更新 -> Lua 按版本比较写回，冲突时重读重试；
+ * 引擎名不符 (知识点切换了引擎) 或状态缺失时，由已有掌握度经 {@link KnowledgeTracingEngine#seed} 反推初始状态。
+ * 推导出的掌握度与 {@link StudentMasteryIndex} 在同一次 Lua 执行中写入 {@link MasteryStateStore}，
+ * 并发更新按版本顺序落地 (与 bkt_update.lua 一致)，读取方不感知引擎。
+ */
+@Service
+@RequiredArgsConstructor
+public class EngineStateStore {
+
+    public static final String KEY = "kt:engine:state:";
+    private static final String VERSION_SUFFIX = ":v";
+    private static final long TTL_SECONDS = TimeUnit.DAYS.toSeconds(7);
+    private static final int MAX_ATTEMPTS = 5;
+
+    private static final RedisScript<Long> CAS = casScript();
+
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final MasteryStateStore stateStore;
+    private final KnowledgePointSlots slots;
+
+    public static String key(Object studentId) {
+        return KEY + studentId;
+    }
+
+    /**
+     * 读取 - 更新 - 按版本写回，版本冲突时重试
+     *
+     * @param persisted 状态缺失时的已有掌握度 (写后缓冲 / MySQL / P(L0))
+     * @throws IllegalStateException 连续冲突超过重试次数
+     */
+    public Update update(Long studentId, Long kpId, KnowledgeTracingEngine engine, BktParams params,
+                         boolean isCorrect, DoubleSupplier persisted) {
+        byte[] key = raw(key(studentId));
+        byte[] field = raw(kpId.toString());
+        byte[] versionField = raw(kpId + VERSION_SUFFIX);
+        double[] state = new double[engine.stateSize()];
+        // packed 格式在脚本内写槽位，重试前解析一次
+        String slot = stateStore.isPacked() ? Integer.toString(slots.slotOf(kpId)) : "";
+        for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+            List<byte[]> values = redisTemplate.execute((RedisCallback<List<byte[]>>) connection ->
+                    connection.hashCommands().hMGet(key, field, versionField));
+            byte[] encoded = values != null ? values.get(0) : null;
+            byte[] version = values != null ? values.get(1) : null;
+            long expected = version != null ? Long.parseLong(text(version)) : 0;
+
+            if (!decode(encoded, engine, state)) {
+                engine.seed(params, state, 0, persisted.getAsDouble());
+            }
+            double oldProb = engine.predict(params, state, 0);
+            engine.update(params, state, 0, isCorrect);
+            double newProb = engine.predict(params, state, 0);
+
+            long next = compareAndSet(studentId, kpId, expected, encode(engine, state, 0), newProb, slot);
+            if (next >= 0) {
+                return new Update(oldProb, newProb, next);
+            }
+        }
+        throw new IllegalStateException("Engine state update conflict: student " + studentId + ", kp " + kpId);
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private long compareAndSet(Long studentId, Long kpId, long expected, String encoded, double newProb, String slot) {
+        RedisSerializer text = StringRedisSerializer.UTF_8;
+        String stateKey = slot.isEmpty() ? MasteryStateStore.hashKey(studentId) : MasteryStateStore.vectorKey(studentId);
+        Object result = redisTemplate.execute(CAS, text, text,
+                List.of(key(studentId), stateKey, StudentMasteryIndex.masteryKey(studentId),
+                        StudentMasteryIndex.weakKpsKey(studentId)),
+                kpId.toString(), Long.toString(expected), encoded, Long.toString(TTL_SECONDS),
+                Double.toString(newProb), slot);
+        return result instanceof Number n ? n.longValue() : -1;
+    }
+
+    /**
+     * 在调用方的管道内无条件写入 (批量重放)，同时推进版本使并发中的在线更新重读
+     *
+     * @param states 知识点ID -> {@link #encode} 结果
+     */
+    public static void write(RedisConnection connection, Long studentId, Map<Long, String> states) {
+        byte[] key = raw(key(studentId));
+        states.forEach((kpId, encoded) -> {
+            connection.hashCommands().hSet(key, raw(kpId.toString()), raw(encoded));
+            connection.hashCommands().hIncrBy(key, raw(kpId + VERSION_SUFFIX), 1);
+        });
+        connection.keyCommands().expire(key, TTL_SECONDS);
+    }
+
+    public static String encode(KnowledgeTracingEngine engine, double[] state, int offset) {
+        StringBuilder sb = new StringBuilder(engine.name()).append('|');
+        for (int i = 0; i < engine.stateSize(); i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append(state[offset + i]);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @return 状态存在且属于该引擎时返回 true 并写入 state
+     */
+    private static boolean decode(byte[] encoded, KnowledgeTracingEngine engine, double[] state) {
+        if (encoded == null) {
+            return false;
+        }
+        String value = text(encoded);
+        int bar = value.indexOf('|');
+        if (bar < 0 || !engine.name().equals(value.substring(0, bar))) {
+            return false;
+        }
+        String[] parts = value.substring(bar + 1).split(",");
+        if (parts.length != engine.stateSize()) {
+            return false;
+        }
+        for (int i = 0; i < parts.length; i++) {
+            state[i] = Double.parseDouble(parts[i]);
+        }
+        return true;
+    }
+
+    private static byte[] raw(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String text(byte[] value) {
+        return new String(value, StandardCharsets.UTF_8);
+    }
+
+    private static RedisScript<Long> casScript() {
+        DefaultRedisScript<Long> script = new DefaultRedisScript<>();
+        script.setScriptSource(new ResourceScriptSource(new ClassPathResource("lua/engine_state_cas.lua")));
+        script.setResultType(Long.class);
+        return script;
+    }
+
+    /**
+     * @param version 引擎状态版本号 (写后缓冲按版本合并)
+     */
+    public record Update(double oldProb, double newProb, long version) {}
+}
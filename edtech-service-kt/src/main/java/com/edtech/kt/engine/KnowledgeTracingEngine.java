@@ -0,0 +1,45 @@
+package com.edtech.kt.engine;
+
+import com.edtech.kt.service.BktParameterRegistry.BktParams;
+
+/**
+ * 知识追踪引擎 SPI
+ * <p>
+ * 引擎无状态：单个 (学生, 知识点) 的状态是调用方持有的 double 数组中 [offset, offset + stateSize()) 一段，
+ * update / predict 原地读写、不分配对象，在线更新 ({@link EngineStateStore}) 与批量重放
+ * (以知识点序号为下标的大数组) 共用同一实现。
+ * 知识点参数统一取自 {@link com.edtech.kt.service.BktParameterRegistry}，引擎按需解释。
+ * 按知识点 / 学科选择引擎见 {@link KnowledgeTracingEngines}。
+ */
+public interface KnowledgeTracingEngine {
+
+    /**
+     * 引擎名 (配置 kt.engine.* 与 Redis 中状态编码使用)
+     */
+    String name();
+
+    /**
+     * 单个知识点状态占用的 double 个数
+     */
+    int stateSize();
+
+    /**
+     * 写入未作答时的初始状态
+     */
+    void init(BktParams params, double[] state, int offset);
+
+    /**
+     * 由已有掌握度 (库中值 / 切换引擎前的结果) 反推状态，使 predict 尽量还原该掌握度
+     */
+    void seed(BktParams params, double[] state, int offset, double mastery);
+
+    /**
+     * 一次作答后原地更新状态
+     */
+    void update(BktParams params, double[] state, int offset, boolean correct);
+
+    /**
+     * 当前掌握度 (0-1)，写入掌握度存储、选题索引与 knowledge_state
+     */
+    double predict(BktParams params, double[] state, int offset);
+}
@@ -0,0 +1,132 @@
+package com.edtech.kt.engine;
+
+import com.edtech.common.collection.LongIntHashMap;
+import com.edtech.model.entity.KnowledgePoint;
+import com.edtech.model.mapper.KnowledgePointMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 按知识点选择知识追踪引擎
+ * <p>
+ * 优先级：kt.engine.knowledge-points (知识点ID=引擎) > kt.engine.subjects (学科=引擎) > kt.engine.default。
+ * 选择结果按知识点缓存 (写时复制)，知识点被修改后调用 {@link #invalidate()}。
+ */
+@Service
+@Slf4j
+public class KnowledgeTracingEngines {
+
+    private static final int UNRESOLVED = -1;
+
+    private final KnowledgePointMapper knowledgePointMapper;
+    private final KnowledgeTracingEngine[] engines;
+    private final int defaultEngine;
+    private final Map<String, Integer> bySubject;
+    private final LongIntHashMap byKnowledgePoint;
+    private final int maxStateSize;
+
+    private volatile LongIntHashMap resolved = new LongIntHashMap(16, UNRESOLVED);
+
+    public KnowledgeTracingEngines(List<KnowledgeTracingEngine> engines,
+                                   KnowledgePointMapper knowledgePointMapper,
+                                   @Value("${kt.engine.default:bkt}") String defaultEngine,
+                                   @Value("${kt.engine.subjects:}") String subjects,
+                                   @Value("${kt.engine.knowledge-points:}") String knowledgePoints) {
+        this.knowledgePointMapper = knowledgePointMapper;
+        this.engines = engines.toArray(new KnowledgeTracingEngine[0]);
+        this.defaultEngine = indexOf(defaultEngine);
+        this.bySubject = new HashMap<>();
+        parse(subjects).forEach((subject, engine) -> bySubject.put(subject, indexOf(engine)));
+        this.byKnowledgePoint = new LongIntHashMap(16, UNRESOLVED);
+        parse(knowledgePoints).forEach((kpId, engine) -> byKnowledgePoint.put(Long.parseLong(kpId), indexOf(engine)));
+        int max = 0;
+        for (KnowledgeTracingEngine engine : this.engines) {
+            max = Math.max(max, engine.stateSize());
+        }
+        this.maxStateSize = max;
+        log.info("Knowledge tracing engines: default={}, subjects={}, knowledge points={}",
+                defaultEngine, subjects, knowledgePoints);
+    }
+
+    /**
+     * 知识点使用的引擎；按学科选择时首次访问查询一次知识点
+     */
+    public KnowledgeTracingEngine engineFor(long kpId) {
+        int index = byKnowledgePoint.get(kpId);
+        if (index != UNRESOLVED) {
+            return engines[index];
+        }
+        if (bySubject.isEmpty()) {
+            return engines[defaultEngine];
+        }
+        index = resolved.get(kpId);
+        if (index == UNRESOLVED) {
+            index = resolve(kpId);
+        }
+        return engines[index];
+    }
+
+    public boolean isBkt(KnowledgeTracingEngine engine) {
+        return BktEngine.NAME.equals(engine.name());
+    }
+
+    /**
+     * 所有引擎中最大的单知识点状态长度 (批量重放按此步长展开数组)
+     */
+    public int maxStateSize() {
+        return maxStateSize;
+    }
+
+    /**
+     * 知识点学科被修改后调用
+     */
+    public synchronized void invalidate() {
+        resolved = new LongIntHashMap(16, UNRESOLVED);
+    }
+
+    private synchronized int resolve(long kpId) {
+        int index = resolved.get(kpId);
+        if (index != UNRESOLVED) {
+            return index;
+        }
+        KnowledgePoint kp = knowledgePointMapper.selectById(kpId);
+        Integer bySubjectIndex = kp != null && kp.getSubject() != null ? bySubject.get(kp.getSubject()) : null;
+        index = bySubjectIndex != null ? bySubjectIndex : defaultEngine;
+        LongIntHashMap next = resolved.copy();
+        next.put(kpId, index);
+        resolved = next;
+        return index;
+    }
+
+    private int indexOf(String name) {
+        for (int i = 0; i < engines.length; i++) {
+            if (engines[i].name().equalsIgnoreCase(name.trim())) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("Unknown knowledge tracing engine: " + name);
+    }
+
+    /**
+     * "a=x,b=y" 形式的配置
+     */
+    private static Map<String, String> parse(String value) {
+        Map<String, String> result = new HashMap<>();
+        if (value == null || value.isBlank()) {
+            return result;
+        }
+        for (String pair : value.split(",")) {
+            int eq = pair.indexOf('=');
+            if (eq <= 0) {
+                throw new IllegalArgumentException("Invalid engine mapping: " + pair);
+            }
+            result.put(pair.substring(0, eq).trim(), pair.substring(eq + 1).trim());
+        }
+        return result;
+    }
+}
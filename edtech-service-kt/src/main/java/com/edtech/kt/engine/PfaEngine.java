@@ -0,0 +1,78 @@
+package com.edtech.kt.engine;
+
+import com.edtech.kt.service.BktParameterRegistry.BktParams;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Performance Factor Analysis (逻辑回归)，状态为 [答对次数, 答错次数]
+ * <p>
+ * m = β + γ·s + ρ·f，P = 1 / (1 + e^-m)。β 取 logit(P(L0))，未作答时与 BKT 初始值一致；
+ * γ / ρ 为全局权重 (kt.engine.pfa.*)。更新只是计数加一，适合答题量大的学科。
+ */
+@Component
+public class PfaEngine implements KnowledgeTracingEngine {
+
+    public static final String NAME = "pfa";
+
+    private static final int SUCCESSES = 0;
+    private static final int FAILURES = 1;
+    private static final double MIN_PROB = 0.0001;
+    private static final double MAX_PROB = 0.9999;
+
+    @Value("${kt.engine.pfa.success-weight:0.25}")
+    private double gamma;
+
+    @Value("${kt.engine.pfa.failure-weight:-0.1}")
+    private double rho;
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    @Override
+    public int stateSize() {
+        return 2;
+    }
+
+    @Override
+    public void init(BktParams params, double[] state, int offset) {
+        state[offset + SUCCESSES] = 0;
+        state[offset + FAILURES] = 0;
+    }
+
+    /**
+     * 高于初始值折算为答对次数，低于初始值折算为答错次数 (计数可为小数)
+     */
+    @Override
+    public void seed(BktParams params, double[] state, int offset, double mastery) {
+        init(params, state, offset);
+        double delta = logit(mastery) - logit(params.pInit());
+        if (delta > 0 && gamma > 0) {
+            state[offset + SUCCESSES] = delta / gamma;
+        } else if (delta < 0 && rho < 0) {
+            state[offset + FAILURES] = delta / rho;
+        }
+    }
+
+    @Override
+    public void update(BktParams params, double[] state, int offset, boolean correct) {
+        state[offset + (correct ? SUCCESSES : FAILURES)] += 1;
+    }
+
+    /**
+     * sigmoid(logit(p0) + d) = p0 / (p0 + (1 - p0)·e^-d)，省去对 β 的 log
+     */
+    @Override
+    public double predict(BktParams params, double[] state, int offset) {
+        double p0 = Math.max(MIN_PROB, Math.min(MAX_PROB, params.pInit()));
+        double d = gamma * state[offset + SUCCESSES] + rho * state[offset + FAILURES];
+        return Math.max(MIN_PROB, Math.min(MAX_PROB, p0 / (p0 + (1 - p0) * Math.exp(-d))));
+    }
+
+    private static double logit(double p) {
+        double clamped = Math.max(MIN_PROB, Math.min(MAX_PROB, p));
+        return Math.log(clamped / (1 - clamped));
+    }
+}
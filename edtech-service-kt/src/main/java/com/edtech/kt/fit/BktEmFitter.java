@@ -0,0 +1,223 @@
+package com.edtech.kt.fit;
+
+import com.edtech.kt.service.BktParameterRegistry.BktParams;
+
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * BKT 参数 EM (Baum-Welch) 估计
+ * <p>
+ * 两状态 HMM (未掌握 U / 已掌握 L，不遗忘)：
+ * P(L0)=pInit，U->L 转移概率 pTransit，P(对|U)=pGuess，P(错|L)=pSlip。
+ * E 步按学生序列做带缩放的前向-后向，序列区间在 fork-join 池中递归拆分并行计算；
+ * M 步用期望计数更新参数，并将 guess/slip 限制在 {@link #MAX_GUESS_SLIP} 以内，避免模型退化
+ * (高 guess/slip 时 "已掌握" 与 "未掌握" 两个状态可以互换)。
+ */
+public final class BktEmFitter {
+
+    public static final double MIN_PROB = 0.0001;
+    public static final double MAX_PROB = 0.9999;
+    public static final double MAX_GUESS_SLIP = 0.3;
+
+    /** 期望计数下标 */
+    private static final int INIT_L = 0;
+    private static final int SEQUENCES = 1;
+    private static final int TRANSIT_UL = 2;
+    private static final int FROM_U = 3;
+    private static final int U_CORRECT = 4;
+    private static final int IN_U = 5;
+    private static final int L_WRONG = 6;
+    private static final int IN_L = 7;
+    private static final int LOG_LIKELIHOOD = 8;
+    private static final int STATS_LENGTH = 9;
+
+    /** 单个 fork-join 子任务至少处理的观测数 */
+    private static final int SPLIT_THRESHOLD = 8192;
+
+    private static final ThreadLocal<double[]> SCRATCH = ThreadLocal.withInitial(() -> new double[256]);
+
+    private final int maxIterations;
+    private final double tolerance;
+
+    public BktEmFitter(int maxIterations, double tolerance) {
+        this.maxIterations = maxIterations;
+        this.tolerance = tolerance;
+    }
+
+    /**
+     * 拟合单个知识点，需在 fork-join 池中调用以便 E 步并行
+     *
+     * @param initial 初始参数 (通常为当前线上参数)
+     */
+    public Fit fit(ObservationSequences data, BktParams initial) {
+        BktParams params = clamp(initial);
+        double[] stats = expectation(data, params);
+        double initialLogLikelihood = stats[LOG_LIKELIHOOD];
+        double logLikelihood = initialLogLikelihood;
+        int iterations = 0;
+
+        while (iterations < maxIterations) {
+            BktParams next = maximization(stats, params);
+            double[] nextStats = expectation(data, next);
+            iterations++;
+            double improvement = nextStats[LOG_LIKELIHOOD] - logLikelihood;
+            if (improvement < 0) {
+                // 受限 M 步偶尔会使似然下降，保留上一组参数
+                break;
+            }
+            params = next;
+            stats = nextStats;
+            logLikelihood = nextStats[LOG_LIKELIHOOD];
+            if (improvement <= tolerance * Math.max(1.0, Math.abs(logLikelihood))) {
+                break;
+            }
+        }
+        return new Fit(params, initialLogLikelihood, logLikelihood, iterations);
+    }
+
+    private double[] expectation(ObservationSequences data, BktParams params) {
+        return new EStepTask(data, params, 0, data.sequenceCount()).invoke();
+    }
+
+    private static BktParams maximization(double[] s, BktParams previous) {
+        return clamp(new BktParams(
+                ratio(s[INIT_L], s[SEQUENCES], previous.pInit()),
+                ratio(s[TRANSIT_UL], s[FROM_U], previous.pTransit()),
+                Math.min(MAX_GUESS_SLIP, ratio(s[U_CORRECT], s[IN_U], previous.pGuess())),
+                Math.min(MAX_GUESS_SLIP, ratio(s[L_WRONG], s[IN_L], previous.pSlip()))));
+    }
+
+    private static double ratio(double numerator, double denominator, double fallback) {
+        return denominator > 0 ? numerator / denominator : fallback;
+    }
+
+    private static BktParams clamp(BktParams p) {
+        return new BktParams(clamp(p.pInit()), clamp(p.pTransit()),
+                Math.min(MAX_GUESS_SLIP, clamp(p.pGuess())), Math.min(MAX_GUESS_SLIP, clamp(p.pSlip())));
+    }
+
+    private static double clamp(double p) {
+        return Math.max(MIN_PROB, Math.min(MAX_PROB, p));
+    }
+
+    /**
+     * 单个序列的前向-后向，期望计数累加到 stats
+     */
+    private static void accumulate(ObservationSequences data, int from, int to, BktParams p, double[] stats) {
+        int n = to - from;
+        // scratch 布局: [0, n) alpha(L), [n, 2n) alpha(U), [2n, 3n) 缩放因子
+        double[] scratch = SCRATCH.get();
+        if (scratch.length < 3 * n) {
+            scratch = new double[Math.max(3 * n, scratch.length << 1)];
+            SCRATCH.set(scratch);
+        }
+        int aU = n;
+        int c = 2 * n;
+
+        double t = p.pTransit();
+        double emitLCorrect = 1 - p.pSlip();
+        double emitUCorrect = p.pGuess();
+
+        // 前向
+        double prevL = p.pInit();
+        double prevU = 1 - p.pInit();
+        for (int i = 0; i < n; i++) {
+            boolean correct = data.correct(from + i);
+            double eL = correct ? emitLCorrect : 1 - emitLCorrect;
+            double eU = correct ? emitUCorrect : 1 - emitUCorrect;
+            double l;
+            double u;
+            if (i == 0) {
+                l = prevL * eL;
+                u = prevU * eU;
+            } else {
+                l = (prevL + prevU * t) * eL;
+                u = prevU * (1 - t) * eU;
+            }
+            double scale = l + u;
+            scratch[c + i] = scale;
+            prevL = l / scale;
+            prevU = u / scale;
+            scratch[i] = prevL;
+            scratch[aU + i] = prevU;
+            stats[LOG_LIKELIHOOD] += Math.log(scale);
+        }
+
+        // 后向 (缩放后 gamma = alpha * beta)
+        double betaL = 1;
+        double betaU = 1;
+        for (int i = n - 1; i >= 0; i--) {
+            boolean correct = data.correct(from + i);
+            double gammaL = scratch[i] * betaL;
+            double gammaU = scratch[aU + i] * betaU;
+
+            if (correct) {
+                stats[U_CORRECT] += gammaU;
+            } else {
+                stats[L_WRONG] += gammaL;
+            }
+            stats[IN_U] += gammaU;
+            stats[IN_L] += gammaL;
+
+            if (i == 0) {
+                stats[INIT_L] += gammaL;
+                break;
+            }
+            // 计算 t = i-1 时刻的 beta，以及 (i-1 -> i) 的 U->L 转移期望
+            double eL = correct ? emitLCorrect : 1 - emitLCorrect;
+            double eU = correct ? emitUCorrect : 1 - emitUCorrect;
+            double scale = scratch[c + i];
+            double prevAlphaU = scratch[aU + i - 1];
+            double prevBetaL = eL * betaL / scale;
+            double prevBetaU = (t * eL * betaL + (1 - t) * eU * betaU) / scale;
+            stats[TRANSIT_UL] += prevAlphaU * t * eL * betaL / scale;
+            stats[FROM_U] += prevAlphaU * prevBetaU;
+            betaL = prevBetaL;
+            betaU = prevBetaU;
+        }
+        stats[SEQUENCES] += 1;
+    }
+
+    /**
+     * E 步：按序列区间递归拆分
+     */
+    private static final class EStepTask extends RecursiveTask<double[]> {
+        private final ObservationSequences data;
+        private final BktParams params;
+        private final int from;
+        private final int to;
+
+        EStepTask(ObservationSequences data, BktParams params, int from, int to) {
+            this.data = data;
+            this.params = params;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected double[] compute() {
+            if (to - from > 1 && data.observationCount(from, to) > SPLIT_THRESHOLD) {
+                int mid = (from + to) >>> 1;
+                EStepTask left = new EStepTask(data, params, from, mid);
+                left.fork();
+                double[] right = new EStepTask(data, params, mid, to).compute();
+                double[] merged = left.join();
+                for (int i = 0; i < STATS_LENGTH; i++) {
+                    merged[i] += right[i];
+                }
+                return merged;
+            }
+            double[] stats = new double[STATS_LENGTH];
+            for (int s = from; s < to; s++) {
+                accumulate(data, data.start(s), data.end(s), params, stats);
+            }
+            return stats;
+        }
+    }
+
+    /**
+     * @param initialLogLikelihood 初始参数下的对数似然
+     * @param logLikelihood        最终参数下的对数似然
+     */
+    public record Fit(BktParams params, double initialLogLikelihood, double logLikelihood, int iterations) {}
+}
@@ -0,0 +1,246 @@
+package com.edtech.kt.fit;
+
+import com.edtech.kt.service.BktParameterRegistry;
+import com.edtech.kt.service.BktParameterRegistry.BktParams;
+import com.edtech.model.entity.KnowledgePoint;
+import com.edtech.model.mapper.KnowledgePointMapper;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 离线 BKT 参数拟合任务
+ * <p>
+ * 1. 按 (学生, 答题时间) 顺序流式读取 student_exercise_log (JDBC 游标，逐行读原始类型，不创建实体)，
+ *    经 {@link BktParameterRegistry} 映射到知识点序号，追加到该知识点的原始数组序列缓冲；
+ * 2. 每个知识点作为一个 fork-join 任务用 EM 拟合，E 步在同一池内继续按学生拆分；
+ * 3. 拟合结果分批 UPDATE 回 knowledge_point，并刷新注册表。
+ * 内存占用约为每条日志 1 字节 + 每个 (学生, 知识点) 序列 4 字节。
+ */
+@Service
+@Slf4j
+public class BktFitJob {
+
+    private static final String STREAM_SQL =
+            "SELECT student_id, question_id, result FROM student_exercise_log ORDER BY student_id, submit_time, id";
+    private static final int WRITE_BATCH_SIZE = 500;
+
+    public static final String STATUS_FITTED = "FITTED";
+    public static final String STATUS_SKIPPED = "SKIPPED";
+    public static final String STATUS_FAILED = "FAILED";
+
+    private final JdbcTemplate streamingJdbc;
+    private final KnowledgePointMapper knowledgePointMapper;
+    private final BktParameterRegistry parameterRegistry;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${kt.fit.parallelism:0}")
+    private int parallelism;
+
+    @Value("${kt.fit.max-iterations:50}")
+    private int maxIterations;
+
+    @Value("${kt.fit.tolerance:1e-6}")
+    private double tolerance;
+
+    @Value("${kt.fit.min-observations:200}")
+    private int minObservations;
+
+    private final AtomicBoolean running = new AtomicBoolean(false);
+    private final ExecutorService runner = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "kt-bkt-fit");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private volatile FitReport lastReport;
+
+    public BktFitJob(DataSource dataSource,
+                     KnowledgePointMapper knowledgePointMapper,
+                     BktParameterRegistry parameterRegistry,
+                     TransactionTemplate transactionTemplate,
+                     @Value("${kt.fit.fetch-size:-2147483648}") int fetchSize) {
+        // MySQL 驱动在 fetchSize = Integer.MIN_VALUE 时逐行流式返回，不把结果集整体读入内存
+        this.streamingJdbc = new JdbcTemplate(dataSource);
+        this.streamingJdbc.setFetchSize(fetchSize);
+        this.knowledgePointMapper = knowledgePointMapper;
+        this.parameterRegistry = parameterRegistry;
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    @Scheduled(cron = "${kt.fit.cron:-}")
+    public void scheduledFit() {
+        startAsync();
+    }
+
+    /**
+     * 后台启动一次拟合
+     *
+     * @return 已有任务在运行时返回 false
+     */
+    public boolean startAsync() {
+        if (!running.compareAndSet(false, true)) {
+            return false;
+        }
+        runner.execute(() -> {
+            try {
+                runFit();
+            } catch (Exception e) {
+                log.error("BKT parameter fitting failed", e);
+            } finally {
+                running.set(false);
+            }
+        });
+        return true;
+    }
+
+    public boolean isRunning() {
+        return running.get();
+    }
+
+    public FitReport getLastReport() {
+        return lastReport;
+    }
+
+    private FitReport runFit() {
+        LocalDateTime startedAt = LocalDateTime.now();
+        long start = System.currentTimeMillis();
+
+        // 1. 流式加载
+        int kpCount = parameterRegistry.knowledgePointCount();
+        ObservationSequences[] sequences = new ObservationSequences[kpCount];
+        long[] counters = new long[2]; // [0] 已映射行数, [1] 无法映射到知识点的行数
+        streamingJdbc.query(STREAM_SQL, (RowCallbackHandler) rs -> {
+            long studentId = rs.getLong(1);
+            long questionId = rs.getLong(2);
+            int result = rs.getInt(3);
+            int ordinal = parameterRegistry.questionKpOrdinal(questionId);
+            if (ordinal < 0 || ordinal >= kpCount) {
+                counters[1]++;
+                return;
+            }
+            ObservationSequences seq = sequences[ordinal];
+            if (seq == null) {
+                seq = new ObservationSequences();
+                sequences[ordinal] = seq;
+            }
+            seq.append(studentId, result == 1);
+            counters[0]++;
+        });
+        long loadMillis = System.currentTimeMillis() - start;
+        log.info("BKT fit: streamed {} rows ({} unmapped) for {} knowledge points in {} ms",
+                counters[0], counters[1], kpCount, loadMillis);
+
+        // 2. 并行拟合
+        long fitStart = System.currentTimeMillis();
+        BktEmFitter fitter = new BktEmFitter(maxIterations, tolerance);
+        List<KpFitResult> results = new ArrayList<>(kpCount);
+        List<ForkJoinTask<KpFitResult>> tasks = new ArrayList<>();
+        ForkJoinPool pool = new ForkJoinPool(parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors());
+        try {
+            for (int ordinal = 0; ordinal < kpCount; ordinal++) {
+                long kpId = parameterRegistry.knowledgePointIdAt(ordinal);
+                BktParams current = parameterRegistry.paramsAt(ordinal);
+                ObservationSequences seq = sequences[ordinal];
+                int observations = seq != null ? seq.observationCount() : 0;
+                if (observations < minObservations) {
+                    results.add(new KpFitResult(kpId, STATUS_SKIPPED, seq != null ? seq.sequenceCount() : 0,
+                            observations, 0, current, current, Double.NaN, Double.NaN, 0));
+                    continue;
+                }
+                sequences[ordinal] = null;
+                ObservationSequences sealed = seq.seal();
+                tasks.add(pool.submit(() -> fitOne(fitter, kpId, sealed, current)));
+            }
+            for (ForkJoinTask<KpFitResult> task : tasks) {
+                results.add(task.join());
+            }
+        } finally {
+            pool.shutdown();
+        }
+        long fitMillis = System.currentTimeMillis() - fitStart;
+
+        // 3. 写回
+        List<KnowledgePoint> updates = new ArrayList<>();
+        for (KpFitResult r : results) {
+            if (STATUS_FITTED.equals(r.status())) {
+                KnowledgePoint kp = new KnowledgePoint();
+                kp.setId(r.knowledgePointId());
+                kp.setPInit(round4(r.after().pInit()));
+                kp.setPTransit(round4(r.after().pTransit()));
+                kp.setPGuess(round4(r.after().pGuess()));
+                kp.setPSlip(round4(r.after().pSlip()));
+                updates.add(kp);
+            }
+        }
+        if (!updates.isEmpty()) {
+            transactionTemplate.executeWithoutResult(status -> {
+                for (int i = 0; i < updates.size(); i += WRITE_BATCH_SIZE) {
+                    knowledgePointMapper.batchUpdateBktParams(updates.subList(i, Math.min(i + WRITE_BATCH_SIZE, updates.size())));
+                }
+            });
+            parameterRegistry.invalidateKnowledgePoints();
+        }
+
+        FitReport report = new FitReport(startedAt, counters[0], counters[1], loadMillis, fitMillis,
+                System.currentTimeMillis() - start, updates.size(), results.size() - updates.size(), results);
+        lastReport = report;
+        log.info("BKT fit finished: {} fitted, {} skipped/failed, load {} ms, fit {} ms",
+                report.fitted(), report.notFitted(), loadMillis, fitMillis);
+        return report;
+    }
+
+    private static KpFitResult fitOne(BktEmFitter fitter, long kpId, ObservationSequences seq, BktParams current) {
+        long start = System.nanoTime();
+        try {
+            BktEmFitter.Fit fit = fitter.fit(seq, current);
+            long millis = (System.nanoTime() - start) / 1_000_000;
+            log.debug("KP {} fitted in {} ms: LL {} -> {} ({} iterations)",
+                    kpId, millis, fit.initialLogLikelihood(), fit.logLikelihood(), fit.iterations());
+            return new KpFitResult(kpId, STATUS_FITTED, seq.sequenceCount(), seq.observationCount(), fit.iterations(),
+                    current, fit.params(), fit.initialLogLikelihood(), fit.logLikelihood(), millis);
+        } catch (Exception e) {
+            log.error("Failed to fit BKT parameters for KP {}", kpId, e);
+            return new KpFitResult(kpId, STATUS_FAILED, seq.sequenceCount(), seq.observationCount(), 0,
+                    current, current, Double.NaN, Double.NaN, (System.nanoTime() - start) / 1_000_000);
+        }
+    }
+
+    private static double round4(double p) {
+        return Math.round(p * 10000) / 10000.0;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        runner.shutdownNow();
+    }
+
+    /**
+     * 单个知识点的拟合结果
+     *
+     * @param initialLogLikelihood 原参数下的对数似然
+     * @param logLikelihood        新参数下的对数似然
+     */
+    public record KpFitResult(long knowledgePointId, String status, int sequences, int observations, int iterations,
+                              BktParams before, BktParams after,
+                              double initialLogLikelihood, double logLikelihood, long fitMillis) {}
+
+    public record FitReport(LocalDateTime startedAt, long rows, long unmappedRows,
+                            long loadMillis, long fitMillis, long totalMillis,
+                            int fitted, int notFitted, List<KpFitResult> results) {}
+}
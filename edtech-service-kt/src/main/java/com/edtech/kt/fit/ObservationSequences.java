@@ -0,0 +1,79 @@
+package com.edtech.kt.fit;
+
+import java.util.Arrays;
+
+/**
+ * 单个知识点的答题序列 (按学生分段)，全部使用原始数组存储
+ * <p>
+ * outcomes 顺序存放所有学生的作答结果 (1 对 / 0 错)，
+ * starts[i] 为第 i 个学生序列的起始下标，序列 i 覆盖 [starts[i], starts[i + 1])。
+ * 调用方需保证同一学生的作答连续追加 (按学生、时间排序的数据流)。
+ * 构建阶段非线程安全；{@link #seal()} 之后只读，可被多个线程并发访问。
+ */
+public final class ObservationSequences {
+
+    private byte[] outcomes = new byte[16];
+    private int[] starts = new int[4];
+    private int size;
+    private int sequenceCount;
+    private long lastStudentId = Long.MIN_VALUE;
+
+    public void append(long studentId, boolean correct) {
+        if (studentId != lastStudentId) {
+            if (sequenceCount + 1 >= starts.length) {
+                starts = Arrays.copyOf(starts, starts.length << 1);
+            }
+            starts[sequenceCount++] = size;
+            lastStudentId = studentId;
+        }
+        if (size == outcomes.length) {
+            outcomes = Arrays.copyOf(outcomes, outcomes.length << 1);
+        }
+        outcomes[size++] = (byte) (correct ? 1 : 0);
+    }
+
+    /**
+     * 结束构建：写入哨兵并收缩到实际大小
+     */
+    public ObservationSequences seal() {
+        starts = Arrays.copyOf(starts, sequenceCount + 1);
+        starts[sequenceCount] = size;
+        outcomes = Arrays.copyOf(outcomes, size);
+        return this;
+    }
+
+    public int sequenceCount() {
+        return sequenceCount;
+    }
+
+    public int observationCount() {
+        return size;
+    }
+
+    public int start(int sequence) {
+        return starts[sequence];
+    }
+
+    public int end(int sequence) {
+        return starts[sequence + 1];
+    }
+
+    public boolean correct(int index) {
+        return outcomes[index] != 0;
+    }
+
+    /**
+     * 序列区间 [from, to) 内的观测总数
+     */
+    public int observationCount(int from, int to) {
+        return starts[to] - starts[from];
+    }
+
+    public int maxSequenceLength() {
+        int max = 0;
+        for (int i = 0; i < sequenceCount; i++) {
+            max = Math.max(max, starts[i + 1] - starts[i]);
+        }
+        return max;
+    }
+}
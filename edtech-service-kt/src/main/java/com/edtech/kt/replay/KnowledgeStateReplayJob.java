@@ -0,0 +1,466 @@
+package com.edtech.kt.replay;
+
+import com.edtech.kt.engine.EngineStateStore;
+import com.edtech.kt.engine.KnowledgeTracingEngine;
+import com.edtech.kt.engine.KnowledgeTracingEngines;
+import com.edtech.kt.service.BktParameterRegistry;
+import com.edtech.kt.service.BktParameterRegistry.BktParams;
+import com.edtech.kt.service.KnowledgeStateWriteBehind;
+import com.edtech.kt.service.MasteryStateStore;
+import com.edtech.kt.service.StudentMasteryCache;
+import com.edtech.kt.service.StudentMasteryIndex;
+import com.edtech.model.entity.KnowledgeState;
+import com.edtech.model.mapper.KnowledgeStateMapper;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 知识状态批量重放 (BKT 参数调整或 Redis student:state:* 丢失后重建掌握度)
+ * <p>
+ * 1. 读线程按 (学生, 答题时间) 顺序流式读取 student_exercise_log (JDBC 游标)，
+ *    经 {@link BktParameterRegistry} 映射为知识点序号，按学生边界切成 {@link ReplayChunk}；
+ * 2. 块分发到 N 个工作线程，每个线程持有以知识点序号为下标的原始数组状态，
+ *    逐学生按知识点所选的 {@link KnowledgeTracingEngine} 重放 (状态按引擎最大状态长度为步长展开)；
+ * 3. 每块结果批量 upsert knowledge_state，并管道写入 {@link MasteryStateStore} 与 {@link StudentMasteryIndex}，
+ *    非 BKT 引擎的状态写入 {@link EngineStateStore}；
+ * 4. 已按序完成的最后一个学生 ID 作为检查点写入 Redis，失败或中断后可从检查点续跑。
+ * 重放期间的线上答题可能被重放结果覆盖，建议在低峰期执行。
+ */
+@Service
+@Slf4j
+public class KnowledgeStateReplayJob {
+
+    private static final String STREAM_SQL =
+            "SELECT student_id, question_id, result FROM student_exercise_log " +
+            "WHERE student_id > ? ORDER BY student_id, submit_time, id";
+    private static final String CHECKPOINT_KEY = "kt:replay:checkpoint";
+    private static final int WRITE_BATCH_SIZE = 500;
+    private static final long PROGRESS_LOG_ROWS = 1_000_000;
+
+    private final JdbcTemplate streamingJdbc;
+    private final KnowledgeStateMapper knowledgeStateMapper;
+    private final BktParameterRegistry parameterRegistry;
+    private final KnowledgeTracingEngines engines;
+    private final KnowledgeStateWriteBehind stateWriteBehind;
+    private final MasteryStateStore masteryStateStore;
+    private final StudentMasteryCache masteryCache;
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${kt.replay.parallelism:0}")
+    private int parallelism;
+
+    @Value("${kt.replay.chunk-rows:20000}")
+    private int chunkRows;
+
+    private final AtomicBoolean running = new AtomicBoolean(false);
+    private final ExecutorService runner = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "kt-replay");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private volatile Progress progress;
+    private volatile ReplayReport lastReport;
+
+    public KnowledgeStateReplayJob(DataSource dataSource,
+                                   KnowledgeStateMapper knowledgeStateMapper,
+                                   BktParameterRegistry parameterRegistry,
+                                   KnowledgeTracingEngines engines,
+                                   KnowledgeStateWriteBehind stateWriteBehind,
+                                   MasteryStateStore masteryStateStore,
+                                   StudentMasteryCache masteryCache,
+                                   RedisTemplate<String, Object> redisTemplate,
+                                   TransactionTemplate transactionTemplate,
+                                   @Value("${kt.replay.fetch-size:-2147483648}") int fetchSize) {
+        // MySQL 驱动在 fetchSize = Integer.MIN_VALUE 时逐行流式返回
+        this.streamingJdbc = new JdbcTemplate(dataSource);
+        this.streamingJdbc.setFetchSize(fetchSize);
+        this.knowledgeStateMapper = knowledgeStateMapper;
+        this.parameterRegistry = parameterRegistry;
+        this.engines = engines;
+        this.stateWriteBehind = stateWriteBehind;
+        this.masteryStateStore = masteryStateStore;
+        this.masteryCache = masteryCache;
+        this.redisTemplate = redisTemplate;
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    /**
+     * 后台启动一次重放
+     *
+     * @param resume true 时从上次检查点之后的学生继续，否则全量重放
+     * @return 已有任务在运行时返回 false
+     */
+    public boolean startAsync(boolean resume) {
+        if (!running.compareAndSet(false, true)) {
+            return false;
+        }
+        runner.execute(() -> {
+            try {
+                runReplay(resume);
+            } catch (Exception e) {
+                log.error("Knowledge state replay failed", e);
+            } finally {
+                running.set(false);
+            }
+        });
+        return true;
+    }
+
+    public boolean isRunning() {
+        return running.get();
+    }
+
+    /**
+     * 运行中返回实时进度，否则返回最近一次报告
+     */
+    public ReplayReport getReport() {
+        Progress p = progress;
+        return running.get() && p != null ? p.toReport(false, null) : lastReport;
+    }
+
+    /**
+     * 上次未完成重放的检查点 (最后一个已完整写入的学生 ID)，没有时返回 null
+     */
+    public Long getCheckpoint() {
+        Object value = redisTemplate.opsForValue().get(CHECKPOINT_KEY);
+        return value instanceof Number n ? n.longValue() : null;
+    }
+
+    private void runReplay(boolean resume) throws InterruptedException {
+        Long checkpoint = resume ? getCheckpoint() : null;
+        long afterStudentId = checkpoint != null ? checkpoint : Long.MIN_VALUE;
+        if (!resume) {
+            redisTemplate.delete(CHECKPOINT_KEY);
+        }
+        // 先刷出写后缓冲，避免旧的在线值晚于重放结果落库
+        stateWriteBehind.flush();
+
+        Params params = Params.snapshot(parameterRegistry, engines);
+        masteryStateStore.prepare(params.kpIds);
+        int threads = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        Progress p = new Progress(LocalDateTime.now(), System.currentTimeMillis(), afterStudentId);
+        progress = p;
+        log.info("Knowledge state replay started: {} knowledge points, {} workers, after student {}",
+                params.count, threads, checkpoint);
+
+        AtomicInteger workerSeq = new AtomicInteger();
+        ExecutorService workers = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "kt-replay-worker-" + workerSeq.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        ThreadLocal<StudentState> states = ThreadLocal.withInitial(() -> new StudentState(params.count, params.stride));
+        // 限制在途块数量，读线程在工作线程跟不上时阻塞
+        Semaphore inFlight = new Semaphore(threads * 2);
+        CheckpointTracker tracker = new CheckpointTracker();
+        AtomicReference<Exception> failure = new AtomicReference<>();
+
+        int rowsPerChunk = Math.max(1000, chunkRows);
+        ReplayChunk[] current = {new ReplayChunk(0, rowsPerChunk)};
+        try {
+            streamingJdbc.query(STREAM_SQL, (RowCallbackHandler) rs -> {
+                if (failure.get() != null) {
+                    throw new ReplayAbortedException(failure.get());
+                }
+                long studentId = rs.getLong(1);
+                long questionId = rs.getLong(2);
+                boolean correct = rs.getInt(3) == 1;
+                ReplayChunk chunk = current[0];
+                if (chunk.rowCount() >= rowsPerChunk && chunk.lastStudentId() != studentId) {
+                    dispatch(chunk, params, states, workers, inFlight, tracker, failure, p);
+                    chunk = new ReplayChunk(chunk.sequence() + 1, rowsPerChunk);
+                    current[0] = chunk;
+                }
+                int ordinal = parameterRegistry.questionKpOrdinal(questionId);
+                if (ordinal < 0 || ordinal >= params.count) {
+                    p.unmappedRows.increment();
+                    return;
+                }
+                chunk.append(studentId, ordinal, correct);
+            }, afterStudentId);
+            if (!current[0].isEmpty()) {
+                dispatch(current[0], params, states, workers, inFlight, tracker, failure, p);
+            }
+        } catch (ReplayAbortedException e) {
+            log.warn("Knowledge state replay aborted after worker failure");
+        } catch (RuntimeException e) {
+            log.error("Knowledge state replay stream failed", e);
+            failure.compareAndSet(null, e);
+        } finally {
+            workers.shutdown();
+            workers.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+        }
+
+        Exception error = failure.get();
+        if (error == null) {
+            redisTemplate.delete(CHECKPOINT_KEY);
+        }
+        // 已写入部分 (含失败前的块) 都可能改变掌握度
+        masteryCache.invalidateAll();
+        ReplayReport report = p.toReport(true, error != null ? error.getMessage() : null);
+        lastReport = report;
+        log.info("Knowledge state replay {}: {} rows, {} students, {} states in {} ms ({} rows/s), checkpoint {}",
+                error == null ? "finished" : "failed", report.rows(), report.students(), report.states(),
+                report.elapsedMillis(), report.rowsPerSecond(), report.checkpoint());
+    }
+
+    private void dispatch(ReplayChunk chunk, Params params, ThreadLocal<StudentState> states,
+                          ExecutorService workers, Semaphore inFlight, CheckpointTracker tracker,
+                          AtomicReference<Exception> failure, Progress p) {
+        chunk.seal();
+        inFlight.acquireUninterruptibly();
+        workers.execute(() -> {
+            try {
+                if (failure.get() == null) {
+                    replayChunk(chunk, params, states.get(), p);
+                    synchronized (tracker) {
+                        Long checkpoint = tracker.complete(chunk.sequence(), chunk.lastStudentId());
+                        if (checkpoint != null) {
+                            redisTemplate.opsForValue().set(CHECKPOINT_KEY, checkpoint);
+                            p.checkpoint = checkpoint;
+                        }
+                    }
+                }
+            } catch (Exception e) {
+                log.error("Failed to replay chunk {} (students {}..{})",
+                        chunk.sequence(), chunk.studentId(0), chunk.lastStudentId(), e);
+                failure.compareAndSet(null, e);
+            } finally {
+                inFlight.release();
+            }
+        });
+    }
+
+    private void replayChunk(ReplayChunk chunk, Params params, StudentState state, Progress p) {
+        List<KnowledgeState> rows = new ArrayList<>(chunk.studentCount() * 4);
+        Map<Long, Map<Long, Double>> masteries = new HashMap<>(chunk.studentCount() * 2);
+        Map<Long, Map<Long, String>> engineStates = new HashMap<>();
+
+        for (int s = 0; s < chunk.studentCount(); s++) {
+            long studentId = chunk.studentId(s);
+            state.reset();
+            for (int i = chunk.start(s); i < chunk.end(s); i++) {
+                int o = chunk.ordinal(i);
+                int offset = o * params.stride;
+                if (state.touch(o)) {
+                    params.engines[o].init(params.params[o], state.values, offset);
+                }
+                params.engines[o].update(params.params[o], state.values, offset, chunk.correct(i));
+            }
+
+            Map<Long, Double> mastery = new HashMap<>(state.touchedCount * 2);
+            for (int t = 0; t < state.touchedCount; t++) {
+                int o = state.touched[t];
+                long kpId = params.kpIds[o];
+                KnowledgeTracingEngine engine = params.engines[o];
+                double prob = engine.predict(params.params[o], state.values, o * params.stride);
+                if (!engines.isBkt(engine)) {
+                    engineStates.computeIfAbsent(studentId, id -> new HashMap<>())
+                            .put(kpId, EngineStateStore.encode(engine, state.values, o * params.stride));
+                }
+                KnowledgeState row = new KnowledgeState();
+                row.setStudentId(studentId);
+                row.setKnowledgePointId(kpId);
+                row.setMasteryProbability(BigDecimal.valueOf(prob));
+                rows.add(row);
+                mastery.put(kpId, prob);
+            }
+            masteries.put(studentId, mastery);
+        }
+
+        transactionTemplate.executeWithoutResult(status -> {
+            for (int i = 0; i < rows.size(); i += WRITE_BATCH_SIZE) {
+                knowledgeStateMapper.batchUpsert(rows.subList(i, Math.min(i + WRITE_BATCH_SIZE, rows.size())));
+            }
+        });
+        redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> Object execute(RedisOperations<K, V> operations) throws DataAccessException {
+                RedisOperations<String, Object> ops = (RedisOperations<String, Object>) operations;
+                boolean packed = masteryStateStore.isPacked();
+                masteries.forEach((studentId, mastery) -> {
+                    masteryStateStore.write(ops, studentId, mastery);
+                    StudentMasteryIndex.write(ops, studentId, mastery, packed);
+                });
+                return null;
+            }
+        });
+        if (!engineStates.isEmpty()) {
+            redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                engineStates.forEach((studentId, encoded) -> EngineStateStore.write(connection, studentId, encoded));
+                return null;
+            });
+        }
+
+        p.rows.add(chunk.rowCount());
+        p.students.add(chunk.studentCount());
+        p.states.add(rows.size());
+        long total = p.rows.sum();
+        if (total / PROGRESS_LOG_ROWS != (total - chunk.rowCount()) / PROGRESS_LOG_ROWS) {
+            ReplayReport r = p.toReport(false, null);
+            log.info("Knowledge state replay progress: {} rows, {} students, {} rows/s",
+                    r.rows(), r.students(), r.rowsPerSecond());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        runner.shutdownNow();
+    }
+
+    /**
+     * 重放开始时的知识点参数与引擎选择快照，按知识点序号展开
+     */
+    private static final class Params {
+        final int count;
+        final int stride;
+        final long[] kpIds;
+        final BktParams[] params;
+        final KnowledgeTracingEngine[] engines;
+
+        private Params(int count, int stride) {
+            this.count = count;
+            this.stride = stride;
+            this.kpIds = new long[count];
+            this.params = new BktParams[count];
+            this.engines = new KnowledgeTracingEngine[count];
+        }
+
+        static Params snapshot(BktParameterRegistry registry, KnowledgeTracingEngines engines) {
+            Params p = new Params(registry.knowledgePointCount(), engines.maxStateSize());
+            for (int o = 0; o < p.count; o++) {
+                p.kpIds[o] = registry.knowledgePointIdAt(o);
+                p.params[o] = registry.paramsAt(o);
+                p.engines[o] = engines.engineFor(p.kpIds[o]);
+            }
+            return p;
+        }
+    }
+
+    /**
+     * 工作线程私有的单个学生状态：以知识点序号为下标，用版本号代替逐学生清零
+     */
+    private static final class StudentState {
+        final double[] values;
+        final int[] stamp;
+        final int[] touched;
+        int touchedCount;
+        int epoch;
+
+        StudentState(int kpCount, int stride) {
+            this.values = new double[kpCount * stride];
+            this.stamp = new int[kpCount];
+            this.touched = new int[kpCount];
+        }
+
+        void reset() {
+            touchedCount = 0;
+            epoch++;
+        }
+
+        /**
+         * @return 该知识点是否为当前学生首次出现
+         */
+        boolean touch(int ordinal) {
+            if (stamp[ordinal] == epoch) {
+                return false;
+            }
+            stamp[ordinal] = epoch;
+            touched[touchedCount++] = ordinal;
+            return true;
+        }
+    }
+
+    /**
+     * 块乱序完成，检查点只推进到连续完成的前缀 (调用方持有锁)
+     */
+    private static final class CheckpointTracker {
+        private final TreeMap<Long, Long> done = new TreeMap<>();
+        private long next;
+
+        /**
+         * @param lastStudentId 块内最后一个学生
+         * @return 推进后的检查点，未推进时返回 null
+         */
+        Long complete(long sequence, long lastStudentId) {
+            done.put(sequence, lastStudentId);
+            Long checkpoint = null;
+            while (done.containsKey(next)) {
+                checkpoint = done.remove(next++);
+            }
+            return checkpoint;
+        }
+    }
+
+    private static final class Progress {
+        final LocalDateTime startedAt;
+        final long startMillis;
+        final long afterStudentId;
+        final LongAdder rows = new LongAdder();
+        final LongAdder unmappedRows = new LongAdder();
+        final LongAdder students = new LongAdder();
+        final LongAdder states = new LongAdder();
+        volatile Long checkpoint;
+
+        Progress(LocalDateTime startedAt, long startMillis, long afterStudentId) {
+            this.startedAt = startedAt;
+            this.startMillis = startMillis;
+            this.afterStudentId = afterStudentId;
+        }
+
+        ReplayReport toReport(boolean finished, String error) {
+            long elapsed = Math.max(1, System.currentTimeMillis() - startMillis);
+            long rowCount = rows.sum();
+            return new ReplayReport(startedAt, finished, error,
+                    afterStudentId == Long.MIN_VALUE ? null : afterStudentId, checkpoint,
+                    rowCount, unmappedRows.sum(), students.sum(), states.sum(),
+                    elapsed, rowCount * 1000 / elapsed);
+        }
+    }
+
+    private static final class ReplayAbortedException extends RuntimeException {
+        ReplayAbortedException(Throwable cause) {
+            super(cause);
+        }
+    }
+
+    /**
+     * @param resumedAfter 续跑时的起始检查点，全量重放为 null
+     * @param checkpoint   已按序完整写入的最后一个学生 ID
+     * @param states       写入的 (学生, 知识点) 状态数
+     */
+    public record ReplayReport(LocalDateTime startedAt, boolean finished, String error,
+                               Long resumedAfter, Long checkpoint,
+                               long rows, long unmappedRows, long students, long states,
+                               long elapsedMillis, long rowsPerSecond) {}
+}
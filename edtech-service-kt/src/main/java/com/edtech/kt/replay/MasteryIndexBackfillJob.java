@@ -0,0 +1,151 @@
+package com.edtech.kt.replay;
+
+import com.edtech.kt.service.KnowledgeStateWriteBehind;
+import com.edtech.kt.service.MasteryStateStore;
+import com.edtech.kt.service.StudentMasteryIndex;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+
+import javax.sql.DataSource;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 从 knowledge_state 回填 {@link StudentMasteryIndex} (student:{id}:mastery / student:{id}:weak_kps)
+ * <p>
+ * 上线增量维护之前已有的掌握度不在索引中，策略 B 与 AI 出题会一直走兜底路径。
+ * 按 uk_student_kp 顺序流式读取，按学生边界攒批后一次管道写入。
+ * 回填期间被在线答题更新的知识点可能被库中旧值覆盖，下一次作答即恢复，建议在低峰期执行。
+ */
+@Service
+@Slf4j
+public class MasteryIndexBackfillJob {
+
+    private static final String STREAM_SQL =
+            "SELECT student_id, knowledge_point_id, mastery_probability FROM knowledge_state " +
+            "ORDER BY student_id, knowledge_point_id";
+
+    private final JdbcTemplate streamingJdbc;
+    private final KnowledgeStateWriteBehind stateWriteBehind;
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final MasteryStateStore masteryStateStore;
+
+    @Value("${kt.backfill.batch-students:500}")
+    private int batchStudents;
+
+    private final AtomicBoolean running = new AtomicBoolean(false);
+    private final ExecutorService runner = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "kt-mastery-backfill");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private volatile BackfillReport lastReport;
+
+    public MasteryIndexBackfillJob(DataSource dataSource,
+                                   KnowledgeStateWriteBehind stateWriteBehind,
+                                   RedisTemplate<String, Object> redisTemplate,
+                                   MasteryStateStore masteryStateStore,
+                                   @Value("${kt.replay.fetch-size:-2147483648}") int fetchSize) {
+        this.streamingJdbc = new JdbcTemplate(dataSource);
+        this.streamingJdbc.setFetchSize(fetchSize);
+        this.stateWriteBehind = stateWriteBehind;
+        this.redisTemplate = redisTemplate;
+        this.masteryStateStore = masteryStateStore;
+    }
+
+    /**
+     * 后台启动一次回填
+     *
+     * @return 已有任务在运行时返回 false
+     */
+    public boolean startAsync() {
+        if (!running.compareAndSet(false, true)) {
+            return false;
+        }
+        runner.execute(() -> {
+            try {
+                lastReport = backfill();
+            } catch (Exception e) {
+                log.error("Mastery index backfill failed", e);
+            } finally {
+                running.set(false);
+            }
+        });
+        return true;
+    }
+
+    public boolean isRunning() {
+        return running.get();
+    }
+
+    public BackfillReport getReport() {
+        return lastReport;
+    }
+
+    private BackfillReport backfill() {
+        LocalDateTime startedAt = LocalDateTime.now();
+        long start = System.currentTimeMillis();
+        // 先刷出写后缓冲，库中即为最新值
+        stateWriteBehind.flush();
+
+        int studentsPerBatch = Math.max(1, batchStudents);
+        Map<Long, Map<Long, Double>> batch = new LinkedHashMap<>();
+        long[] counts = new long[2];
+        streamingJdbc.query(STREAM_SQL, (RowCallbackHandler) rs -> {
+            long studentId = rs.getLong(1);
+            Map<Long, Double> masteries = batch.get(studentId);
+            if (masteries == null) {
+                if (batch.size() >= studentsPerBatch) {
+                    write(batch);
+                    batch.clear();
+                }
+                masteries = new HashMap<>();
+                batch.put(studentId, masteries);
+                counts[0]++;
+            }
+            masteries.put(rs.getLong(2), rs.getBigDecimal(3).doubleValue());
+            counts[1]++;
+        });
+        if (!batch.isEmpty()) {
+            write(batch);
+        }
+
+        long elapsed = System.currentTimeMillis() - start;
+        log.info("Mastery index backfill finished: {} students, {} states in {} ms", counts[0], counts[1], elapsed);
+        return new BackfillReport(startedAt, counts[0], counts[1], elapsed);
+    }
+
+    private void write(Map<Long, Map<Long, Double>> batch) {
+        redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> Object execute(RedisOperations<K, V> operations) throws DataAccessException {
+                RedisOperations<String, Object> ops = (RedisOperations<String, Object>) operations;
+                boolean packed = masteryStateStore.isPacked();
+                batch.forEach((studentId, masteries) -> StudentMasteryIndex.write(ops, studentId, masteries, packed));
+                return null;
+            }
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        runner.shutdownNow();
+    }
+
+    public record BackfillReport(LocalDateTime startedAt, long students, long states, long elapsedMillis) {}
+}
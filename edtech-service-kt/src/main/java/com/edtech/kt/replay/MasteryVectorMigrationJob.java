@@ -0,0 +1,278 @@
+package com.edtech.kt.replay;
+
+import com.edtech.kt.service.KnowledgePointSlots;
+import com.edtech.kt.service.MasteryStateStore;
+import com.edtech.kt.service.MasteryVectorCodec;
+import com.edtech.kt.service.StudentMasteryCache;
+import com.edtech.kt.service.StudentMasteryIndex;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StreamUtils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 旧哈希 student:state:{id} 迁移到 packed 向量 student:state:vec:{id}，并输出内存对比报告
+ * <p>
+ * 需先将 kt.state.format 切换为 packed (旧哈希与 student:{id}:mastery 从此不再写入)，再运行本任务：
+ * SCAN 旧哈希，按批管道 HGETALL，编码后经 Lua 只填充向量中仍为空的槽位，切换后在线写入的值不会被覆盖。
+ * 前 N 个学生在删除旧哈希前用 MEMORY USAGE 采样两种格式下每个学生的全部掌握度键：
+ * hash 格式为 state 哈希 + mastery 哈希 + weak_kps，packed 格式为向量 + weak_kps。
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class MasteryVectorMigrationJob {
+
+    private static final int SCAN_COUNT = 1000;
+    private static final long TTL_SECONDS = TimeUnit.DAYS.toSeconds(7);
+
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final MasteryStateStore masteryStateStore;
+    private final KnowledgePointSlots slots;
+    private final StudentMasteryCache masteryCache;
+
+    @Value("${kt.state.migration.batch-size:500}")
+    private int batchSize;
+
+    @Value("${kt.state.migration.sample-size:1000}")
+    private int sampleSize;
+
+    private final AtomicBoolean running = new AtomicBoolean(false);
+    private final ExecutorService runner = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "kt-vector-migration");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private volatile MigrationReport lastReport;
+
+    /**
+     * 后台启动一次迁移
+     *
+     * @param deleteSource 迁移后删除旧哈希与 mastery 哈希 (UNLINK)
+     * @return 已有任务在运行时返回 false
+     * @throws IllegalStateException 当前存储格式不是 packed
+     */
+    public boolean startAsync(boolean deleteSource) {
+        if (!masteryStateStore.isPacked()) {
+            throw new IllegalStateException("kt.state.format 需为 packed");
+        }
+        if (!running.compareAndSet(false, true)) {
+            return false;
+        }
+        runner.execute(() -> {
+            try {
+                lastReport = migrate(deleteSource);
+            } catch (Exception e) {
+                log.error("Mastery vector migration failed", e);
+            } finally {
+                running.set(false);
+            }
+        });
+        return true;
+    }
+
+    public boolean isRunning() {
+        return running.get();
+    }
+
+    public MigrationReport getReport() {
+        return lastReport;
+    }
+
+    private MigrationReport migrate(boolean deleteSource) throws IOException {
+        LocalDateTime startedAt = LocalDateTime.now();
+        long start = System.currentTimeMillis();
+        byte[] fillScript = StreamUtils.copyToByteArray(new ClassPathResource("lua/mastery_vector_fill.lua").getInputStream());
+        String sha = redisTemplate.execute((RedisCallback<String>) connection ->
+                connection.scriptingCommands().scriptLoad(fillScript));
+
+        Totals totals = new Totals();
+        List<String> batch = new ArrayList<>(batchSize);
+        ScanOptions options = ScanOptions.scanOptions().match(MasteryStateStore.HASH_KEY + "*").count(SCAN_COUNT).build();
+        try (Cursor<String> cursor = redisTemplate.scan(options)) {
+            while (cursor.hasNext()) {
+                String key = cursor.next();
+                // 同一前缀下还有 packed 向量 (student:state:vec:{id})，只取纯数字学生ID
+                if (!isStudentId(key.substring(MasteryStateStore.HASH_KEY.length()))) {
+                    continue;
+                }
+                batch.add(key);
+                if (batch.size() >= Math.max(1, batchSize)) {
+                    migrateBatch(batch, sha, deleteSource, totals);
+                    batch.clear();
+                }
+            }
+        }
+        if (!batch.isEmpty()) {
+            migrateBatch(batch, sha, deleteSource, totals);
+        }
+
+        // 填充的槽位此前在向量中为空，近端缓存里没有这些知识点
+        masteryCache.invalidateAll();
+        MigrationReport report = totals.toReport(startedAt, deleteSource, System.currentTimeMillis() - start);
+        log.info("Mastery vector migration finished: {} students, {} fields, {} slots filled; " +
+                        "sampled {} students: state hash {} + mastery hash {} + weak_kps {} bytes " +
+                        "vs packed {} + weak_kps {} bytes ({}x)",
+                report.students(), report.fields(), report.filledSlots(), report.sampledStudents(),
+                report.sampledHashBytes(), report.sampledMasteryHashBytes(), report.sampledWeakKpsBytes(),
+                report.sampledPackedBytes(), report.sampledWeakKpsBytes(), report.compressionRatio());
+        return report;
+    }
+
+    private void migrateBatch(List<String> keys, String sha, boolean deleteSource, Totals totals) {
+        // HGETALL 的结果总是经模板的 hash key / value 序列化器还原 (String -> Double)，与 getAll 一致
+        List<Object> hashes = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (String key : keys) {
+                connection.hashCommands().hGetAll(raw(key));
+            }
+            return null;
+        });
+
+        List<String> studentIds = new ArrayList<>(keys.size());
+        List<byte[]> vectors = new ArrayList<>(keys.size());
+        for (int i = 0; i < keys.size(); i++) {
+            if (!(hashes.get(i) instanceof Map<?, ?> hash) || hash.isEmpty()) {
+                continue;
+            }
+            long[] kpIds = new long[hash.size()];
+            double[] probs = new double[hash.size()];
+            int n = 0;
+            for (Map.Entry<?, ?> e : hash.entrySet()) {
+                if (e.getValue() instanceof Number prob) {
+                    kpIds[n] = Long.parseLong(e.getKey().toString());
+                    probs[n] = prob.doubleValue();
+                    n++;
+                }
+            }
+            if (n == 0) {
+                continue;
+            }
+            int[] slotIds = slots.resolve(Arrays.copyOf(kpIds, n));
+            studentIds.add(keys.get(i).substring(MasteryStateStore.HASH_KEY.length()));
+            vectors.add(MasteryVectorCodec.encode(slotIds, probs, n));
+            totals.fields += n;
+        }
+
+        byte[] ttl = raw(Long.toString(TTL_SECONDS));
+        List<Object> filled = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (int i = 0; i < studentIds.size(); i++) {
+                connection.scriptingCommands().evalSha(sha, ReturnType.INTEGER, 1,
+                        raw(MasteryStateStore.vectorKey(studentIds.get(i))), ttl, vectors.get(i));
+            }
+            return null;
+        }, null);
+        for (Object f : filled) {
+            totals.filledSlots += f instanceof Number n ? n.longValue() : 0;
+        }
+        totals.students += studentIds.size();
+
+        for (int i = 0; i < studentIds.size() && totals.sampledStudents < sampleSize; i++) {
+            Long hashBytes = memoryUsage(MasteryStateStore.hashKey(studentIds.get(i)));
+            Long packedBytes = memoryUsage(MasteryStateStore.vectorKey(studentIds.get(i)));
+            if (hashBytes != null && packedBytes != null) {
+                Long masteryHashBytes = memoryUsage(StudentMasteryIndex.masteryKey(studentIds.get(i)));
+                Long weakKpsBytes = memoryUsage(StudentMasteryIndex.weakKpsKey(studentIds.get(i)));
+                totals.sampledStudents++;
+                totals.sampledHashBytes += hashBytes;
+                totals.sampledPackedBytes += packedBytes;
+                totals.sampledMasteryHashBytes += masteryHashBytes != null ? masteryHashBytes : 0;
+                totals.sampledWeakKpsBytes += weakKpsBytes != null ? weakKpsBytes : 0;
+            }
+        }
+
+        if (deleteSource) {
+            redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                for (String studentId : studentIds) {
+                    connection.keyCommands().unlink(raw(MasteryStateStore.hashKey(studentId)),
+                            raw(StudentMasteryIndex.masteryKey(studentId)));
+                }
+                return null;
+            });
+        }
+    }
+
+    private Long memoryUsage(String key) {
+        Object bytes = redisTemplate.execute((RedisCallback<Object>) connection ->
+                connection.execute("MEMORY", raw("USAGE"), raw(key)));
+        return bytes instanceof Number n ? n.longValue() : null;
+    }
+
+    private static boolean isStudentId(String suffix) {
+        if (suffix.isEmpty()) {
+            return false;
+        }
+        for (int i = 0; i < suffix.length(); i++) {
+            if (!Character.isDigit(suffix.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static byte[] raw(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        runner.shutdownNow();
+    }
+
+    private static final class Totals {
+        long students;
+        long fields;
+        long filledSlots;
+        long sampledStudents;
+        long sampledHashBytes;
+        long sampledPackedBytes;
+        long sampledMasteryHashBytes;
+        long sampledWeakKpsBytes;
+
+        MigrationReport toReport(LocalDateTime startedAt, boolean deleteSource, long elapsedMillis) {
+            // weak_kps 两种格式都保留，计入两侧总量；mastery 哈希只在 hash 格式下存在
+            long before = sampledHashBytes + sampledMasteryHashBytes + sampledWeakKpsBytes;
+            long after = sampledPackedBytes + sampledWeakKpsBytes;
+            double ratio = after > 0 ? (double) before / after : 0;
+            long savedPerStudent = sampledStudents > 0 ? (before - after) / sampledStudents : 0;
+            return new MigrationReport(startedAt, students, fields, filledSlots, deleteSource,
+                    sampledStudents, sampledHashBytes, sampledMasteryHashBytes, sampledWeakKpsBytes, sampledPackedBytes,
+                    Math.round(ratio * 100) / 100.0, savedPerStudent * students, elapsedMillis);
+        }
+    }
+
+    /**
+     * @param filledSlots          实际写入向量的槽位数 (已有在线值的槽位不覆盖)
+     * @param sampledHashBytes        采样学生旧哈希的 MEMORY USAGE 之和
+     * @param sampledMasteryHashBytes 采样学生 student:{id}:mastery 的 MEMORY USAGE 之和 (packed 格式不再写入)
+     * @param sampledWeakKpsBytes     采样学生 student:{id}:weak_kps 的 MEMORY USAGE 之和 (两种格式都保留)
+     * @param sampledPackedBytes      采样学生 packed 向量的 MEMORY USAGE 之和
+     * @param compressionRatio        (旧哈希 + mastery 哈希 + weak_kps) / (向量 + weak_kps)
+     * @param estimatedSavedBytes     按采样均值外推到全部迁移学生的节省字节数
+     */
+    public record MigrationReport(LocalDateTime startedAt, long students, long fields, long filledSlots,
+                                  boolean deletedSource, long sampledStudents, long sampledHashBytes,
+                                  long sampledMasteryHashBytes, long sampledWeakKpsBytes,
+                                  long sampledPackedBytes, double compressionRatio,
+                                  long estimatedSavedBytes, long elapsedMillis) {}
+}
@@ -0,0 +1,93 @@
+package com.edtech.kt.replay;
+
+import java.util.Arrays;
+
+/**
+ * 一批连续学生的完整答题历史，全部使用原始数组存储
+ * <p>
+ * ordinals/outcomes 顺序存放 (知识点序号, 作答结果)，
+ * 第 i 个学生 studentIds[i] 的历史覆盖 [starts[i], starts[i + 1])。
+ * 由读线程按 (学生, 时间) 顺序追加，且只在学生边界处切分，
+ * {@link #seal()} 之后交给工作线程只读使用。
+ */
+final class ReplayChunk {
+
+    private final long sequence;
+    private long[] studentIds = new long[64];
+    private int[] starts = new int[65];
+    private int[] ordinals;
+    private byte[] outcomes;
+    private int size;
+    private int studentCount;
+
+    ReplayChunk(long sequence, int expectedRows) {
+        this.sequence = sequence;
+        this.ordinals = new int[Math.max(16, expectedRows)];
+        this.outcomes = new byte[Math.max(16, expectedRows)];
+    }
+
+    void append(long studentId, int ordinal, boolean correct) {
+        if (studentCount == 0 || studentIds[studentCount - 1] != studentId) {
+            if (studentCount + 1 >= starts.length) {
+                starts = Arrays.copyOf(starts, starts.length << 1);
+                studentIds = Arrays.copyOf(studentIds, studentIds.length << 1);
+            }
+            studentIds[studentCount] = studentId;
+            starts[studentCount++] = size;
+        }
+        if (size == ordinals.length) {
+            ordinals = Arrays.copyOf(ordinals, size << 1);
+            outcomes = Arrays.copyOf(outcomes, size << 1);
+        }
+        ordinals[size] = ordinal;
+        outcomes[size++] = (byte) (correct ? 1 : 0);
+    }
+
+    /**
+     * 结束构建：写入哨兵
+     */
+    ReplayChunk seal() {
+        starts[studentCount] = size;
+        return this;
+    }
+
+    long sequence() {
+        return sequence;
+    }
+
+    int rowCount() {
+        return size;
+    }
+
+    int studentCount() {
+        return studentCount;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    long studentId(int i) {
+        return studentIds[i];
+    }
+
+    long lastStudentId() {
+        return studentIds[studentCount - 1];
+    }
+
+    int start(int i) {
+        return starts[i];
+    }
+
+    int end(int i) {
+        return starts[i + 1];
+    }
+
+    int ordinal(int index) {
+        return ordinals[index];
+    }
+
+    boolean correct(int index) {
+        return outcomes[index] != 0;
+    }
+}
@@ -0,0 +1,141 @@
+package com.edtech.kt.replay;
+
+import com.edtech.kt.service.StudentStateLoader;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+
+import javax.sql.DataSource;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 预热近期活跃学生的掌握度 (Redis 重启 / 大面积过期后，避免首批提交集中回源 MySQL)
+ * <p>
+ * 按 idx_time 流式读取近 N 天答过题的学生，按批检查 Redis 中是否已有状态，
+ * 没有的一条查询取回全部知识点并只填充缺失字段 ({@link StudentStateLoader#warm})，不覆盖在线值。
+ */
+@Service
+@Slf4j
+public class StudentStateWarmupJob {
+
+    private static final String ACTIVE_STUDENTS_SQL =
+            "SELECT DISTINCT student_id FROM student_exercise_log WHERE submit_time >= ?";
+
+    private final JdbcTemplate streamingJdbc;
+    private final StudentStateLoader stateLoader;
+
+    @Value("${kt.warmup.active-days:7}")
+    private int activeDays;
+
+    @Value("${kt.warmup.batch-students:500}")
+    private int batchStudents;
+
+    @Value("${kt.warmup.on-startup:false}")
+    private boolean onStartup;
+
+    private final AtomicBoolean running = new AtomicBoolean(false);
+    private final ExecutorService runner = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "kt-state-warmup");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private volatile WarmupReport lastReport;
+
+    public StudentStateWarmupJob(DataSource dataSource,
+                                 StudentStateLoader stateLoader,
+                                 @Value("${kt.replay.fetch-size:-2147483648}") int fetchSize) {
+        this.streamingJdbc = new JdbcTemplate(dataSource);
+        this.streamingJdbc.setFetchSize(fetchSize);
+        this.stateLoader = stateLoader;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUpOnStartup() {
+        if (onStartup) {
+            startAsync();
+        }
+    }
+
+    /**
+     * 后台启动一次预热
+     *
+     * @return 已有任务在运行时返回 false
+     */
+    public boolean startAsync() {
+        if (!running.compareAndSet(false, true)) {
+            return false;
+        }
+        runner.execute(() -> {
+            try {
+                lastReport = warm();
+            } catch (Exception e) {
+                log.error("Student state warmup failed", e);
+            } finally {
+                running.set(false);
+            }
+        });
+        return true;
+    }
+
+    public boolean isRunning() {
+        return running.get();
+    }
+
+    public WarmupReport getReport() {
+        return lastReport;
+    }
+
+    private WarmupReport warm() {
+        LocalDateTime startedAt = LocalDateTime.now();
+        long start = System.currentTimeMillis();
+        int studentsPerBatch = Math.max(1, batchStudents);
+        List<Long> batch = new ArrayList<>(studentsPerBatch);
+        // 0: 活跃学生, 1: 回填学生, 2: 回填状态
+        long[] counts = new long[3];
+        streamingJdbc.query(ACTIVE_STUDENTS_SQL, (RowCallbackHandler) rs -> {
+            batch.add(rs.getLong(1));
+            counts[0]++;
+            if (batch.size() >= studentsPerBatch) {
+                warmBatch(batch, counts);
+            }
+        }, Timestamp.valueOf(startedAt.minusDays(activeDays)));
+        if (!batch.isEmpty()) {
+            warmBatch(batch, counts);
+        }
+
+        long elapsed = System.currentTimeMillis() - start;
+        log.info("Student state warmup finished: {} active students, {} warmed with {} states in {} ms",
+                counts[0], counts[1], counts[2], elapsed);
+        return new WarmupReport(startedAt, activeDays, counts[0], counts[1], counts[2], elapsed);
+    }
+
+    private void warmBatch(List<Long> batch, long[] counts) {
+        long[] warmed = stateLoader.warm(batch);
+        counts[1] += warmed[0];
+        counts[2] += warmed[1];
+        batch.clear();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        runner.shutdownNow();
+    }
+
+    /**
+     * @param warmedStudents Redis 中原本没有状态、本次回填的学生数
+     */
+    public record WarmupReport(LocalDateTime startedAt, int activeDays, long activeStudents,
+                               long warmedStudents, long warmedStates, long elapsedMillis) {}
+}
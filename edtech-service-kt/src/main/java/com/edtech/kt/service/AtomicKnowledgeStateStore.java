@@ -0,0 +1,160 @@
+package com.edtech.kt.service;
+
+import com.edtech.kt.service.BktParameterRegistry.BktParams;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
+import org.springframework.scripting.support.ResourceScriptSource;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 基于 Lua 脚本的原子掌握度更新 (Redis 为热路径唯一数据源)
+ * <p>
+ * 读取、BKT 计算与写回在 Redis 内一次执行，同一学生的并发提交 (多标签页 / 多设备) 不再丢失更新。
+ * 每次写入在 kt:state:version:{studentId} 中递增版本号，供写后缓冲按版本合并，MySQL 仍异步落库。
+ * 同一次执行中一并维护 {@link StudentMasteryIndex} 的薄弱知识点有序集合 (hash 格式另写掌握度哈希)。
+ * 脚本按 {@link MasteryStateStore} 的存储格式选择 (哈希 / packed 向量)。
+ * 字段缺失时脚本不做写入并返回 miss，由调用方从写后缓冲 / MySQL 取初始值后重试。
+ */
+@Service
+@RequiredArgsConstructor
+public class AtomicKnowledgeStateStore {
+
+    private static final String VERSION_KEY = "kt:state:version:";
+    private static final String VECTOR_VERSION_KEY = "kt:state:version:vec:";
+    private static final String MISS = "miss";
+    private static final long TTL_SECONDS = TimeUnit.DAYS.toSeconds(7);
+
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> BKT_UPDATE = script("lua/bkt_update.lua");
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> MASTERY_NUDGE = script("lua/mastery_nudge.lua");
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> BKT_UPDATE_PACKED = script("lua/bkt_update_packed.lua");
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> MASTERY_NUDGE_PACKED = script("lua/mastery_nudge_packed.lua");
+
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final MasteryStateStore stateStore;
+    private final KnowledgePointSlots slots;
+
+    @Value("${kt.atomic-update.enabled:true}")
+    private boolean enabled;
+
+    /**
+     * 是否使用 Lua 原子更新；关闭时回退为 HGET + Java 计算 + HSET
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 原子执行一次 BKT 更新
+     *
+     * @param initial 字段缺失时使用的初始掌握度，null 表示未知
+     * @return 更新结果；字段缺失且 initial 为 null 时返回 null (未写入)
+     */
+    public Update update(Long studentId, Long kpId, boolean isCorrect, BktParams params, Double initial) {
+        boolean packed = stateStore.isPacked();
+        List<String> args = new ArrayList<>(8);
+        args.add(kpId.toString());
+        args.add(isCorrect ? "1" : "0");
+        args.add(encode(params.pTransit()));
+        args.add(encode(params.pGuess()));
+        args.add(encode(params.pSlip()));
+        args.add(Long.toString(TTL_SECONDS));
+        args.add(initial != null ? encode(initial) : "");
+        if (packed) {
+            args.add(Integer.toString(slots.slotOf(kpId)));
+        }
+        List<String> result = execute(packed ? BKT_UPDATE_PACKED : BKT_UPDATE, packed, studentId, args.toArray());
+        if (result == null || result.isEmpty() || MISS.equals(result.get(0))) {
+            return null;
+        }
+        return new Update(Double.parseDouble(result.get(0)), Double.parseDouble(result.get(1)),
+                Long.parseLong(result.get(2)));
+    }
+
+    /**
+     * 原子地将多个知识点向 target 靠拢
+     *
+     * @param raise    true 只升，false 只降
+     * @param kpIds    知识点ID
+     * @param weights  与 kpIds 对应的靠拢比例
+     * @param initials 与 kpIds 对应的缺失初始值，元素为 null 表示未知
+     * @return 每个知识点的结果 (未满足方向条件的知识点不在其中)
+     */
+    public List<Nudge> nudge(Long studentId, double target, boolean raise,
+                             long[] kpIds, double[] weights, Double[] initials, int count) {
+        boolean packed = stateStore.isPacked();
+        List<String> args = new ArrayList<>(3 + count * 4);
+        args.add(encode(target));
+        args.add(raise ? "1" : "0");
+        args.add(Long.toString(TTL_SECONDS));
+        for (int i = 0; i < count; i++) {
+            args.add(Long.toString(kpIds[i]));
+            if (packed) {
+                args.add(Integer.toString(slots.slotOf(kpIds[i])));
+            }
+            args.add(encode(weights[i]));
+            args.add(initials[i] != null ? encode(initials[i]) : "");
+        }
+        List<String> result = execute(packed ? MASTERY_NUDGE_PACKED : MASTERY_NUDGE, packed, studentId, args.toArray());
+        List<Nudge> nudges = new ArrayList<>(result != null ? result.size() / 3 : 0);
+        if (result == null) {
+            return nudges;
+        }
+        for (int i = 0; i + 2 < result.size(); i += 3) {
+            long kpId = Long.parseLong(result.get(i));
+            if (MISS.equals(result.get(i + 1))) {
+                nudges.add(new Nudge(kpId, true, Double.NaN, 0));
+            } else {
+                nudges.add(new Nudge(kpId, false, Double.parseDouble(result.get(i + 1)), Long.parseLong(result.get(i + 2))));
+            }
+        }
+        return nudges;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private List<String> execute(RedisScript<List> script, boolean packed, Long studentId, Object... args) {
+        // 参数与返回值按纯文本传递，不经过模板的 JSON 序列化 (多值返回逐个元素反序列化)
+        RedisSerializer text = StringRedisSerializer.UTF_8;
+        List<String> keys = packed
+                ? List.of(MasteryStateStore.vectorKey(studentId), VECTOR_VERSION_KEY + studentId,
+                        StudentMasteryIndex.weakKpsKey(studentId))
+                : List.of(MasteryStateStore.hashKey(studentId), VERSION_KEY + studentId,
+                        StudentMasteryIndex.masteryKey(studentId), StudentMasteryIndex.weakKpsKey(studentId));
+        return (List<String>) redisTemplate.execute(script, text, text, keys, args);
+    }
+
+    private static String encode(double value) {
+        return Double.toString(value);
+    }
+
+    @SuppressWarnings("rawtypes")
+    private static RedisScript<List> script(String path) {
+        DefaultRedisScript<List> script = new DefaultRedisScript<>();
+        script.setScriptSource(new ResourceScriptSource(new ClassPathResource(path)));
+        script.setResultType(List.class);
+        return script;
+    }
+
+    /**
+     * @param version 该 (学生, 知识点) 在 Redis 中的递增版本号
+     */
+    public record Update(double oldProb, double newProb, long version) {}
+
+    /**
+     * @param missing 字段缺失且未提供初始值，未写入
+     */
+    public record Nudge(long kpId, boolean missing, double newProb, long version) {}
+}
@@ -0,0 +1,320 @@
+package com.edtech.kt.service;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.edtech.common.collection.LongIntHashMap;
+import com.edtech.model.entity.KnowledgePoint;
+import com.edtech.model.entity.Question;
+import com.edtech.model.mapper.KnowledgePointMapper;
+import com.edtech.model.mapper.QuestionMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * BKT 参数注册表 (进程内快照)
+ * <p>
+ * 预加载 题目 -> 知识点 映射以及每个知识点的 BKT 参数，答题热路径不再访问 MySQL 读取元数据。
+ * 知识点按 ID 分配稠密序号 (ordinal)，序号一经分配在进程生命周期内保持稳定。
+ * 快照不可变，更新时整体替换 (写时复制)。
+ * 运行期新登记的题目只写入并发覆盖表，不复制整张题目映射，下一次全量重建时并入快照。
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class BktParameterRegistry {
+
+    private static final int NO_ORDINAL = -1;
+
+    private final KnowledgePointMapper knowledgePointMapper;
+    private final QuestionMapper questionMapper;
+
+    private volatile Snapshot snapshot;
+    /** 快照之后登记的 题目ID -> 知识点ID，{@link #reloadAll()} 时清空 */
+    private final ConcurrentHashMap<Long, Long> registeredQuestions = new ConcurrentHashMap<>();
+
+    private final LongAdder questionHits = new LongAdder();
+    private final LongAdder questionMisses = new LongAdder();
+    private final LongAdder paramHits = new LongAdder();
+    private final LongAdder paramMisses = new LongAdder();
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        try {
+            reloadAll();
+        } catch (Exception e) {
+            log.warn("BKT registry warm-up failed, will load lazily", e);
+        }
+    }
+
+    /**
+     * 获取题目所属知识点 ID
+     *
+     * @return 知识点ID，题目不存在时返回 null
+     */
+    public Long getKnowledgePointId(Long questionId) {
+        Snapshot s = snapshot();
+        int ordinal = s.questionKp.get(questionId);
+        if (ordinal != NO_ORDINAL) {
+            questionHits.increment();
+            return s.kpIds[ordinal];
+        }
+
+        Long registered = registeredQuestions.get(questionId);
+        if (registered != null) {
+            questionHits.increment();
+            return registered;
+        }
+
+        questionMisses.increment();
+        Question question = questionMapper.selectById(questionId);
+        if (question == null || question.getKnowledgePointId() == null) {
+            return null;
+        }
+        registerQuestion(questionId, question.getKnowledgePointId());
+        return question.getKnowledgePointId();
+    }
+
+    /**
+     * 获取知识点 BKT 参数 (缺省字段使用默认值)
+     */
+    public BktParams getParams(Long kpId) {
+        Snapshot s = snapshot();
+        int ordinal = s.kpOrdinals.get(kpId);
+        if (ordinal != NO_ORDINAL) {
+            paramHits.increment();
+            return s.params[ordinal];
+        }
+
+        paramMisses.increment();
+        synchronized (this) {
+            Snapshot current = snapshot();
+            ordinal = current.kpOrdinals.get(kpId);
+            if (ordinal == NO_ORDINAL) {
+                snapshot = current.withKnowledgePoint(kpId, BktParams.of(knowledgePointMapper.selectById(kpId)));
+                ordinal = snapshot.kpOrdinals.get(kpId);
+            }
+            return snapshot.params[ordinal];
+        }
+    }
+
+    /**
+     * 知识点稠密序号，未注册时返回 -1
+     */
+    public int ordinalOf(long kpId) {
+        return snapshot().kpOrdinals.get(kpId);
+    }
+
+    /**
+     * 题目所属知识点的序号，仅查快照 (不回源)，未登记时返回 -1
+     * 供批处理按原始类型遍历，避免装箱
+     */
+    public int questionKpOrdinal(long questionId) {
+        Snapshot s = snapshot();
+        int ordinal = s.questionKp.get(questionId);
+        if (ordinal != NO_ORDINAL || registeredQuestions.isEmpty()) {
+            return ordinal;
+        }
+        Long kpId = registeredQuestions.get(questionId);
+        return kpId != null ? s.kpOrdinals.get(kpId) : NO_ORDINAL;
+    }
+
+    /**
+     * 当前已分配的知识点序号数量，序号范围为 [0, count)
+     */
+    public int knowledgePointCount() {
+        return snapshot().kpIds.length;
+    }
+
+    public long knowledgePointIdAt(int ordinal) {
+        return snapshot().kpIds[ordinal];
+    }
+
+    public BktParams paramsAt(int ordinal) {
+        return snapshot().params[ordinal];
+    }
+
+    /**
+     * 新题目入库后登记 (如 AI 生成题目 type=99)
+     */
+    public void registerQuestion(Long questionId, Long kpId) {
+        if (questionId == null || kpId == null) {
+            return;
+        }
+        synchronized (this) {
+            Snapshot current = snapshot();
+            if (current.kpOrdinals.get(kpId) == NO_ORDINAL) {
+                snapshot = current.withKnowledgePoint(kpId, BktParams.of(knowledgePointMapper.selectById(kpId)));
+            }
+            // 与 reloadAll 互斥：重建后登记的题目不会被清掉
+            registeredQuestions.put(questionId, kpId);
+        }
+    }
+
+    /**
+     * 知识点被管理员修改/删除后调用，重新加载 BKT 参数 (题目映射与序号保持不变)
+     */
+    public void invalidateKnowledgePoints() {
+        synchronized (this) {
+            if (snapshot == null) {
+                return;
+            }
+            List<KnowledgePoint> kps = knowledgePointMapper.selectList(null);
+            snapshot = snapshot.withReloadedParams(kps);
+            log.info("BKT registry reloaded {} knowledge points", kps.size());
+        }
+    }
+
+    /**
+     * 全量重建快照
+     */
+    public synchronized void reloadAll() {
+        long start = System.currentTimeMillis();
+        List<KnowledgePoint> kps = knowledgePointMapper.selectList(null);
+        List<Question> questions = questionMapper.selectList(new LambdaQueryWrapper<Question>()
+                .select(Question::getId, Question::getKnowledgePointId));
+        snapshot = Snapshot.build(kps, questions);
+        // 登记的题目已入库，包含在本次查询结果中
+        registeredQuestions.clear();
+        log.info("BKT registry loaded: {} knowledge points, {} questions in {} ms",
+                snapshot.kpIds.length, snapshot.questionKp.size(), System.currentTimeMillis() - start);
+    }
+
+    public Stats getStats() {
+        Snapshot s = snapshot;
+        return new Stats(
+                s != null ? s.kpIds.length : 0,
+                (s != null ? s.questionKp.size() : 0) + registeredQuestions.size(),
+                questionHits.sum(), questionMisses.sum(),
+                paramHits.sum(), paramMisses.sum());
+    }
+
+    private Snapshot snapshot() {
+        Snapshot s = snapshot;
+        if (s == null) {
+            synchronized (this) {
+                if (snapshot == null) {
+                    reloadAll();
+                }
+                s = snapshot;
+            }
+        }
+        return s;
+    }
+
+    /**
+     * 单个知识点的 BKT 参数
+     */
+    public record BktParams(double pInit, double pTransit, double pGuess, double pSlip) {
+
+        public static final double DEFAULT_P_INIT = 0.1;
+        public static final double DEFAULT_P_TRANSIT = 0.1;
+        public static final double DEFAULT_P_GUESS = 0.2;
+        public static final double DEFAULT_P_SLIP = 0.1;
+
+        public static final BktParams DEFAULT = new BktParams(DEFAULT_P_INIT, DEFAULT_P_TRANSIT, DEFAULT_P_GUESS, DEFAULT_P_SLIP);
+
+        public static BktParams of(KnowledgePoint kp) {
+            if (kp == null) {
+                return DEFAULT;
+            }
+            return new BktParams(
+                    kp.getPInit() != null ? kp.getPInit() : DEFAULT_P_INIT,
+                    kp.getPTransit() != null ? kp.getPTransit() : DEFAULT_P_TRANSIT,
+                    kp.getPGuess() != null ? kp.getPGuess() : DEFAULT_P_GUESS,
+                    kp.getPSlip() != null ? kp.getPSlip() : DEFAULT_P_SLIP);
+        }
+    }
+
+    public record Stats(int knowledgePoints, int questions,
+                        long questionHits, long questionMisses,
+                        long paramHits, long paramMisses) {}
+
+    /**
+     * 不可变快照：kpOrdinals/questionKp 构建完成后不再修改
+     */
+    private static final class Snapshot {
+        private final LongIntHashMap kpOrdinals;
+        private final long[] kpIds;
+        private final BktParams[] params;
+        private final LongIntHashMap questionKp;
+
+        private Snapshot(LongIntHashMap kpOrdinals, long[] kpIds, BktParams[] params, LongIntHashMap questionKp) {
+            this.kpOrdinals = kpOrdinals;
+            this.kpIds = kpIds;
+            this.params = params;
+            this.questionKp = questionKp;
+        }
+
+        static Snapshot build(List<KnowledgePoint> kps, List<Question> questions) {
+            long[] ids = kps.stream()
+                    .map(KnowledgePoint::getId)
+                    .filter(Objects::nonNull)
+                    .mapToLong(Long::longValue)
+                    .sorted()
+                    .toArray();
+            LongIntHashMap ordinals = new LongIntHashMap(ids.length, NO_ORDINAL);
+            for (int i = 0; i < ids.length; i++) {
+                ordinals.put(ids[i], i);
+            }
+            BktParams[] params = new BktParams[ids.length];
+            Arrays.fill(params, BktParams.DEFAULT);
+            for (KnowledgePoint kp : kps) {
+                if (kp.getId() != null) {
+                    params[ordinals.get(kp.getId())] = BktParams.of(kp);
+                }
+            }
+
+            Snapshot s = new Snapshot(ordinals, ids, params, new LongIntHashMap(questions.size(), NO_ORDINAL));
+            for (Question q : questions) {
+                if (q.getId() == null || q.getKnowledgePointId() == null) {
+                    continue;
+                }
+                long kpId = q.getKnowledgePointId();
+                if (s.kpOrdinals.get(kpId) == NO_ORDINAL) {
+                    // 题目引用了不存在的知识点：分配序号并使用默认参数
+                    s = s.withKnowledgePoint(kpId, BktParams.DEFAULT);
+                }
+                s.questionKp.put(q.getId(), s.kpOrdinals.get(kpId));
+            }
+            return s;
+        }
+
+        Snapshot withKnowledgePoint(long kpId, BktParams p) {
+            int ordinal = kpIds.length;
+            LongIntHashMap ordinals = kpOrdinals.copy();
+            ordinals.put(kpId, ordinal);
+            long[] ids = Arrays.copyOf(kpIds, ordinal + 1);
+            ids[ordinal] = kpId;
+            BktParams[] ps = Arrays.copyOf(params, ordinal + 1);
+            ps[ordinal] = p;
+            return new Snapshot(ordinals, ids, ps, questionKp);
+        }
+
+        Snapshot withReloadedParams(List<KnowledgePoint> kps) {
+            BktParams[] ps = new BktParams[kpIds.length];
+            // 已删除的知识点保留序号，回退为默认参数
+            Arrays.fill(ps, BktParams.DEFAULT);
+            Snapshot s = new Snapshot(kpOrdinals, kpIds, ps, questionKp);
+            for (KnowledgePoint kp : kps) {
+                if (kp.getId() == null) {
+                    continue;
+                }
+                int ordinal = s.kpOrdinals.get(kp.getId());
+                if (ordinal == NO_ORDINAL) {
+                    s = s.withKnowledgePoint(kp.getId(), BktParams.of(kp));
+                } else {
+                    s.params[ordinal] = BktParams.of(kp);
+                }
+            }
+            return s;
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package com.edtech.kt.service;
+
+import com.edtech.common.collection.LongIntHashMap;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
+import org.springframework.scripting.support.ResourceScriptSource;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 知识点 -> 掌握度向量槽位 的持久目录
+ * <p>
+ * {@link BktParameterRegistry} 的序号只在单个进程内稳定，不能作为 Redis 中共享二进制串的下标；
+ * 槽位由 Lua 脚本在 Redis 中原子分配 (kt:kp:slots)，只增不复用，各实例本地缓存 (写时复制)。
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class KnowledgePointSlots {
+
+    public static final int NO_SLOT = -1;
+
+    private static final String SLOTS_KEY = "kt:kp:slots";
+    private static final String SEQ_KEY = "kt:kp:slots:seq";
+
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> ALLOCATE = allocateScript();
+
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final BktParameterRegistry parameterRegistry;
+
+    private volatile LongIntHashMap slots = new LongIntHashMap(16, NO_SLOT);
+    private volatile long[] kpIds = new long[0];
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        try {
+            refresh();
+            int count = parameterRegistry.knowledgePointCount();
+            long[] ids = new long[count];
+            for (int o = 0; o < count; o++) {
+                ids[o] = parameterRegistry.knowledgePointIdAt(o);
+            }
+            resolve(ids);
+            log.info("Knowledge point slots loaded: {} slots", slots.size());
+        } catch (Exception e) {
+            log.warn("Knowledge point slot warm-up failed, will allocate lazily", e);
+        }
+    }
+
+    /**
+     * 知识点的槽位，本地未缓存时向 Redis 查询 / 分配
+     */
+    public int slotOf(long kpId) {
+        int slot = slots.get(kpId);
+        return slot != NO_SLOT ? slot : resolve(new long[]{kpId})[0];
+    }
+
+    /**
+     * 仅查本地缓存，未缓存返回 {@link #NO_SLOT} (管道内调用，不能发起同步请求)
+     */
+    public int cachedSlotOf(long kpId) {
+        return slots.get(kpId);
+    }
+
+    /**
+     * 槽位对应的知识点；本地未知 (其他实例新分配) 时重新加载目录，仍未知返回 0
+     */
+    public long kpIdAt(int slot) {
+        long kpId = cachedKpIdAt(slot);
+        if (kpId == 0 && slot >= 0) {
+            refresh();
+            kpId = cachedKpIdAt(slot);
+        }
+        return kpId;
+    }
+
+    private long cachedKpIdAt(int slot) {
+        long[] ids = kpIds;
+        return slot >= 0 && slot < ids.length ? ids[slot] : 0;
+    }
+
+    /**
+     * 从 Redis 重新加载完整目录
+     */
+    public void refresh() {
+        Map<byte[], byte[]> directory = redisTemplate.execute((RedisCallback<Map<byte[], byte[]>>) connection ->
+                connection.hashCommands().hGetAll(SLOTS_KEY.getBytes(StandardCharsets.UTF_8)));
+        if (directory == null || directory.isEmpty()) {
+            return;
+        }
+        synchronized (this) {
+            LongIntHashMap next = slots.copy();
+            long[] reverse = kpIds;
+            for (Map.Entry<byte[], byte[]> e : directory.entrySet()) {
+                long kpId = Long.parseLong(new String(e.getKey(), StandardCharsets.UTF_8));
+                int slot = Integer.parseInt(new String(e.getValue(), StandardCharsets.UTF_8));
+                next.put(kpId, slot);
+                if (slot >= reverse.length) {
+                    reverse = Arrays.copyOf(reverse, Math.max(slot + 1, reverse.length * 2));
+                }
+                reverse[slot] = kpId;
+            }
+            slots = next;
+            kpIds = reverse;
+        }
+    }
+
+    /**
+     * 批量解析槽位，未缓存的一次脚本调用分配
+     */
+    public int[] resolve(long[] ids) {
+        int[] result = new int[ids.length];
+        List<String> missing = new ArrayList<>();
+        LongIntHashMap current = slots;
+        for (int i = 0; i < ids.length; i++) {
+            result[i] = current.get(ids[i]);
+            if (result[i] == NO_SLOT) {
+                missing.add(Long.toString(ids[i]));
+            }
+        }
+        if (missing.isEmpty()) {
+            return result;
+        }
+
+        List<Long> allocated = allocate(missing);
+        synchronized (this) {
+            LongIntHashMap next = slots.copy();
+            long[] reverse = kpIds;
+            for (int i = 0; i < missing.size(); i++) {
+                long kpId = Long.parseLong(missing.get(i));
+                int slot = allocated.get(i).intValue();
+                next.put(kpId, slot);
+                if (slot >= reverse.length) {
+                    reverse = Arrays.copyOf(reverse, Math.max(slot + 1, reverse.length * 2));
+                }
+                reverse[slot] = kpId;
+            }
+            slots = next;
+            kpIds = reverse;
+            for (int i = 0; i < ids.length; i++) {
+                result[i] = next.get(ids[i]);
+            }
+        }
+        return result;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private List<Long> allocate(List<String> kpIdArgs) {
+        RedisSerializer text = StringRedisSerializer.UTF_8;
+        return (List<Long>) redisTemplate.execute(ALLOCATE, text, text,
+                List.of(SLOTS_KEY, SEQ_KEY), kpIdArgs.toArray());
+    }
+
+    @SuppressWarnings("rawtypes")
+    private static RedisScript<List> allocateScript() {
+        DefaultRedisScript<List> script = new DefaultRedisScript<>();
+        script.setScriptSource(new ResourceScriptSource(new ClassPathResource("lua/kp_slot_allocate.lua")));
+        script.setResultType(List.class);
+        return script;
+    }
+}
@@ -0,0 +1,223 @@
+package com.edtech.kt.service;
+
+import com.edtech.model.entity.KnowledgeState;
+import com.edtech.model.mapper.KnowledgeStateMapper;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * knowledge_state 写后缓冲 (Write-Behind)
+ * <p>
+ * Redis 中 student:state:{id} 已是热数据，MySQL 只做持久化。
+ * 同一 (学生, 知识点) 在一个刷新周期内的多次更新只保留最后一次，
+ * 按定时或积压阈值批量 INSERT ... ON DUPLICATE KEY UPDATE，应用关闭时全部刷出。
+ * 条目在所在批次写库成功后才标记为已落库 (写库期间 getPending 仍返回该值)，
+ * 已落库的条目再保留 retention-ms，保存最后落库的版本号：迟到的旧版本变更不会在下个周期覆盖新值。
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class KnowledgeStateWriteBehind {
+
+    /** 未带版本的变更总是覆盖缓冲中的旧值 */
+    private static final long UNVERSIONED = -1L;
+
+    private final KnowledgeStateMapper knowledgeStateMapper;
+
+    @Value("${kt.write-behind.enabled:true}")
+    private boolean enabled;
+
+    @Value("${kt.write-behind.batch-size:500}")
+    private int batchSize;
+
+    @Value("${kt.write-behind.flush-threshold:2000}")
+    private int flushThreshold;
+
+    @Value("${kt.write-behind.retention-ms:10000}")
+    private long retentionMs;
+
+    private final ConcurrentHashMap<StateKey, Pending> dirty = new ConcurrentHashMap<>();
+    /** 尚未落库的条目数 (dirty 中还包含保留期内已落库的条目) */
+    private final AtomicInteger unflushed = new AtomicInteger();
+    private final AtomicBoolean flushing = new AtomicBoolean(false);
+    private final ExecutorService flushExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "kt-write-behind");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final LongAdder enqueued = new LongAdder();
+    private final LongAdder flushedRows = new LongAdder();
+    private final LongAdder flushedBatches = new LongAdder();
+
+    /**
+     * 记录一次掌握度变更；关闭写后缓冲时直接同步写库
+     */
+    public void enqueue(Long studentId, Long kpId, double prob) {
+        enqueue(studentId, kpId, prob, UNVERSIONED);
+    }
+
+    /**
+     * 带版本号的变更 (Redis 原子更新返回的递增版本)：
+     * 并发线程入队顺序可能与 Redis 中的执行顺序相反，只保留版本最大的值，
+     * 与保留期内已落库的版本比较，迟到的旧版本直接丢弃
+     */
+    public void enqueue(Long studentId, Long kpId, double prob, long version) {
+        if (!enabled) {
+            knowledgeStateMapper.batchUpsert(List.of(toEntity(new StateKey(studentId, kpId), prob)));
+            return;
+        }
+        Pending next = new Pending(prob, version, 0);
+        dirty.compute(new StateKey(studentId, kpId), (key, current) -> {
+            if (current != null && next.version() != UNVERSIONED && next.version() < current.version()) {
+                return current;
+            }
+            if (current == null || current.isWritten()) {
+                unflushed.incrementAndGet();
+            }
+            return next;
+        });
+        enqueued.increment();
+        if (unflushed.get() >= flushThreshold && !flushing.get()) {
+            flushExecutor.execute(this::flush);
+        }
+    }
+
+    /**
+     * 尚未落库 (或刚落库) 的最新值 (读穿透 DB 前先查这里，避免读到旧值)
+     */
+    public Double getPending(Long studentId, Long kpId) {
+        Pending pending = dirty.get(new StateKey(studentId, kpId));
+        return pending != null ? pending.prob() : null;
+    }
+
+    @Scheduled(fixedDelayString = "${kt.write-behind.flush-interval-ms:1000}")
+    public void scheduledFlush() {
+        flush();
+    }
+
+    /**
+     * 刷出当前所有脏数据，并清除超过保留期的已落库条目
+     *
+     * @return 写入行数
+     */
+    public int flush() {
+        if (dirty.isEmpty() || !flushing.compareAndSet(false, true)) {
+            return 0;
+        }
+        int written = 0;
+        try {
+            long expiredBefore = System.currentTimeMillis() - retentionMs;
+            Map<StateKey, Pending> batch = new LinkedHashMap<>();
+            for (Map.Entry<StateKey, Pending> e : dirty.entrySet()) {
+                Pending pending = e.getValue();
+                if (pending.isWritten()) {
+                    if (pending.writtenAt() < expiredBefore) {
+                        dirty.remove(e.getKey(), pending);
+                    }
+                    continue;
+                }
+                batch.put(e.getKey(), pending);
+                if (batch.size() >= batchSize) {
+                    written += writeBatch(batch);
+                    batch = new LinkedHashMap<>();
+                }
+            }
+            if (!batch.isEmpty()) {
+                written += writeBatch(batch);
+            }
+        } finally {
+            flushing.set(false);
+        }
+        if (written > 0) {
+            log.debug("Flushed {} knowledge states", written);
+        }
+        return written;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flushExecutor.shutdown();
+        try {
+            flushExecutor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // 等待定时线程上可能正在进行的刷新结束
+        long deadline = System.currentTimeMillis() + 5000;
+        while (flushing.get() && System.currentTimeMillis() < deadline) {
+            Thread.onSpinWait();
+        }
+        int written = flush();
+        log.info("Knowledge state write-behind stopped, flushed {} pending rows", written);
+    }
+
+    public Stats getStats() {
+        return new Stats(unflushed.get(), enqueued.sum(), flushedRows.sum(), flushedBatches.sum());
+    }
+
+    /**
+     * 写库成功后把仍是本次写入值的条目标记为已落库 (期间被更新的条目留待下个周期)；
+     * 失败时条目原样保留，下个周期重试
+     */
+    private int writeBatch(Map<StateKey, Pending> batch) {
+        List<KnowledgeState> states = new ArrayList<>(batch.size());
+        batch.forEach((key, pending) -> states.add(toEntity(key, pending.prob())));
+        try {
+            knowledgeStateMapper.batchUpsert(states);
+        } catch (Exception e) {
+            log.error("Failed to flush {} knowledge states, will retry", states.size(), e);
+            return 0;
+        }
+        long now = System.currentTimeMillis();
+        batch.forEach((key, pending) -> dirty.computeIfPresent(key, (k, current) -> {
+            if (current != pending) {
+                return current;
+            }
+            unflushed.decrementAndGet();
+            return new Pending(pending.prob(), pending.version(), now);
+        }));
+        flushedRows.add(states.size());
+        flushedBatches.increment();
+        return states.size();
+    }
+
+    private static KnowledgeState toEntity(StateKey key, double prob) {
+        KnowledgeState state = new KnowledgeState();
+        state.setStudentId(key.studentId());
+        state.setKnowledgePointId(key.kpId());
+        state.setMasteryProbability(BigDecimal.valueOf(prob));
+        return state;
+    }
+
+    private record StateKey(long studentId, long kpId) {}
+
+    /**
+     * @param writtenAt 落库时间，0 表示尚未落库
+     */
+    private record Pending(double prob, long version, long writtenAt) {
+
+        boolean isWritten() {
+            return writtenAt != 0;
+        }
+    }
+
+    public record Stats(int pending, long enqueued, long flushedRows, long flushedBatches) {}
+}
@@ -1,39 +1,34 @@
 package com.edtech.kt.service;
 
-import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
-import com.edtech.model.entity.KnowledgePoint;
-import com.edtech.model.entity.KnowledgeState;
-import com.edtech.model.entity.Question;
-import com.edtech.model.mapper.KnowledgePointMapper;
-import com.edtech.model.mapper.KnowledgeStateMapper;
-import com.edtech.model.mapper.QuestionMapper;
+import com.edtech.kt.engine.EngineStateStore;
+import com.edtech.kt.engine.KnowledgeTracingEngine;
+import com.edtech.kt.engine.KnowledgeTracingEngines;
+import com.edtech.kt.service.BktParameterRegistry.BktParams;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.math.BigDecimal;
-import java.util.concurrent.TimeUnit;
+import java.util.Map;
 
 @Service
 @Slf4j
 @RequiredArgsConstructor
 public class KnowledgeTracingService {
 
-    private final KnowledgeStateMapper knowledgeStateMapper;
-    private final QuestionMapper questionMapper;
-    private final KnowledgePointMapper knowledgePointMapper;
-    private final RedisTemplate<String, Object> redisTemplate;
-
-    // Default BKT Parameters (Fallback)
-    private static final double DEFAULT_P_INIT = 0.1;
-    private static final double DEFAULT_P_TRANSIT = 0.1;
-    private static final double DEFAULT_P_GUESS = 0.2;
-    private static final double DEFAULT_P_SLIP = 0.1;
+    private final BktParameterRegistry parameterRegistry;
+    private final KnowledgeStateWriteBehind stateWriteBehind;
+    private final MasteryPropagationService propagationService;
+    private final AtomicKnowledgeStateStore atomicStateStore;
+    private final StudentMasteryIndex masteryIndex;
+    private final MasteryStateStore masteryStateStore;
+    private final StudentMasteryCache masteryCache;
+    private final KnowledgeTracingEngines engines;
+    private final EngineStateStore engineStateStore;
+    private final StudentStateLoader stateLoader;
 
     /**
-     * 更新学生知识状态 (BKT Algorithm)
+     * 更新学生知识状态 (按知识点选择的引擎，默认 BKT)
      *
      * @param studentId  学生ID
      * @param questionId 题目ID
@@ -41,47 +36,82 @@ public class KnowledgeTracingService {
      */
     @Transactional(rollbackFor = Exception.class)
     public void updateKnowledgeState(Long studentId, Long questionId, boolean isCorrect) {
-        log.info("Starting BKT for Student: {}, Question: {}, Correct: {}", studentId, questionId, isCorrect);
+        log.info("Starting KT for Student: {}, Question: {}, Correct: {}", studentId, questionId, isCorrect);
 
-        // 1. Get Question & Knowledge Point
-        Question question = questionMapper.selectById(questionId);
-        if (question == null) {
+        // 1. Resolve Knowledge Point (in-memory registry, DB only on miss)
+        Long kpId = parameterRegistry.getKnowledgePointId(questionId);
+        if (kpId == null) {
             log.warn("Question not found: {}", questionId);
             return;
         }
-        Long kpId = question.getKnowledgePointId();
-        KnowledgePoint kp = knowledgePointMapper.selectById(kpId);
 
         // 2. Get BKT Parameters
-        double pInit = kp.getPInit() != null ? kp.getPInit() : DEFAULT_P_INIT;
-        double pTransit = kp.getPTransit() != null ? kp.getPTransit() : DEFAULT_P_TRANSIT;
-        double pGuess = kp.getPGuess() != null ? kp.getPGuess() : DEFAULT_P_GUESS;
-        double pSlip = kp.getPSlip() != null ? kp.getPSlip() : DEFAULT_P_SLIP;
-
-        // 3. Get Current State (From Redis L1 or DB L2)
-        String stateKey = "student:state:" + studentId;
-        Double currentProb = (Double) redisTemplate.opsForHash().get(stateKey, kpId.toString());
-
-        if (currentProb == null) {
-            KnowledgeState dbState = knowledgeStateMapper.selectOne(new LambdaQueryWrapper<KnowledgeState>()
-                    .eq(KnowledgeState::getStudentId, studentId)
-                    .eq(KnowledgeState::getKnowledgePointId, kpId));
-            
-            // If no previous state, use P(L0)
-            currentProb = (dbState != null) ? dbState.getMasteryProbability().doubleValue() : pInit;
+        BktParams params = parameterRegistry.getParams(kpId);
+        double pInit = params.pInit();
+        double pTransit = params.pTransit();
+        double pGuess = params.pGuess();
+        double pSlip = params.pSlip();
+
+        double currentProb;
+        double newProb;
+        KnowledgeTracingEngine engine = engines.engineFor(kpId);
+        if (!engines.isBkt(engine)) {
+            // 3-5. Engine state read-modify-write with a version check (retried on conflict);
+            // the derived mastery and weak-KP index are written by the same script, in version order
+            EngineStateStore.Update update = engineStateStore.update(studentId, kpId, engine, params, isCorrect,
+                    () -> loadPersistedProbability(studentId, kpId, pInit));
+            currentProb = update.oldProb();
+            newProb = update.newProb();
+
+            // 6. Write Back to DB (versioned by the engine state)
+            stateWriteBehind.enqueue(studentId, kpId, newProb, update.version());
+        } else if (atomicStateStore.isEnabled()) {
+            // 3-5. Read, BKT and write back atomically inside Redis (one round-trip)
+            AtomicKnowledgeStateStore.Update update = atomicStateStore.update(studentId, kpId, isCorrect, params, null);
+            if (update == null) {
+                // Field missing in Redis: seed from write-behind / DB and retry (an update racing in wins)
+                update = atomicStateStore.update(studentId, kpId, isCorrect, params,
+                        loadPersistedProbability(studentId, kpId, pInit));
+            }
+            currentProb = update.oldProb();
+            newProb = update.newProb();
+
+            // 6. Write Back to DB (versioned, so out-of-order enqueues keep the latest value)
+            stateWriteBehind.enqueue(studentId, kpId, newProb, update.version());
+        } else {
+            // 3. Get Current State (From Redis L1 or DB L2)
+            Double cached = masteryStateStore.get(studentId, kpId);
+            currentProb = cached != null ? cached : loadPersistedProbability(studentId, kpId, pInit);
+
+            // 4. Calculate New Probability using BKT
+            newProb = calculateNewProbabilityBKT(currentProb, isCorrect, pTransit, pGuess, pSlip);
+
+            // 5. Update Redis (L1 Cache) and the strategy engine's mastery / weak-KP index
+            masteryStateStore.put(studentId, Map.of(kpId, newProb));
+            masteryIndex.put(studentId, Map.of(kpId, newProb));
+
+            // 6. Write Back to DB (L2 Persistence, coalesced write-behind)
+            stateWriteBehind.enqueue(studentId, kpId, newProb);
         }
 
-        // 4. Calculate New Probability using BKT
-        double newProb = calculateNewProbabilityBKT(currentProb, isCorrect, pTransit, pGuess, pSlip);
+        // 7. Propagate evidence along prerequisite edges (bounded depth / fan-out)
+        propagationService.propagate(studentId, kpId, isCorrect, newProb);
+
+        // 8. Invalidate near caches (local now, other nodes via pub/sub)
+        masteryCache.invalidate(studentId);
 
-        // 5. Update Redis (L1 Cache)
-        redisTemplate.opsForHash().put(stateKey, kpId.toString(), newProb);
-        redisTemplate.expire(stateKey, 7, TimeUnit.DAYS);
+        log.info("Updated Knowledge State ({}) for Student: {}, KP: {}, Old: {}, New: {}",
+                engine.name(), studentId, kpId, currentProb, newProb);
+    }
 
-        // 6. Write Back to DB (L2 Persistence)
-        saveStateToDb(studentId, kpId, newProb);
+    /**
+     * Redis 未命中时的当前掌握度：写后缓冲 -> MySQL (冷学生按学生合并加载) -> P(L0)
+     */
+    private double loadPersistedProbability(Long studentId, Long kpId, double pInit) {
+        Double persisted = stateLoader.persisted(studentId, kpId);
 
-        log.info("Updated Knowledge State (BKT) for Student: {}, KP: {}, Old: {}, New: {}", studentId, kpId, currentProb, newProb);
+        // If no previous state, use P(L0)
+        return persisted != null ? persisted : pInit;
     }
 
     /**
@@ -89,8 +119,9 @@ public class KnowledgeTracingService {
      *
      * P(L_t | Result) = posterior probability given result
      * P(L_t+1) = P(L_t | Result) + (1 - P(L_t | Result)) * P(T)
+     * 无状态纯函数，离线重放与在线更新共用同一实现
      */
-    private double calculateNewProbabilityBKT(double pL, boolean isCorrect, double pT, double pG, double pS) {
+    public static double calculateNewProbabilityBKT(double pL, boolean isCorrect, double pT, double pG, double pS) {
         double posterior;
 
         if (isCorrect) {
@@ -111,23 +142,4 @@ public class KnowledgeTracingService {
         // Clamp to avoid 1.0 or 0.0 purely
         return Math.max(0.0001, Math.min(0.9999, nextProb));
     }
-
-    private void saveStateToDb(Long studentId, Long kpId, double prob) {
-        KnowledgeState state = knowledgeStateMapper.selectOne(new LambdaQueryWrapper<KnowledgeState>()
-                .eq(KnowledgeState::getStudentId, studentId)
-                .eq(KnowledgeState::getKnowledgePointId, kpId));
-
-        if (state == null) {
-            state = new KnowledgeState();
-            state.setStudentId(studentId);
-            state.setKnowledgePointId(kpId);
-        }
-        state.setMasteryProbability(BigDecimal.valueOf(prob));
-        
-        if (state.getId() == null) {
-            knowledgeStateMapper.insert(state);
-        } else {
-            knowledgeStateMapper.updateById(state);
-        }
-    }
 }
@@ -0,0 +1,242 @@
+package com.edtech.kt.service;
+
+import com.edtech.kt.engine.KnowledgeTracingEngines;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 沿前驱关系传播掌握度证据
+ * <p>
+ * 软约束 "前驱掌握度不低于后继"：
+ * 答对知识点 k 时，k 的前驱 (深度 d) 向 k 的新掌握度靠拢，只升不降；
+ * 答错知识点 k 时，以 k 为前驱的后继知识点向 k 的新掌握度靠拢，只降不升。
+ * 靠拢比例为 strength * decay^(d-1)。遍历受深度与扇出限制，写入走与 BKT 相同的 Redis + 写后缓冲路径
+ * (开启原子更新时同样由 Lua 脚本在 Redis 内完成读-改-写)。
+ * 只调整使用 BKT 的关联知识点：其他引擎的掌握度由 kt:engine:state 推导，直接改写掌握度会在下次作答时被覆盖，
+ * 且会推进 BKT 的版本号，与引擎 CAS 的版本序列在写后缓冲中混用。
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class MasteryPropagationService {
+
+    private final PrerequisiteGraph prerequisiteGraph;
+    private final BktParameterRegistry parameterRegistry;
+    private final KnowledgeTracingEngines engines;
+    private final KnowledgeStateWriteBehind stateWriteBehind;
+    private final StudentStateLoader stateLoader;
+    private final AtomicKnowledgeStateStore atomicStateStore;
+    private final StudentMasteryIndex masteryIndex;
+    private final MasteryStateStore masteryStateStore;
+
+    @Value("${kt.propagation.enabled:true}")
+    private boolean enabled;
+
+    @Value("${kt.propagation.strength:0.3}")
+    private double strength;
+
+    @Value("${kt.propagation.decay:0.5}")
+    private double decay;
+
+    @Value("${kt.propagation.max-depth:2}")
+    private int maxDepth;
+
+    @Value("${kt.propagation.max-fan-out:8}")
+    private int maxFanOut;
+
+    @Value("${kt.propagation.max-nodes:32}")
+    private int maxNodes;
+
+    private final LongAdder propagations = new LongAdder();
+    private final LongAdder updatedStates = new LongAdder();
+
+    /**
+     * @param kpId    作答的知识点
+     * @param newProb 该知识点 BKT 更新后的掌握度
+     * @return 被调整的关联知识点数
+     */
+    public int propagate(Long studentId, Long kpId, boolean isCorrect, double newProb) {
+        if (!enabled || prerequisiteGraph.edgeCount() == 0) {
+            return 0;
+        }
+        int origin = parameterRegistry.ordinalOf(kpId);
+        if (origin < 0) {
+            return 0;
+        }
+        int[] ordinals = new int[maxNodes];
+        int[] depths = new int[maxNodes];
+        int count = retainBkt(ordinals, depths,
+                prerequisiteGraph.traverse(origin, isCorrect, maxDepth, maxFanOut, ordinals, depths));
+        if (count == 0) {
+            return 0;
+        }
+
+        int updated = atomicStateStore.isEnabled()
+                ? propagateAtomically(studentId, isCorrect, newProb, ordinals, depths, count)
+                : propagateDirect(studentId, isCorrect, newProb, ordinals, depths, count);
+        propagations.increment();
+        updatedStates.add(updated);
+        log.debug("Propagated {} evidence from KP {} to {} related KPs for student {}",
+                isCorrect ? "positive" : "negative", kpId, updated, studentId);
+        return updated;
+    }
+
+    public Stats getStats() {
+        return new Stats(enabled, prerequisiteGraph.edgeCount(), propagations.sum(), updatedStates.sum());
+    }
+
+    /**
+     * Lua 原子调整；Redis 中缺失的知识点取库中值后再执行一次
+     */
+    private int propagateAtomically(Long studentId, boolean isCorrect, double newProb,
+                                    int[] ordinals, int[] depths, int count) {
+        long[] kpIds = new long[count];
+        double[] weights = new double[count];
+        for (int i = 0; i < count; i++) {
+            kpIds[i] = parameterRegistry.knowledgePointIdAt(ordinals[i]);
+            weights[i] = weight(depths[i]);
+        }
+        List<AtomicKnowledgeStateStore.Nudge> nudges = atomicStateStore.nudge(
+                studentId, newProb, isCorrect, kpIds, weights, new Double[count], count);
+
+        int updated = 0;
+        List<Long> misses = new ArrayList<>();
+        for (AtomicKnowledgeStateStore.Nudge nudge : nudges) {
+            if (nudge.missing()) {
+                misses.add(nudge.kpId());
+            } else {
+                stateWriteBehind.enqueue(studentId, nudge.kpId(), nudge.newProb(), nudge.version());
+                updated++;
+            }
+        }
+        if (misses.isEmpty()) {
+            return updated;
+        }
+
+        Map<Long, Double> persisted = loadPersisted(studentId, misses);
+        int retryCount = 0;
+        long[] retryIds = new long[misses.size()];
+        double[] retryWeights = new double[misses.size()];
+        Double[] initials = new Double[misses.size()];
+        for (int i = 0; i < count; i++) {
+            Double initial = persisted.get(kpIds[i]);
+            if (initial != null) {
+                retryIds[retryCount] = kpIds[i];
+                retryWeights[retryCount] = weights[i];
+                initials[retryCount] = initial;
+                retryCount++;
+            }
+        }
+        for (AtomicKnowledgeStateStore.Nudge nudge : atomicStateStore.nudge(
+                studentId, newProb, isCorrect, retryIds, retryWeights, initials, retryCount)) {
+            if (!nudge.missing()) {
+                stateWriteBehind.enqueue(studentId, nudge.kpId(), nudge.newProb(), nudge.version());
+                updated++;
+            }
+        }
+        return updated;
+    }
+
+    /**
+     * 一次读取关联知识点后在 Java 中计算并管道写回 (非原子模式)
+     */
+    private int propagateDirect(Long studentId, boolean isCorrect, double newProb,
+                                int[] ordinals, int[] depths, int count) {
+        List<Long> kpIds = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            kpIds.add(parameterRegistry.knowledgePointIdAt(ordinals[i]));
+        }
+        double[] current = loadCurrent(studentId, kpIds);
+
+        Map<Long, Double> updates = new HashMap<>();
+        for (int i = 0; i < count; i++) {
+            double p = current[i];
+            // 前驱只升、后继只降
+            if (isCorrect ? newProb <= p : newProb >= p) {
+                continue;
+            }
+            double adjusted = Math.max(0.0001, Math.min(0.9999, p + weight(depths[i]) * (newProb - p)));
+            long relatedKpId = kpIds.get(i);
+            updates.put(relatedKpId, adjusted);
+            stateWriteBehind.enqueue(studentId, relatedKpId, adjusted);
+        }
+        if (!updates.isEmpty()) {
+            masteryStateStore.put(studentId, updates);
+            masteryIndex.put(studentId, updates);
+        }
+        return updates.size();
+    }
+
+    /**
+     * 原地剔除非 BKT 引擎的知识点
+     *
+     * @return 剩余个数
+     */
+    private int retainBkt(int[] ordinals, int[] depths, int count) {
+        int kept = 0;
+        for (int i = 0; i < count; i++) {
+            if (engines.isBkt(engines.engineFor(parameterRegistry.knowledgePointIdAt(ordinals[i])))) {
+                ordinals[kept] = ordinals[i];
+                depths[kept] = depths[i];
+                kept++;
+            }
+        }
+        return kept;
+    }
+
+    private double weight(int depth) {
+        return strength * Math.pow(decay, depth - 1);
+    }
+
+    /**
+     * 关联知识点的当前掌握度：Redis 一次读取，未命中的再按 {@link #loadPersisted} 补齐
+     */
+    private double[] loadCurrent(Long studentId, List<Long> kpIds) {
+        double[] current = new double[kpIds.size()];
+        List<Double> cached = masteryStateStore.multiGet(studentId, kpIds);
+        List<Long> misses = null;
+        for (int i = 0; i < current.length; i++) {
+            Double value = cached.get(i);
+            if (value != null) {
+                current[i] = value;
+            } else {
+                current[i] = Double.NaN;
+                if (misses == null) {
+                    misses = new ArrayList<>();
+                }
+                misses.add(kpIds.get(i));
+            }
+        }
+        if (misses == null) {
+            return current;
+        }
+        Map<Long, Double> persisted = loadPersisted(studentId, misses);
+        for (int i = 0; i < current.length; i++) {
+            if (Double.isNaN(current[i])) {
+                current[i] = persisted.get(kpIds.get(i));
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Redis 未命中的知识点：写后缓冲 / 库 ({@link StudentStateLoader})，仍缺失用 P(L0)
+     */
+    private Map<Long, Double> loadPersisted(Long studentId, List<Long> kpIds) {
+        Map<Long, Double> result = stateLoader.persisted(studentId, kpIds);
+        for (Long kpId : kpIds) {
+            result.computeIfAbsent(kpId, id -> parameterRegistry.paramsAt(parameterRegistry.ordinalOf(id)).pInit());
+        }
+        return result;
+    }
+
+    public record Stats(boolean enabled, int edges, long propagations, long updatedStates) {}
+}
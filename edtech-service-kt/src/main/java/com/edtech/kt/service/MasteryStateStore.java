@@ -0,0 +1,282 @@
+package com.edtech.kt.service;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.connection.BitFieldSubCommands;
+import org.springframework.data.redis.connection.BitFieldSubCommands.BitFieldType;
+import org.springframework.data.redis.connection.BitFieldSubCommands.Offset;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StreamUtils;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 学生掌握度在 Redis 中的存储格式 (kt.state.format)
+ * <p>
+ * hash   : student:state:{id}     哈希，字段为知识点ID，值为 JSON 序列化的 Double
+ * packed : student:state:vec:{id} 二进制串，按 {@link KnowledgePointSlots} 槽位存放 16 位量化掌握度
+ *          (见 {@link MasteryVectorCodec})，读写走 GETRANGE / GET / BITFIELD
+ * <p>
+ * 非原子路径 (HGET + HSET 回退模式、前驱传播、批量重放) 经此读写；原子模式的 Lua 脚本按同一格式选择。
+ * 切换为 packed 后旧哈希不再写入，可由 MasteryVectorMigrationJob 迁移。
+ */
+@Service
+@RequiredArgsConstructor
+public class MasteryStateStore {
+
+    public static final String HASH_KEY = "student:state:";
+    public static final String VECTOR_KEY = "student:state:vec:";
+    static final long TTL_DAYS = 7;
+
+    private static final BitFieldType U16 = BitFieldType.unsigned(16);
+    private static final byte[] FILL_SCRIPT = readScript("lua/mastery_vector_fill.lua");
+
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final KnowledgePointSlots slots;
+
+    @Value("${kt.state.format:hash}")
+    private String format;
+
+    public boolean isPacked() {
+        return "packed".equalsIgnoreCase(format);
+    }
+
+    public static String hashKey(Object studentId) {
+        return HASH_KEY + studentId;
+    }
+
+    public static String vectorKey(Object studentId) {
+        return VECTOR_KEY + studentId;
+    }
+
+    /**
+     * @return 当前掌握度，Redis 中无状态时返回 null
+     */
+    public Double get(Long studentId, Long kpId) {
+        if (!isPacked()) {
+            Object value = redisTemplate.opsForHash().get(hashKey(studentId), kpId.toString());
+            return value instanceof Number n ? n.doubleValue() : null;
+        }
+        int slot = slots.slotOf(kpId);
+        long offset = (long) slot * MasteryVectorCodec.BYTES_PER_SLOT;
+        byte[] bytes = redisTemplate.execute((RedisCallback<byte[]>) connection ->
+                connection.stringCommands().getRange(rawKey(vectorKey(studentId)), offset, offset + 1));
+        double prob = MasteryVectorCodec.decode(bytes, 0);
+        return Double.isNaN(prob) ? null : prob;
+    }
+
+    /**
+     * 一次往返读取多个知识点，结果与 kpIds 一一对应，无状态的为 null
+     */
+    public List<Double> multiGet(Long studentId, List<Long> kpIds) {
+        List<Double> result = new ArrayList<>(kpIds.size());
+        if (!isPacked()) {
+            List<Object> fields = new ArrayList<>(kpIds.size());
+            for (Long kpId : kpIds) {
+                fields.add(kpId.toString());
+            }
+            List<Object> values = redisTemplate.opsForHash().multiGet(hashKey(studentId), fields);
+            for (int i = 0; i < kpIds.size(); i++) {
+                Object value = values != null ? values.get(i) : null;
+                result.add(value instanceof Number n ? n.doubleValue() : null);
+            }
+            return result;
+        }
+        // 整个向量只有 2 * 槽位数 字节，一次 GET 比逐个 GETRANGE 更省往返
+        byte[] vector = getVector(studentId);
+        for (Long kpId : kpIds) {
+            double prob = MasteryVectorCodec.decode(vector, slots.slotOf(kpId));
+            result.add(Double.isNaN(prob) ? null : prob);
+        }
+        return result;
+    }
+
+    /**
+     * 学生在 Redis 中的全部知识点掌握度 (HGETALL / 整串 GET 解码)
+     */
+    public Map<Long, Double> getAll(Long studentId) {
+        Map<Long, Double> result = new HashMap<>();
+        if (!isPacked()) {
+            Map<Object, Object> entries = redisTemplate.opsForHash().entries(hashKey(studentId));
+            entries.forEach((field, value) -> {
+                if (value instanceof Number n) {
+                    result.put(Long.parseLong(field.toString()), n.doubleValue());
+                }
+            });
+            return result;
+        }
+        byte[] vector = getVector(studentId);
+        for (int slot = 0; slot < MasteryVectorCodec.capacity(vector); slot++) {
+            int q = MasteryVectorCodec.raw(vector, slot);
+            if (q != MasteryVectorCodec.MISSING) {
+                long kpId = slots.kpIdAt(slot);
+                if (kpId != 0) {
+                    result.put(kpId, MasteryVectorCodec.dequantize(q));
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 学生在 Redis 中是否有状态 (整个键过期 / 丢失时为 false)
+     */
+    public boolean exists(Long studentId) {
+        return Boolean.TRUE.equals(redisTemplate.hasKey(isPacked() ? vectorKey(studentId) : hashKey(studentId)));
+    }
+
+    /**
+     * 学生列表中 Redis 没有状态的学生 (一次管道往返)
+     */
+    public List<Long> missing(List<Long> studentIds) {
+        List<Object> exists = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (Long studentId : studentIds) {
+                connection.keyCommands().exists(rawKey(isPacked() ? vectorKey(studentId) : hashKey(studentId)));
+            }
+            return null;
+        });
+        List<Long> result = new ArrayList<>();
+        for (int i = 0; i < studentIds.size(); i++) {
+            if (!Boolean.TRUE.equals(exists.get(i))) {
+                result.add(studentIds.get(i));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 只填充 Redis 中缺失的知识点 (冷加载 / 预热)，已有的在线值不覆盖
+     */
+    public void fillMissing(Map<Long, Map<Long, Double>> byStudent) {
+        if (byStudent.isEmpty()) {
+            return;
+        }
+        if (!isPacked()) {
+            redisTemplate.executePipelined(new SessionCallback<Object>() {
+                @Override
+                @SuppressWarnings("unchecked")
+                public <K, V> Object execute(RedisOperations<K, V> operations) throws DataAccessException {
+                    RedisOperations<String, Object> ops = (RedisOperations<String, Object>) operations;
+                    byStudent.forEach((studentId, probs) -> {
+                        String key = hashKey(studentId);
+                        probs.forEach((kpId, prob) -> ops.opsForHash().putIfAbsent(key, kpId.toString(), prob));
+                        ops.expire(key, TTL_DAYS, TimeUnit.DAYS);
+                    });
+                    return null;
+                }
+            });
+            return;
+        }
+        prepare(byStudent.values().stream().flatMap(probs -> probs.keySet().stream())
+                .mapToLong(Long::longValue).distinct().toArray());
+        List<byte[]> keys = new ArrayList<>(byStudent.size());
+        List<byte[]> vectors = new ArrayList<>(byStudent.size());
+        byStudent.forEach((studentId, probs) -> {
+            int[] slotIds = new int[probs.size()];
+            double[] values = new double[probs.size()];
+            int n = 0;
+            for (Map.Entry<Long, Double> e : probs.entrySet()) {
+                slotIds[n] = slots.cachedSlotOf(e.getKey());
+                values[n++] = e.getValue();
+            }
+            keys.add(rawKey(vectorKey(studentId)));
+            vectors.add(MasteryVectorCodec.encode(slotIds, values, n));
+        });
+        byte[] ttl = rawKey(Long.toString(TimeUnit.DAYS.toSeconds(TTL_DAYS)));
+        String sha = redisTemplate.execute((RedisCallback<String>) connection ->
+                connection.scriptingCommands().scriptLoad(FILL_SCRIPT));
+        redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (int i = 0; i < keys.size(); i++) {
+                connection.scriptingCommands().evalSha(sha, ReturnType.INTEGER, 1, keys.get(i), ttl, vectors.get(i));
+            }
+            return null;
+        });
+    }
+
+    /**
+     * 读取完整向量 (packed 格式)，不存在时返回 null
+     */
+    public byte[] getVector(Long studentId) {
+        return redisTemplate.execute((RedisCallback<byte[]>) connection ->
+                connection.stringCommands().get(rawKey(vectorKey(studentId))));
+    }
+
+    /**
+     * 单个学生的若干知识点掌握度，一次管道往返写入
+     */
+    public void put(Long studentId, Map<Long, Double> probs) {
+        if (probs.isEmpty()) {
+            return;
+        }
+        prepare(probs.keySet().stream().mapToLong(Long::longValue).toArray());
+        redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> Object execute(RedisOperations<K, V> operations) throws DataAccessException {
+                write((RedisOperations<String, Object>) operations, studentId, probs);
+                return null;
+            }
+        });
+    }
+
+    /**
+     * packed 格式下预先解析槽位；{@link #write} 在管道内执行，只能使用本地已缓存的槽位
+     */
+    public void prepare(long[] kpIds) {
+        if (isPacked()) {
+            slots.resolve(kpIds);
+        }
+    }
+
+    /**
+     * 在调用方的管道内追加写入命令，packed 格式要求已调用 {@link #prepare}
+     */
+    public void write(RedisOperations<String, Object> ops, Long studentId, Map<Long, Double> probs) {
+        if (!isPacked()) {
+            String key = hashKey(studentId);
+            Map<String, Object> hash = new HashMap<>(probs.size() * 2);
+            probs.forEach((kpId, prob) -> hash.put(kpId.toString(), prob));
+            ops.opsForHash().putAll(key, hash);
+            ops.expire(key, TTL_DAYS, TimeUnit.DAYS);
+            return;
+        }
+        String key = vectorKey(studentId);
+        BitFieldSubCommands commands = BitFieldSubCommands.create();
+        for (Map.Entry<Long, Double> e : probs.entrySet()) {
+            int slot = slots.cachedSlotOf(e.getKey());
+            if (slot == KnowledgePointSlots.NO_SLOT) {
+                throw new IllegalStateException("Knowledge point slot not resolved: " + e.getKey());
+            }
+            commands = commands.set(U16).valueAt(Offset.offset(slot).multipliedByTypeLength())
+                    .to(MasteryVectorCodec.quantize(e.getValue()));
+        }
+        ops.opsForValue().bitField(key, commands);
+        ops.expire(key, TTL_DAYS, TimeUnit.DAYS);
+    }
+
+    static byte[] rawKey(String key) {
+        return key.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] readScript(String path) {
+        try {
+            return StreamUtils.copyToByteArray(new ClassPathResource(path).getInputStream());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
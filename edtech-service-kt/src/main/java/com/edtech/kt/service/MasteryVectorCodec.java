@@ -0,0 +1,75 @@
+package com.edtech.kt.service;
+
+/**
+ * 紧凑掌握度向量编解码
+ * <p>
+ * 每个学生一个二进制串，第 slot 个知识点占 [2*slot, 2*slot+2) 两个字节，大端无符号 16 位，
+ * 与 Redis BITFIELD u16 #slot 的布局一致。掌握度量化为 round(p * 65535)，最小为 1；
+ * 0 保留表示 "无状态" (SETRANGE / BITFIELD 扩展出的填充字节天然为 0)。
+ * 量化误差 < 1e-5，小于 knowledge_state.mastery_probability DECIMAL(5,4) 的精度。
+ */
+public final class MasteryVectorCodec {
+
+    public static final int BYTES_PER_SLOT = 2;
+    public static final int MISSING = 0;
+    private static final int MAX = 0xFFFF;
+
+    private MasteryVectorCodec() {
+    }
+
+    public static int quantize(double prob) {
+        long q = Math.round(prob * MAX);
+        return (int) Math.max(1, Math.min(MAX, q));
+    }
+
+    public static double dequantize(int q) {
+        return (double) q / MAX;
+    }
+
+    /**
+     * @return slot 处的掌握度，越界或无状态时返回 NaN
+     */
+    public static double decode(byte[] vector, int slot) {
+        int q = raw(vector, slot);
+        return q == MISSING ? Double.NaN : dequantize(q);
+    }
+
+    /**
+     * slot 处的量化值，越界时返回 {@link #MISSING}
+     */
+    public static int raw(byte[] vector, int slot) {
+        int offset = slot * BYTES_PER_SLOT;
+        if (vector == null || slot < 0 || offset + 1 >= vector.length) {
+            return MISSING;
+        }
+        return ((vector[offset] & 0xFF) << 8) | (vector[offset + 1] & 0xFF);
+    }
+
+    /**
+     * 按 slot 编码完整向量，未出现的 slot 为 0
+     */
+    public static byte[] encode(int[] slots, double[] probs, int count) {
+        int maxSlot = -1;
+        for (int i = 0; i < count; i++) {
+            maxSlot = Math.max(maxSlot, slots[i]);
+        }
+        byte[] vector = new byte[(maxSlot + 1) * BYTES_PER_SLOT];
+        for (int i = 0; i < count; i++) {
+            write(vector, slots[i], quantize(probs[i]));
+        }
+        return vector;
+    }
+
+    public static void write(byte[] vector, int slot, int q) {
+        int offset = slot * BYTES_PER_SLOT;
+        vector[offset] = (byte) (q >>> 8);
+        vector[offset + 1] = (byte) q;
+    }
+
+    /**
+     * 向量可容纳的 slot 数
+     */
+    public static int capacity(byte[] vector) {
+        return vector == null ? 0 : vector.length / BYTES_PER_SLOT;
+    }
+}
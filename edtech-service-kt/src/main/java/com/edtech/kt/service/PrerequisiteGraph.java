@@ -0,0 +1,172 @@
+package com.edtech.kt.service;
+
+import com.edtech.model.entity.KnowledgePrerequisite;
+import com.edtech.model.mapper.KnowledgePrerequisiteMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 知识点前驱关系图 (进程内 CSR 快照)
+ * <p>
+ * 节点为 {@link BktParameterRegistry} 分配的知识点序号，正反两个方向各一份 CSR：
+ * prerequisites[k] 为 k 的前驱知识点，dependents[k] 为以 k 为前驱的后继知识点，邻接表按序号升序。
+ * 快照不可变，管理端修改关系后整体重建替换。
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class PrerequisiteGraph {
+
+    private final KnowledgePrerequisiteMapper prerequisiteMapper;
+    private final BktParameterRegistry parameterRegistry;
+
+    private volatile Csr prerequisites = Csr.EMPTY;
+    private volatile Csr dependents = Csr.EMPTY;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        try {
+            rebuild();
+        } catch (Exception e) {
+            log.warn("Prerequisite graph warm-up failed, propagation disabled until rebuilt", e);
+        }
+    }
+
+    /**
+     * 从 knowledge_prerequisite 全量重建
+     */
+    public synchronized void rebuild() {
+        long start = System.currentTimeMillis();
+        List<KnowledgePrerequisite> relations = prerequisiteMapper.selectList(null);
+        int[] from = new int[relations.size()];
+        int[] to = new int[relations.size()];
+        int edges = 0;
+        for (KnowledgePrerequisite rel : relations) {
+            if (rel.getKnowledgePointId() == null || rel.getPrereqPointId() == null
+                    || rel.getKnowledgePointId().equals(rel.getPrereqPointId())) {
+                continue;
+            }
+            // getParams 会为尚未登记的知识点分配序号
+            parameterRegistry.getParams(rel.getKnowledgePointId());
+            parameterRegistry.getParams(rel.getPrereqPointId());
+            from[edges] = parameterRegistry.ordinalOf(rel.getKnowledgePointId());
+            to[edges] = parameterRegistry.ordinalOf(rel.getPrereqPointId());
+            edges++;
+        }
+        int nodes = parameterRegistry.knowledgePointCount();
+        Csr newPrerequisites = Csr.build(nodes, from, to, edges);
+        Csr newDependents = Csr.build(nodes, to, from, edges);
+        prerequisites = newPrerequisites;
+        dependents = newDependents;
+        log.info("Prerequisite graph built: {} knowledge points, {} edges in {} ms",
+                nodes, edges, System.currentTimeMillis() - start);
+    }
+
+    /**
+     * 从 origin 出发按层遍历前驱 (或后继)，每个节点最多展开 maxFanOut 条边，深度不超过 maxDepth
+     *
+     * @param towardsPrerequisites true 沿前驱方向，false 沿后继方向
+     * @param ordinals             输出：到达的知识点序号 (不含 origin，去重)
+     * @param depths               输出：对应深度 (从 1 开始)
+     * @return 写入的节点数，受输出数组长度限制
+     */
+    public int traverse(int origin, boolean towardsPrerequisites, int maxDepth, int maxFanOut,
+                        int[] ordinals, int[] depths) {
+        Csr csr = towardsPrerequisites ? prerequisites : dependents;
+        int count = 0;
+        int levelStart = 0;
+        int levelEnd = 0;
+        for (int depth = 1; depth <= maxDepth; depth++) {
+            // 上一层的节点 (第一层为 origin)
+            int from = depth == 1 ? -1 : levelStart;
+            int until = depth == 1 ? 0 : levelEnd;
+            levelStart = count;
+            for (int i = from; i < until; i++) {
+                int node = i < 0 ? origin : ordinals[i];
+                int expanded = 0;
+                for (int e = csr.start(node), end = csr.end(node); e < end && expanded < maxFanOut; e++) {
+                    int next = csr.targets[e];
+                    if (next == origin || contains(ordinals, count, next)) {
+                        continue;
+                    }
+                    if (count == ordinals.length) {
+                        return count;
+                    }
+                    ordinals[count] = next;
+                    depths[count] = depth;
+                    count++;
+                    expanded++;
+                }
+            }
+            levelEnd = count;
+            if (levelEnd == levelStart) {
+                break;
+            }
+        }
+        return count;
+    }
+
+    public int edgeCount() {
+        return prerequisites.targets.length;
+    }
+
+    private static boolean contains(int[] values, int length, int value) {
+        for (int i = 0; i < length; i++) {
+            if (values[i] == value) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 压缩稀疏行：节点 k 的邻居为 targets[offsets[k], offsets[k + 1])
+     */
+    private static final class Csr {
+        static final Csr EMPTY = new Csr(new int[1], new int[0]);
+
+        final int[] offsets;
+        final int[] targets;
+
+        Csr(int[] offsets, int[] targets) {
+            this.offsets = offsets;
+            this.targets = targets;
+        }
+
+        static Csr build(int nodes, int[] from, int[] to, int edges) {
+            int[] offsets = new int[nodes + 1];
+            for (int i = 0; i < edges; i++) {
+                offsets[from[i] + 1]++;
+            }
+            for (int k = 0; k < nodes; k++) {
+                offsets[k + 1] += offsets[k];
+            }
+            int[] targets = new int[edges];
+            int[] cursor = Arrays.copyOf(offsets, nodes);
+            for (int i = 0; i < edges; i++) {
+                targets[cursor[from[i]]++] = to[i];
+            }
+            for (int k = 0; k < nodes; k++) {
+                Arrays.sort(targets, offsets[k], offsets[k + 1]);
+            }
+            return new Csr(offsets, targets);
+        }
+
+        /**
+         * 快照之后新登记的知识点没有边
+         */
+        int start(int node) {
+            return node + 1 < offsets.length ? offsets[node] : 0;
+        }
+
+        int end(int node) {
+            return node + 1 < offsets.length ? offsets[node + 1] : 0;
+        }
+    }
+}
@@ -0,0 +1,275 @@
+package com.edtech.kt.service;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.edtech.model.entity.KnowledgeState;
+import com.edtech.model.mapper.KnowledgeStateMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 学生掌握度进程内近端缓存 (仪表盘、家长端、管理端、选题读取)
+ * <p>
+ * 值为学生全部知识点的不可变掌握度快照：knowledge_state 为底，叠加 Redis 中的热数据 ({@link MasteryStateStore#getAll})。
+ * 按容量 LRU 淘汰，另有写入后过期时间兜底 (pub/sub 消息不保证送达)。
+ * 知识追踪写入后本地立即失效，并把学生ID攒批经 Redis pub/sub 广播给其他节点。
+ * 加载期间收到失效时不缓存加载结果，避免旧值回填。
+ * 指标：命中/未命中、按原因的淘汰数、命中条目的年龄 (陈旧度)、跨节点失效延迟。
+ */
+@Service
+@Slf4j
+public class StudentMasteryCache implements MessageListener {
+
+    public static final String CHANNEL = "kt:mastery:invalidate";
+    private static final String ALL = "*";
+
+    private final MasteryStateStore masteryStateStore;
+    private final KnowledgeStateMapper knowledgeStateMapper;
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final long ttlMillis;
+    private final Map<Long, Entry> cache;
+
+    /** 本节点标识，忽略自己发出的广播 */
+    private final String nodeId = UUID.randomUUID().toString();
+    private final Set<Long> pendingBroadcast = ConcurrentHashMap.newKeySet();
+    private volatile boolean pendingBroadcastAll;
+    /** 加载中的学生 -> 加载令牌；失效时移除，加载完成发现令牌不在则不缓存 */
+    private final Map<Long, Long> loading = new ConcurrentHashMap<>();
+    private final AtomicLong loadTokens = new AtomicLong();
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter sizeEvictions;
+    private final Counter expiredEvictions;
+    private final Counter invalidations;
+    private final Counter remoteInvalidations;
+    private final DistributionSummary hitAge;
+    private final Timer invalidationLag;
+
+    public StudentMasteryCache(MasteryStateStore masteryStateStore,
+                               KnowledgeStateMapper knowledgeStateMapper,
+                               RedisTemplate<String, Object> redisTemplate,
+                               MeterRegistry meterRegistry,
+                               @Value("${kt.mastery-cache.max-size:20000}") int maxSize,
+                               @Value("${kt.mastery-cache.ttl-seconds:60}") long ttlSeconds) {
+        this.masteryStateStore = masteryStateStore;
+        this.knowledgeStateMapper = knowledgeStateMapper;
+        this.redisTemplate = redisTemplate;
+        this.ttlMillis = TimeUnit.SECONDS.toMillis(ttlSeconds);
+        this.cache = new LinkedHashMap<>(Math.min(maxSize, 1024), 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Entry> eldest) {
+                if (size() > maxSize) {
+                    sizeEvictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+
+        hits = Counter.builder("kt.mastery.cache.requests").tag("result", "hit").register(meterRegistry);
+        misses = Counter.builder("kt.mastery.cache.requests").tag("result", "miss").register(meterRegistry);
+        sizeEvictions = Counter.builder("kt.mastery.cache.evictions").tag("cause", "size").register(meterRegistry);
+        expiredEvictions = Counter.builder("kt.mastery.cache.evictions").tag("cause", "expired").register(meterRegistry);
+        invalidations = Counter.builder("kt.mastery.cache.evictions").tag("cause", "invalidated").register(meterRegistry);
+        remoteInvalidations = Counter.builder("kt.mastery.cache.remote.invalidations")
+                .description("Invalidation messages received from other nodes").register(meterRegistry);
+        hitAge = DistributionSummary.builder("kt.mastery.cache.hit.age")
+                .description("Age of the served entry in milliseconds (staleness upper bound)")
+                .baseUnit("milliseconds").publishPercentiles(0.5, 0.99).register(meterRegistry);
+        invalidationLag = Timer.builder("kt.mastery.cache.invalidation.lag")
+                .description("Delay between a write on one node and the invalidation on this node")
+                .publishPercentiles(0.5, 0.99).register(meterRegistry);
+        Gauge.builder("kt.mastery.cache.size", this, StudentMasteryCache::size).register(meterRegistry);
+        Gauge.builder("kt.mastery.cache.hit.ratio", this, StudentMasteryCache::hitRatio).register(meterRegistry);
+    }
+
+    /**
+     * 学生全部知识点掌握度 (知识点ID 升序，不可修改)
+     */
+    public Map<Long, Double> get(Long studentId) {
+        long now = System.currentTimeMillis();
+        synchronized (cache) {
+            Entry entry = cache.get(studentId);
+            if (entry != null) {
+                if (now - entry.loadedAt < ttlMillis) {
+                    hits.increment();
+                    hitAge.record(now - entry.loadedAt);
+                    return entry.value;
+                }
+                cache.remove(studentId);
+                expiredEvictions.increment();
+            }
+        }
+        misses.increment();
+
+        long token = loadTokens.incrementAndGet();
+        loading.put(studentId, token);
+        Map<Long, Double> value;
+        try {
+            value = load(studentId);
+        } catch (RuntimeException e) {
+            loading.remove(studentId, token);
+            throw e;
+        }
+        synchronized (cache) {
+            // 加载期间被失效 (或被更晚的加载覆盖) 时只返回结果，不缓存
+            if (loading.remove(studentId, token)) {
+                cache.put(studentId, new Entry(value, now));
+            }
+        }
+        return value;
+    }
+
+    /**
+     * 单个知识点的掌握度，无记录时返回 null
+     */
+    public Double get(Long studentId, Long kpId) {
+        return get(studentId).get(kpId);
+    }
+
+    /**
+     * 知识追踪写入后调用：本地立即失效，下一个广播周期通知其他节点
+     */
+    public void invalidate(Long studentId) {
+        evict(studentId);
+        pendingBroadcast.add(studentId);
+    }
+
+    /**
+     * 批量重放等全量改写后调用
+     */
+    public void invalidateAll() {
+        clear();
+        pendingBroadcastAll = true;
+    }
+
+    @Scheduled(fixedDelayString = "${kt.mastery-cache.publish-interval-ms:100}")
+    public void publishInvalidations() {
+        String ids;
+        if (pendingBroadcastAll) {
+            pendingBroadcastAll = false;
+            pendingBroadcast.clear();
+            ids = ALL;
+        } else {
+            if (pendingBroadcast.isEmpty()) {
+                return;
+            }
+            List<Long> batch = new ArrayList<>(pendingBroadcast);
+            pendingBroadcast.removeAll(batch);
+            StringBuilder sb = new StringBuilder(batch.size() * 8);
+            for (Long id : batch) {
+                if (sb.length() > 0) {
+                    sb.append(',');
+                }
+                sb.append(id);
+            }
+            ids = sb.toString();
+        }
+        byte[] message = (nodeId + "|" + System.currentTimeMillis() + "|" + ids).getBytes(StandardCharsets.UTF_8);
+        try {
+            redisTemplate.execute((RedisCallback<Long>) connection ->
+                    connection.publish(CHANNEL.getBytes(StandardCharsets.UTF_8), message));
+        } catch (Exception e) {
+            // 其他节点依靠过期时间兜底
+            log.warn("Failed to broadcast mastery cache invalidation", e);
+        }
+    }
+
+    /**
+     * 其他节点的失效广播：nodeId|发布时间|学生ID,...  (学生ID 为 * 表示全部)
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String[] parts = new String(message.getBody(), StandardCharsets.UTF_8).split("\\|", 3);
+        if (parts.length < 3 || nodeId.equals(parts[0])) {
+            return;
+        }
+        remoteInvalidations.increment();
+        invalidationLag.record(Math.max(0, System.currentTimeMillis() - Long.parseLong(parts[1])), TimeUnit.MILLISECONDS);
+        if (ALL.equals(parts[2])) {
+            clear();
+            return;
+        }
+        for (String id : parts[2].split(",")) {
+            evict(Long.parseLong(id));
+        }
+    }
+
+    public Stats getStats() {
+        return new Stats(size(), (long) hits.count(), (long) misses.count(), hitRatio(),
+                (long) sizeEvictions.count(), (long) expiredEvictions.count(), (long) invalidations.count(),
+                (long) remoteInvalidations.count());
+    }
+
+    private void evict(Long studentId) {
+        loading.remove(studentId);
+        synchronized (cache) {
+            if (cache.remove(studentId) != null) {
+                invalidations.increment();
+            }
+        }
+    }
+
+    private void clear() {
+        loading.clear();
+        synchronized (cache) {
+            invalidations.increment(cache.size());
+            cache.clear();
+        }
+    }
+
+    private Map<Long, Double> load(Long studentId) {
+        Map<Long, Double> value = new TreeMap<>();
+        for (KnowledgeState state : knowledgeStateMapper.selectList(new LambdaQueryWrapper<KnowledgeState>()
+                .select(KnowledgeState::getKnowledgePointId, KnowledgeState::getMasteryProbability)
+                .eq(KnowledgeState::getStudentId, studentId))) {
+            if (state.getMasteryProbability() != null) {
+                value.put(state.getKnowledgePointId(), state.getMasteryProbability().doubleValue());
+            }
+        }
+        // Redis 中是更新的热数据 (MySQL 由写后缓冲异步落库)
+        value.putAll(masteryStateStore.getAll(studentId));
+        return Collections.unmodifiableMap(value);
+    }
+
+    private int size() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    private double hitRatio() {
+        double h = hits.count();
+        double total = h + misses.count();
+        return total == 0 ? 0 : h / total;
+    }
+
+    private record Entry(Map<Long, Double> value, long loadedAt) {}
+
+    public record Stats(int size, long hits, long misses, double hitRatio,
+                        long sizeEvictions, long expiredEvictions, long invalidations, long remoteInvalidations) {}
+}
@@ -0,0 +1,85 @@
+package com.edtech.kt.service;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.DefaultTypedTuple;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.ZSetOperations.TypedTuple;
+import org.springframework.stereotype.Service;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 选题引擎读取的掌握度索引
+ * <p>
+ * student:{id}:mastery  哈希，知识点ID -> 掌握度 (AI 出题 / 练习推荐读取)
+ * student:{id}:weak_kps 有序集合，成员为知识点ID，分数为 1 - 掌握度 (策略 B 一次 ZREVRANGE 取最薄弱知识点)
+ * <p>
+ * packed 格式下掌握度哈希与向量重复，不再写入，读取方经 {@link MasteryStateStore} 从向量取值；只维护 weak_kps。
+ * 原子模式下由 Lua 脚本与 student:state:{id} 在同一次执行中写入；
+ * 非原子模式、批量重放与回填经 {@link #write} 管道写入。两种写法的成员编码一致 (知识点ID 的数字文本)。
+ */
+@Service
+@RequiredArgsConstructor
+public class StudentMasteryIndex {
+
+    public static final String MASTERY_KEY = "student:%s:mastery";
+    public static final String WEAK_KPS_KEY = "student:%s:weak_kps";
+    static final long TTL_DAYS = 7;
+
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final MasteryStateStore stateStore;
+
+    public static String masteryKey(Object studentId) {
+        return String.format(MASTERY_KEY, studentId);
+    }
+
+    public static String weakKpsKey(Object studentId) {
+        return String.format(WEAK_KPS_KEY, studentId);
+    }
+
+    /**
+     * 单个学生的若干知识点掌握度，一次管道往返写入
+     */
+    public void put(Long studentId, Map<Long, Double> masteries) {
+        if (masteries.isEmpty()) {
+            return;
+        }
+        redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> Object execute(RedisOperations<K, V> operations) throws DataAccessException {
+                write((RedisOperations<String, Object>) operations, studentId, masteries, stateStore.isPacked());
+                return null;
+            }
+        });
+    }
+
+    /**
+     * 在调用方的管道内追加写入命令 (HSET + ZADD + EXPIRE)
+     *
+     * @param packed 存储格式为 packed 时不写掌握度哈希
+     */
+    public static void write(RedisOperations<String, Object> ops, Long studentId, Map<Long, Double> masteries,
+                             boolean packed) {
+        String weakKey = weakKpsKey(studentId);
+        Set<TypedTuple<Object>> scores = new HashSet<>(masteries.size() * 2);
+        // 成员按数字序列化，与 Lua 写入的字段文本字节一致
+        masteries.forEach((kpId, prob) -> scores.add(new DefaultTypedTuple<>(kpId, 1 - prob)));
+        ops.opsForZSet().add(weakKey, scores);
+        ops.expire(weakKey, TTL_DAYS, TimeUnit.DAYS);
+        if (!packed) {
+            String masteryKey = masteryKey(studentId);
+            Map<String, Object> hash = new HashMap<>(masteries.size() * 2);
+            masteries.forEach((kpId, prob) -> hash.put(kpId.toString(), prob));
+            ops.opsForHash().putAll(masteryKey, hash);
+            ops.expire(masteryKey, TTL_DAYS, TimeUnit.DAYS);
+        }
+    }
+}
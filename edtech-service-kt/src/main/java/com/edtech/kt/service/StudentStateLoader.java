@@ -0,0 +1,190 @@
+package com.edtech.kt.service;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.edtech.model.entity.KnowledgeState;
+import com.edtech.model.mapper.KnowledgeStateMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Redis 未命中时的掌握度回源 (写后缓冲 -> MySQL)
+ * <p>
+ * 学生在 Redis 中整个键都不存在 (过期 / Redis 重启) 时按学生冷加载：同一学生的并发未命中合并为一次
+ * (single-flight)，一条查询取回该学生全部知识点，并只填充 Redis 中缺失的字段，后续作答直接命中 Redis。
+ * 键存在而个别知识点缺失 (首次练习的知识点) 时仍按知识点查询。
+ * 关闭 kt.cold-load.single-flight 时回退为逐知识点查询。
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class StudentStateLoader {
+
+    private final KnowledgeStateMapper knowledgeStateMapper;
+    private final KnowledgeStateWriteBehind stateWriteBehind;
+    private final MasteryStateStore masteryStateStore;
+
+    @Value("${kt.cold-load.single-flight:true}")
+    private boolean singleFlight;
+
+    private final Map<Long, CompletableFuture<Map<Long, Double>>> inFlight = new ConcurrentHashMap<>();
+
+    private final LongAdder coldLoads = new LongAdder();
+    private final LongAdder coalescedLoads = new LongAdder();
+    private final LongAdder loadedStates = new LongAdder();
+    private final LongAdder pointQueries = new LongAdder();
+
+    /**
+     * @return 写后缓冲或库中的掌握度，都没有时返回 null
+     */
+    public Double persisted(Long studentId, Long kpId) {
+        Double pending = stateWriteBehind.getPending(studentId, kpId);
+        if (pending != null) {
+            return pending;
+        }
+        if (singleFlight && !masteryStateStore.exists(studentId)) {
+            return load(studentId).get(kpId);
+        }
+        pointQueries.increment();
+        KnowledgeState dbState = knowledgeStateMapper.selectOne(new LambdaQueryWrapper<KnowledgeState>()
+                .eq(KnowledgeState::getStudentId, studentId)
+                .eq(KnowledgeState::getKnowledgePointId, kpId));
+        return dbState != null ? dbState.getMasteryProbability().doubleValue() : null;
+    }
+
+    /**
+     * 批量版本，结果只包含找到的知识点
+     */
+    public Map<Long, Double> persisted(Long studentId, List<Long> kpIds) {
+        Map<Long, Double> result = new HashMap<>();
+        List<Long> dbMisses = new ArrayList<>();
+        for (Long kpId : kpIds) {
+            Double pending = stateWriteBehind.getPending(studentId, kpId);
+            if (pending != null) {
+                result.put(kpId, pending);
+            } else {
+                dbMisses.add(kpId);
+            }
+        }
+        if (dbMisses.isEmpty()) {
+            return result;
+        }
+        if (singleFlight && !masteryStateStore.exists(studentId)) {
+            Map<Long, Double> all = load(studentId);
+            for (Long kpId : dbMisses) {
+                Double prob = all.get(kpId);
+                if (prob != null) {
+                    result.put(kpId, prob);
+                }
+            }
+            return result;
+        }
+        pointQueries.increment();
+        for (KnowledgeState s : knowledgeStateMapper.selectList(new LambdaQueryWrapper<KnowledgeState>()
+                .eq(KnowledgeState::getStudentId, studentId)
+                .in(KnowledgeState::getKnowledgePointId, dbMisses))) {
+            result.put(s.getKnowledgePointId(), s.getMasteryProbability().doubleValue());
+        }
+        return result;
+    }
+
+    /**
+     * 冷加载学生全部知识点并回填 Redis；同一学生的并发调用共享同一次加载
+     */
+    public Map<Long, Double> load(Long studentId) {
+        CompletableFuture<Map<Long, Double>> mine = new CompletableFuture<>();
+        CompletableFuture<Map<Long, Double>> existing = inFlight.putIfAbsent(studentId, mine);
+        if (existing != null) {
+            coalescedLoads.increment();
+            try {
+                return existing.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException re ? re : e;
+            }
+        }
+        try {
+            coldLoads.increment();
+            Map<Long, Map<Long, Double>> loaded = query(List.of(studentId));
+            Map<Long, Double> probs = loaded.getOrDefault(studentId, Map.of());
+            masteryStateStore.fillMissing(loaded);
+            Map<Long, Double> result = Collections.unmodifiableMap(probs);
+            mine.complete(result);
+            return result;
+        } catch (RuntimeException e) {
+            mine.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(studentId, mine);
+        }
+    }
+
+    /**
+     * 预热：Redis 中没有状态的学生一次查询回填
+     *
+     * @return 回填的学生数与知识点状态数
+     */
+    public long[] warm(List<Long> studentIds) {
+        List<Long> missing = masteryStateStore.missing(studentIds);
+        if (missing.isEmpty()) {
+            return new long[]{0, 0};
+        }
+        Map<Long, Map<Long, Double>> loaded = query(missing);
+        masteryStateStore.fillMissing(loaded);
+        long states = 0;
+        for (Map<Long, Double> probs : loaded.values()) {
+            states += probs.size();
+        }
+        return new long[]{loaded.size(), states};
+    }
+
+    /**
+     * 一条查询取回若干学生的全部知识点，叠加尚未落库的写后缓冲值
+     */
+    private Map<Long, Map<Long, Double>> query(List<Long> studentIds) {
+        LambdaQueryWrapper<KnowledgeState> wrapper = new LambdaQueryWrapper<KnowledgeState>()
+                .select(KnowledgeState::getStudentId, KnowledgeState::getKnowledgePointId,
+                        KnowledgeState::getMasteryProbability);
+        if (studentIds.size() == 1) {
+            wrapper.eq(KnowledgeState::getStudentId, studentIds.get(0));
+        } else {
+            wrapper.in(KnowledgeState::getStudentId, studentIds);
+        }
+        Map<Long, Map<Long, Double>> result = new HashMap<>(studentIds.size() * 2);
+        for (KnowledgeState s : knowledgeStateMapper.selectList(wrapper)) {
+            if (s.getMasteryProbability() == null) {
+                continue;
+            }
+            Long kpId = s.getKnowledgePointId();
+            Double pending = stateWriteBehind.getPending(s.getStudentId(), kpId);
+            result.computeIfAbsent(s.getStudentId(), id -> new HashMap<>())
+                    .put(kpId, pending != null ? pending : s.getMasteryProbability().doubleValue());
+        }
+        for (Map<Long, Double> probs : result.values()) {
+            loadedStates.add(probs.size());
+        }
+        return result;
+    }
+
+    public Stats getStats() {
+        return new Stats(singleFlight, coldLoads.sum(), coalescedLoads.sum(), loadedStates.sum(), pointQueries.sum());
+    }
+
+    /**
+     * @param coldLoads      按学生冷加载的查询次数
+     * @param coalescedLoads 合并到进行中加载的未命中次数
+     * @param pointQueries   按知识点回源的查询次数
+     */
+    public record Stats(boolean singleFlight, long coldLoads, long coalescedLoads, long loadedStates,
+                        long pointQueries) {}
+}
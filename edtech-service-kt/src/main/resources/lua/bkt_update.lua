@@ -0,0 +1,58 @@
+-- 原子 BKT 更新：读当前掌握度 -> 后验 -> 转移 -> 写回，一次往返
+-- KEYS[1] student:state:{studentId}      (hash, field = 知识点ID)
+-- KEYS[2] kt:state:version:{studentId}   (hash, field = 知识点ID, 每次更新递增)
+-- KEYS[3] student:{studentId}:mastery     (hash, 选题引擎读取的掌握度)
+-- KEYS[4] student:{studentId}:weak_kps    (zset, 分数 = 1 - 掌握度)
+-- ARGV[1] 知识点ID
+-- ARGV[2] 是否答对 (1 / 0)
+-- ARGV[3] pTransit  ARGV[4] pGuess  ARGV[5] pSlip
+-- ARGV[6] TTL 秒
+-- ARGV[7] 缺失时的初始掌握度 (库中值或 P(L0))，空串表示未提供
+-- 返回 {旧值, 新值, 版本号}；字段缺失且未提供初始值时返回 {'miss'}，不做任何写入
+-- 计算顺序与 KnowledgeTracingService.calculateNewProbabilityBKT 保持一致
+
+local current = redis.call('HGET', KEYS[1], ARGV[1])
+local old = current and tonumber(current)
+if not old then
+    if ARGV[7] == '' then
+        return {'miss'}
+    end
+    old = tonumber(ARGV[7])
+end
+
+local pT = tonumber(ARGV[3])
+local pG = tonumber(ARGV[4])
+local pS = tonumber(ARGV[5])
+
+local num, den
+if ARGV[2] == '1' then
+    num = old * (1 - pS)
+    den = num + (1 - old) * pG
+else
+    num = old * pS
+    den = num + (1 - old) * (1 - pG)
+end
+local posterior = 0
+if den ~= 0 then
+    posterior = num / den
+end
+
+local new = posterior + (1 - posterior) * pT
+if new < 0.0001 then
+    new = 0.0001
+elseif new > 0.9999 then
+    new = 0.9999
+end
+
+-- %.17g 可无损往返 double，Java 端按 JSON 数字读取
+local encoded = string.format('%.17g', new)
+redis.call('HSET', KEYS[1], ARGV[1], encoded)
+redis.call('EXPIRE', KEYS[1], ARGV[6])
+local version = redis.call('HINCRBY', KEYS[2], ARGV[1], 1)
+redis.call('EXPIRE', KEYS[2], ARGV[6])
+redis.call('HSET', KEYS[3], ARGV[1], encoded)
+redis.call('EXPIRE', KEYS[3], ARGV[6])
+redis.call('ZADD', KEYS[4], string.format('%.17g', 1 - new), ARGV[1])
+redis.call('EXPIRE', KEYS[4], ARGV[6])
+
+return {string.format('%.17g', old), encoded, tostring(version)}
@@ -0,0 +1,62 @@
+-- 原子 BKT 更新 (packed 格式)：掌握度按槽位存放在 16 位无符号整数向量中，量化规则同 MasteryVectorCodec
+-- KEYS[1] student:state:vec:{studentId}         (string, BITFIELD u16 #slot，0 表示无状态)
+-- KEYS[2] kt:state:version:vec:{studentId}      (string, BITFIELD u32 #slot，溢出回绕)
+-- KEYS[3] student:{studentId}:weak_kps
+-- packed 格式不写 student:{id}:mastery 哈希，掌握度由向量本身提供
+-- ARGV[1] 知识点ID  ARGV[2] 是否答对 (1 / 0)
+-- ARGV[3] pTransit  ARGV[4] pGuess  ARGV[5] pSlip
+-- ARGV[6] TTL 秒
+-- ARGV[7] 缺失时的初始掌握度，空串表示未提供
+-- ARGV[8] 槽位
+-- 返回 {旧值, 新值, 版本号}，新值为量化后实际存储的值；缺失且未提供初始值时返回 {'miss'}
+
+local slot = '#' .. ARGV[8]
+local q = redis.call('BITFIELD', KEYS[1], 'GET', 'u16', slot)[1]
+local old
+if q == 0 then
+    if ARGV[7] == '' then
+        return {'miss'}
+    end
+    old = tonumber(ARGV[7])
+else
+    old = q / 65535
+end
+
+local pT = tonumber(ARGV[3])
+local pG = tonumber(ARGV[4])
+local pS = tonumber(ARGV[5])
+
+local num, den
+if ARGV[2] == '1' then
+    num = old * (1 - pS)
+    den = num + (1 - old) * pG
+else
+    num = old * pS
+    den = num + (1 - old) * (1 - pG)
+end
+local posterior = 0
+if den ~= 0 then
+    posterior = num / den
+end
+
+local new = posterior + (1 - posterior) * pT
+if new < 0.0001 then
+    new = 0.0001
+elseif new > 0.9999 then
+    new = 0.9999
+end
+
+local nq = math.floor(new * 65535 + 0.5)
+if nq < 1 then
+    nq = 1
+end
+redis.call('BITFIELD', KEYS[1], 'SET', 'u16', slot, nq)
+redis.call('EXPIRE', KEYS[1], ARGV[6])
+local version = redis.call('BITFIELD', KEYS[2], 'OVERFLOW', 'WRAP', 'INCRBY', 'u32', slot, 1)[1]
+redis.call('EXPIRE', KEYS[2], ARGV[6])
+
+local encoded = string.format('%.17g', nq / 65535)
+redis.call('ZADD', KEYS[3], string.format('%.17g', 1 - nq / 65535), ARGV[1])
+redis.call('EXPIRE', KEYS[3], ARGV[6])
+
+return {string.format('%.17g', old), encoded, tostring(version)}
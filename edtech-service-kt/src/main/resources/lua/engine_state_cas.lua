@@ -0,0 +1,46 @@
+-- 引擎状态的乐观并发写入：版本号未变时写入新状态、递增版本，并在同一次执行中写入推导出的掌握度
+-- KEYS[1] kt:engine:state:{studentId}  (hash, field = 知识点ID -> "引擎名|状态", 知识点ID:v -> 版本号)
+-- KEYS[2] student:state:{studentId}    (hash 格式) 或 student:state:vec:{studentId} (packed 格式)
+-- KEYS[3] student:{studentId}:mastery       (仅 hash 格式写入，packed 格式由向量提供)
+-- KEYS[4] student:{studentId}:weak_kps
+-- ARGV[1] 知识点ID
+-- ARGV[2] 读取状态时的版本号 (字段不存在为 0)
+-- ARGV[3] 编码后的新状态
+-- ARGV[4] TTL 秒
+-- ARGV[5] 引擎预测的新掌握度
+-- ARGV[6] packed 格式的槽位，hash 格式为空串
+-- 返回新版本号；版本已被其他更新推进时返回 -1，不做任何写入
+-- 掌握度与薄弱知识点索引的写法与 bkt_update.lua / bkt_update_packed.lua 一致
+
+local versionField = ARGV[1] .. ':v'
+local current = tonumber(redis.call('HGET', KEYS[1], versionField) or '0')
+if current ~= tonumber(ARGV[2]) then
+    return -1
+end
+
+redis.call('HSET', KEYS[1], ARGV[1], ARGV[3])
+local version = redis.call('HINCRBY', KEYS[1], versionField, 1)
+redis.call('EXPIRE', KEYS[1], ARGV[4])
+
+local new = tonumber(ARGV[5])
+if ARGV[6] == '' then
+    new = string.format('%.17g', new)
+    redis.call('HSET', KEYS[2], ARGV[1], new)
+else
+    local nq = math.floor(new * 65535 + 0.5)
+    if nq < 1 then
+        nq = 1
+    elseif nq > 65535 then
+        nq = 65535
+    end
+    redis.call('BITFIELD', KEYS[2], 'SET', 'u16', '#' .. ARGV[6], nq)
+    new = string.format('%.17g', nq / 65535)
+end
+redis.call('EXPIRE', KEYS[2], ARGV[4])
+if ARGV[6] == '' then
+    redis.call('HSET', KEYS[3], ARGV[1], new)
+    redis.call('EXPIRE', KEYS[3], ARGV[4])
+end
+redis.call('ZADD', KEYS[4], string.format('%.17g', 1 - tonumber(new)), ARGV[1])
+redis.call('EXPIRE', KEYS[4], ARGV[4])
+return version
@@ -0,0 +1,18 @@
+-- 为知识点分配掌握度向量中的固定槽位 (全局唯一、只增不复用，多实例共享)
+-- KEYS[1] kt:kp:slots     (hash, field = 知识点ID, value = 槽位)
+-- KEYS[2] kt:kp:slots:seq (下一个槽位)
+-- ARGV    知识点ID...
+-- 返回与 ARGV 一一对应的槽位；已分配的直接返回
+
+local result = {}
+for i = 1, #ARGV do
+    local slot = redis.call('HGET', KEYS[1], ARGV[i])
+    if slot then
+        slot = tonumber(slot)
+    else
+        slot = redis.call('INCR', KEYS[2]) - 1
+        redis.call('HSET', KEYS[1], ARGV[i], slot)
+    end
+    result[i] = slot
+end
+return result
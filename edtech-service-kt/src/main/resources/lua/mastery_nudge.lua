@@ -0,0 +1,55 @@
+-- 原子调整多个关联知识点的掌握度 (前驱传播)：p = p + w * (target - p)
+-- KEYS[1] student:state:{studentId}
+-- KEYS[2] kt:state:version:{studentId}
+-- KEYS[3] student:{studentId}:mastery
+-- KEYS[4] student:{studentId}:weak_kps
+-- ARGV[1] 目标掌握度 (作答知识点的新值)
+-- ARGV[2] 方向：1 只升 (target > p 时调整)，0 只降 (target < p 时调整)
+-- ARGV[3] TTL 秒
+-- ARGV[4..] 三元组 (知识点ID, 权重, 缺失时的初始掌握度，空串表示未提供)
+-- 返回扁平列表 (知识点ID, 新值, 版本号)...；缺失且无初始值的知识点返回 (知识点ID, 'miss', '0') 且不写入
+
+local target = tonumber(ARGV[1])
+local raise = ARGV[2] == '1'
+local result = {}
+local written = false
+
+for i = 4, #ARGV, 3 do
+    local field = ARGV[i]
+    local weight = tonumber(ARGV[i + 1])
+    local current = redis.call('HGET', KEYS[1], field)
+    local p = current and tonumber(current)
+    if not p and ARGV[i + 2] ~= '' then
+        p = tonumber(ARGV[i + 2])
+    end
+
+    if not p then
+        table.insert(result, field)
+        table.insert(result, 'miss')
+        table.insert(result, '0')
+    elseif (raise and target > p) or (not raise and target < p) then
+        local new = p + weight * (target - p)
+        if new < 0.0001 then
+            new = 0.0001
+        elseif new > 0.9999 then
+            new = 0.9999
+        end
+        local encoded = string.format('%.17g', new)
+        redis.call('HSET', KEYS[1], field, encoded)
+        local version = redis.call('HINCRBY', KEYS[2], field, 1)
+        redis.call('HSET', KEYS[3], field, encoded)
+        redis.call('ZADD', KEYS[4], string.format('%.17g', 1 - new), field)
+        table.insert(result, field)
+        table.insert(result, encoded)
+        table.insert(result, tostring(version))
+        written = true
+    end
+end
+
+if written then
+    redis.call('EXPIRE', KEYS[1], ARGV[3])
+    redis.call('EXPIRE', KEYS[2], ARGV[3])
+    redis.call('EXPIRE', KEYS[3], ARGV[3])
+    redis.call('EXPIRE', KEYS[4], ARGV[3])
+end
+return result
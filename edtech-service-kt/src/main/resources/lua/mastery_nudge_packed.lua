@@ -0,0 +1,55 @@
+-- 原子调整多个关联知识点的掌握度 (packed 格式)：p = p + w * (target - p)
+-- KEYS 同 bkt_update_packed.lua
+-- ARGV[1] 目标掌握度  ARGV[2] 方向 (1 只升 / 0 只降)  ARGV[3] TTL 秒
+-- ARGV[4..] 四元组 (知识点ID, 槽位, 权重, 缺失时的初始掌握度，空串表示未提供)
+-- 返回扁平列表 (知识点ID, 新值, 版本号)...；缺失且无初始值的返回 (知识点ID, 'miss', '0')
+
+local target = tonumber(ARGV[1])
+local raise = ARGV[2] == '1'
+local result = {}
+local written = false
+
+for i = 4, #ARGV, 4 do
+    local field = ARGV[i]
+    local slot = '#' .. ARGV[i + 1]
+    local weight = tonumber(ARGV[i + 2])
+    local q = redis.call('BITFIELD', KEYS[1], 'GET', 'u16', slot)[1]
+    local p
+    if q ~= 0 then
+        p = q / 65535
+    elseif ARGV[i + 3] ~= '' then
+        p = tonumber(ARGV[i + 3])
+    end
+
+    if not p then
+        table.insert(result, field)
+        table.insert(result, 'miss')
+        table.insert(result, '0')
+    elseif (raise and target > p) or (not raise and target < p) then
+        local new = p + weight * (target - p)
+        if new < 0.0001 then
+            new = 0.0001
+        elseif new > 0.9999 then
+            new = 0.9999
+        end
+        local nq = math.floor(new * 65535 + 0.5)
+        if nq < 1 then
+            nq = 1
+        end
+        redis.call('BITFIELD', KEYS[1], 'SET', 'u16', slot, nq)
+        local version = redis.call('BITFIELD', KEYS[2], 'OVERFLOW', 'WRAP', 'INCRBY', 'u32', slot, 1)[1]
+        local encoded = string.format('%.17g', nq / 65535)
+        redis.call('ZADD', KEYS[3], string.format('%.17g', 1 - nq / 65535), field)
+        table.insert(result, field)
+        table.insert(result, encoded)
+        table.insert(result, tostring(version))
+        written = true
+    end
+end
+
+if written then
+    for k = 1, 3 do
+        redis.call('EXPIRE', KEYS[k], ARGV[3])
+    end
+end
+return result
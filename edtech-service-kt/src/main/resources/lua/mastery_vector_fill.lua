@@ -0,0 +1,29 @@
+-- 只填充向量中仍为 0 (无状态) 的槽位，已有的在线值优先 (旧哈希迁移 / 冷加载回填)
+-- KEYS[1] student:state:vec:{studentId}
+-- ARGV[1] TTL 秒
+-- ARGV[2] 由 MasteryVectorCodec.encode 生成的完整向量 (二进制)
+-- 返回填充的槽位数
+
+local src = ARGV[2]
+if redis.call('EXISTS', KEYS[1]) == 0 then
+    redis.call('SET', KEYS[1], src, 'EX', ARGV[1])
+    local filled = 0
+    for slot = 0, #src / 2 - 1 do
+        local hi, lo = string.byte(src, slot * 2 + 1, slot * 2 + 2)
+        if hi ~= 0 or lo ~= 0 then
+            filled = filled + 1
+        end
+    end
+    return filled
+end
+
+local filled = 0
+for slot = 0, #src / 2 - 1 do
+    local hi, lo = string.byte(src, slot * 2 + 1, slot * 2 + 2)
+    local q = hi * 256 + lo
+    if q ~= 0 and redis.call('BITFIELD', KEYS[1], 'GET', 'u16', '#' .. slot)[1] == 0 then
+        redis.call('BITFIELD', KEYS[1], 'SET', 'u16', '#' .. slot, q)
+        filled = filled + 1
+    end
+end
+return filled
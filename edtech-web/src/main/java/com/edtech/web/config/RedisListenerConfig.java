@@ -0,0 +1,25 @@
+package com.edtech.web.config;
+
+import com.edtech.web.service.strategy.StrategySamplerCache;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+/**
+ * Web 层缓存的跨节点失效广播，挂在 edtech-service-kt 声明的监听容器上
+ */
+@Configuration
+@RequiredArgsConstructor
+public class RedisListenerConfig {
+
+    private final RedisMessageListenerContainer redisMessageListenerContainer;
+    private final StrategySamplerCache strategySamplerCache;
+
+    @PostConstruct
+    public void subscribe() {
+        redisMessageListenerContainer.addMessageListener(strategySamplerCache,
+                new ChannelTopic(StrategySamplerCache.CHANNEL));
+    }
+}
@@ -3,10 +3,14 @@ package com.edtech.web.controller;
 import com.edtech.ai.model.GeneratedQuestionVO;
 import com.edtech.ai.service.ContentGenerationService;
 import com.edtech.core.util.RedisUtils;
+import com.edtech.kt.service.BktParameterRegistry;
+import com.edtech.kt.service.StudentMasteryCache;
 import com.edtech.model.entity.KnowledgePoint;
 import com.edtech.model.entity.Question;
 import com.edtech.model.mapper.KnowledgePointMapper;
 import com.edtech.model.mapper.QuestionMapper;
+import com.edtech.web.service.DashboardMetricsService;
+import com.edtech.web.service.strategy.QuestionPoolIndex;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.web.bind.annotation.*;
@@ -30,6 +34,10 @@ public class AIQuestionController {
     private final QuestionMapper questionMapper;
     private final KnowledgePointMapper knowledgePointMapper;
     private final RedisUtils redisUtils;
+    private final BktParameterRegistry bktParameterRegistry;
+    private final QuestionPoolIndex questionPoolIndex;
+    private final DashboardMetricsService dashboardMetricsService;
+    private final StudentMasteryCache masteryCache;
 
     /**
      * 核心AI出题接口 - 根据学生状态实时生成
@@ -52,16 +60,15 @@ public class AIQuestionController {
             }
 
             // 2. 从Redis获取学生BKT状态和误区信息
-            String masteryKey = String.format("student:%s:mastery", request.studentId);
             String mistakeKey = String.format("student:%s:common_mistakes", request.studentId);
             String wrongFreqKey = String.format("student:%s:wrong_freq", request.studentId);
             
             // 获取掌握概率 (默认0.5表示中等水平)
             double probability = 0.5;
-            if (request.knowledgePointId != null) {
-                Object masteryObj = redisUtils.hGet(masteryKey, request.knowledgePointId.toString());
-                if (masteryObj != null) {
-                    probability = Double.parseDouble(masteryObj.toString());
+            if (request.studentId != null && request.knowledgePointId != null) {
+                Double mastery = masteryCache.get(request.studentId, request.knowledgePointId);
+                if (mastery != null) {
+                    probability = mastery;
                 }
             }
 
@@ -122,6 +129,9 @@ public class AIQuestionController {
             question.setType(99); // 99表示AI生成题目
             
             questionMapper.insert(question);
+            bktParameterRegistry.registerQuestion(question.getId(), question.getKnowledgePointId());
+            questionPoolIndex.addQuestion(question);
+            dashboardMetricsService.recordQuestionCreated(question);
 
             // 5. 构造返回结果
             Map<String, Object> questionData = new HashMap<>();
@@ -4,8 +4,28 @@ import cn.hutool.crypto.digest.BCrypt;
 import cn.hutool.json.JSONUtil;
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import com.edtech.core.mq.PracticeConsumer;
+import com.edtech.kt.engine.KnowledgeTracingEngines;
+import com.edtech.kt.fit.BktFitJob;
+import com.edtech.kt.replay.KnowledgeStateReplayJob;
+import com.edtech.kt.replay.MasteryIndexBackfillJob;
+import com.edtech.kt.replay.MasteryVectorMigrationJob;
+import com.edtech.kt.replay.StudentStateWarmupJob;
+import com.edtech.kt.service.MasteryPropagationService;
+import com.edtech.kt.service.PrerequisiteGraph;
+import com.edtech.kt.service.BktParameterRegistry;
+import com.edtech.kt.service.KnowledgeStateWriteBehind;
+import com.edtech.kt.service.StudentMasteryCache;
+import com.edtech.kt.service.StudentStateLoader;
 import com.edtech.model.entity.*;
 import com.edtech.model.mapper.*;
+import com.edtech.model.vo.UserSummaryVO;
+import com.edtech.web.service.DashboardMetricsService;
+import com.edtech.web.service.LeaderboardService;
+import com.edtech.web.service.StudentDailyStatsService;
+import com.edtech.web.service.UserSummaryCache;
+import com.edtech.web.service.strategy.PracticePrefetchService;
+import com.edtech.web.service.strategy.StrategySamplerCache;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
 import io.jsonwebtoken.security.Keys;
@@ -32,11 +52,27 @@ public class AdminController {
     private final UserMapper userMapper;
     private final QuestionMapper questionMapper;
     private final KnowledgePointMapper knowledgePointMapper;
-    private final KnowledgeStateMapper knowledgeStateMapper;
-    private final UserPointsMapper userPointsMapper;
-    private final StudentExerciseLogMapper studentExerciseLogMapper;
     private final MistakeBookMapper mistakeBookMapper;
     private final KnowledgePrerequisiteMapper knowledgePrerequisiteMapper;
+    private final BktParameterRegistry bktParameterRegistry;
+    private final KnowledgeTracingEngines knowledgeTracingEngines;
+    private final KnowledgeStateWriteBehind knowledgeStateWriteBehind;
+    private final BktFitJob bktFitJob;
+    private final KnowledgeStateReplayJob knowledgeStateReplayJob;
+    private final MasteryIndexBackfillJob masteryIndexBackfillJob;
+    private final MasteryVectorMigrationJob masteryVectorMigrationJob;
+    private final StudentStateWarmupJob studentStateWarmupJob;
+    private final StudentStateLoader studentStateLoader;
+    private final PrerequisiteGraph prerequisiteGraph;
+    private final MasteryPropagationService masteryPropagationService;
+    private final LeaderboardService leaderboardService;
+    private final UserSummaryCache userSummaryCache;
+    private final StudentMasteryCache studentMasteryCache;
+    private final DashboardMetricsService dashboardMetricsService;
+    private final StudentDailyStatsService studentDailyStatsService;
+    private final PracticePrefetchService practicePrefetchService;
+    private final StrategySamplerCache strategySamplerCache;
+    private final PracticeConsumer practiceConsumer;
 
     @Value("${jwt.secret:9a4f2c8d3b7a1e6f4c5d8e9a2b3c4d5e6f7a8b9c0d1e2f3a4b5c6d7e8f9a0b1c}")
     private String jwtSecret;
@@ -101,64 +137,21 @@ public class AdminController {
      */
     @GetMapping("/dashboard")
     public Map<String, Object> getDashboard() {
-        Map<String, Object> response = new HashMap<>();
-        
-        try {
-            Long totalUsers = userMapper.selectCount(null);
-            Long totalQuestions = questionMapper.selectCount(null);
-
-            LocalDateTime yesterday = LocalDateTime.now().minusDays(1);
-            List<StudentExerciseLog> lastDayLogs = studentExerciseLogMapper.selectList(
-                    new LambdaQueryWrapper<StudentExerciseLog>()
-                            .ge(StudentExerciseLog::getSubmitTime, yesterday));
-            int dailyActive = (int) lastDayLogs.stream()
-                    .map(StudentExerciseLog::getStudentId)
-                    .filter(Objects::nonNull)
-                    .distinct()
-                    .count();
-
-            Long aiGeneratedQuestions = questionMapper.selectCount(
-                    new LambdaQueryWrapper<Question>()
-                            .eq(Question::getType, 99));
-
-            LocalDateTime thirtyDaysAgo = LocalDateTime.now().minusDays(30);
-            Long newUsersLast30 = userMapper.selectCount(
-                    new LambdaQueryWrapper<User>()
-                            .ge(User::getCreatedAt, thirtyDaysAgo));
-            Long newQuestionsLast30 = questionMapper.selectCount(
-                    new LambdaQueryWrapper<Question>()
-                            .ge(Question::getCreatedAt, thirtyDaysAgo));
-
-            double userGrowth = (totalUsers != null && totalUsers > 0 && newUsersLast30 != null)
-                    ? newUsersLast30 * 100.0 / totalUsers
-                    : 0.0;
-            double questionGrowth = (totalQuestions != null && totalQuestions > 0 && newQuestionsLast30 != null)
-                    ? newQuestionsLast30 * 100.0 / totalQuestions
-                    : 0.0;
-
-            Map<String, Object> data = new HashMap<>();
-            data.put("totalUsers", totalUsers != null ? totalUsers : 0);
-            data.put("dailyActive", dailyActive);
-            data.put("totalQuestions", totalQuestions != null ? totalQuestions : 0);
-            data.put("aiCalls", aiGeneratedQuestions != null ? aiGeneratedQuestions : 0);
-            data.put("userGrowth", Math.round(userGrowth * 10.0) / 10.0);
-            data.put("questionGrowth", Math.round(questionGrowth * 10.0) / 10.0);
-
-            response.put("success", true);
-            response.put("data", data);
-        } catch (Exception e) {
-            log.error("获取仪表盘数据失败", e);
-            Map<String, Object> data = new HashMap<>();
-            data.put("totalUsers", 0);
-            data.put("dailyActive", 0);
-            data.put("totalQuestions", 0);
-            data.put("aiCalls", 0);
-            data.put("userGrowth", 0.0);
-            data.put("questionGrowth", 0.0);
-            response.put("success", true);
-            response.put("data", data);
-        }
+        DashboardMetricsService.DashboardSnapshot snapshot = dashboardMetricsService.getSnapshot();
+
+        Map<String, Object> data = new HashMap<>();
+        data.put("totalUsers", snapshot.totalUsers());
+        data.put("dailyActive", snapshot.dailyActive());
+        data.put("totalQuestions", snapshot.totalQuestions());
+        data.put("aiCalls", snapshot.aiQuestions());
+        data.put("userGrowth", snapshot.userGrowth());
+        data.put("questionGrowth", snapshot.questionGrowth());
+        data.put("submissionsLastHour", snapshot.submissionsLastHour());
+        data.put("submissionsPerMinute", snapshot.submissionsPerMinute());
 
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("data", data);
         return response;
     }
 
@@ -184,6 +177,9 @@ public class AdminController {
 
             Page<User> pageResult = userMapper.selectPage(new Page<>(page, size), wrapper);
             List<User> userList = pageResult.getRecords();
+            // 积分、正确率、最近活跃一次批量取回 (缓存未命中时最多一条 SQL)
+            Map<Long, UserSummaryVO> summaries = userSummaryCache.getAll(
+                    userList.stream().map(User::getId).toList());
 
             List<Map<String, Object>> users = new ArrayList<>();
             for (User u : userList) {
@@ -194,34 +190,10 @@ public class AdminController {
                 item.put("email", u.getEmail());
                 item.put("grade", u.getGrade());
 
-                UserPoints points = userPointsMapper.selectOne(
-                        new LambdaQueryWrapper<UserPoints>().eq(UserPoints::getUserId, u.getId()));
-                int totalPoints = 0;
-                int masteryLevel = 0;
-                if (points != null) {
-                    if (points.getTotalPoints() != null) {
-                        totalPoints = points.getTotalPoints();
-                    }
-                    Integer totalPractice = points.getTotalPracticeCount();
-                    Integer totalCorrect = points.getTotalCorrectCount();
-                    if (totalPractice != null && totalPractice > 0 && totalCorrect != null) {
-                        masteryLevel = (int) Math.round(totalCorrect * 100.0 / totalPractice);
-                    }
-                }
-                item.put("totalPoints", totalPoints);
-                item.put("masteryLevel", masteryLevel);
-
-                StudentExerciseLog latestLog = studentExerciseLogMapper.selectOne(
-                        new LambdaQueryWrapper<StudentExerciseLog>()
-                                .eq(StudentExerciseLog::getStudentId, u.getId())
-                                .orderByDesc(StudentExerciseLog::getSubmitTime)
-                                .last("LIMIT 1"));
-                String lastActive = "";
-                if (latestLog != null && latestLog.getSubmitTime() != null) {
-                    String ts = latestLog.getSubmitTime().toString().replace("T", " ");
-                    lastActive = ts.length() >= 16 ? ts.substring(0, 16) : ts;
-                }
-                item.put("lastActive", lastActive);
+                UserSummaryVO summary = summaries.get(u.getId());
+                item.put("totalPoints", summary != null ? summary.getTotalPoints() : 0);
+                item.put("masteryLevel", masteryLevel(summary));
+                item.put("lastActive", formatLastActive(summary));
 
                 String createdAt = "";
                 if (u.getCreatedAt() != null) {
@@ -271,34 +243,10 @@ public class AdminController {
             user.put("email", u.getEmail());
             user.put("grade", u.getGrade());
 
-            UserPoints points = userPointsMapper.selectOne(
-                    new LambdaQueryWrapper<UserPoints>().eq(UserPoints::getUserId, u.getId()));
-            int totalPoints = 0;
-            int masteryLevel = 0;
-            if (points != null) {
-                if (points.getTotalPoints() != null) {
-                    totalPoints = points.getTotalPoints();
-                }
-                Integer totalPractice = points.getTotalPracticeCount();
-                Integer totalCorrect = points.getTotalCorrectCount();
-                if (totalPractice != null && totalPractice > 0 && totalCorrect != null) {
-                    masteryLevel = (int) Math.round(totalCorrect * 100.0 / totalPractice);
-                }
-            }
-            user.put("totalPoints", totalPoints);
-            user.put("masteryLevel", masteryLevel);
-
-            StudentExerciseLog latestLog = studentExerciseLogMapper.selectOne(
-                    new LambdaQueryWrapper<StudentExerciseLog>()
-                            .eq(StudentExerciseLog::getStudentId, u.getId())
-                            .orderByDesc(StudentExerciseLog::getSubmitTime)
-                            .last("LIMIT 1"));
-            String lastActive = "";
-            if (latestLog != null && latestLog.getSubmitTime() != null) {
-                String ts = latestLog.getSubmitTime().toString().replace("T", " ");
-                lastActive = ts.length() >= 16 ? ts.substring(0, 16) : ts;
-            }
-            user.put("lastActive", lastActive);
+            UserSummaryVO summary = userSummaryCache.get(u.getId());
+            user.put("totalPoints", summary != null ? summary.getTotalPoints() : 0);
+            user.put("masteryLevel", masteryLevel(summary));
+            user.put("lastActive", formatLastActive(summary));
 
             String createdAt = "";
             if (u.getCreatedAt() != null) {
@@ -306,29 +254,20 @@ public class AdminController {
             }
             user.put("createdAt", createdAt);
 
-            List<KnowledgeState> states = knowledgeStateMapper.selectList(
-                    new LambdaQueryWrapper<KnowledgeState>().eq(KnowledgeState::getStudentId, id));
+            Map<Long, Double> states = studentMasteryCache.get(id);
             List<Map<String, Object>> knowledgeStates = new ArrayList<>();
             if (!states.isEmpty()) {
-                List<Long> kpIds = new ArrayList<>();
-                for (KnowledgeState state : states) {
-                    kpIds.add(state.getKnowledgePointId());
-                }
+                List<Long> kpIds = new ArrayList<>(states.keySet());
                 List<KnowledgePoint> kps = knowledgePointMapper.selectBatchIds(kpIds);
                 Map<Long, String> kpNameMap = new HashMap<>();
                 for (KnowledgePoint kp : kps) {
                     kpNameMap.put(kp.getId(), kp.getName());
                 }
 
-                for (KnowledgeState state : states) {
+                for (Map.Entry<Long, Double> state : states.entrySet()) {
                     Map<String, Object> item = new HashMap<>();
-                    item.put("name", kpNameMap.getOrDefault(state.getKnowledgePointId(), "未知"));
-                    if (state.getMasteryProbability() != null) {
-                        double val = state.getMasteryProbability().doubleValue() * 100.0;
-                        item.put("mastery", (int) Math.round(val));
-                    } else {
-                        item.put("mastery", 0);
-                    }
+                    item.put("name", kpNameMap.getOrDefault(state.getKey(), "未知"));
+                    item.put("mastery", (int) Math.round(state.getValue() * 100.0));
                     knowledgeStates.add(item);
                 }
             }
@@ -536,6 +475,9 @@ public class AdminController {
                     }
                 }
             }
+            bktParameterRegistry.invalidateKnowledgePoints();
+            knowledgeTracingEngines.invalidate();
+            prerequisiteGraph.rebuild();
 
             response.put("success", true);
             response.put("message", "保存成功");
@@ -560,6 +502,9 @@ public class AdminController {
                             .or()
                             .eq(KnowledgePrerequisite::getPrereqPointId, id));
             int rows = knowledgePointMapper.deleteById(id);
+            bktParameterRegistry.invalidateKnowledgePoints();
+            knowledgeTracingEngines.invalidate();
+            prerequisiteGraph.rebuild();
             response.put("success", rows > 0);
             response.put("message", rows > 0 ? "删除成功" : "记录不存在");
         } catch (Exception e) {
@@ -570,6 +515,272 @@ public class AdminController {
         return response;
     }
 
+    /**
+     * BKT 参数注册表命中统计
+     */
+    @GetMapping("/kt/registry-stats")
+    public Map<String, Object> getRegistryStats() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("data", bktParameterRegistry.getStats());
+        return response;
+    }
+
+    /**
+     * 前驱关系掌握度传播统计
+     */
+    @GetMapping("/kt/propagation-stats")
+    public Map<String, Object> getPropagationStats() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("data", masteryPropagationService.getStats());
+        return response;
+    }
+
+    /**
+     * 知识状态写后缓冲统计
+     */
+    @GetMapping("/kt/write-behind-stats")
+    public Map<String, Object> getWriteBehindStats() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("data", knowledgeStateWriteBehind.getStats());
+        return response;
+    }
+
+    /**
+     * 启动离线 BKT 参数拟合 (后台执行)
+     */
+    @PostMapping("/kt/fit")
+    public Map<String, Object> startBktFit() {
+        Map<String, Object> response = new HashMap<>();
+        boolean started = bktFitJob.startAsync();
+        response.put("success", started);
+        if (!started) {
+            response.put("message", "拟合任务正在运行");
+        }
+        return response;
+    }
+
+    /**
+     * 最近一次 BKT 参数拟合报告 (每个知识点的耗时与对数似然)
+     */
+    @GetMapping("/kt/fit-report")
+    public Map<String, Object> getBktFitReport() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("running", bktFitJob.isRunning());
+        response.put("data", bktFitJob.getLastReport());
+        return response;
+    }
+
+    /**
+     * 按答题历史重放全部学生的知识状态 (后台执行)
+     *
+     * @param resume 是否从上次中断的检查点继续
+     */
+    @PostMapping("/kt/replay")
+    public Map<String, Object> startKnowledgeStateReplay(@RequestParam(defaultValue = "false") boolean resume) {
+        Map<String, Object> response = new HashMap<>();
+        boolean started = knowledgeStateReplayJob.startAsync(resume);
+        response.put("success", started);
+        if (!started) {
+            response.put("message", "重放任务正在运行");
+        }
+        return response;
+    }
+
+    /**
+     * 知识状态重放进度 / 最近一次报告 (行数、学生数、rows/s、检查点)
+     */
+    @GetMapping("/kt/replay-report")
+    public Map<String, Object> getKnowledgeStateReplayReport() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("running", knowledgeStateReplayJob.isRunning());
+        response.put("checkpoint", knowledgeStateReplayJob.getCheckpoint());
+        response.put("data", knowledgeStateReplayJob.getReport());
+        return response;
+    }
+
+    /**
+     * 从 knowledge_state 回填掌握度哈希与薄弱知识点有序集合 (后台执行)
+     */
+    @PostMapping("/kt/mastery-index/backfill")
+    public Map<String, Object> startMasteryIndexBackfill() {
+        Map<String, Object> response = new HashMap<>();
+        boolean started = masteryIndexBackfillJob.startAsync();
+        response.put("success", started);
+        if (!started) {
+            response.put("message", "回填任务正在运行");
+        }
+        return response;
+    }
+
+    @GetMapping("/kt/mastery-index/backfill-report")
+    public Map<String, Object> getMasteryIndexBackfillReport() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("running", masteryIndexBackfillJob.isRunning());
+        response.put("data", masteryIndexBackfillJob.getReport());
+        return response;
+    }
+
+    /**
+     * 将旧哈希格式的掌握度迁移为 packed 向量 (需 kt.state.format=packed，后台执行)
+     *
+     * @param deleteSource 迁移后删除旧哈希与 mastery 哈希
+     */
+    @PostMapping("/kt/state/migrate")
+    public Map<String, Object> startMasteryVectorMigration(@RequestParam(defaultValue = "false") boolean deleteSource) {
+        Map<String, Object> response = new HashMap<>();
+        try {
+            boolean started = masteryVectorMigrationJob.startAsync(deleteSource);
+            response.put("success", started);
+            if (!started) {
+                response.put("message", "迁移任务正在运行");
+            }
+        } catch (IllegalStateException e) {
+            response.put("success", false);
+            response.put("message", e.getMessage());
+        }
+        return response;
+    }
+
+    /**
+     * 迁移报告：学生数、字段数，以及采样学生两种格式的 MEMORY USAGE 对比
+     */
+    @GetMapping("/kt/state/migration-report")
+    public Map<String, Object> getMasteryVectorMigrationReport() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("running", masteryVectorMigrationJob.isRunning());
+        response.put("data", masteryVectorMigrationJob.getReport());
+        return response;
+    }
+
+    /**
+     * 预热近期活跃学生的掌握度 (Redis 重启后执行，后台运行)
+     */
+    @PostMapping("/kt/state/warmup")
+    public Map<String, Object> startStudentStateWarmup() {
+        boolean started = studentStateWarmupJob.startAsync();
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", started);
+        if (!started) {
+            response.put("message", "预热任务正在运行");
+        }
+        return response;
+    }
+
+    @GetMapping("/kt/state/warmup-report")
+    public Map<String, Object> getStudentStateWarmupReport() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("running", studentStateWarmupJob.isRunning());
+        response.put("data", studentStateWarmupJob.getReport());
+        return response;
+    }
+
+    /**
+     * 掌握度回源统计：冷加载次数、合并的并发未命中、按知识点查询次数
+     */
+    @GetMapping("/kt/state/loader-stats")
+    public Map<String, Object> getStudentStateLoaderStats() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("data", studentStateLoader.getStats());
+        return response;
+    }
+
+    /**
+     * 从原始答题日志重建学生每日汇总
+     */
+    @PostMapping("/report/rebuild/{studentId}")
+    public Map<String, Object> rebuildDailyStats(@PathVariable Long studentId) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("data", Map.of("days", studentDailyStatsService.rebuildStudent(studentId)));
+        return response;
+    }
+
+    /**
+     * 重放答题日志订阅者死信队列中的批次
+     */
+    @PostMapping("/practice/subscriber-dlq/replay")
+    public Map<String, Object> replayPracticeSubscriberDlq(@RequestParam(defaultValue = "100") int maxBatches) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("data", Map.of("replayed", practiceConsumer.replayFailedSubscriptions(maxBatches)));
+        return response;
+    }
+
+    /**
+     * 把答题日志死信队列中的消息移回主队列重新消费
+     */
+    @PostMapping("/practice/dlq/requeue")
+    public Map<String, Object> requeuePracticeDeadLetters(@RequestParam(defaultValue = "1000") int maxMessages) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("data", Map.of("requeued", practiceConsumer.requeueDeadLetters(maxMessages)));
+        return response;
+    }
+
+    /**
+     * 用户摘要缓存统计
+     */
+    @GetMapping("/cache/user-summary-stats")
+    public Map<String, Object> getUserSummaryCacheStats() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("data", userSummaryCache.getStats());
+        return response;
+    }
+
+    /**
+     * 学生掌握度近端缓存统计 (本节点)
+     */
+    @GetMapping("/cache/mastery-stats")
+    public Map<String, Object> getMasteryCacheStats() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("data", studentMasteryCache.getStats());
+        return response;
+    }
+
+    /**
+     * 组题预取缓冲统计
+     */
+    @GetMapping("/practice/prefetch-stats")
+    public Map<String, Object> getPracticePrefetchStats() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("data", practicePrefetchService.getStats());
+        return response;
+    }
+
+    /**
+     * 学生选题策略抽样器缓存统计
+     */
+    @GetMapping("/cache/strategy-sampler-stats")
+    public Map<String, Object> getStrategySamplerCacheStats() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("data", strategySamplerCache.getStats());
+        return response;
+    }
+
+    /**
+     * 从 MySQL 重建排行榜 ZSET
+     */
+    @PostMapping("/leaderboard/reconcile")
+    public Map<String, Object> reconcileLeaderboard() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("data", leaderboardService.reconcile());
+        return response;
+    }
+
     /**
      * Prompt模板预览
      */
@@ -624,4 +835,22 @@ public class AdminController {
         response.put("data", logs);
         return response;
     }
+
+    /**
+     * 正确率 (百分比) 作为掌握度展示
+     */
+    private static int masteryLevel(UserSummaryVO summary) {
+        if (summary == null || summary.getTotalPracticeCount() <= 0) {
+            return 0;
+        }
+        return (int) Math.round(summary.getTotalCorrectCount() * 100.0 / summary.getTotalPracticeCount());
+    }
+
+    private static String formatLastActive(UserSummaryVO summary) {
+        if (summary == null || summary.getLastActiveTime() == null) {
+            return "";
+        }
+        String ts = summary.getLastActiveTime().toString().replace("T", " ");
+        return ts.length() >= 16 ? ts.substring(0, 16) : ts;
+    }
 }
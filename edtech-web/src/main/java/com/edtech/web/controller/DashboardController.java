@@ -1,10 +1,8 @@
 package com.edtech.web.controller;
 
-import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.edtech.kt.service.StudentMasteryCache;
 import com.edtech.model.entity.KnowledgePoint;
-import com.edtech.model.entity.KnowledgeState;
 import com.edtech.model.mapper.KnowledgePointMapper;
-import com.edtech.model.mapper.KnowledgeStateMapper;
 import com.edtech.model.vo.KnowledgeStateVO;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -14,6 +12,7 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
 import java.math.BigDecimal;
+import java.math.RoundingMode;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -26,7 +25,7 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 public class DashboardController {
 
-    private final KnowledgeStateMapper knowledgeStateMapper;
+    private final StudentMasteryCache masteryCache;
     private final KnowledgePointMapper knowledgePointMapper;
 
     /**
@@ -37,24 +36,23 @@ public class DashboardController {
     public List<KnowledgeStateVO> getStudentRadarData(@PathVariable Long studentId) {
         log.info("Fetching radar chart data for student: {}", studentId);
 
-        // 1. 查询该学生的所有知识状态
-        List<KnowledgeState> states = knowledgeStateMapper.selectList(new LambdaQueryWrapper<KnowledgeState>()
-                .eq(KnowledgeState::getStudentId, studentId));
+        // 1. 查询该学生的所有知识状态 (近端缓存)
+        Map<Long, Double> states = masteryCache.get(studentId);
 
         if (states.isEmpty()) {
             return new ArrayList<>();
         }
 
         // 2. 批量查询关联的知识点信息
-        List<Long> kpIds = states.stream().map(KnowledgeState::getKnowledgePointId).collect(Collectors.toList());
+        List<Long> kpIds = new ArrayList<>(states.keySet());
         List<KnowledgePoint> kps = knowledgePointMapper.selectBatchIds(kpIds);
         Map<Long, String> kpNameMap = kps.stream()
                 .collect(Collectors.toMap(KnowledgePoint::getId, KnowledgePoint::getName));
 
         // 3. 组装 VO
-        return states.stream().map(state -> {
-            String name = kpNameMap.getOrDefault(state.getKnowledgePointId(), "Unknown KP");
-            BigDecimal score = state.getMasteryProbability();
+        return states.entrySet().stream().map(state -> {
+            String name = kpNameMap.getOrDefault(state.getKey(), "Unknown KP");
+            BigDecimal score = BigDecimal.valueOf(state.getValue()).setScale(4, RoundingMode.HALF_UP);
             
             // 简单的分级逻辑
             String level;
@@ -63,7 +61,7 @@ public class DashboardController {
             else if (val >= 0.5) level = "Proficient";
             else level = "Novice";
 
-            return new KnowledgeStateVO(state.getKnowledgePointId(), name, score, level);
+            return new KnowledgeStateVO(state.getKey(), name, score, level);
         }).collect(Collectors.toList());
     }
 
@@ -72,14 +70,12 @@ public class DashboardController {
      */
     @GetMapping("/prediction/{studentId}")
     public Map<String, Object> predictScore(@PathVariable Long studentId) {
-        List<KnowledgeState> states = knowledgeStateMapper.selectList(new LambdaQueryWrapper<KnowledgeState>()
-                .eq(KnowledgeState::getStudentId, studentId));
+        Map<Long, Double> states = masteryCache.get(studentId);
 
         double predictedScore = 0.0;
         if (!states.isEmpty()) {
-            double avgProb = states.stream()
-                    .map(KnowledgeState::getMasteryProbability)
-                    .mapToDouble(BigDecimal::doubleValue)
+            double avgProb = states.values().stream()
+                    .mapToDouble(Double::doubleValue)
                     .average()
                     .orElse(0.0);
             
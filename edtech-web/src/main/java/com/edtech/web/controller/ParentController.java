@@ -1,6 +1,7 @@
 package com.edtech.web.controller;
 
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.edtech.kt.service.StudentMasteryCache;
 import com.edtech.model.entity.*;
 import com.edtech.model.mapper.*;
 import com.edtech.model.vo.KnowledgeStateVO;
@@ -9,6 +10,7 @@ import org.slf4j.LoggerFactory;
 import org.springframework.web.bind.annotation.*;
 
 import java.math.BigDecimal;
+import java.math.RoundingMode;
 import java.time.LocalDate;
 import java.util.*;
 import java.util.stream.Collectors;
@@ -22,19 +24,19 @@ public class ParentController {
     private final ParentControlMapper parentControlMapper;
     private final UserMapper userMapper;
     private final UserPointsMapper userPointsMapper;
-    private final KnowledgeStateMapper knowledgeStateMapper;
+    private final StudentMasteryCache masteryCache;
     private final KnowledgePointMapper knowledgePointMapper;
     private final PracticeSessionMapper practiceSessionMapper;
     private final DailyGoalMapper dailyGoalMapper;
 
     public ParentController(ParentControlMapper parentControlMapper, UserMapper userMapper,
-                            UserPointsMapper userPointsMapper, KnowledgeStateMapper knowledgeStateMapper,
+                            UserPointsMapper userPointsMapper, StudentMasteryCache masteryCache,
                             KnowledgePointMapper knowledgePointMapper, PracticeSessionMapper practiceSessionMapper,
                             DailyGoalMapper dailyGoalMapper) {
         this.parentControlMapper = parentControlMapper;
         this.userMapper = userMapper;
         this.userPointsMapper = userPointsMapper;
-        this.knowledgeStateMapper = knowledgeStateMapper;
+        this.masteryCache = masteryCache;
         this.knowledgePointMapper = knowledgePointMapper;
         this.practiceSessionMapper = practiceSessionMapper;
         this.dailyGoalMapper = dailyGoalMapper;
@@ -120,21 +122,20 @@ public class ParentController {
         }
 
         // Knowledge radar data (weak points)
-        List<KnowledgeState> states = knowledgeStateMapper.selectList(
-                new LambdaQueryWrapper<KnowledgeState>().eq(KnowledgeState::getStudentId, childId));
+        Map<Long, Double> states = masteryCache.get(childId);
         
         if (!states.isEmpty()) {
-            List<Long> kpIds = states.stream().map(KnowledgeState::getKnowledgePointId).collect(Collectors.toList());
+            List<Long> kpIds = new ArrayList<>(states.keySet());
             List<KnowledgePoint> kps = knowledgePointMapper.selectBatchIds(kpIds);
             Map<Long, String> kpNameMap = kps.stream()
                     .collect(Collectors.toMap(KnowledgePoint::getId, KnowledgePoint::getName));
 
-            List<KnowledgeStateVO> radarData = states.stream().map(state -> {
-                String name = kpNameMap.getOrDefault(state.getKnowledgePointId(), "Unknown");
-                BigDecimal score = state.getMasteryProbability();
+            List<KnowledgeStateVO> radarData = states.entrySet().stream().map(state -> {
+                String name = kpNameMap.getOrDefault(state.getKey(), "Unknown");
+                BigDecimal score = BigDecimal.valueOf(state.getValue()).setScale(4, RoundingMode.HALF_UP);
                 String level = score.doubleValue() >= 0.8 ? "Master" :
                         score.doubleValue() >= 0.5 ? "Proficient" : "Novice";
-                return new KnowledgeStateVO(state.getKnowledgePointId(), name, score, level);
+                return new KnowledgeStateVO(state.getKey(), name, score, level);
             }).collect(Collectors.toList());
 
             result.put("radarData", radarData);
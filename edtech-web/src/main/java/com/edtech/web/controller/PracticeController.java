@@ -2,23 +2,28 @@ package com.edtech.web.controller;
 
 import com.edtech.ai.model.GeneratedQuestionVO;
 import com.edtech.ai.service.ContentGenerationService;
+import com.edtech.core.mq.PracticeProducer;
 import com.edtech.core.util.RedisUtils;
-import com.edtech.kt.service.KnowledgeTracingService;
+import com.edtech.kt.service.BktParameterRegistry;
+import com.edtech.kt.service.StudentMasteryCache;
 import com.edtech.model.entity.Question;
-import com.edtech.model.entity.StudentExerciseLog;
 import com.edtech.model.mapper.KnowledgePointMapper;
 import com.edtech.model.mapper.QuestionMapper;
-import com.edtech.model.mapper.StudentExerciseLogMapper;
-import com.edtech.web.service.MistakeBookService;
+import com.edtech.web.service.DashboardMetricsService;
+import com.edtech.web.service.strategy.PracticePrefetchService;
 import com.edtech.web.service.strategy.PracticeStrategyService;
-import com.edtech.web.service.strategy.SpacedRepetitionService;
+import com.edtech.web.service.strategy.QuestionPoolIndex;
 import lombok.Data;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 @RestController
@@ -27,21 +32,22 @@ import java.util.Map;
 @Slf4j
 public class PracticeController {
 
-    private final StudentExerciseLogMapper logMapper;
-    private final KnowledgeTracingService ktService;
-    private final MistakeBookService mistakeBookService;
-    private final PracticeStrategyService strategyService;
-    private final SpacedRepetitionService sm2Service;
+    private final PracticeProducer practiceProducer;
+    private final PracticePrefetchService prefetchService;
     private final RedisUtils redisUtils;
     private final ContentGenerationService contentService;
     private final QuestionMapper questionMapper;
     private final KnowledgePointMapper knowledgePointMapper;
+    private final BktParameterRegistry bktParameterRegistry;
+    private final QuestionPoolIndex questionPoolIndex;
+    private final DashboardMetricsService dashboardMetricsService;
+    private final StudentMasteryCache masteryCache;
 
     @GetMapping("/random")
     public Map<String, Object> getRandomQuestion() {
         // Use new Strategy Engine
         Long studentId = 1L; // Mock student
-        PracticeStrategyService.QuestionSelection selection = strategyService.selectNextQuestion(studentId);
+        PracticeStrategyService.QuestionSelection selection = prefetchService.next(studentId);
         
         Map<String, Object> response = new HashMap<>();
         if (selection != null && selection.question() != null) {
@@ -52,6 +58,28 @@ public class PracticeController {
         return response;
     }
 
+    /**
+     * 一次取下一组不重复的题目 (优先取预取缓冲)，每项含题目与所用策略
+     */
+    @GetMapping("/set")
+    public Map<String, Object> getPracticeSet(@RequestParam(required = false) Long studentId,
+                                              @RequestParam(defaultValue = "10") int size) {
+        Long sid = studentId != null ? studentId : 1L; // Mock student
+        List<Map<String, Object>> items = new ArrayList<>();
+        for (PracticeStrategyService.QuestionSelection selection : prefetchService.nextSet(sid, size)) {
+            Map<String, Object> item = new HashMap<>();
+            item.put("question", selection.question());
+            item.put("strategy", selection.strategyName());
+            item.put("strategyCode", selection.strategyCode());
+            items.add(item);
+        }
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("data", items);
+        response.put("size", items.size());
+        return response;
+    }
+
     @GetMapping("/generate")
     public Map<String, Object> generateQuestion(
             @RequestParam(required = false) String subject,
@@ -90,16 +118,15 @@ public class PracticeController {
             }
 
             // 从Redis获取学生状态
-            String masteryKey = String.format("student:%s:mastery", studentId);
             String mistakeKey = String.format("student:%s:common_mistakes", studentId);
             
             double probability = 0.5;
             String commonMistakes = "暂无历史错误记录";
             
             if (kpIdToUse != null) {
-                Object masteryObj = redisUtils.hGet(masteryKey, kpIdToUse.toString());
-                if (masteryObj != null) {
-                    probability = Double.parseDouble(masteryObj.toString());
+                Double mastery = masteryCache.get(studentId, kpIdToUse);
+                if (mastery != null) {
+                    probability = mastery;
                 }
                 
                 Object mistakeObj = redisUtils.hGet(mistakeKey, kpIdToUse.toString());
@@ -131,6 +158,9 @@ public class PracticeController {
             question.setType(99); // AI生成标记
             question.setCreatedAt(LocalDateTime.now());
             questionMapper.insert(question);
+            bktParameterRegistry.registerQuestion(question.getId(), kpIdToUse);
+            questionPoolIndex.addQuestion(question);
+            dashboardMetricsService.recordQuestionCreated(question);
 
             // 构造返回结果
             Map<String, Object> qMap = new HashMap<>();
@@ -163,55 +193,22 @@ public class PracticeController {
         }
     }
 
+    /**
+     * 提交答案：仅做校验并投递 MQ，答题记录、错题本、BKT 与策略状态由消费端异步处理
+     */
     @PostMapping("/submit")
     public void submitAnswer(@RequestBody SubmitRequest request) {
-        log.info("Received submission: {}", request);
-        Long studentId = request.getStudentId();
-        Long questionId = request.getQuestionId();
-
-        // 1. Save Log (Sync for now, move to MQ later as requested)
-        StudentExerciseLog exerciseLog = new StudentExerciseLog();
-        exerciseLog.setStudentId(studentId);
-        exerciseLog.setQuestionId(questionId);
-        exerciseLog.setResult(request.getIsCorrect() ? 1 : 0);
-        exerciseLog.setDuration(request.getDuration());
-        exerciseLog.setSubmitTime(LocalDateTime.now());
-        logMapper.insert(exerciseLog);
-
-        // 2. Trigger BKT Update
-        ktService.updateKnowledgeState(studentId, questionId, request.getIsCorrect());
-
-        // 3. Update Strategy State (Redis)
-        String wrongFreqKey = String.format("student:%s:wrong_freq", studentId);
-        String drillKey = String.format("student:%s:drill_mode", studentId);
-        String reviewKey = String.format("student:%s:review_due", studentId);
-
-        if (!request.getIsCorrect()) {
-            // Wrong: Add to mistake book, increment freq, trigger drill
-            mistakeBookService.addMistake(studentId, questionId);
-            redisUtils.zIncrementScore(wrongFreqKey, questionId.toString(), 1.0);
-            
-            // Set Drill Mode: Target this KP
-            redisUtils.set(drillKey, 101L, 10, java.util.concurrent.TimeUnit.MINUTES); // Mock KP ID logic
-            
-            // Reset SM-2 interval
-            long nextReview = sm2Service.calculateNextReviewTime(0, 0, 0);
-            redisUtils.zAdd(reviewKey, questionId.toString(), nextReview);
-        } else {
-            // Correct: Check drill mode exit
-            Object drillKp = redisUtils.get(drillKey);
-            if (drillKp != null) {
-                // If consecutive correct >= 2 (Logic simplified for demo)
-                redisUtils.delete(drillKey);
-            }
-            
-            // Update SM-2 (Mocking previous interval/reps for now)
-            long nextReview = sm2Service.calculateNextReviewTime(1, 1, 4);
-            redisUtils.zAdd(reviewKey, questionId.toString(), nextReview);
+        log.debug("Received submission: {}", request);
+        if (request.getStudentId() == null || request.getQuestionId() == null || request.getIsCorrect() == null) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "studentId, questionId and isCorrect are required");
         }
-        
-        // 4. Async Log (Mock MQ send)
-        // rabbitTemplate.convertAndSend("practice.exchange", "log.key", exerciseLog);
+        if (bktParameterRegistry.getKnowledgePointId(request.getQuestionId()) == null) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Question not found: " + request.getQuestionId());
+        }
+        int duration = request.getDuration() != null ? Math.max(0, request.getDuration()) : 0;
+
+        practiceProducer.sendPracticeLog(request.getStudentId(), request.getQuestionId(), request.getIsCorrect(), duration);
+        prefetchService.onSubmitted(request.getStudentId(), request.getQuestionId(), request.getIsCorrect());
     }
 
     @Data
@@ -1,9 +1,13 @@
 package com.edtech.web.controller;
 
-import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.edtech.model.entity.StudentDailyKpStats;
+import com.edtech.model.entity.StudentDailyStats;
 import com.edtech.model.entity.StudentExerciseLog;
+import com.edtech.model.mapper.StudentDailyKpStatsMapper;
+import com.edtech.model.mapper.StudentDailyStatsMapper;
 import com.edtech.model.mapper.StudentExerciseLogMapper;
 import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
@@ -22,57 +26,66 @@ import java.util.Map;
 @RequiredArgsConstructor
 public class ReportController {
 
+    private static final int MAX_PAGE_SIZE = 500;
+
     private final StudentExerciseLogMapper logMapper;
+    private final StudentDailyStatsMapper dailyStatsMapper;
+    private final StudentDailyKpStatsMapper dailyKpStatsMapper;
 
+    /**
+     * 答题历史 (游标分页，最新在前)
+     * 下一页传入本页最后一条的 submitTime 与 id 作为 beforeTime / beforeId
+     */
     @GetMapping("/student/{studentId}")
-    public List<StudentExerciseLog> getStudentReport(@PathVariable Long studentId) {
-        List<StudentExerciseLog> logs = logMapper.selectList(new LambdaQueryWrapper<StudentExerciseLog>()
-                .eq(StudentExerciseLog::getStudentId, studentId)
-                .orderByDesc(StudentExerciseLog::getSubmitTime));
-        
-        if (logs.isEmpty()) {
-            return new ArrayList<>();
-        }
-        return logs;
+    public List<StudentExerciseLog> getStudentReport(@PathVariable Long studentId,
+                                                     @RequestParam(defaultValue = "50") int size,
+                                                     @RequestParam(required = false)
+                                                     @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime beforeTime,
+                                                     @RequestParam(required = false) Long beforeId) {
+        int limit = Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+        return logMapper.selectPageBefore(studentId, beforeTime,
+                beforeId != null ? beforeId : Long.MAX_VALUE, limit);
     }
 
     @GetMapping("/trend/{studentId}")
     public List<Map<String, Object>> getMasteryTrend(@PathVariable Long studentId,
                                                      @RequestParam(defaultValue = "30") int days) {
-        LocalDateTime from = LocalDate.now().minusDays(days - 1L).atStartOfDay();
-        List<StudentExerciseLog> logs = logMapper.selectList(new LambdaQueryWrapper<StudentExerciseLog>()
-                .eq(StudentExerciseLog::getStudentId, studentId)
-                .ge(StudentExerciseLog::getSubmitTime, from)
-                .orderByAsc(StudentExerciseLog::getSubmitTime));
-
-        if (logs.isEmpty()) {
-            return new ArrayList<>();
-        }
+        LocalDate from = LocalDate.now().minusDays(days - 1L);
+        List<StudentDailyStats> stats = dailyStatsMapper.selectSince(studentId, from);
 
-        Map<LocalDate, int[]> daily = new HashMap<>();
-        for (StudentExerciseLog log : logs) {
-            LocalDate d = log.getSubmitTime().toLocalDate();
-            int[] cnt = daily.computeIfAbsent(d, k -> new int[2]);
-            cnt[0]++;
-            if (log.getResult() != null && log.getResult() == 1) {
-                cnt[1]++;
-            }
+        List<Map<String, Object>> result = new ArrayList<>(stats.size());
+        for (StudentDailyStats s : stats) {
+            int total = s.getAttempts();
+            int correct = s.getCorrectCount();
+            double accuracy = total == 0 ? 0.0 : (double) correct / total;
+            Map<String, Object> item = new HashMap<>();
+            item.put("date", s.getStatDate().toString());
+            item.put("accuracy", accuracy);
+            item.put("total", total);
+            item.put("duration", s.getTotalDuration());
+            result.add(item);
         }
+        return result;
+    }
 
-        List<Map<String, Object>> result = new ArrayList<>();
-        daily.entrySet().stream()
-                .sorted(java.util.Map.Entry.comparingByKey())
-                .forEach(e -> {
-                    int total = e.getValue()[0];
-                    int correct = e.getValue()[1];
-                    double accuracy = total == 0 ? 0.0 : (double) correct / total;
-                    Map<String, Object> item = new HashMap<>();
-                    item.put("date", e.getKey().toString());
-                    item.put("accuracy", accuracy);
-                    item.put("total", total);
-                    result.add(item);
-                });
+    /**
+     * 时间窗口内各知识点的答题数与正确率
+     */
+    @GetMapping("/trend/{studentId}/knowledge-points")
+    public List<Map<String, Object>> getKnowledgePointTrend(@PathVariable Long studentId,
+                                                            @RequestParam(defaultValue = "30") int days) {
+        LocalDate from = LocalDate.now().minusDays(days - 1L);
+        List<StudentDailyKpStats> stats = dailyKpStatsMapper.sumByKnowledgePointSince(studentId, from);
 
+        List<Map<String, Object>> result = new ArrayList<>(stats.size());
+        for (StudentDailyKpStats s : stats) {
+            int total = s.getAttempts();
+            Map<String, Object> item = new HashMap<>();
+            item.put("knowledgePointId", s.getKnowledgePointId());
+            item.put("total", total);
+            item.put("accuracy", total == 0 ? 0.0 : (double) s.getCorrectCount() / total);
+            result.add(item);
+        }
         return result;
     }
 }
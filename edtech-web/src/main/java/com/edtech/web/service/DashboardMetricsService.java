@@ -0,0 +1,193 @@
+package com.edtech.web.service;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.edtech.core.mq.PracticeLogMessage;
+import com.edtech.core.mq.PracticeLogSubscriber;
+import com.edtech.core.util.RedisUtils;
+import com.edtech.model.entity.Question;
+import com.edtech.model.entity.User;
+import com.edtech.model.mapper.QuestionMapper;
+import com.edtech.model.mapper.UserMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 管理后台仪表盘指标 (流式聚合)
+ * <p>
+ * 答题批次到达时写入 Redis：每小时一个 HyperLogLog 记录活跃学生，每分钟一个计数器记录提交数；
+ * 题目/AI 题目总数在内存中随创建事件累加，用户数及 30 天新增定期用 COUNT 校准 (多实例部署时的偏差也由此修正)。
+ * 后台线程定时汇总成不可变快照，仪表盘接口只读取快照。
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class DashboardMetricsService implements PracticeLogSubscriber {
+
+    /** AI 生成题目的 type 标记 */
+    public static final int AI_QUESTION_TYPE = 99;
+
+    private static final String KEY_ACTIVE_HOUR = "metrics:active:%d";
+    private static final String KEY_SUBMISSIONS_MINUTE = "metrics:submissions:%d";
+
+    /** 滚动 24 小时活跃 = 当前小时 + 前 24 个整小时的 HLL 并集 */
+    private static final int ACTIVE_WINDOW_HOURS = 25;
+    private static final int SUBMISSION_WINDOW_MINUTES = 60;
+    private static final long ACTIVE_TTL_HOURS = ACTIVE_WINDOW_HOURS + 1;
+    private static final long SUBMISSION_TTL_MINUTES = SUBMISSION_WINDOW_MINUTES * 2;
+    private static final int GROWTH_WINDOW_DAYS = 30;
+
+    private final RedisUtils redisUtils;
+    private final UserMapper userMapper;
+    private final QuestionMapper questionMapper;
+
+    private final AtomicLong totalUsers = new AtomicLong();
+    private final AtomicLong totalQuestions = new AtomicLong();
+    private final AtomicLong aiQuestions = new AtomicLong();
+    private final AtomicLong newUsers = new AtomicLong();
+    private final AtomicLong newQuestions = new AtomicLong();
+
+    private volatile DashboardSnapshot snapshot = DashboardSnapshot.EMPTY;
+
+    // --- Event input ---
+
+    @Override
+    public void onPracticeLogs(List<PracticeLogMessage> batch) {
+        Map<String, Set<Object>> activeByHour = new HashMap<>();
+        Map<String, Long> submissionsByMinute = new HashMap<>();
+        for (PracticeLogMessage message : batch) {
+            long minute = TimeUnit.MILLISECONDS.toMinutes(message.submitTimeMillis());
+            long hour = TimeUnit.MILLISECONDS.toHours(message.submitTimeMillis());
+            activeByHour.computeIfAbsent(String.format(KEY_ACTIVE_HOUR, hour), k -> new HashSet<>())
+                    .add(String.valueOf(message.studentId()));
+            submissionsByMinute.merge(String.format(KEY_SUBMISSIONS_MINUTE, minute), 1L, Long::sum);
+        }
+
+        redisUtils.executePipelined(ops -> {
+            for (Map.Entry<String, Set<Object>> e : activeByHour.entrySet()) {
+                ops.opsForHyperLogLog().add(e.getKey(), e.getValue().toArray());
+                ops.expire(e.getKey(), ACTIVE_TTL_HOURS, TimeUnit.HOURS);
+            }
+            for (Map.Entry<String, Long> e : submissionsByMinute.entrySet()) {
+                ops.opsForValue().increment(e.getKey(), e.getValue());
+                ops.expire(e.getKey(), SUBMISSION_TTL_MINUTES, TimeUnit.MINUTES);
+            }
+        });
+    }
+
+    public void recordQuestionCreated(Question question) {
+        totalQuestions.incrementAndGet();
+        newQuestions.incrementAndGet();
+        if (question.getType() != null && question.getType() == AI_QUESTION_TYPE) {
+            aiQuestions.incrementAndGet();
+        }
+    }
+
+    // --- Snapshot ---
+
+    public DashboardSnapshot getSnapshot() {
+        return snapshot;
+    }
+
+    @Scheduled(fixedDelayString = "${dashboard.metrics.refresh-interval-ms:10000}",
+            initialDelayString = "${dashboard.metrics.refresh-interval-ms:10000}")
+    public void refreshSnapshot() {
+        try {
+            long nowMillis = System.currentTimeMillis();
+            long currentHour = TimeUnit.MILLISECONDS.toHours(nowMillis);
+            long currentMinute = TimeUnit.MILLISECONDS.toMinutes(nowMillis);
+
+            String[] hourKeys = new String[ACTIVE_WINDOW_HOURS];
+            for (int i = 0; i < ACTIVE_WINDOW_HOURS; i++) {
+                hourKeys[i] = String.format(KEY_ACTIVE_HOUR, currentHour - i);
+            }
+            // 最早的分钟在前
+            List<String> minuteKeys = new ArrayList<>(SUBMISSION_WINDOW_MINUTES);
+            for (int i = SUBMISSION_WINDOW_MINUTES - 1; i >= 0; i--) {
+                minuteKeys.add(String.format(KEY_SUBMISSIONS_MINUTE, currentMinute - i));
+            }
+
+            List<Object> results = redisUtils.executePipelined(ops -> {
+                ops.opsForHyperLogLog().size(hourKeys);
+                ops.opsForValue().multiGet(minuteKeys);
+            });
+            long dailyActive = toLong(results.get(0));
+            long[] perMinute = new long[SUBMISSION_WINDOW_MINUTES];
+            long lastHour = 0;
+            if (results.get(1) instanceof List<?> counts) {
+                for (int i = 0; i < counts.size() && i < perMinute.length; i++) {
+                    perMinute[i] = toLong(counts.get(i));
+                    lastHour += perMinute[i];
+                }
+            }
+
+            snapshot = new DashboardSnapshot(
+                    totalUsers.get(), dailyActive, totalQuestions.get(), aiQuestions.get(),
+                    growth(newUsers.get(), totalUsers.get()), growth(newQuestions.get(), totalQuestions.get()),
+                    lastHour, perMinute, nowMillis);
+        } catch (Exception e) {
+            log.warn("Failed to refresh dashboard snapshot, keeping previous one", e);
+        }
+    }
+
+    /**
+     * 用 COUNT 校准总数与 30 天新增 (启动时及定时执行，不再随页面访问触发)
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${dashboard.metrics.reconcile-interval-ms:600000}",
+            initialDelayString = "${dashboard.metrics.reconcile-interval-ms:600000}")
+    public void reconcileTotals() {
+        try {
+            LocalDateTime since = LocalDateTime.now().minusDays(GROWTH_WINDOW_DAYS);
+            totalUsers.set(userMapper.selectCount(null));
+            totalQuestions.set(questionMapper.selectCount(null));
+            aiQuestions.set(questionMapper.selectCount(new LambdaQueryWrapper<Question>()
+                    .eq(Question::getType, AI_QUESTION_TYPE)));
+            newUsers.set(userMapper.selectCount(new LambdaQueryWrapper<User>()
+                    .ge(User::getCreatedAt, since)));
+            newQuestions.set(questionMapper.selectCount(new LambdaQueryWrapper<Question>()
+                    .ge(Question::getCreatedAt, since)));
+        } catch (Exception e) {
+            log.warn("Failed to reconcile dashboard totals", e);
+        }
+        refreshSnapshot();
+    }
+
+    private static double growth(long added, long total) {
+        double percent = total > 0 ? added * 100.0 / total : 0.0;
+        return Math.round(percent * 10.0) / 10.0;
+    }
+
+    private static long toLong(Object value) {
+        if (value instanceof Number n) {
+            return n.longValue();
+        }
+        return value != null ? Long.parseLong(value.toString()) : 0L;
+    }
+
+    /**
+     * 仪表盘快照 (不可变)
+     *
+     * @param submissionsPerMinute 最近 60 分钟每分钟提交数，最早的在前
+     */
+    public record DashboardSnapshot(long totalUsers, long dailyActive, long totalQuestions, long aiQuestions,
+                                    double userGrowth, double questionGrowth,
+                                    long submissionsLastHour, long[] submissionsPerMinute, long refreshedAt) {
+
+        static final DashboardSnapshot EMPTY =
+                new DashboardSnapshot(0, 0, 0, 0, 0.0, 0.0, 0, new long[SUBMISSION_WINDOW_MINUTES], 0);
+    }
+}
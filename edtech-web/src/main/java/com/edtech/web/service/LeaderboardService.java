@@ -0,0 +1,499 @@
+package com.edtech.web.service;
+
+import com.edtech.core.mq.PracticeLogMessage;
+import com.edtech.core.mq.PracticeLogPersistHook;
+import com.edtech.core.mq.PracticeLogSubscriber;
+import com.edtech.core.util.RedisUtils;
+import com.edtech.model.entity.LeaderboardWeekly;
+import com.edtech.model.entity.UserPoints;
+import com.edtech.model.mapper.LeaderboardWeeklyMapper;
+import com.edtech.model.mapper.UserPointsMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.connection.RedisZSetCommands.ZAddArgs;
+import org.springframework.data.redis.core.DefaultTypedTuple;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.DayOfWeek;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * 实时排行榜 (Redis ZSET)
+ * <p>
+ * 每个指标 (积分 / 连胜 / 练习数) 维护一个总榜 ZSET，每周再各维护一个周榜 ZSET。
+ * 答题事件在答题记录入库的同一事务内累加到 user_points / leaderboard_weekly (MySQL 为准，
+ * 按消息 ID 去重，不会重复累加)；提交后订阅者读回绝对值写入 ZSET，重试只会重复写入同样的值。
+ * 积分、练习数与周连胜只增不减，以 ZADD GT 写入，写入顺序与重复写入都不影响结果；
+ * 总连胜会在中断后重置，直接 ZADD 覆盖，并发批次乱序写入的偏差由对账修正。
+ * 名次为竞争排名 (同分同名次) ZCOUNT(分数+ε, +inf) + 1、Top N 走 ZREVRANGE WITHSCORES，均为 O(log N)。
+ * 对账任务定期从 MySQL 全量重建 ZSET，修正 Redis 写失败等造成的偏差；
+ * 重建期间 (leaderboard:rebuilding 存在) 答题写入同时落到临时 key，替换时不会丢失重建期间的更新。
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class LeaderboardService implements PracticeLogPersistHook, PracticeLogSubscriber {
+
+    public static final String METRIC_POINTS = "points";
+    public static final String METRIC_STREAK = "streak";
+    public static final String METRIC_PRACTICE = "practice";
+
+    private static final List<String> METRICS = List.of(METRIC_POINTS, METRIC_STREAK, METRIC_PRACTICE);
+
+    private static final String KEY_TOTAL = "leaderboard:total:%s";
+    private static final String KEY_WEEKLY = "leaderboard:weekly:%s:%s";
+    private static final String REBUILD_SUFFIX = ":rebuild";
+    private static final String REBUILDING_KEY = "leaderboard:rebuilding";
+
+    /** 重建标记的兜底过期时间，进程在重建中途退出时自动清除 */
+    private static final long REBUILDING_TTL_MINUTES = 30;
+
+    /** 周榜保留 8 周 */
+    private static final long WEEKLY_TTL_DAYS = 56;
+    private static final int RECONCILE_PAGE_SIZE = 1000;
+
+    private static final Comparator<UserDay> USER_DAY_ORDER =
+            Comparator.comparingLong(UserDay::userId).thenComparing(UserDay::day);
+
+    private final UserPointsMapper userPointsMapper;
+    private final LeaderboardWeeklyMapper leaderboardWeeklyMapper;
+    private final RedisUtils redisUtils;
+    private final UserSummaryCache userSummaryCache;
+
+    @Value("${leaderboard.points-per-correct:10}")
+    private int pointsPerCorrect;
+
+    // --- Write path ---
+
+    /**
+     * 答题记录入库事务内：按 (用户, 日期) 与 (用户, 周) 合并后一次累加
+     * (用户, 日期) 升序写入，同一批次跨天时连胜天数逐日推进；周连胜由累加后的总连胜推出
+     */
+    @Override
+    public void onPersist(List<PracticeLogMessage> batch) {
+        Map<UserDay, UserPoints> totals = new TreeMap<>(USER_DAY_ORDER);
+        Map<UserWeek, LeaderboardWeekly> weeklies = new LinkedHashMap<>();
+
+        for (PracticeLogMessage message : batch) {
+            LocalDate day = dayOf(message);
+            int points = message.correct() ? pointsPerCorrect : 0;
+
+            UserPoints total = totals.computeIfAbsent(new UserDay(message.studentId(), day), k -> {
+                UserPoints p = new UserPoints();
+                p.setUserId(k.userId());
+                p.setTotalPoints(0);
+                p.setTotalPracticeCount(0);
+                p.setTotalCorrectCount(0);
+                p.setLastActiveDate(k.day());
+                return p;
+            });
+            total.setTotalPoints(total.getTotalPoints() + points);
+            total.setTotalPracticeCount(total.getTotalPracticeCount() + 1);
+            total.setTotalCorrectCount(total.getTotalCorrectCount() + (message.correct() ? 1 : 0));
+
+            LeaderboardWeekly weekly = weeklies.computeIfAbsent(new UserWeek(message.studentId(), weekStartOf(day)), k -> {
+                LeaderboardWeekly w = new LeaderboardWeekly();
+                w.setUserId(k.userId());
+                w.setWeekStart(k.weekStart());
+                w.setWeeklyPoints(0);
+                w.setWeeklyPracticeCount(0);
+                w.setWeeklyStreak(0);
+                return w;
+            });
+            weekly.setWeeklyPoints(weekly.getWeeklyPoints() + points);
+            weekly.setWeeklyPracticeCount(weekly.getWeeklyPracticeCount() + 1);
+        }
+
+        userPointsMapper.batchAccumulate(new ArrayList<>(totals.values()));
+        Map<Long, UserPoints> streaks = new HashMap<>();
+        for (UserPoints p : userPointsMapper.selectRankingByUserIds(userIds(batch))) {
+            streaks.put(p.getUserId(), p);
+        }
+        for (LeaderboardWeekly w : weeklies.values()) {
+            w.setWeeklyStreak(weeklyStreak(streaks.get(w.getUserId()), w.getWeekStart()));
+        }
+        leaderboardWeeklyMapper.batchAccumulate(new ArrayList<>(weeklies.values()));
+    }
+
+    /**
+     * 答题记录提交后：读回本批次用户的绝对值，一次 Pipeline 更新 ZSET，并失效用户摘要缓存
+     * 不做任何累加，失败重试与死信重放都是幂等的
+     */
+    @Override
+    public void onPracticeLogs(List<PracticeLogMessage> batch) {
+        Set<Long> userIds = userIds(batch);
+        Set<LocalDate> weeks = new HashSet<>();
+        for (PracticeLogMessage message : batch) {
+            weeks.add(weekStartOf(dayOf(message)));
+        }
+        List<UserPoints> totals = userPointsMapper.selectRankingByUserIds(userIds);
+        List<LeaderboardWeekly> weeklies = leaderboardWeeklyMapper.selectByWeeksAndUsers(weeks, userIds);
+        for (Long userId : userIds) {
+            userSummaryCache.invalidate(userId);
+        }
+
+        // 答题记录已提交之后再检查重建标记：重建先置标记再读 MySQL，
+        // 因此本批次的值要么已被重建读到，要么在这里写入临时 key
+        boolean rebuilding = redisUtils.hasKey(REBUILDING_KEY);
+        Set<String> weeklyKeys = new HashSet<>();
+        redisUtils.executePipelined(ops -> {
+            for (UserPoints p : totals) {
+                String member = p.getUserId().toString();
+                if (p.getTotalPoints() != null && p.getTotalPoints() > 0) {
+                    zAdd(ops, totalKey(METRIC_POINTS), member, p.getTotalPoints(), true, rebuilding);
+                }
+                if (p.getCurrentStreak() != null && p.getCurrentStreak() > 0) {
+                    zAdd(ops, totalKey(METRIC_STREAK), member, p.getCurrentStreak(), false, rebuilding);
+                }
+                zAdd(ops, totalKey(METRIC_PRACTICE), member, p.getTotalPracticeCount(), true, rebuilding);
+            }
+            for (LeaderboardWeekly w : weeklies) {
+                String member = w.getUserId().toString();
+                for (String metric : METRICS) {
+                    Integer score = switch (metric) {
+                        case METRIC_POINTS -> w.getWeeklyPoints();
+                        case METRIC_STREAK -> w.getWeeklyStreak();
+                        default -> w.getWeeklyPracticeCount();
+                    };
+                    if (score == null || (score <= 0 && !metric.equals(METRIC_PRACTICE))) {
+                        continue;
+                    }
+                    String key = weeklyKey(w.getWeekStart(), metric);
+                    zAdd(ops, key, member, score, true, rebuilding);
+                    weeklyKeys.add(key);
+                }
+            }
+            for (String key : weeklyKeys) {
+                ops.expire(key, WEEKLY_TTL_DAYS, TimeUnit.DAYS);
+            }
+        });
+    }
+
+    /**
+     * onlyIfGreater 为 true 时 ZADD GT：只在新分数更大 (或成员不存在) 时写入；重建期间同时写入临时 key
+     */
+    @SuppressWarnings("unchecked")
+    private static void zAdd(RedisOperations<String, Object> ops, String key, String member, Integer score,
+                             boolean onlyIfGreater, boolean rebuilding) {
+        if (score == null) {
+            return;
+        }
+        RedisSerializer<String> keySerializer = (RedisSerializer<String>) ops.getKeySerializer();
+        RedisSerializer<Object> valueSerializer = (RedisSerializer<Object>) ops.getValueSerializer();
+        byte[] rawMember = valueSerializer.serialize(member);
+        ZAddArgs args = onlyIfGreater ? ZAddArgs.empty().gt() : ZAddArgs.empty();
+        ops.execute((RedisCallback<Object>) connection -> {
+            connection.zSetCommands().zAdd(keySerializer.serialize(key), score, rawMember, args);
+            if (rebuilding) {
+                byte[] rebuildKey = keySerializer.serialize(key + REBUILD_SUFFIX);
+                connection.zSetCommands().zAdd(rebuildKey, score, rawMember, args);
+                connection.keyCommands().expire(rebuildKey, TimeUnit.MINUTES.toSeconds(REBUILDING_TTL_MINUTES));
+            }
+            return null;
+        });
+    }
+
+    /**
+     * 本周内的连续天数：最后活跃日不在该周时为 0
+     */
+    private static int weeklyStreak(UserPoints points, LocalDate weekStart) {
+        if (points == null || points.getLastActiveDate() == null || points.getCurrentStreak() == null) {
+            return 0;
+        }
+        long days = ChronoUnit.DAYS.between(weekStart, points.getLastActiveDate());
+        if (days < 0 || days > 6) {
+            return 0;
+        }
+        return (int) Math.min(points.getCurrentStreak(), days + 1);
+    }
+
+    private static Set<Long> userIds(List<PracticeLogMessage> batch) {
+        Set<Long> userIds = new TreeSet<>();
+        for (PracticeLogMessage message : batch) {
+            userIds.add(message.studentId());
+        }
+        return userIds;
+    }
+
+    private static LocalDate dayOf(PracticeLogMessage message) {
+        return LocalDate.ofInstant(Instant.ofEpochMilli(message.submitTimeMillis()), ZoneId.systemDefault());
+    }
+
+    // --- Read path ---
+
+    /**
+     * 用户在三个总榜上的名次 (1 起，未上榜为 null) 与分数
+     * 竞争排名：同分用户名次相同，名次 = 分数严格更高的人数 + 1；两次 Pipeline 往返 (先分数、再计数)
+     */
+    public UserRanks getUserRanks(Long userId) {
+        String member = userId.toString();
+        List<Object> scores = redisUtils.executePipelined(ops -> {
+            ZSetOperations<String, Object> zSet = ops.opsForZSet();
+            for (String metric : METRICS) {
+                zSet.score(totalKey(metric), member);
+            }
+        });
+        List<Object> higher = redisUtils.executePipelined(ops -> {
+            ZSetOperations<String, Object> zSet = ops.opsForZSet();
+            for (int m = 0; m < METRICS.size(); m++) {
+                if (scores.get(m) instanceof Number score) {
+                    zSet.count(totalKey(METRICS.get(m)), Math.nextUp(score.doubleValue()), Double.POSITIVE_INFINITY);
+                }
+            }
+        });
+        Long[] ranks = new Long[METRICS.size()];
+        int j = 0;
+        for (int m = 0; m < METRICS.size(); m++) {
+            if (scores.get(m) instanceof Number) {
+                ranks[m] = toRank(higher.get(j++));
+            }
+        }
+        return new UserRanks(ranks[0], ranks[1], ranks[2],
+                toScore(scores.get(0)), toScore(scores.get(1)), toScore(scores.get(2)));
+    }
+
+    /**
+     * 周榜 Top N，按 metric 排序，附带另外两个指标的周分数
+     */
+    public List<Entry> topWeekly(LocalDate weekStart, String metric, int limit) {
+        return top(m -> weeklyKey(weekStart, m), metric, limit);
+    }
+
+    /**
+     * 总榜 Top N
+     */
+    public List<Entry> topTotal(String metric, int limit) {
+        return top(this::totalKey, metric, limit);
+    }
+
+    public static LocalDate currentWeekStart() {
+        return weekStartOf(LocalDate.now());
+    }
+
+    private List<Entry> top(Function<String, String> keyOf, String metric, int limit) {
+        String sortMetric = METRICS.contains(metric) ? metric : METRIC_POINTS;
+        Set<ZSetOperations.TypedTuple<Object>> tuples =
+                redisUtils.zReverseRangeWithScores(keyOf.apply(sortMetric), 0, Math.max(1, limit) - 1);
+        if (tuples == null || tuples.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        List<Object> members = new ArrayList<>(tuples.size());
+        for (ZSetOperations.TypedTuple<Object> tuple : tuples) {
+            members.add(tuple.getValue());
+        }
+        // 另外两个指标的分数一次 Pipeline 取回
+        List<Object> scores = redisUtils.executePipelined(ops -> {
+            ZSetOperations<String, Object> zSet = ops.opsForZSet();
+            for (Object member : members) {
+                for (String m : METRICS) {
+                    if (!m.equals(sortMetric)) {
+                        zSet.score(keyOf.apply(m), member);
+                    }
+                }
+            }
+        });
+
+        List<Entry> entries = new ArrayList<>(tuples.size());
+        int i = 0;
+        for (ZSetOperations.TypedTuple<Object> tuple : tuples) {
+            long[] values = new long[METRICS.size()];
+            int offset = i * (METRICS.size() - 1);
+            int j = 0;
+            for (int m = 0; m < METRICS.size(); m++) {
+                values[m] = METRICS.get(m).equals(sortMetric)
+                        ? toScore(tuple.getScore())
+                        : toScore(scores.get(offset + j++));
+            }
+            entries.add(new Entry(Long.parseLong(tuple.getValue().toString()), values[0], values[1], values[2]));
+            i++;
+        }
+        return entries;
+    }
+
+    // --- Reconciliation ---
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        try {
+            if (!redisUtils.hasKey(totalKey(METRIC_POINTS))) {
+                reconcile();
+            }
+        } catch (Exception e) {
+            log.warn("Leaderboard warm-up failed, will rebuild on next reconciliation", e);
+        }
+    }
+
+    @Scheduled(cron = "${leaderboard.reconcile-cron:0 30 3 * * ?}")
+    public void scheduledReconcile() {
+        try {
+            reconcile();
+        } catch (Exception e) {
+            log.error("Leaderboard reconciliation failed", e);
+        }
+    }
+
+    /**
+     * 从 MySQL 全量重建总榜与本周榜
+     * 按主键游标分页写入临时 key，完成后 RENAME 原子替换，读者不会看到半成品。
+     * 先置重建标记再读 MySQL：读取之后提交的答题批次会把绝对值同时写入临时 key (ZADD GT)，
+     * 替换后不会被重建前的旧值覆盖。
+     */
+    public synchronized ReconcileResult reconcile() {
+        long start = System.currentTimeMillis();
+        LocalDate weekStart = currentWeekStart();
+        for (String metric : METRICS) {
+            // 清掉上次中途退出残留的临时 key
+            redisUtils.delete(totalKey(metric) + REBUILD_SUFFIX);
+            redisUtils.delete(weeklyKey(weekStart, metric) + REBUILD_SUFFIX);
+        }
+        redisUtils.set(REBUILDING_KEY, start, REBUILDING_TTL_MINUTES, TimeUnit.MINUTES);
+        try {
+            return rebuild(start, weekStart);
+        } finally {
+            redisUtils.delete(REBUILDING_KEY);
+        }
+    }
+
+    private ReconcileResult rebuild(long start, LocalDate weekStart) {
+        Map<String, List<ZSetOperations.TypedTuple<Object>>> pages = newMetricBuffers();
+        long totalRows = 0;
+        long afterId = 0;
+        List<UserPoints> page;
+        do {
+            page = userPointsMapper.selectRankingPage(afterId, RECONCILE_PAGE_SIZE);
+            for (UserPoints p : page) {
+                String member = p.getUserId().toString();
+                pages.get(METRIC_POINTS).add(tuple(member, p.getTotalPoints()));
+                pages.get(METRIC_STREAK).add(tuple(member, p.getCurrentStreak()));
+                pages.get(METRIC_PRACTICE).add(tuple(member, p.getTotalPracticeCount()));
+                afterId = p.getId();
+            }
+            totalRows += page.size();
+            writeRebuildPage(this::totalKey, pages);
+        } while (page.size() == RECONCILE_PAGE_SIZE);
+        swapRebuilt(this::totalKey, totalRows > 0, null);
+
+        long weeklyRows = 0;
+        afterId = 0;
+        List<LeaderboardWeekly> weekPage;
+        do {
+            weekPage = leaderboardWeeklyMapper.selectWeekPage(weekStart, afterId, RECONCILE_PAGE_SIZE);
+            for (LeaderboardWeekly w : weekPage) {
+                String member = w.getUserId().toString();
+                pages.get(METRIC_POINTS).add(tuple(member, w.getWeeklyPoints()));
+                pages.get(METRIC_STREAK).add(tuple(member, w.getWeeklyStreak()));
+                pages.get(METRIC_PRACTICE).add(tuple(member, w.getWeeklyPracticeCount()));
+                afterId = w.getId();
+            }
+            weeklyRows += weekPage.size();
+            writeRebuildPage(m -> weeklyKey(weekStart, m), pages);
+        } while (weekPage.size() == RECONCILE_PAGE_SIZE);
+        swapRebuilt(m -> weeklyKey(weekStart, m), weeklyRows > 0, WEEKLY_TTL_DAYS);
+
+        long elapsed = System.currentTimeMillis() - start;
+        log.info("Leaderboard reconciled: {} total rows, {} weekly rows in {} ms", totalRows, weeklyRows, elapsed);
+        return new ReconcileResult(totalRows, weeklyRows, elapsed);
+    }
+
+    private void writeRebuildPage(Function<String, String> keyOf,
+                                  Map<String, List<ZSetOperations.TypedTuple<Object>>> pages) {
+        for (Map.Entry<String, List<ZSetOperations.TypedTuple<Object>>> e : pages.entrySet()) {
+            if (!e.getValue().isEmpty()) {
+                String rebuildKey = keyOf.apply(e.getKey()) + REBUILD_SUFFIX;
+                List<ZSetOperations.TypedTuple<Object>> tuples = e.getValue();
+                // 与答题写入并发时取较大值，避免先读到的旧值覆盖刚写入的新值
+                redisUtils.executePipelined(ops -> {
+                    for (ZSetOperations.TypedTuple<Object> t : tuples) {
+                        zAdd(ops, rebuildKey, (String) t.getValue(), t.getScore().intValue(), true, false);
+                    }
+                });
+                tuples.clear();
+            }
+        }
+    }
+
+    private void swapRebuilt(Function<String, String> keyOf, boolean hasRows, Long ttlDays) {
+        for (String metric : METRICS) {
+            String key = keyOf.apply(metric);
+            String rebuildKey = key + REBUILD_SUFFIX;
+            if (hasRows && redisUtils.hasKey(rebuildKey)) {
+                redisUtils.rename(rebuildKey, key);
+                if (ttlDays != null) {
+                    redisUtils.expire(key, ttlDays, TimeUnit.DAYS);
+                }
+            } else {
+                redisUtils.delete(rebuildKey);
+                redisUtils.delete(key);
+            }
+        }
+    }
+
+    private static Map<String, List<ZSetOperations.TypedTuple<Object>>> newMetricBuffers() {
+        Map<String, List<ZSetOperations.TypedTuple<Object>>> buffers = new LinkedHashMap<>();
+        for (String metric : METRICS) {
+            buffers.put(metric, new ArrayList<>(RECONCILE_PAGE_SIZE));
+        }
+        return buffers;
+    }
+
+    private static ZSetOperations.TypedTuple<Object> tuple(String member, Integer score) {
+        return new DefaultTypedTuple<>(member, score != null ? score.doubleValue() : 0.0);
+    }
+
+    private String totalKey(String metric) {
+        return String.format(KEY_TOTAL, metric);
+    }
+
+    private static String weeklyKey(LocalDate weekStart, String metric) {
+        return String.format(KEY_WEEKLY, weekStart, metric);
+    }
+
+    private static LocalDate weekStartOf(LocalDate day) {
+        return day.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+    }
+
+    private static Long toRank(Object rank) {
+        return rank instanceof Number n ? n.longValue() + 1 : null;
+    }
+
+    private static long toScore(Object score) {
+        return score instanceof Number n ? n.longValue() : 0L;
+    }
+
+    private record UserDay(long userId, LocalDate day) {}
+
+    private record UserWeek(long userId, LocalDate weekStart) {}
+
+    public record Entry(long userId, long points, long streak, long practice) {}
+
+    public record UserRanks(Long pointsRank, Long streakRank, Long practiceRank,
+                            long points, long streak, long practice) {}
+
+    public record ReconcileResult(long totalRows, long weeklyRows, long elapsedMs) {}
+}
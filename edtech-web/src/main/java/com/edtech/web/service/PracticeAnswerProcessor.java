@@ -0,0 +1,134 @@
+package com.edtech.web.service;
+
+import com.edtech.core.mq.PracticeLogMessage;
+import com.edtech.core.mq.PracticeLogSubscriber;
+import com.edtech.core.util.RedisUtils;
+import com.edtech.kt.service.BktParameterRegistry;
+import com.edtech.kt.service.KnowledgeTracingService;
+import com.edtech.web.service.strategy.ReviewScheduler;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 答题异步处理：BKT 知识状态更新 + 练习策略状态 (Redis) + SM-2 复习调度
+ * 由 PracticeConsumer 在答题记录落库后按批次回调
+ * <p>
+ * 失败直接抛出，由 PracticeConsumer 重试并转入订阅者死信队列。每条消息完成的阶段记在
+ * practice:applied:{messageId}，重试 / 重放时跳过已完成的部分，不会对同一次作答重复执行 BKT 或 SM-2；
+ * 单条消息处理到一半失败时，该条重试仍会重做已完成的步骤。
+ */
+@Service
+@RequiredArgsConstructor
+public class PracticeAnswerProcessor implements PracticeLogSubscriber {
+
+    private static final String KEY_APPLIED = "practice:applied:%s";
+    /** BKT 与策略状态已完成 */
+    private static final long STAGE_ANSWER = 1;
+    /** SM-2 复习调度也已完成 */
+    private static final long STAGE_REVIEW = 2;
+
+    private final KnowledgeTracingService ktService;
+    private final BktParameterRegistry bktParameterRegistry;
+    private final ReviewScheduler reviewScheduler;
+    private final RedisUtils redisUtils;
+
+    @Value("${practice.answer.applied-ttl-hours:168}")
+    private long appliedTtlHours;
+
+    @Override
+    public void onPracticeLogs(List<PracticeLogMessage> batch) {
+        long[] stages = appliedStages(batch);
+        List<PracticeLogMessage> unscheduled = new ArrayList<>(batch.size());
+        for (int i = 0; i < batch.size(); i++) {
+            PracticeLogMessage message = batch.get(i);
+            if (stages[i] < STAGE_ANSWER) {
+                process(message);
+                if (message.messageId() != null) {
+                    redisUtils.set(String.format(KEY_APPLIED, message.messageId()), STAGE_ANSWER,
+                            appliedTtlHours, TimeUnit.HOURS);
+                }
+            }
+            if (stages[i] < STAGE_REVIEW) {
+                unscheduled.add(message);
+            }
+        }
+        // 3. SM-2 review schedule, one read and one write pipeline per batch
+        reviewScheduler.recordAnswers(unscheduled);
+        markReviewed(unscheduled);
+    }
+
+    /**
+     * 一次往返读取各消息已完成的阶段，无消息 ID 的按未处理
+     */
+    private long[] appliedStages(List<PracticeLogMessage> batch) {
+        if (batch.stream().allMatch(message -> message.messageId() == null)) {
+            return new long[batch.size()];
+        }
+        List<Object> results = redisUtils.executePipelined(ops -> {
+            for (PracticeLogMessage message : batch) {
+                if (message.messageId() != null) {
+                    ops.opsForValue().get(String.format(KEY_APPLIED, message.messageId()));
+                }
+            }
+        });
+        long[] stages = new long[batch.size()];
+        int r = 0;
+        for (int i = 0; i < batch.size(); i++) {
+            if (batch.get(i).messageId() != null) {
+                Object stage = r < results.size() ? results.get(r) : null;
+                stages[i] = stage instanceof Number number ? number.longValue() : 0;
+                r++;
+            }
+        }
+        return stages;
+    }
+
+    private void markReviewed(List<PracticeLogMessage> messages) {
+        if (messages.stream().allMatch(message -> message.messageId() == null)) {
+            return;
+        }
+        redisUtils.executePipelined(ops -> {
+            for (PracticeLogMessage message : messages) {
+                if (message.messageId() != null) {
+                    ops.opsForValue().set(String.format(KEY_APPLIED, message.messageId()), STAGE_REVIEW,
+                            appliedTtlHours, TimeUnit.HOURS);
+                }
+            }
+        });
+    }
+
+    private void process(PracticeLogMessage message) {
+        Long studentId = message.studentId();
+        Long questionId = message.questionId();
+
+        // 1. Trigger BKT Update
+        ktService.updateKnowledgeState(studentId, questionId, message.correct());
+
+        // 2. Update Strategy State (Redis)
+        String wrongFreqKey = String.format("student:%s:wrong_freq", studentId);
+        String drillKey = String.format("student:%s:drill_mode", studentId);
+
+        if (!message.correct()) {
+            // Wrong: increment freq, trigger drill (mistake book is upserted by the consumer)
+            redisUtils.zIncrementScore(wrongFreqKey, questionId.toString(), 1.0);
+
+            // Set Drill Mode: Target this KP
+            Long kpId = bktParameterRegistry.getKnowledgePointId(questionId);
+            if (kpId != null) {
+                redisUtils.set(drillKey, kpId, 10, TimeUnit.MINUTES);
+            }
+        } else {
+            // Correct: Check drill mode exit
+            Object drillKp = redisUtils.get(drillKey);
+            if (drillKp != null) {
+                // If consecutive correct >= 2 (Logic simplified for demo)
+                redisUtils.delete(drillKey);
+            }
+        }
+    }
+}
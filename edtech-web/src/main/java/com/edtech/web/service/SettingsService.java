@@ -5,9 +5,12 @@ import com.edtech.model.entity.ParentBinding;
 import com.edtech.model.entity.UserSettings;
 import com.edtech.model.mapper.ParentBindingMapper;
 import com.edtech.model.mapper.UserSettingsMapper;
+import com.edtech.web.service.strategy.StrategySamplerCache;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 @Service
 @RequiredArgsConstructor
@@ -15,6 +18,7 @@ public class SettingsService {
 
     private final UserSettingsMapper settingsMapper;
     private final ParentBindingMapper bindingMapper;
+    private final StrategySamplerCache strategySamplerCache;
 
     public UserSettings getSettings(Long userId) {
         UserSettings settings = settingsMapper.selectById(userId);
@@ -33,9 +37,26 @@ public class SettingsService {
         } else {
             settingsMapper.updateById(settings);
         }
+        invalidateStrategySampler(settings.getUserId());
         return settings;
     }
 
+    /**
+     * 提交后再失效，避免并发选题在提交前重新读到旧权重并缓存
+     */
+    private void invalidateStrategySampler(Long userId) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            strategySamplerCache.invalidate(userId);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                strategySamplerCache.invalidate(userId);
+            }
+        });
+    }
+
     public void bindParent(Long studentId, String inviteCode) {
         // Mock validation: Invite code must be "PARENT123" or similar
         // In real app, we'd lookup parent by code
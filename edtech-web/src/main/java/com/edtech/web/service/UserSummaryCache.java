@@ -0,0 +1,150 @@
+package com.edtech.web.service;
+
+import com.edtech.model.mapper.UserMapper;
+import com.edtech.model.vo.UserSummaryVO;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 用户摘要缓存 (昵称、头像、年级、积分、练习/正确数、最近答题时间)
+ * <p>
+ * 按容量 LRU 淘汰，另有写入后过期时间兜底。
+ * getAll 对未命中的 ID 合并为一次 {@link UserMapper#selectSummaries} 查询；
+ * 答题事件由 {@link LeaderboardService} 在入库后失效对应条目，下次读取时从库加载。
+ * 缓存值视为不可变，更新时整体替换。
+ */
+@Service
+@Slf4j
+public class UserSummaryCache {
+
+    private final UserMapper userMapper;
+    private final long ttlMillis;
+    private final Map<Long, Entry> cache;
+    /** 加载中的用户 -> 加载令牌；失效时移除，加载完成发现令牌不在则不缓存 */
+    private final Map<Long, Long> loading = new ConcurrentHashMap<>();
+    private final AtomicLong loadTokens = new AtomicLong();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public UserSummaryCache(UserMapper userMapper,
+                            @Value("${user-summary.cache.max-size:10000}") int maxSize,
+                            @Value("${user-summary.cache.ttl-seconds:300}") long ttlSeconds) {
+        this.userMapper = userMapper;
+        this.ttlMillis = TimeUnit.SECONDS.toMillis(ttlSeconds);
+        this.cache = new LinkedHashMap<>(Math.min(maxSize, 1024), 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Entry> eldest) {
+                if (size() > maxSize) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    public UserSummaryVO get(Long userId) {
+        return getAll(List.of(userId)).get(userId);
+    }
+
+    /**
+     * 批量获取，未命中部分一次查询加载
+     *
+     * @return userId -> 摘要，不存在的用户不在结果中
+     */
+    public Map<Long, UserSummaryVO> getAll(Collection<Long> userIds) {
+        Map<Long, UserSummaryVO> result = new HashMap<>(userIds.size() * 2);
+        Set<Long> missing = new LinkedHashSet<>();
+        long now = System.currentTimeMillis();
+
+        synchronized (cache) {
+            for (Long id : userIds) {
+                if (id == null) {
+                    continue;
+                }
+                Entry entry = cache.get(id);
+                if (entry != null && entry.expiresAt > now) {
+                    result.put(id, entry.value);
+                } else {
+                    missing.add(id);
+                }
+            }
+        }
+        hits.add(result.size());
+        if (missing.isEmpty()) {
+            return result;
+        }
+
+        misses.add(missing.size());
+        loads.increment();
+        Long token = loadTokens.incrementAndGet();
+        for (Long id : missing) {
+            loading.put(id, token);
+        }
+        List<UserSummaryVO> loaded;
+        try {
+            loaded = userMapper.selectSummaries(missing);
+        } catch (RuntimeException e) {
+            missing.forEach(id -> loading.remove(id, token));
+            throw e;
+        }
+        long expiresAt = System.currentTimeMillis() + ttlMillis;
+        synchronized (cache) {
+            for (UserSummaryVO summary : loaded) {
+                // 加载期间被失效 (或被更晚的加载覆盖) 时只返回结果，不缓存
+                if (loading.remove(summary.getUserId(), token)) {
+                    cache.put(summary.getUserId(), new Entry(summary, expiresAt));
+                }
+                result.put(summary.getUserId(), summary);
+            }
+        }
+        // 不存在的用户
+        missing.forEach(id -> loading.remove(id, token));
+        return result;
+    }
+
+    /**
+     * 资料变更或答题入库后失效 (昵称、头像、年级、积分等)
+     */
+    public void invalidate(Long userId) {
+        loading.remove(userId);
+        synchronized (cache) {
+            cache.remove(userId);
+        }
+    }
+
+    public void invalidateAll() {
+        loading.clear();
+        synchronized (cache) {
+            cache.clear();
+        }
+    }
+
+    public Stats getStats() {
+        int size;
+        synchronized (cache) {
+            size = cache.size();
+        }
+        return new Stats(size, hits.sum(), misses.sum(), loads.sum(), evictions.sum());
+    }
+
+    private record Entry(UserSummaryVO value, long expiresAt) {}
+
+    public record Stats(int size, long hits, long misses, long loads, long evictions) {}
+}
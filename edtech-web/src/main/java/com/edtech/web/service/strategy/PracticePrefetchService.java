@@ -0,0 +1,218 @@
+package com.edtech.web.service.strategy;
+
+import com.edtech.web.service.strategy.PracticeStrategyService.QuestionSelection;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 组题与每个学生的预取缓冲
+ * <p>
+ * 每个学生缓存少量已选好的题目，取题时先从缓冲中取，不足部分再现场选题 ({@link PracticeStrategyService#selectQuestions})；
+ * 每次答对后在后台补满缓冲，选题的 Redis / DB 往返不在请求路径上。
+ * 答错会进入纠错模式，此时清空缓冲不补，下一次取题按最新状态现场选。
+ * 缓冲按学生数 LRU 淘汰，条目超过 ttl-seconds 视为过期。
+ * 补缓冲在 MQ 消费者记录作答 (最近出题列表、SM-2) 之前就会执行，因此缓冲自己记住最近答对的题并在补充时排除。
+ */
+@Service
+@Slf4j
+public class PracticePrefetchService {
+
+    /** 每个学生记住的最近答对题数，覆盖提交到消费者落库之间的窗口即可 */
+    private static final int RECENT_ANSWERED = 8;
+
+    private final PracticeStrategyService strategyService;
+    private final int bufferSize;
+    private final int maxSetSize;
+    private final long ttlMillis;
+    private final Map<Long, Buffer> buffers;
+    private final Set<Long> refilling = ConcurrentHashMap.newKeySet();
+    private final ThreadPoolExecutor refiller;
+
+    private final LongAdder served = new LongAdder();
+    private final LongAdder prefetched = new LongAdder();
+    private final LongAdder refills = new LongAdder();
+
+    public PracticePrefetchService(PracticeStrategyService strategyService,
+                                   @Value("${practice.prefetch.buffer-size:5}") int bufferSize,
+                                   @Value("${practice.prefetch.max-set-size:20}") int maxSetSize,
+                                   @Value("${practice.prefetch.ttl-seconds:120}") long ttlSeconds,
+                                   @Value("${practice.prefetch.max-students:10000}") int maxStudents,
+                                   @Value("${practice.prefetch.threads:2}") int threads) {
+        this.strategyService = strategyService;
+        this.bufferSize = bufferSize;
+        this.maxSetSize = Math.max(1, maxSetSize);
+        this.ttlMillis = TimeUnit.SECONDS.toMillis(ttlSeconds);
+        this.buffers = new LinkedHashMap<>(Math.min(maxStudents, 1024), 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Buffer> eldest) {
+                return size() > maxStudents;
+            }
+        };
+        // 补缓冲是尽力而为，队列满时直接丢弃
+        this.refiller = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(1000), r -> {
+            Thread t = new Thread(r, "practice-prefetch");
+            t.setDaemon(true);
+            return t;
+        }, new ThreadPoolExecutor.DiscardPolicy());
+    }
+
+    public QuestionSelection next(Long studentId) {
+        List<QuestionSelection> set = nextSet(studentId, 1);
+        return set.isEmpty() ? strategyService.selectNextQuestion(studentId) : set.get(0);
+    }
+
+    /**
+     * 取下一组题 (不重复)，先取缓冲中的题，不足部分一次现场选出
+     */
+    public List<QuestionSelection> nextSet(Long studentId, int size) {
+        int wanted = Math.max(1, Math.min(maxSetSize, size));
+        List<QuestionSelection> result = new ArrayList<>(wanted);
+        Set<Long> taken = new HashSet<>();
+        long now = System.currentTimeMillis();
+        synchronized (buffers) {
+            Buffer buffer = buffers.get(studentId);
+            if (buffer != null) {
+                buffer.dropExpired(now - ttlMillis);
+                while (result.size() < wanted && !buffer.entries.isEmpty()) {
+                    QuestionSelection selection = buffer.entries.poll().selection;
+                    result.add(selection);
+                    taken.add(selection.question().getId());
+                }
+                // 现场选题同样跳过刚答对、消费者尚未记录的题
+                taken.addAll(buffer.answered);
+            }
+        }
+        prefetched.add(result.size());
+        if (result.size() < wanted) {
+            result.addAll(strategyService.selectQuestions(studentId, wanted - result.size(), taken));
+        }
+        served.add(result.size());
+        return result;
+    }
+
+    /**
+     * 提交答案后调用：答对时移除该题并在后台补满缓冲，答错时清空缓冲
+     */
+    public void onSubmitted(Long studentId, Long questionId, boolean correct) {
+        if (bufferSize <= 0) {
+            return;
+        }
+        synchronized (buffers) {
+            if (!correct) {
+                buffers.remove(studentId);
+                return;
+            }
+            Buffer buffer = buffers.computeIfAbsent(studentId, id -> new Buffer());
+            buffer.entries.removeIf(e -> e.selection.question().getId().equals(questionId));
+            buffer.answered(questionId);
+        }
+        if (refilling.add(studentId)) {
+            refiller.execute(() -> {
+                try {
+                    refill(studentId);
+                } catch (Exception e) {
+                    log.warn("Practice prefetch refill failed for student {}", studentId, e);
+                } finally {
+                    refilling.remove(studentId);
+                }
+            });
+        }
+    }
+
+    private void refill(Long studentId) {
+        Buffer buffer;
+        Set<Long> excluded = new HashSet<>();
+        int missing;
+        synchronized (buffers) {
+            // 排队期间答错 (缓冲被清空) 时不再重建缓冲
+            buffer = buffers.get(studentId);
+            if (buffer == null) {
+                return;
+            }
+            buffer.dropExpired(System.currentTimeMillis() - ttlMillis);
+            for (Entry entry : buffer.entries) {
+                excluded.add(entry.selection.question().getId());
+            }
+            missing = bufferSize - buffer.entries.size();
+            // 刚答完的题此时可能还没进最近出题列表
+            excluded.addAll(buffer.answered);
+        }
+        if (missing <= 0) {
+            return;
+        }
+        List<QuestionSelection> selections = strategyService.selectQuestions(studentId, missing, excluded);
+        long now = System.currentTimeMillis();
+        synchronized (buffers) {
+            // 期间答错 (缓冲被清空) 或被淘汰时丢弃本次结果
+            if (buffers.get(studentId) != buffer) {
+                return;
+            }
+            for (QuestionSelection selection : selections) {
+                // 补充期间又答对的题同样不放入缓冲
+                if (buffer.entries.size() < bufferSize && !buffer.answered.contains(selection.question().getId())) {
+                    buffer.entries.add(new Entry(selection, now));
+                }
+            }
+        }
+        refills.increment();
+    }
+
+    public Stats getStats() {
+        int students;
+        synchronized (buffers) {
+            students = buffers.size();
+        }
+        return new Stats(students, served.sum(), prefetched.sum(), refills.sum(), refiller.getQueue().size());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        refiller.shutdownNow();
+    }
+
+    private static final class Buffer {
+        private final ArrayDeque<Entry> entries = new ArrayDeque<>();
+        private final ArrayDeque<Long> answered = new ArrayDeque<>(RECENT_ANSWERED);
+
+        void answered(Long questionId) {
+            if (answered.size() == RECENT_ANSWERED) {
+                answered.poll();
+            }
+            answered.add(questionId);
+        }
+
+        void dropExpired(long minCreatedAt) {
+            Iterator<Entry> it = entries.iterator();
+            while (it.hasNext()) {
+                if (it.next().createdAt < minCreatedAt) {
+                    it.remove();
+                }
+            }
+        }
+    }
+
+    private record Entry(QuestionSelection selection, long createdAt) {}
+
+    /**
+     * @param served     取题接口返回的题目数
+     * @param prefetched 其中直接来自预取缓冲的题目数
+     */
+    public record Stats(int students, long served, long prefetched, long refills, int queuedRefills) {}
+}
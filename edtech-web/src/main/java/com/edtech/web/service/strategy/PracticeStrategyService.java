@@ -1,17 +1,25 @@
 package com.edtech.web.service.strategy;
 
 import com.edtech.core.util.RedisUtils;
-import com.edtech.model.entity.KnowledgePoint;
+import com.edtech.kt.service.StudentMasteryIndex;
 import com.edtech.model.entity.Question;
-import com.edtech.model.mapper.KnowledgePointMapper;
 import com.edtech.model.mapper.QuestionMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongPredicate;
 
 @Service
 @Slf4j
@@ -20,89 +28,294 @@ public class PracticeStrategyService {
 
     private final RedisUtils redisUtils;
     private final QuestionMapper questionMapper;
-    private final KnowledgePointMapper knowledgePointMapper;
+    private final QuestionPoolIndex questionPoolIndex;
+    private final ReviewScheduler reviewScheduler;
+    private final StrategySamplerCache strategySamplerCache;
 
     private static final String KEY_DRILL_MODE = "student:%s:drill_mode";
     private static final String KEY_WRONG_FREQ = "student:%s:wrong_freq";
-    private static final String KEY_WEAK_KPS = "student:%s:weak_kps";
-    private static final String KEY_REVIEW_DUE = "student:%s:review_due";
-    private static final String KEY_MASTERY = "student:%s:mastery";
+    /** 由知识追踪更新增量维护，见 StudentMasteryIndex */
+    private static final String KEY_WEAK_KPS = StudentMasteryIndex.WEAK_KPS_KEY;
+    /** 最近出过的题目 (LIST，定长) */
+    private static final String KEY_RECENT = "student:%s:recent_questions";
+
+    /** 到期复习项单次最多取回条数，避免积压过多时整个 ZSET 被拉回 */
+    private static final int REVIEW_DUE_LIMIT = 50;
+
+    /** 组题时每道题最多抽签次数 (重复时重抽) */
+    private static final int MAX_ROLLS_PER_QUESTION = 4;
+
+    @Value("${practice.recent.size:20}")
+    private int recentSize;
+
+    @Value("${practice.recent.ttl-minutes:720}")
+    private int recentTtlMinutes;
 
     public QuestionSelection selectNextQuestion(Long studentId) {
+        List<QuestionSelection> selections = selectQuestions(studentId, 1, Set.of());
+        return selections.isEmpty() ? new QuestionSelection(null, "EXPLORATION", "探索新知") : selections.get(0);
+    }
+
+    /**
+     * 一次选出至多 count 道不重复的题目：学生状态只读一次 (一次 Pipeline)，题目一次批量加载；
+     * 每道题独立按学生的策略权重 ({@link StrategySamplerCache}) 抽样，组内策略比例与逐题调用一致
+     *
+     * @param excluded 不再选入的题目 (如已在预取缓冲中的题)
+     */
+    public List<QuestionSelection> selectQuestions(Long studentId, int count, Set<Long> excluded) {
+        StrategySnapshot snapshot = loadSnapshot(studentId);
+        if (snapshot.drillKpId() != null) {
+            log.info("Student {} in Drill Mode for KP {}", studentId, snapshot.drillKpId());
+        }
+
+        StrategySampler sampler = strategySamplerCache.get(studentId);
+        Map<Long, Pick> picks = new LinkedHashMap<>();
+        Set<Long> taken = new HashSet<>(excluded);
+        Set<Long> recent = snapshot.recent();
+        for (int attempt = 0; picks.size() < count && attempt < count * MAX_ROLLS_PER_QUESTION; attempt++) {
+            Pick pick = pick(snapshot, sampler, taken, recent);
+            if (pick != null && taken.add(pick.questionId())) {
+                picks.put(pick.questionId(), pick);
+            }
+        }
+        if (picks.isEmpty()) {
+            return List.of();
+        }
+
+        Map<Long, Question> questions = new HashMap<>(picks.size() * 2);
+        for (Question question : questionMapper.selectBatchIds(picks.keySet())) {
+            questions.put(question.getId(), question);
+        }
+        List<QuestionSelection> selections = new ArrayList<>(picks.size());
+        LongPredicate used = id -> taken.contains(id) || recent.contains(id);
+        for (Pick pick : picks.values()) {
+            Question question = questions.get(pick.questionId());
+            if (question == null) {
+                // Deleted outside the index: drop it so it is not sampled again
+                questionPoolIndex.removeQuestion(pick.questionId());
+                question = getRandomQuestion(used);
+                if (question == null || !taken.add(question.getId())) {
+                    continue;
+                }
+            }
+            selections.add(new QuestionSelection(question, pick.strategyCode(), pick.strategyName()));
+        }
+        recordServed(studentId, selections);
+        return selections;
+    }
+
+    /**
+     * 记入最近出过的题 (LPUSH + LTRIM，长度固定为 practice.recent.size)
+     */
+    private void recordServed(Long studentId, List<QuestionSelection> selections) {
+        if (recentSize <= 0 || selections.isEmpty()) {
+            return;
+        }
+        String recentKey = String.format(KEY_RECENT, studentId);
+        redisUtils.executePipelined(ops -> {
+            for (QuestionSelection selection : selections) {
+                ops.opsForList().leftPush(recentKey, selection.question().getId());
+            }
+            ops.opsForList().trim(recentKey, 0, recentSize - 1);
+            ops.expire(recentKey, recentTtlMinutes, TimeUnit.MINUTES);
+        });
+    }
+
+    /**
+     * 纠错模式优先；否则按学生的策略权重抽样，没有候选的策略直接从分布中去掉；抽不到时返回 null
+     * <p>
+     * 各策略都跳过 taken (本组已选 / 调用方排除) 与 recent (最近出过) 中的题；
+     * 纠错模式下知识点内的题都刚出过时允许重复，仍不与本组重复
+     */
+    private Pick pick(StrategySnapshot snapshot, StrategySampler sampler, Set<Long> taken, Set<Long> recent) {
+        LongPredicate used = id -> taken.contains(id) || recent.contains(id);
+
         // 1. Check Drill Mode (Highest Priority)
-        String drillKey = String.format(KEY_DRILL_MODE, studentId);
-        Object drillKpId = redisUtils.get(drillKey);
+        Object drillKpId = snapshot.drillKpId();
         if (drillKpId != null) {
-            log.info("Student {} in Drill Mode for KP {}", studentId, drillKpId);
-            return new QuestionSelection(getQuestionByKp(Long.parseLong(drillKpId.toString())), "CORRECTION_DRILL", "纠错专项训练");
-        }
-
-        // 2. Weighted Strategy Selection
-        int roll = ThreadLocalRandom.current().nextInt(100);
-        
-        // Strategy A: High Frequency Mistakes (40%)
-        if (roll < 40) {
-            Set<Object> wrongKps = redisUtils.zReverseRange(String.format(KEY_WRONG_FREQ, studentId), 0, 9);
-            if (!wrongKps.isEmpty()) {
-                Object kpId = getRandomElement(wrongKps);
-                return new QuestionSelection(getQuestionByKp(Long.parseLong(kpId.toString())), "HIGH_FREQ_WRONG", "高频错题重练");
+            long kpId = Long.parseLong(drillKpId.toString());
+            long questionId = unusedQuestionOfKp(kpId, used);
+            if (questionId == QuestionPoolIndex.NONE) {
+                questionId = unusedQuestionOfKp(kpId, taken::contains);
             }
+            if (questionId == QuestionPoolIndex.NONE) {
+                questionId = unusedRandomQuestion(used);
+            }
+            return pickQuestion(questionId, "CORRECTION_DRILL", "纠错专项训练");
         }
 
-        // Strategy B: Weak Points (30%)
-        if (roll < 70) {
-            // Weakest: Score (1-prob) is high
-            Set<Object> weakKps = redisUtils.zReverseRange(String.format(KEY_WEAK_KPS, studentId), 0, 4);
-            if (!weakKps.isEmpty()) {
-                Object kpId = getRandomElement(weakKps);
-                return new QuestionSelection(getQuestionByKp(Long.parseLong(kpId.toString())), "WEAK_POINT", "薄弱知识点击破");
+        // 2. Weighted Strategy Selection over the strategies that have candidates
+        int available = StrategySampler.ALL;
+        if (snapshot.wrongFreq().isEmpty()) available &= ~(1 << StrategySampler.MISTAKE);
+        if (snapshot.weakKps().isEmpty()) available &= ~(1 << StrategySampler.WEAKNESS);
+        if (snapshot.reviewDue().isEmpty()) available &= ~(1 << StrategySampler.REVIEW);
+
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        while (true) {
+            int strategy = sampler.sample(available, random);
+            Pick pick = switch (strategy) {
+                // wrong_freq members are question IDs
+                case StrategySampler.MISTAKE -> pickQuestion(unusedElement(snapshot.wrongFreq(), used),
+                        "HIGH_FREQ_WRONG", "高频错题重练");
+                case StrategySampler.WEAKNESS -> pickQuestion(unusedQuestionOfKps(snapshot.weakKps(), used),
+                        "WEAK_POINT", "薄弱知识点击破");
+                // due items are question IDs
+                case StrategySampler.REVIEW -> pickQuestion(unusedElement(snapshot.reviewDue(), used),
+                        "SPACED_REPETITION", "艾宾浩斯记忆唤醒");
+                // Advanced strategy is not implemented yet, its weight is folded into exploration
+                default -> pickQuestion(unusedRandomQuestion(used), "EXPLORATION", "探索新知");
+            };
+            if (pick != null || strategy == StrategySampler.EXPLORATION) {
+                return pick;
             }
+            // Candidates of this strategy are all used: drop it from the distribution
+            available &= ~(1 << strategy);
         }
+    }
 
-        // Strategy C: Spaced Repetition (15%)
-        if (roll < 85) {
-            double now = System.currentTimeMillis() / 1000.0;
-            Set<Object> dueKps = redisUtils.zRangeByScore(String.format(KEY_REVIEW_DUE, studentId), 0, now);
-            if (!dueKps.isEmpty()) {
-                Object kpId = getRandomElement(dueKps);
-                return new QuestionSelection(getQuestionByKp(Long.parseLong(kpId.toString())), "SPACED_REPETITION", "艾宾浩斯记忆唤醒");
+    private static Pick pickQuestion(long questionId, String strategyCode, String strategyName) {
+        return questionId == QuestionPoolIndex.NONE ? null : new Pick(questionId, strategyCode, strategyName);
+    }
+
+    /**
+     * 知识点下随机取一道未用过的题，取不到时返回 {@link QuestionPoolIndex#NONE}
+     */
+    private long unusedQuestionOfKp(long kpId, LongPredicate used) {
+        for (int i = 0; i < MAX_ROLLS_PER_QUESTION; i++) {
+            long questionId = questionPoolIndex.randomQuestionId(kpId);
+            if (questionId == QuestionPoolIndex.NONE) {
+                break;
+            }
+            if (!used.test(questionId)) {
+                return questionId;
             }
         }
+        return QuestionPoolIndex.NONE;
+    }
 
-        // Strategy D: Advanced (10%)
-        if (roll < 95) {
-            // Need to scan mastery hash or use another ZSet. For simplicity, fallback to random if complex query needed.
-            // Assuming we have a ZSet for high mastery too or just random pick.
-            // Let's pick a random KP and check mastery.
-            // Fallback: Just return random advanced.
+    /**
+     * 从随机位置开始依次尝试各知识点 (成员为知识点ID)
+     */
+    private long unusedQuestionOfKps(Set<Object> kpIds, LongPredicate used) {
+        Object[] members = kpIds.toArray();
+        int start = ThreadLocalRandom.current().nextInt(members.length);
+        for (int i = 0; i < members.length; i++) {
+            long questionId = unusedQuestionOfKp(Long.parseLong(members[(start + i) % members.length].toString()), used);
+            if (questionId != QuestionPoolIndex.NONE) {
+                return questionId;
+            }
         }
+        return QuestionPoolIndex.NONE;
+    }
 
-        // Default: Random / Exploration (5% or Fallback)
-        return new QuestionSelection(getRandomQuestion(), "EXPLORATION", "探索新知");
+    /**
+     * 全题库随机取一道未用过的题；题库很小、多次都抽到用过的题时返回最后一次的结果
+     */
+    private long unusedRandomQuestion(LongPredicate used) {
+        long questionId = QuestionPoolIndex.NONE;
+        for (int i = 0; i < MAX_ROLLS_PER_QUESTION; i++) {
+            questionId = questionPoolIndex.randomQuestionId();
+            if (questionId == QuestionPoolIndex.NONE || !used.test(questionId)) {
+                break;
+            }
+        }
+        return questionId;
     }
 
-    private Question getQuestionByKp(Long kpId) {
-        // Ideally select by difficulty dynamically. Here simplified.
-        List<Question> questions = questionMapper.selectByMap(java.util.Map.of("knowledge_point_id", kpId));
-        if (questions.isEmpty()) return getRandomQuestion(); // Fallback
-        return questions.get(ThreadLocalRandom.current().nextInt(questions.size()));
+    /**
+     * 从随机位置开始找第一个未选过的成员 (成员为题目ID)
+     */
+    private static long unusedElement(Set<Object> set, LongPredicate used) {
+        if (set.isEmpty()) {
+            return QuestionPoolIndex.NONE;
+        }
+        Object[] members = set.toArray();
+        int start = ThreadLocalRandom.current().nextInt(members.length);
+        for (int i = 0; i < members.length; i++) {
+            long questionId = Long.parseLong(members[(start + i) % members.length].toString());
+            if (!used.test(questionId)) {
+                return questionId;
+            }
+        }
+        return QuestionPoolIndex.NONE;
     }
 
-    private Question getRandomQuestion() {
-        List<Question> list = questionMapper.selectList(null);
-        if (list.isEmpty()) return null;
-        return list.get(ThreadLocalRandom.current().nextInt(list.size()));
+    /**
+     * 一次 Pipeline 往返取回选题所需的全部学生状态
+     * (drill_mode / wrong_freq / weak_kps / review_due)，不再按策略逐条请求 Redis
+     * review_due 按时间分桶 (见 {@link ReviewScheduler})，只读未过期的桶，每桶带 LIMIT；
+     * 最近出过的题 (recent_questions) 也在同一 Pipeline 中取回
+     */
+    StrategySnapshot loadSnapshot(Long studentId) {
+        String drillKey = String.format(KEY_DRILL_MODE, studentId);
+        String wrongFreqKey = String.format(KEY_WRONG_FREQ, studentId);
+        String weakKey = String.format(KEY_WEAK_KPS, studentId);
+        long now = System.currentTimeMillis() / 1000;
+        List<String> reviewKeys = reviewScheduler.dueBucketKeys(studentId, now);
+        String recentKey = String.format(KEY_RECENT, studentId);
+        boolean recentEnabled = recentSize > 0;
+
+        List<Object> results = redisUtils.executePipelined(ops -> {
+            ops.opsForValue().get(drillKey);
+            ops.opsForZSet().reverseRange(wrongFreqKey, 0, 9);
+            ops.opsForZSet().reverseRange(weakKey, 0, 4);
+            if (recentEnabled) {
+                ops.opsForList().range(recentKey, 0, recentSize - 1);
+            }
+            for (String reviewKey : reviewKeys) {
+                ops.opsForZSet().rangeByScore(reviewKey, 0, now, 0, REVIEW_DUE_LIMIT);
+            }
+        });
+        int reviewStart = recentEnabled ? 4 : 3;
+        return new StrategySnapshot(
+                results.get(0),
+                asSet(results.get(1)),
+                asSet(results.get(2)),
+                ReviewScheduler.collectDue(results.subList(reviewStart, results.size()), REVIEW_DUE_LIMIT),
+                recentEnabled ? asIds(results.get(3)) : Set.of());
+    }
+
+    private static Set<Long> asIds(Object result) {
+        if (!(result instanceof List<?> list)) {
+            return Set.of();
+        }
+        Set<Long> ids = new HashSet<>(list.size() * 2);
+        for (Object id : list) {
+            ids.add(Long.parseLong(id.toString()));
+        }
+        return ids;
     }
 
-    private Object getRandomElement(Set<Object> set) {
-        int index = ThreadLocalRandom.current().nextInt(set.size());
-        int i = 0;
-        for (Object obj : set) {
-            if (i == index) return obj;
-            i++;
+    @SuppressWarnings("unchecked")
+    private static Set<Object> asSet(Object result) {
+        return result instanceof Set ? (Set<Object>) result : Collections.emptySet();
+    }
+
+    /**
+     * 被删题目的替补：与各策略一样跳过本组已选与最近出过的题
+     */
+    private Question getRandomQuestion(LongPredicate used) {
+        long questionId = unusedRandomQuestion(used);
+        if (questionId == QuestionPoolIndex.NONE) return null;
+        return loadQuestion(questionId);
+    }
+
+    private Question loadQuestion(long questionId) {
+        Question question = questionMapper.selectById(questionId);
+        if (question == null) {
+            // Deleted outside the index: drop it so it is not sampled again
+            questionPoolIndex.removeQuestion(questionId);
         }
-        return set.iterator().next();
+        return question;
     }
 
+    private record Pick(long questionId, String strategyCode, String strategyName) {}
+
+    /**
+     * @param recent 最近出过的题目ID
+     */
+    record StrategySnapshot(Object drillKpId, Set<Object> wrongFreq, Set<Object> weakKps, Set<Object> reviewDue,
+                            Set<Long> recent) {}
+
     public record QuestionSelection(Question question, String strategyCode, String strategyName) {}
 }
@@ -0,0 +1,237 @@
+package com.edtech.web.service.strategy;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.edtech.model.entity.Question;
+import com.edtech.model.mapper.QuestionMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 题库内存索引：知识点 × 难度分档 -> 题目ID数组
+ * <p>
+ * 抽题只需 O(1) 随机下标，不再随题库规模增长而变慢。
+ * 写操作加锁串行；读操作无锁，依赖不可变的 IdArray 快照 (追加时复用底层数组的空闲容量)。
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class QuestionPoolIndex {
+
+    public static final int BUCKET_EASY = 0;
+    public static final int BUCKET_MEDIUM = 1;
+    public static final int BUCKET_HARD = 2;
+    public static final int BUCKET_COUNT = 3;
+
+    public static final long NONE = -1L;
+
+    private final QuestionMapper questionMapper;
+
+    private volatile Map<Long, KpPool> pools = new ConcurrentHashMap<>();
+    private volatile IdArray all = IdArray.EMPTY;
+    private volatile boolean loaded;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        try {
+            reload();
+        } catch (Exception e) {
+            log.warn("Question pool warm-up failed, will load lazily", e);
+        }
+    }
+
+    /**
+     * 全量重建
+     */
+    public synchronized void reload() {
+        long start = System.currentTimeMillis();
+        List<Question> questions = questionMapper.selectList(new LambdaQueryWrapper<Question>()
+                .select(Question::getId, Question::getKnowledgePointId, Question::getDifficulty));
+        // 构建完成后整体替换，读者不会看到半成品
+        Map<Long, KpPool> newPools = new ConcurrentHashMap<>();
+        IdArray newAll = IdArray.EMPTY;
+        for (Question q : questions) {
+            if (q.getId() != null) {
+                newAll = newAll.with(q.getId());
+                addToPool(newPools, q);
+            }
+        }
+        pools = newPools;
+        all = newAll;
+        loaded = true;
+        log.info("Question pool loaded: {} questions, {} knowledge points in {} ms",
+                all.size, pools.size(), System.currentTimeMillis() - start);
+    }
+
+    /**
+     * 新题目入库后登记 (AI 出题 / 管理端新增)
+     */
+    public synchronized void addQuestion(Question question) {
+        ensureLoaded();
+        addInternal(question);
+    }
+
+    /**
+     * 题目被删除或下架
+     */
+    public synchronized void removeQuestion(long questionId) {
+        ensureLoaded();
+        all = all.without(questionId);
+        for (KpPool pool : pools.values()) {
+            for (int b = 0; b < BUCKET_COUNT; b++) {
+                pool.buckets[b] = pool.buckets[b].without(questionId);
+            }
+        }
+    }
+
+    /**
+     * 题目被修改 (知识点或难度可能变化)
+     */
+    public synchronized void updateQuestion(Question question) {
+        if (question.getId() == null) {
+            return;
+        }
+        removeQuestion(question.getId());
+        addInternal(question);
+    }
+
+    /**
+     * 随机抽取某知识点的题目 (不限难度)
+     *
+     * @return 题目ID，无题时返回 {@link #NONE}
+     */
+    public long randomQuestionId(long kpId) {
+        ensureLoaded();
+        KpPool pool = pools.get(kpId);
+        if (pool == null) {
+            return NONE;
+        }
+        IdArray[] buckets = pool.buckets;
+        IdArray b0 = buckets[0];
+        IdArray b1 = buckets[1];
+        IdArray b2 = buckets[2];
+        int total = b0.size + b1.size + b2.size;
+        if (total == 0) {
+            return NONE;
+        }
+        int r = ThreadLocalRandom.current().nextInt(total);
+        if (r < b0.size) {
+            return b0.ids[r];
+        }
+        r -= b0.size;
+        if (r < b1.size) {
+            return b1.ids[r];
+        }
+        return b2.ids[r - b1.size];
+    }
+
+    /**
+     * 随机抽取某知识点指定难度档的题目
+     */
+    public long randomQuestionId(long kpId, int bucket) {
+        ensureLoaded();
+        KpPool pool = pools.get(kpId);
+        if (pool == null) {
+            return NONE;
+        }
+        IdArray ids = pool.buckets[bucket];
+        return ids.size == 0 ? NONE : ids.ids[ThreadLocalRandom.current().nextInt(ids.size)];
+    }
+
+    /**
+     * 全题库随机抽取
+     */
+    public long randomQuestionId() {
+        ensureLoaded();
+        IdArray ids = all;
+        return ids.size == 0 ? NONE : ids.ids[ThreadLocalRandom.current().nextInt(ids.size)];
+    }
+
+    public int size() {
+        return all.size;
+    }
+
+    public static int bucketOf(BigDecimal difficulty) {
+        double d = difficulty != null ? difficulty.doubleValue() : 0.5;
+        if (d < 0.4) {
+            return BUCKET_EASY;
+        }
+        return d < 0.7 ? BUCKET_MEDIUM : BUCKET_HARD;
+    }
+
+    private void ensureLoaded() {
+        if (!loaded) {
+            synchronized (this) {
+                if (!loaded) {
+                    reload();
+                }
+            }
+        }
+    }
+
+    private void addInternal(Question q) {
+        if (q.getId() == null) {
+            return;
+        }
+        all = all.with(q.getId());
+        addToPool(pools, q);
+    }
+
+    private static void addToPool(Map<Long, KpPool> target, Question q) {
+        if (q.getKnowledgePointId() != null) {
+            KpPool pool = target.computeIfAbsent(q.getKnowledgePointId(), k -> new KpPool());
+            int bucket = bucketOf(q.getDifficulty());
+            pool.buckets[bucket] = pool.buckets[bucket].with(q.getId());
+        }
+    }
+
+    private static final class KpPool {
+        private final IdArray[] buckets = {IdArray.EMPTY, IdArray.EMPTY, IdArray.EMPTY};
+    }
+
+    /**
+     * 不可变视图：ids[0, size) 对持有者永远可见且不变。
+     * 追加时若仍有空闲容量则写入 ids[size] 并返回新视图 (共享数组)，旧视图不受影响。
+     */
+    private static final class IdArray {
+        private static final IdArray EMPTY = new IdArray(new long[0], 0);
+
+        private final long[] ids;
+        private final int size;
+
+        private IdArray(long[] ids, int size) {
+            this.ids = ids;
+            this.size = size;
+        }
+
+        IdArray with(long id) {
+            long[] target = ids;
+            if (size == target.length) {
+                target = Arrays.copyOf(ids, Math.max(8, size << 1));
+            }
+            target[size] = id;
+            return new IdArray(target, size + 1);
+        }
+
+        IdArray without(long id) {
+            for (int i = 0; i < size; i++) {
+                if (ids[i] == id) {
+                    long[] copy = new long[ids.length];
+                    System.arraycopy(ids, 0, copy, 0, i);
+                    System.arraycopy(ids, i + 1, copy, i, size - i - 1);
+                    return new IdArray(copy, size - 1);
+                }
+            }
+            return this;
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package com.edtech.web.service.strategy;
+
+import com.edtech.core.mq.PracticeLogMessage;
+import com.edtech.core.util.RedisUtils;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scripting.support.ResourceScriptSource;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 复习调度：持久化每个 (学生, 题目) 的 SM-2 状态并按到期时间分桶索引
+ * <p>
+ * 状态存于 student:{id}:sm2 (field 为题目ID，值为 {@link SpacedRepetitionService} 压缩的 long)，
+ * 到期索引按时间分桶 student:{id}:review_due:{bucket}，score 为到期时间 (epoch seconds)。
+ * 查询"当前到期"只读当前桶与之前 overdue-buckets 个桶，每桶带 LIMIT；
+ * 每个桶在自身结束 overdue-buckets 个桶宽后过期，逾期太久未复习的题目随桶自动清除 (状态保留，下次作答继续调度)。
+ * 答题消息由多个消费者并发回调，写回经 Lua 按旧状态比较 (review_schedule_cas.lua)，冲突时重读重试。
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class ReviewScheduler {
+
+    public static final String KEY_STATE = "student:%s:sm2";
+    public static final String KEY_DUE_BUCKET = "student:%s:review_due:%d";
+
+    private static final long ABSENT = 0;
+    private static final int MAX_ATTEMPTS = 5;
+    private static final RedisScript<Long> CAS = casScript();
+
+    private final RedisUtils redisUtils;
+    private final SpacedRepetitionService sm2Service;
+
+    @Value("${practice.review.bucket-hours:24}")
+    private int bucketHours;
+
+    @Value("${practice.review.overdue-buckets:7}")
+    private int overdueBuckets;
+
+    @Value("${practice.review.state-ttl-days:400}")
+    private int stateTtlDays;
+
+    /**
+     * 按批记录作答并重新调度：一次管道读回全部旧状态，逐条经 Lua 比较写回 (冲突时重读该条重试)，
+     * 同一批内重复的 (学生, 题目) 按顺序串联计算
+     */
+    public void recordAnswers(List<PracticeLogMessage> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        Map<Long, List<Object>> fieldsByStudent = new LinkedHashMap<>();
+        for (PracticeLogMessage message : batch) {
+            fieldsByStudent.computeIfAbsent(message.studentId(), id -> new ArrayList<>())
+                    .add(Long.toString(message.questionId()));
+        }
+        List<Long> studentIds = new ArrayList<>(fieldsByStudent.keySet());
+        List<Object> results = redisUtils.executePipelined(ops -> {
+            for (Long studentId : studentIds) {
+                ops.opsForHash().multiGet(String.format(KEY_STATE, studentId), fieldsByStudent.get(studentId));
+            }
+        });
+
+        // (学生, 题目) -> 当前状态，0 表示不存在
+        Map<Item, Long> known = new HashMap<>();
+        for (int i = 0; i < studentIds.size(); i++) {
+            List<Object> fields = fieldsByStudent.get(studentIds.get(i));
+            List<?> values = results.get(i) instanceof List<?> list ? list : List.of();
+            for (int j = 0; j < fields.size() && j < values.size(); j++) {
+                if (values.get(j) instanceof Number number) {
+                    known.put(new Item(studentIds.get(i), Long.parseLong((String) fields.get(j))), number.longValue());
+                }
+            }
+        }
+        for (PracticeLogMessage message : batch) {
+            Item item = new Item(message.studentId(), message.questionId());
+            try {
+                known.put(item, schedule(item, known.getOrDefault(item, ABSENT), message));
+            } catch (IllegalStateException e) {
+                log.warn(e.getMessage());
+                known.remove(item);
+            }
+        }
+    }
+
+    /**
+     * @return 写入后的状态
+     * @throws IllegalStateException 连续冲突超过重试次数
+     */
+    private long schedule(Item item, long expected, PracticeLogMessage message) {
+        int quality = sm2Service.quality(message.correct(), message.duration());
+        long nowSeconds = message.submitTimeMillis() / 1000;
+        long bucketSeconds = bucketSeconds();
+        String stateKey = String.format(KEY_STATE, item.studentId());
+        for (int attempt = 0; attempt < MAX_ATTEMPTS; attempt++) {
+            long previous = expected != ABSENT ? expected : SpacedRepetitionService.initialState();
+            long state = sm2Service.next(previous, quality, nowSeconds);
+            long due = SpacedRepetitionService.dueSeconds(state);
+            long bucket = due / bucketSeconds;
+            long oldBucket = expected != ABSENT ? SpacedRepetitionService.dueSeconds(expected) / bucketSeconds : bucket;
+            Long written = redisUtils.execute(CAS,
+                    List.of(stateKey,
+                            String.format(KEY_DUE_BUCKET, item.studentId(), bucket),
+                            String.format(KEY_DUE_BUCKET, item.studentId(), oldBucket)),
+                    item.questionId(), expected, state, Long.toString(item.questionId()), due,
+                    (bucket + 1 + overdueBuckets) * bucketSeconds, TimeUnit.DAYS.toSeconds(stateTtlDays));
+            if (written != null && written == 1) {
+                return state;
+            }
+            Object current = redisUtils.hGet(stateKey, Long.toString(item.questionId()));
+            expected = current instanceof Number number ? number.longValue() : ABSENT;
+        }
+        throw new IllegalStateException("Review schedule conflict: student " + item.studentId()
+                + ", question " + item.questionId());
+    }
+
+    /**
+     * "当前到期"需要读取的桶：从最早的未过期桶到当前桶 (较早的在前)
+     */
+    public List<String> dueBucketKeys(Long studentId, long nowSeconds) {
+        long current = nowSeconds / bucketSeconds();
+        List<String> keys = new ArrayList<>(overdueBuckets + 1);
+        for (long bucket = current - overdueBuckets; bucket <= current; bucket++) {
+            keys.add(String.format(KEY_DUE_BUCKET, studentId, bucket));
+        }
+        return keys;
+    }
+
+    /**
+     * 合并各桶结果 (较早到期的在前)，最多 limit 条
+     */
+    public static Set<Object> collectDue(Collection<Object> bucketResults, int limit) {
+        Set<Object> due = new LinkedHashSet<>();
+        for (Object result : bucketResults) {
+            if (!(result instanceof Collection<?> members)) {
+                continue;
+            }
+            for (Object member : members) {
+                if (due.size() >= limit) {
+                    return due;
+                }
+                due.add(member);
+            }
+        }
+        return due;
+    }
+
+    private long bucketSeconds() {
+        return TimeUnit.HOURS.toSeconds(Math.max(1, bucketHours));
+    }
+
+    private static RedisScript<Long> casScript() {
+        DefaultRedisScript<Long> script = new DefaultRedisScript<>();
+        script.setScriptSource(new ResourceScriptSource(new ClassPathResource("lua/review_schedule_cas.lua")));
+        script.setResultType(Long.class);
+        return script;
+    }
+
+    private record Item(long studentId, long questionId) {}
+}
@@ -1,43 +1,114 @@
 package com.edtech.web.service.strategy;
 
-import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import java.time.Instant;
-import java.time.temporal.ChronoUnit;
-
+/**
+ * SM-2 间隔重复算法 (纯计算，状态持久化见 {@link ReviewScheduler})
+ * <p>
+ * 每个 (学生, 题目) 的状态压缩为一个 long：
+ * <pre>
+ * bit 0-30  下次复习时间 (epoch 分钟)
+ * bit 31-44 当前间隔 (天)
+ * bit 45-52 连续答对次数
+ * bit 53-62 难度因子 EF × 100
+ * </pre>
+ */
 @Service
-@Slf4j
 public class SpacedRepetitionService {
 
+    public static final int DEFAULT_EF_CENTI = 250;
+    private static final int MIN_EF_CENTI = 130;
+    private static final int MAX_EF_CENTI = (1 << 10) - 1;
+    private static final int MAX_REPETITIONS = (1 << 8) - 1;
+    private static final int MAX_INTERVAL_DAYS = (1 << 14) - 1;
+    private static final long MAX_DUE_MINUTES = (1L << 31) - 1;
+    private static final long SECONDS_PER_DAY = 86_400;
+
+    @Value("${practice.review.max-interval-days:365}")
+    private int maxIntervalDays;
+
+    @Value("${practice.review.fast-seconds:30}")
+    private int fastSeconds;
+
+    @Value("${practice.review.slow-seconds:120}")
+    private int slowSeconds;
+
+    /**
+     * 由作答结果与耗时估计回答质量 (0-5)：答错 1，答对按耗时 5 / 4 / 3，耗时未知按 4
+     */
+    public int quality(boolean correct, int durationSeconds) {
+        if (!correct) {
+            return 1;
+        }
+        if (durationSeconds <= 0) {
+            return 4;
+        }
+        if (durationSeconds <= fastSeconds) {
+            return 5;
+        }
+        return durationSeconds > slowSeconds ? 3 : 4;
+    }
+
     /**
-     * Calculate next review interval using simplified SM-2 Algorithm
+     * 根据上一状态与本次回答质量计算新状态
      *
-     * @param previousInterval Days since last review (0 for new)
-     * @param repetitionCount  How many times reviewed consecutively correct
-     * @param quality          0-5 scale (0=blackout, 3=pass, 5=perfect)
-     *                         In our system: Wrong=0, Correct=4 (simplification)
-     * @return Next review timestamp (epoch seconds)
+     * @param state       上一状态，首次作答传 {@link #initialState()}
+     * @param quality     0-5 (0=完全不会, 3=勉强答对, 5=轻松答对)
+     * @param nowSeconds  作答时间 (epoch seconds)
+     * @return 新状态，下次复习时间见 {@link #dueSeconds(long)}
      */
-    public long calculateNextReviewTime(int previousInterval, int repetitionCount, int quality) {
-        int nextInterval;
+    public long next(long state, int quality, long nowSeconds) {
+        int ef = efCenti(state);
+        int repetitions = repetitions(state);
+        int interval = intervalDays(state);
 
         if (quality < 3) {
-            // If wrong, reset interval
-            nextInterval = 1; 
+            repetitions = 0;
+            interval = 1;
         } else {
-            if (repetitionCount == 0) {
-                nextInterval = 1;
-            } else if (repetitionCount == 1) {
-                nextInterval = 6;
+            if (repetitions == 0) {
+                interval = 1;
+            } else if (repetitions == 1) {
+                interval = 6;
             } else {
-                // EF factor logic simplified: ~2.5 multiplier
-                double ef = 2.5; 
-                nextInterval = (int) Math.round(previousInterval * ef);
+                interval = (int) Math.min(maxIntervalDays, Math.round(interval * ef / 100.0));
             }
+            repetitions++;
         }
+        // EF' = EF + (0.1 - (5 - q) * (0.08 + (5 - q) * 0.02))，以百分之一为单位
+        int miss = 5 - quality;
+        ef += 10 - miss * (8 + miss * 2);
+
+        long dueSeconds = nowSeconds + interval * SECONDS_PER_DAY;
+        return pack(ef, repetitions, interval, dueSeconds);
+    }
+
+    public static long initialState() {
+        return pack(DEFAULT_EF_CENTI, 0, 0, 0);
+    }
+
+    public static long pack(int efCenti, int repetitions, int intervalDays, long dueSeconds) {
+        long ef = Math.max(MIN_EF_CENTI, Math.min(MAX_EF_CENTI, efCenti));
+        long reps = Math.min(MAX_REPETITIONS, Math.max(0, repetitions));
+        long interval = Math.min(MAX_INTERVAL_DAYS, Math.max(0, intervalDays));
+        long due = Math.min(MAX_DUE_MINUTES, Math.max(0, (dueSeconds + 59) / 60));
+        return ef << 53 | reps << 45 | interval << 31 | due;
+    }
+
+    public static int efCenti(long state) {
+        return (int) (state >>> 53) & MAX_EF_CENTI;
+    }
+
+    public static int repetitions(long state) {
+        return (int) (state >>> 45) & MAX_REPETITIONS;
+    }
+
+    public static int intervalDays(long state) {
+        return (int) (state >>> 31) & MAX_INTERVAL_DAYS;
+    }
 
-        // Add interval to current time
-        return Instant.now().plus(nextInterval, ChronoUnit.DAYS).getEpochSecond();
+    public static long dueSeconds(long state) {
+        return (state & MAX_DUE_MINUTES) * 60;
     }
 }
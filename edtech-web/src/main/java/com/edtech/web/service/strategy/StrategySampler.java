@@ -0,0 +1,123 @@
+package com.edtech.web.service.strategy;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 由策略权重编译出的别名法 (Vose alias method) 抽样器，不可变
+ * <p>
+ * 对"哪些策略有候选"的每种组合 (位掩码) 预先建好一张别名表，抽样时按当前可用掩码 O(1) 取表，
+ * 没有候选的策略按剩余策略的权重比例跳过，不需要重抽。探索策略始终可用。
+ */
+public final class StrategySampler {
+
+    public static final int MISTAKE = 0;
+    public static final int WEAKNESS = 1;
+    public static final int REVIEW = 2;
+    public static final int EXPLORATION = 3;
+    public static final int STRATEGY_COUNT = 4;
+    public static final int ALL = (1 << STRATEGY_COUNT) - 1;
+
+    /** 未配置时的权重，与原固定分段 40/30/15/10+5 一致 (进阶策略未实现，归入探索) */
+    public static final StrategySampler DEFAULT = compile(new int[]{40, 30, 15, 15});
+
+    private final int[] weights;
+    private final double[] prob;
+    private final int[] alias;
+    private final boolean[] empty;
+
+    private StrategySampler(int[] weights, double[] prob, int[] alias, boolean[] empty) {
+        this.weights = weights;
+        this.prob = prob;
+        this.alias = alias;
+        this.empty = empty;
+    }
+
+    /**
+     * @param weights 按 {@link #MISTAKE} .. {@link #EXPLORATION} 顺序的非负权重
+     */
+    public static StrategySampler compile(int[] weights) {
+        int[] w = new int[STRATEGY_COUNT];
+        for (int i = 0; i < STRATEGY_COUNT && i < weights.length; i++) {
+            w[i] = Math.max(0, weights[i]);
+        }
+        double[] prob = new double[(ALL + 1) * STRATEGY_COUNT];
+        int[] alias = new int[(ALL + 1) * STRATEGY_COUNT];
+        boolean[] empty = new boolean[ALL + 1];
+        for (int mask = 0; mask <= ALL; mask++) {
+            empty[mask] = !build(w, mask, prob, alias, mask * STRATEGY_COUNT);
+        }
+        return new StrategySampler(w, prob, alias, empty);
+    }
+
+    /**
+     * @param available 有候选的策略位掩码 (第 i 位对应策略 i)
+     * @return 策略编号；可用策略权重全为 0 时返回 {@link #EXPLORATION}
+     */
+    public int sample(int available, ThreadLocalRandom random) {
+        int mask = available & ALL;
+        if (empty[mask]) {
+            return EXPLORATION;
+        }
+        int i = random.nextInt(STRATEGY_COUNT);
+        int slot = mask * STRATEGY_COUNT + i;
+        return random.nextDouble() < prob[slot] ? i : alias[slot];
+    }
+
+    public int[] weights() {
+        return weights.clone();
+    }
+
+    /**
+     * Vose 算法：权重按 n / total 缩放后，小于 1 的格子由大于 1 的格子补齐
+     *
+     * @return 掩码内总权重为 0 时返回 false
+     */
+    private static boolean build(int[] weights, int mask, double[] prob, int[] alias, int offset) {
+        long total = 0;
+        for (int i = 0; i < STRATEGY_COUNT; i++) {
+            if ((mask & (1 << i)) != 0) {
+                total += weights[i];
+            }
+        }
+        if (total == 0) {
+            return false;
+        }
+        double[] scaled = new double[STRATEGY_COUNT];
+        int[] small = new int[STRATEGY_COUNT];
+        int[] large = new int[STRATEGY_COUNT];
+        int smallSize = 0;
+        int largeSize = 0;
+        for (int i = 0; i < STRATEGY_COUNT; i++) {
+            scaled[i] = (mask & (1 << i)) != 0 ? (double) weights[i] * STRATEGY_COUNT / total : 0;
+            if (scaled[i] < 1) {
+                small[smallSize++] = i;
+            } else {
+                large[largeSize++] = i;
+            }
+        }
+        while (smallSize > 0 && largeSize > 0) {
+            int s = small[--smallSize];
+            int l = large[--largeSize];
+            prob[offset + s] = scaled[s];
+            alias[offset + s] = l;
+            scaled[l] = scaled[l] + scaled[s] - 1;
+            if (scaled[l] < 1) {
+                small[smallSize++] = l;
+            } else {
+                large[largeSize++] = l;
+            }
+        }
+        while (largeSize > 0) {
+            int l = large[--largeSize];
+            prob[offset + l] = 1;
+            alias[offset + l] = l;
+        }
+        // 浮点误差剩下的格子
+        while (smallSize > 0) {
+            int s = small[--smallSize];
+            prob[offset + s] = 1;
+            alias[offset + s] = s;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,169 @@
+package com.edtech.web.service.strategy;
+
+import cn.hutool.json.JSONObject;
+import cn.hutool.json.JSONUtil;
+import com.edtech.model.entity.UserSettings;
+import com.edtech.model.mapper.UserSettingsMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 每个学生编译好的选题策略抽样器 (由 UserSettings.strategyWeights 解析)
+ * <p>
+ * 选题路径上只做一次本地查表，不解析 JSON、不读设置；未命中时读取设置并编译。
+ * {@link com.edtech.web.service.SettingsService#updateSettings} 提交后失效本节点条目，
+ * 并经 Redis pub/sub 广播给其他节点，ttl-seconds 只在广播丢失时兜底。
+ * 加载期间收到失效时不缓存加载结果 (与 StudentMasteryCache 相同的加载令牌)，避免旧权重回填。
+ * 未配置或格式错误时使用 {@link StrategySampler#DEFAULT}。
+ * <p>
+ * JSON 键：mistake / weakness / review / advance (进阶策略未实现，权重归入探索)。
+ */
+@Service
+@Slf4j
+public class StrategySamplerCache implements MessageListener {
+
+    public static final String CHANNEL = "practice:strategy-weights:invalidate";
+
+    private final UserSettingsMapper settingsMapper;
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final long ttlMillis;
+    private final Map<Long, Entry> cache;
+
+    /** 本节点标识，忽略自己发出的广播 */
+    private final String nodeId = UUID.randomUUID().toString();
+    /** 加载中的学生 -> 加载令牌；失效时移除，加载完成发现令牌不在则不缓存 */
+    private final Map<Long, Long> loading = new ConcurrentHashMap<>();
+    private final AtomicLong loadTokens = new AtomicLong();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public StrategySamplerCache(UserSettingsMapper settingsMapper,
+                                RedisTemplate<String, Object> redisTemplate,
+                                @Value("${practice.strategy-weights.cache.max-size:10000}") int maxSize,
+                                @Value("${practice.strategy-weights.cache.ttl-seconds:600}") long ttlSeconds) {
+        this.settingsMapper = settingsMapper;
+        this.redisTemplate = redisTemplate;
+        this.ttlMillis = TimeUnit.SECONDS.toMillis(ttlSeconds);
+        this.cache = new LinkedHashMap<>(Math.min(maxSize, 1024), 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Entry> eldest) {
+                return size() > maxSize;
+            }
+        };
+    }
+
+    public StrategySampler get(Long studentId) {
+        long now = System.currentTimeMillis();
+        synchronized (cache) {
+            Entry entry = cache.get(studentId);
+            if (entry != null && entry.expiresAt > now) {
+                hits.increment();
+                return entry.sampler;
+            }
+        }
+        misses.increment();
+
+        long token = loadTokens.incrementAndGet();
+        loading.put(studentId, token);
+        StrategySampler sampler;
+        try {
+            UserSettings settings = settingsMapper.selectById(studentId);
+            sampler = compile(settings != null ? settings.getStrategyWeights() : null);
+        } catch (RuntimeException e) {
+            loading.remove(studentId, token);
+            throw e;
+        }
+        synchronized (cache) {
+            // 加载期间被失效 (或被更晚的加载覆盖) 时只返回结果，不缓存
+            if (loading.remove(studentId, token)) {
+                cache.put(studentId, new Entry(sampler, now + ttlMillis));
+            }
+        }
+        return sampler;
+    }
+
+    /**
+     * 设置保存提交后调用：本地立即失效并广播给其他节点
+     */
+    public void invalidate(Long studentId) {
+        evict(studentId);
+        byte[] message = (nodeId + "|" + studentId).getBytes(StandardCharsets.UTF_8);
+        try {
+            redisTemplate.execute((RedisCallback<Long>) connection ->
+                    connection.publish(CHANNEL.getBytes(StandardCharsets.UTF_8), message));
+        } catch (Exception e) {
+            // 其他节点依靠过期时间兜底
+            log.warn("Failed to broadcast strategy sampler invalidation for student {}", studentId, e);
+        }
+    }
+
+    /**
+     * 其他节点的失效广播：nodeId|学生ID
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String[] parts = new String(message.getBody(), StandardCharsets.UTF_8).split("\\|", 2);
+        if (parts.length < 2 || nodeId.equals(parts[0])) {
+            return;
+        }
+        evict(Long.parseLong(parts[1]));
+    }
+
+    private void evict(Long studentId) {
+        loading.remove(studentId);
+        synchronized (cache) {
+            cache.remove(studentId);
+        }
+    }
+
+    /**
+     * @param json 如 {"mistake":30,"weakness":30,"review":20,"advance":20}
+     */
+    static StrategySampler compile(String json) {
+        if (json == null || json.isBlank()) {
+            return StrategySampler.DEFAULT;
+        }
+        try {
+            JSONObject obj = JSONUtil.parseObj(json);
+            if (obj.isEmpty()) {
+                return StrategySampler.DEFAULT;
+            }
+            int[] weights = new int[StrategySampler.STRATEGY_COUNT];
+            weights[StrategySampler.MISTAKE] = obj.getInt("mistake", 0);
+            weights[StrategySampler.WEAKNESS] = obj.getInt("weakness", 0);
+            weights[StrategySampler.REVIEW] = obj.getInt("review", 0);
+            weights[StrategySampler.EXPLORATION] = obj.getInt("advance", 0);
+            return StrategySampler.compile(weights);
+        } catch (Exception e) {
+            log.debug("Invalid strategy weights {}, using defaults", json, e);
+            return StrategySampler.DEFAULT;
+        }
+    }
+
+    public Stats getStats() {
+        int size;
+        synchronized (cache) {
+            size = cache.size();
+        }
+        return new Stats(size, hits.sum(), misses.sum());
+    }
+
+    private record Entry(StrategySampler sampler, long expiresAt) {}
+
+    public record Stats(int size, long hits, long misses) {}
+}
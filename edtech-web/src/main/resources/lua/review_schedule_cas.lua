@@ -0,0 +1,26 @@
+-- SM-2 复习状态的乐观并发写入：状态未被其他更新改动时写入新状态并移动到期索引
+-- KEYS[1] student:{id}:sm2             (hash, field = 题目ID -> 压缩状态)
+-- KEYS[2] student:{id}:review_due:{新桶}
+-- KEYS[3] student:{id}:review_due:{旧桶} (无旧状态时与 KEYS[2] 相同)
+-- ARGV[1] 题目ID (hash field)
+-- ARGV[2] 读取时的状态 (不存在为 0)
+-- ARGV[3] 新状态
+-- ARGV[4] 到期索引成员 (题目ID)
+-- ARGV[5] 到期时间 (epoch seconds)
+-- ARGV[6] 新桶过期时间 (epoch seconds)
+-- ARGV[7] 状态 hash TTL 秒
+-- 返回 1；状态已被其他更新改动时返回 0，不做任何写入
+
+local current = redis.call('HGET', KEYS[1], ARGV[1]) or '0'
+if current ~= ARGV[2] then
+    return 0
+end
+
+if KEYS[3] ~= KEYS[2] then
+    redis.call('ZREM', KEYS[3], ARGV[4])
+end
+redis.call('ZADD', KEYS[2], ARGV[5], ARGV[4])
+redis.call('EXPIREAT', KEYS[2], ARGV[6])
+redis.call('HSET', KEYS[1], ARGV[1], ARGV[3])
+redis.call('EXPIRE', KEYS[1], ARGV[7])
+return 1
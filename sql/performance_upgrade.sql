@@ -0,0 +1,53 @@
+-- =================================================================
+-- EdTech Platform Performance Upgrade
+-- Indexes and tables backing the in-memory / Redis read paths
+-- =================================================================
+
+USE edtech_db;
+
+-- 1. 最近答题时间 (用户摘要缓存批量加载)
+ALTER TABLE `student_exercise_log` ADD INDEX `idx_student_time` (`student_id`, `submit_time`);
+
+-- 2. 学生每日答题汇总 (报表趋势)
+CREATE TABLE IF NOT EXISTS `student_daily_stats` (
+  `id` BIGINT NOT NULL AUTO_INCREMENT,
+  `student_id` BIGINT NOT NULL COMMENT '学生 ID',
+  `stat_date` DATE NOT NULL COMMENT '统计日期',
+  `attempts` INT NOT NULL DEFAULT '0' COMMENT '答题数',
+  `correct_count` INT NOT NULL DEFAULT '0' COMMENT '答对数',
+  `total_duration` BIGINT NOT NULL DEFAULT '0' COMMENT '总耗时(秒)',
+  PRIMARY KEY (`id`),
+  UNIQUE KEY `uk_student_date` (`student_id`, `stat_date`)
+) ENGINE=InnoDB COMMENT='学生每日答题汇总';
+
+CREATE TABLE IF NOT EXISTS `student_daily_kp_stats` (
+  `id` BIGINT NOT NULL AUTO_INCREMENT,
+  `student_id` BIGINT NOT NULL COMMENT '学生 ID',
+  `stat_date` DATE NOT NULL COMMENT '统计日期',
+  `knowledge_point_id` BIGINT NOT NULL COMMENT '知识点 ID',
+  `attempts` INT NOT NULL DEFAULT '0' COMMENT '答题数',
+  `correct_count` INT NOT NULL DEFAULT '0' COMMENT '答对数',
+  PRIMARY KEY (`id`),
+  UNIQUE KEY `uk_student_date_kp` (`student_id`, `stat_date`, `knowledge_point_id`)
+) ENGINE=InnoDB COMMENT='学生每日分知识点答题汇总';
+
+-- 历史数据回填 (仅首次升级执行)
+INSERT INTO `student_daily_stats` (`student_id`, `stat_date`, `attempts`, `correct_count`, `total_duration`)
+SELECT `student_id`, DATE(`submit_time`), COUNT(*), SUM(`result` = 1), COALESCE(SUM(`duration`), 0)
+FROM `student_exercise_log`
+GROUP BY `student_id`, DATE(`submit_time`)
+ON DUPLICATE KEY UPDATE `attempts` = VALUES(`attempts`), `correct_count` = VALUES(`correct_count`),
+  `total_duration` = VALUES(`total_duration`);
+
+INSERT INTO `student_daily_kp_stats` (`student_id`, `stat_date`, `knowledge_point_id`, `attempts`, `correct_count`)
+SELECT l.`student_id`, DATE(l.`submit_time`), q.`knowledge_point_id`, COUNT(*), SUM(l.`result` = 1)
+FROM `student_exercise_log` l JOIN `question` q ON q.`id` = l.`question_id`
+WHERE q.`knowledge_point_id` IS NOT NULL
+GROUP BY l.`student_id`, DATE(l.`submit_time`), q.`knowledge_point_id`
+ON DUPLICATE KEY UPDATE `attempts` = VALUES(`attempts`), `correct_count` = VALUES(`correct_count`);
+
+-- 3. 答题记录按 MQ 消息 ID 去重 (消费者重投时跳过已入库的消息)
+--    dispatched 与答题记录同一事务写入 0，订阅者回调完成后置 1；提交后、回调前崩溃时重投的消息据此重新回调
+ALTER TABLE `student_exercise_log` ADD COLUMN `message_id` VARCHAR(36) NULL COMMENT 'MQ 消息 ID',
+  ADD COLUMN `dispatched` TINYINT(1) NOT NULL DEFAULT 1 COMMENT '订阅者回调是否完成 (0:待回调, 1:已完成)',
+  ADD UNIQUE KEY `uk_message_id` (`message_id`);